@@ -1,6 +1,7 @@
 from fastapi import FastAPI, HTTPException
 from src.data.fetch_data import DataFetcher
 from src.models.train_model import DelayModel
+from src.models.export_model import export_model
 import os
 import asyncio
 import redis
@@ -99,6 +100,7 @@ async def train_model_endpoint():
         model = DelayModel()
         model.train(df)
         model.save('/app/models/delay_model.joblib')
+        export_model(model, '/app/models/delay_model.json')
         return {"message": "Model trained successfully."}
     else:
         raise HTTPException(status_code=500, detail="Could not fetch historical data.")
@@ -3,9 +3,13 @@ import psycopg2
 from dotenv import load_dotenv
 import os
 import json
+from datetime import datetime, timedelta
+from zoneinfo import ZoneInfo
 
 load_dotenv()
 
+FEED_ZONE = ZoneInfo('America/New_York')
+
 class DataFetcher:
     def __init__(self):
         self.db_params = {
@@ -16,18 +20,25 @@ class DataFetcher:
             'port': os.getenv('DB_PORT', '5432')
         }
 
-    def fetch_historical_data(self):
-        """Fetch historical VehiclePosition data from PostgreSQL."""
+    def fetch_historical_data(self, days=None):
+        """Fetch the VehiclePosition data of the last `days` days (TRAINING_DAYS, default 14) from PostgreSQL.
+
+        The time bound lets PostgreSQL scan only the matching daily partitions of vehicle_position.
+        Timestamps are stored in the feed's local time, so the cutoff is taken in that zone.
+        """
+        if days is None:
+            days = int(os.getenv('TRAINING_DAYS', '14'))
+        cutoff = datetime.now(FEED_ZONE).replace(tzinfo=None) - timedelta(days=days)
         try:
             conn = psycopg2.connect(**self.db_params)
             query = """
                 SELECT vehicle_id, route_id, stop_id, latitude, longitude, timestamp, delay
                 FROM vehicle_position
-                WHERE route_id LIKE 'B%'
+                WHERE timestamp >= %(cutoff)s AND route_id LIKE 'B%%' AND delay IS NOT NULL
             """
-            df = pd.read_sql(query, conn)
+            df = pd.read_sql(query, conn, params={'cutoff': cutoff})
             conn.close()
             return df
         except Exception as e:
             print(f"Error fetching historical data: {e}")
-            return pd.DataFrame()
\ No newline at end of file
+            return pd.DataFrame()
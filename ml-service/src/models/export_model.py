@@ -0,0 +1,49 @@
+"""Export a trained DelayModel as a portable JSON tree dump for the Java prediction engine.
+
+Format ("tree-ensemble-v1"):
+    {
+      "format": "tree-ensemble-v1",
+      "aggregation": "mean",               # prediction = mean of the tree outputs
+      "features": ["route_id_encoded", ...],  # feature order used by the node "feature" indices
+      "encoders": {"route_id": [...], "stop_id": [...]},  # LabelEncoder classes; index = code, unseen = -1
+      "trees": [
+        {"feature": [...], "threshold": [...], "left": [...], "right": [...], "value": [...]}
+      ]
+    }
+
+Each tree is stored as parallel node arrays with the root at index 0. A node with left == -1 is a leaf
+whose output is value[node]; otherwise the walk goes left when float32(x[feature]) <= threshold,
+as in scikit-learn.
+"""
+import json
+import logging
+import os
+
+FEATURES = ['route_id_encoded', 'stop_id_encoded', 'hour', 'day_of_week', 'latitude', 'longitude']
+
+
+def export_model(delay_model, path):
+    """Write the forest and label encoders of a trained DelayModel to path."""
+    trees = []
+    for estimator in delay_model.model.estimators_:
+        tree = estimator.tree_
+        trees.append({
+            'feature': [int(f) for f in tree.feature],
+            'threshold': [float(t) for t in tree.threshold],
+            'left': [int(c) for c in tree.children_left],
+            'right': [int(c) for c in tree.children_right],
+            'value': [float(v) for v in tree.value[:, 0, 0]],
+        })
+    dump = {
+        'format': 'tree-ensemble-v1',
+        'aggregation': 'mean',
+        'features': FEATURES,
+        'encoders': {col: [str(c) for c in le.classes_] for col, le in delay_model.encoders.items()},
+        'trees': trees,
+    }
+    os.makedirs(os.path.dirname(path), exist_ok=True)
+    tmp = path + '.tmp'
+    with open(tmp, 'w') as f:
+        json.dump(dump, f, separators=(',', ':'))
+    os.replace(tmp, path)
+    logging.info(f"Model exported to {path}")
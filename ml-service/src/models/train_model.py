@@ -6,6 +6,7 @@ from datetime import datetime
 import os
 import logging
 from src.data.fetch_data import DataFetcher
+from src.models.export_model import export_model
 
 logging.basicConfig(level=logging.INFO)
 
@@ -77,4 +78,5 @@ if __name__ == "__main__":
     if not df.empty:
         model = DelayModel()
         model.train(df)
-        model.save('/app/models/delay_model.joblib')
\ No newline at end of file
+        model.save('/app/models/delay_model.joblib')
+        export_model(model, '/app/models/delay_model.json')
\ No newline at end of file
@@ -0,0 +1,20 @@
+from unittest.mock import patch, MagicMock
+from datetime import datetime, timedelta
+import pandas as pd
+
+from src.data.fetch_data import DataFetcher, FEED_ZONE
+
+@patch('src.data.fetch_data.pd.read_sql')
+@patch('src.data.fetch_data.psycopg2.connect')
+def test_fetch_historical_data_reads_only_recent_days(mock_connect, mock_read_sql):
+    mock_connect.return_value = MagicMock()
+    mock_read_sql.return_value = pd.DataFrame()
+
+    DataFetcher().fetch_historical_data(days=7)
+
+    query = mock_read_sql.call_args.args[0]
+    cutoff = mock_read_sql.call_args.kwargs['params']['cutoff']
+    expected = datetime.now(FEED_ZONE).replace(tzinfo=None) - timedelta(days=7)
+    assert 'timestamp >= %(cutoff)s' in query
+    assert 'delay IS NOT NULL' in query
+    assert abs(cutoff - expected) < timedelta(minutes=1)
@@ -0,0 +1,77 @@
+package com.transit.delay_prediction.config;
+
+import com.transit.delay_prediction.entity.VehiclePosition;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding one VehiclePosition with the Redis codecs (Jackson JSON and the binary layout)
+ * and encoding it for Kafka in the protobuf format.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VehiclePositionCodecBenchmark {
+
+	@Param({"json", "binary"})
+	String codec;
+
+	private RedisSerializer<VehiclePosition> serializer;
+	private final VehiclePositionProtobufSerializer protobuf = new VehiclePositionProtobufSerializer();
+	private VehiclePosition position;
+	private byte[] encoded;
+
+	@Setup
+	public void setUp() {
+		serializer = codec.equals("json") ? RedisConfig.jsonSerializer() : new VehiclePositionBinarySerializer();
+		position = new VehiclePosition();
+		position.setId(42L);
+		position.setVehicleId("MTA NYCT_7612");
+		position.setTripId("FP_D5-Weekday-SDon-066100_B41_601");
+		position.setRouteId("B41");
+		position.setStopId("303215");
+		position.setLatitude(40.645923);
+		position.setLongitude(-73.957374);
+		position.setTimestamp(LocalDateTime.of(2025, 3, 14, 11, 2, 37));
+		position.setDelay(184);
+		position.setPredictedDelay(151.25);
+		position.setUpstreamStopId("303216");
+		position.setUpstreamArrival(LocalDateTime.of(2025, 3, 14, 11, 4, 10));
+		position.setUpstreamDelay(150);
+		encoded = serializer.serialize(position);
+	}
+
+	@Benchmark
+	public byte[] encode() {
+		return serializer.serialize(position);
+	}
+
+	@Benchmark
+	public VehiclePosition decode() {
+		return serializer.deserialize(encoded);
+	}
+
+	/**
+	 * Kafka protobuf encoding; independent of {@code codec}.
+	 */
+	@Benchmark
+	public byte[] encodeProtobuf() {
+		return protobuf.serialize("vehicle_positions", position);
+	}
+}
@@ -0,0 +1,63 @@
+package com.transit.delay_prediction.service;
+
+import com.google.transit.realtime.GtfsRealtime.FeedEntity;
+import com.google.transit.realtime.GtfsRealtime.FeedMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding a vehicle position feed and keeping the Brooklyn entities: the streaming
+ * {@link GtfsRtFeedDecoder}, which skips other routes undecoded, against parsing the whole FeedMessage.
+ * Pass {@code -p vehicleFeed=/path/to/vehiclePositions.pb} to decode a recorded feed instead of the fixture.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FeedDecodeBenchmark {
+
+	@Param({"3000"})
+	int otherVehicles;
+
+	@Param({""})
+	String vehicleFeed;
+
+	private byte[] feed;
+
+	@Setup
+	public void setUp() {
+		feed = FeedFixture.read(vehicleFeed, FeedFixture.load().vehiclePositions(20, otherVehicles));
+	}
+
+	@Benchmark
+	public void streamingDecoder(Blackhole blackhole) {
+		GtfsRtFeedDecoder.decode(new ByteArrayInputStream(feed), header -> true,
+				routeId -> routeId != null && routeId.startsWith("B"))
+			.subscribe(blackhole::consume);
+	}
+
+	@Benchmark
+	public void parseWholeFeed(Blackhole blackhole) throws IOException {
+		for (FeedEntity entity : FeedMessage.parseFrom(feed).getEntityList()) {
+			if (entity.hasVehicle() && entity.getVehicle().getTrip().getRouteId().startsWith("B")) {
+				blackhole.consume(entity);
+			}
+		}
+	}
+}
@@ -0,0 +1,115 @@
+package com.transit.delay_prediction.service;
+
+import com.google.transit.realtime.GtfsRealtime.FeedEntity;
+import com.transit.delay_prediction.entity.VehiclePosition;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One ingestion cycle as {@code GtfsRtIngestionService} runs it, without the stores: decoding a vehicle
+ * position feed, keeping the Brooklyn vehicles, mapping each to a VehiclePosition, measuring its schedule
+ * deviation, joining its trip's upstream prediction and classifying the change. Each invocation processes
+ * the next of 60 feed rounds, so vehicles advance along their trips as they do between polls.
+ * Also applying a TripUpdates feed to the trip state table.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FeedEnrichmentBenchmark {
+	private static final int ROUNDS = 60;
+
+	@Param({"3000"})
+	int otherVehicles;
+
+	@Param({""})
+	String tripUpdatesFeed;
+
+	private FeedFixture fixture;
+	private byte[][] rounds;
+	private byte[] tripUpdates;
+	private int round;
+	private TripDeviationEngine deviations;
+	private TripStateTable tripStates;
+	private VehicleChangeDetector changes;
+
+	@Setup
+	public void setUp() {
+		fixture = FeedFixture.load();
+		rounds = new byte[ROUNDS][];
+		for (int r = 0; r < ROUNDS; r++) {
+			rounds[r] = fixture.vehiclePositions(r, otherVehicles);
+		}
+		tripUpdates = FeedFixture.read(tripUpdatesFeed, fixture.tripUpdates(otherVehicles / 2));
+		deviations = new TripDeviationEngine();
+		tripStates = new TripStateTable(FeedFixture.ZONE);
+		changes = new VehicleChangeDetector(60);
+		applyTripUpdates();
+	}
+
+	@Benchmark
+	public void vehiclePositionCycle(Blackhole blackhole) {
+		byte[] feed = rounds[round];
+		round = (round + 1) % ROUNDS;
+		long now = Instant.now().getEpochSecond();
+		GtfsRtFeedDecoder.decode(new ByteArrayInputStream(feed), header -> true,
+				routeId -> routeId != null && routeId.startsWith("B"))
+			.filter(entity -> entity.hasVehicle() && entity.getVehicle().hasTrip())
+			.map(this::enrich)
+			.filter(position -> changes.observe(position, now).isEmitted())
+			.subscribe(blackhole::consume);
+	}
+
+	@Benchmark
+	public int tripUpdatesCycle() {
+		return applyTripUpdates();
+	}
+
+	private int applyTripUpdates() {
+		int applied = 0;
+		for (FeedEntity entity : GtfsRtFeedDecoder.decode(new ByteArrayInputStream(tripUpdates), header -> true,
+				routeId -> routeId != null && routeId.startsWith("B")).toIterable()) {
+			if (entity.hasTripUpdate() && tripStates.applyTripUpdate(fixture.schedule, entity.getTripUpdate(), 0)) {
+				applied++;
+			}
+		}
+		return applied;
+	}
+
+	private VehiclePosition enrich(FeedEntity entity) {
+		var vehicle = entity.getVehicle();
+		var trip = vehicle.getTrip();
+		VehiclePosition position = new VehiclePosition();
+		position.setVehicleId(vehicle.getVehicle().getId());
+		position.setTripId(trip.getTripId());
+		position.setRouteId(trip.getRouteId());
+		position.setStopId(vehicle.hasStopId() ? vehicle.getStopId() : null);
+		position.setLatitude(vehicle.getPosition().getLatitude());
+		position.setLongitude(vehicle.getPosition().getLongitude());
+		position.setTimestamp(LocalDateTime.ofInstant(Instant.ofEpochSecond(vehicle.getTimestamp()), FeedFixture.ZONE));
+		int stopSequence = vehicle.hasCurrentStopSequence() ? vehicle.getCurrentStopSequence() : ScheduleIndex.NOT_FOUND;
+		Integer delay = deviations.observe(fixture.shapes, position.getVehicleId(), trip.getTripId(), position.getStopId(),
+				stopSequence, GtfsRtIngestionService.startDate(trip.getStartDate()), position.getLatitude(),
+				position.getLongitude(), position.getTimestamp().atZone(FeedFixture.ZONE));
+		position.setDelay(delay);
+		tripStates.join(position, stopSequence);
+		return position;
+	}
+}
@@ -0,0 +1,213 @@
+package com.transit.delay_prediction.service;
+
+import com.google.transit.realtime.GtfsRealtime.FeedEntity;
+import com.google.transit.realtime.GtfsRealtime.FeedHeader;
+import com.google.transit.realtime.GtfsRealtime.FeedMessage;
+import com.google.transit.realtime.GtfsRealtime.Position;
+import com.google.transit.realtime.GtfsRealtime.TripDescriptor;
+import com.google.transit.realtime.GtfsRealtime.TripUpdate;
+import com.google.transit.realtime.GtfsRealtime.TripUpdate.StopTimeEvent;
+import com.google.transit.realtime.GtfsRealtime.TripUpdate.StopTimeUpdate;
+import com.google.transit.realtime.GtfsRealtime.VehicleDescriptor;
+import com.google.transit.realtime.GtfsRealtime.VehiclePosition;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Fixtures shared by the benchmarks: the small GTFS static feed in {@code src/jmh/resources/gtfs} (three
+ * Brooklyn routes, 72 trips, some running past midnight) loaded into the in-memory indexes, and GTFS-RT
+ * feeds observed against it. The vehicle position feed places a vehicle on every fixture trip and pads
+ * the feed with vehicles of routes outside Brooklyn, as the citywide BusTime feed carries them; the
+ * TripUpdates feed predicts the remaining stops of every trip. Feeds are generated with a fixed seed, or
+ * read from a file recorded from a live feed (e.g. {@code curl -o vehiclePositions.pb ...}).
+ */
+final class FeedFixture {
+	static final ZoneId ZONE = ZoneId.of("America/New_York");
+	static final LocalDate DAY = LocalDate.of(2025, 6, 11);
+
+	final ServiceCalendar calendar;
+	final ScheduleIndex schedule;
+	final ShapeMatchIndex shapes;
+	/** Raw arrival_time values of stop_times.txt, in file order. */
+	final List<String> arrivalTimes = new ArrayList<>();
+	final List<String> tripIds = new ArrayList<>();
+	final Map<String, String> tripRoute = new HashMap<>();
+	final Map<String, String> tripService = new HashMap<>();
+	final Map<String, List<double[]>> shapePoints = new HashMap<>();
+	final Map<String, String> tripShape = new HashMap<>();
+
+	private FeedFixture(Path gtfs) throws IOException {
+		ServiceCalendar.Builder calendarBuilder = new ServiceCalendar.Builder();
+		try (Stream<GtfsCsvReader.Row> rows = GtfsCsvReader.rows(gtfs.resolve("calendar.txt"))) {
+			rows.forEach(row -> {
+				boolean[] days = new boolean[7];
+				String[] columns = {"monday", "tuesday", "wednesday", "thursday", "friday", "saturday", "sunday"};
+				for (int i = 0; i < 7; i++) {
+					days[i] = row.getInt(columns[i], 0) == 1;
+				}
+				calendarBuilder.addWeekly(row.get("service_id"), days,
+						GtfsStaticIngestionService.parseGtfsDate(row.get("start_date")),
+						GtfsStaticIngestionService.parseGtfsDate(row.get("end_date")));
+			});
+		}
+		try (Stream<GtfsCsvReader.Row> rows = GtfsCsvReader.rows(gtfs.resolve("calendar_dates.txt"))) {
+			rows.forEach(row -> calendarBuilder.addException(row.get("service_id"),
+					GtfsStaticIngestionService.parseGtfsDate(row.get("date")), row.getInt("exception_type", 0)));
+		}
+		calendar = calendarBuilder.build();
+
+		Map<String, Integer> tripDirection = new HashMap<>();
+		try (Stream<GtfsCsvReader.Row> rows = GtfsCsvReader.rows(gtfs.resolve("trips.txt"))) {
+			rows.forEach(row -> {
+				String tripId = row.get("trip_id");
+				tripIds.add(tripId);
+				tripRoute.put(tripId, row.get("route_id"));
+				tripService.put(tripId, row.get("service_id"));
+				tripShape.put(tripId, row.get("shape_id"));
+				tripDirection.put(tripId, row.getInt("direction_id", ScheduleIndex.NOT_FOUND));
+			});
+		}
+		ScheduleIndex.Builder scheduleBuilder = new ScheduleIndex.Builder(calendar);
+		try (Stream<GtfsCsvReader.Row> rows = GtfsCsvReader.rows(gtfs.resolve("stop_times.txt"))) {
+			rows.forEach(row -> {
+				String tripId = row.get("trip_id");
+				arrivalTimes.add(row.get("arrival_time"));
+				scheduleBuilder.add(tripId, row.get("stop_id"), row.getInt("stop_sequence", 0),
+						GtfsStaticIngestionService.parseGtfsSeconds(row.get("arrival_time")),
+						GtfsStaticIngestionService.parseGtfsSeconds(row.get("departure_time")),
+						tripDirection.get(tripId), tripService.get(tripId));
+			});
+		}
+		schedule = scheduleBuilder.build();
+
+		ShapeMatchIndex.Builder shapeBuilder = new ShapeMatchIndex.Builder(schedule, ShapeMatchIndex.DEFAULT_MAX_DISTANCE_METRES);
+		try (Stream<GtfsCsvReader.Row> rows = GtfsCsvReader.rows(gtfs.resolve("shapes.txt"))) {
+			rows.forEach(row -> {
+				double lat = row.getDouble("shape_pt_lat");
+				double lon = row.getDouble("shape_pt_lon");
+				shapeBuilder.addShapePoint(row.get("shape_id"), lat, lon);
+				shapePoints.computeIfAbsent(row.get("shape_id"), id -> new ArrayList<>()).add(new double[] {lat, lon});
+			});
+		}
+		try (Stream<GtfsCsvReader.Row> rows = GtfsCsvReader.rows(gtfs.resolve("stops.txt"))) {
+			rows.forEach(row -> shapeBuilder.addStop(row.get("stop_id"), row.getDouble("stop_lat"), row.getDouble("stop_lon")));
+		}
+		tripShape.forEach(shapeBuilder::addTripShape);
+		shapes = shapeBuilder.build();
+	}
+
+	static FeedFixture load() {
+		try {
+			return new FeedFixture(Path.of(FeedFixture.class.getResource("/gtfs/stops.txt").toURI()).getParent());
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} catch (URISyntaxException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * @param recorded Path of a recorded feed, or empty for the generated one.
+	 */
+	static byte[] read(String recorded, byte[] generated) {
+		if (recorded.isEmpty()) return generated;
+		try {
+			return Files.readAllBytes(Path.of(recorded));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * A vehicle position feed in which every fixture trip's vehicle is at a shape point chosen by the round,
+	 * observed a few minutes off schedule, plus {@code otherVehicles} vehicles of routes outside Brooklyn.
+	 */
+	byte[] vehiclePositions(int round, int otherVehicles) {
+		Random random = new Random(round);
+		long serviceDayStart = ServiceCalendar.at(DAY, 0, ZONE).toEpochSecond();
+		FeedMessage.Builder feed = FeedMessage.newBuilder()
+				.setHeader(FeedHeader.newBuilder().setGtfsRealtimeVersion("1.0").setTimestamp(serviceDayStart + 43_200 + round * 30L));
+		for (int v = 0; v < tripIds.size(); v++) {
+			String tripId = tripIds.get(v);
+			List<double[]> points = shapePoints.get(tripShape.get(tripId));
+			double[] point = points.get(Math.min(points.size() - 1, round % points.size()));
+			int trip = schedule.trip(tripId);
+			int first = schedule.firstStopTime(trip);
+			int last = schedule.endStopTime(trip) - 1;
+			int scheduled = schedule.arrival(first)
+					+ (schedule.arrival(last) - schedule.arrival(first)) * (round % points.size()) / (points.size() - 1);
+			feed.addEntity(vehicle("MTA NYCT_" + (4000 + v), tripRoute.get(tripId), tripId,
+					point[0] + (random.nextDouble() - 0.5) * 0.0002, point[1] + (random.nextDouble() - 0.5) * 0.0002,
+					serviceDayStart + scheduled + random.nextInt(600) - 120));
+		}
+		for (int v = 0; v < otherVehicles; v++) {
+			String route = (v % 3 == 0 ? "Q" : v % 3 == 1 ? "M" : "S") + (1 + v % 60);
+			feed.addEntity(vehicle("MTA NYCT_" + (10_000 + v), route, route + "-WKD-" + v,
+					40.70 + random.nextDouble() * 0.15, -73.99 + random.nextDouble() * 0.2,
+					serviceDayStart + 43_200 + round * 30L));
+		}
+		return feed.build().toByteArray();
+	}
+
+	private static FeedEntity vehicle(String vehicleId, String routeId, String tripId, double lat, double lon, long timestamp) {
+		return FeedEntity.newBuilder()
+				.setId(vehicleId)
+				.setVehicle(VehiclePosition.newBuilder()
+						.setTrip(TripDescriptor.newBuilder().setTripId(tripId).setRouteId(routeId).setStartDate("20250611"))
+						.setVehicle(VehicleDescriptor.newBuilder().setId(vehicleId))
+						.setPosition(Position.newBuilder().setLatitude((float) lat).setLongitude((float) lon).setBearing(90))
+						.setTimestamp(timestamp))
+				.build();
+	}
+
+	/**
+	 * A TripUpdates feed predicting every remaining stop of each fixture trip from its middle stop on,
+	 * plus {@code otherTrips} trips of 20 stops on routes outside Brooklyn.
+	 */
+	byte[] tripUpdates(int otherTrips) {
+		Random random = new Random(7);
+		long serviceDayStart = ServiceCalendar.at(DAY, 0, ZONE).toEpochSecond();
+		FeedMessage.Builder feed = FeedMessage.newBuilder()
+				.setHeader(FeedHeader.newBuilder().setGtfsRealtimeVersion("1.0").setTimestamp(serviceDayStart + 43_200));
+		for (String tripId : tripIds) {
+			int trip = schedule.trip(tripId);
+			int end = schedule.endStopTime(trip);
+			int delay = random.nextInt(600) - 120;
+			TripUpdate.Builder update = TripUpdate.newBuilder()
+					.setTrip(TripDescriptor.newBuilder().setTripId(tripId).setRouteId(tripRoute.get(tripId)))
+					.setTimestamp(serviceDayStart + 43_200);
+			for (int position = (schedule.firstStopTime(trip) + end) / 2; position < end; position++) {
+				update.addStopTimeUpdate(StopTimeUpdate.newBuilder()
+						.setStopId(schedule.stopId(position))
+						.setArrival(StopTimeEvent.newBuilder().setTime(serviceDayStart + schedule.arrival(position) + delay)));
+				delay += random.nextInt(30) - 10;
+			}
+			feed.addEntity(FeedEntity.newBuilder().setId(tripId).setTripUpdate(update));
+		}
+		for (int t = 0; t < otherTrips; t++) {
+			String route = (t % 2 == 0 ? "Q" : "M") + (1 + t % 60);
+			TripUpdate.Builder update = TripUpdate.newBuilder()
+					.setTrip(TripDescriptor.newBuilder().setTripId(route + "-WKD-" + t).setRouteId(route))
+					.setTimestamp(serviceDayStart + 43_200);
+			for (int s = 0; s < 20; s++) {
+				update.addStopTimeUpdate(StopTimeUpdate.newBuilder()
+						.setStopId(String.valueOf(500_000 + t * 20 + s))
+						.setArrival(StopTimeEvent.newBuilder().setTime(serviceDayStart + 43_200 + s * 120)));
+			}
+			feed.addEntity(FeedEntity.newBuilder().setId(route + "-" + t).setTripUpdate(update));
+		}
+		return feed.build().toByteArray();
+	}
+}
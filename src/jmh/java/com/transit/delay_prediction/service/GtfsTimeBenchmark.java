@@ -0,0 +1,102 @@
+package com.transit.delay_prediction.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * GTFS time and calendar handling over the static fixture: parsing stop_times.txt times (including those
+ * past 24:00:00), calendar lookups for a year of service dates, and resolving the service date of a trip
+ * observed around midnight. Scores are per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GtfsTimeBenchmark {
+	private static final int STOP_TIMES = 1_080;
+	private static final int DAYS = 365;
+	private static final int TRIPS = 72;
+
+	private FeedFixture fixture;
+	private String[] times;
+	private String[] tripIds;
+	private String[] serviceIds;
+	private int[] scheduled;
+	private ZonedDateTime observed;
+
+	@Setup
+	public void setUp() {
+		fixture = FeedFixture.load();
+		times = fixture.arrivalTimes.toArray(String[]::new);
+		tripIds = fixture.tripIds.toArray(String[]::new);
+		if (times.length != STOP_TIMES || tripIds.length != TRIPS) {
+			throw new IllegalStateException("Fixture changed: update STOP_TIMES and TRIPS");
+		}
+		serviceIds = new String[TRIPS];
+		scheduled = new int[TRIPS];
+		for (int t = 0; t < TRIPS; t++) {
+			serviceIds[t] = fixture.tripService.get(tripIds[t]);
+			scheduled[t] = fixture.schedule.arrival(fixture.schedule.firstStopTime(fixture.schedule.trip(tripIds[t])));
+		}
+		observed = FeedFixture.DAY.plusDays(1).atTime(0, 30).atZone(FeedFixture.ZONE);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(STOP_TIMES)
+	public void parseGtfsSeconds(Blackhole blackhole) {
+		for (String time : times) {
+			blackhole.consume(GtfsStaticIngestionService.parseGtfsSeconds(time));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(STOP_TIMES)
+	public void parseGtfsTime(Blackhole blackhole) {
+		for (String time : times) {
+			blackhole.consume(GtfsStaticIngestionService.parseGtfsTime(GtfsStaticIngestionService.parseGtfsSeconds(time)));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(DAYS * TRIPS)
+	public void calendarIsActive(Blackhole blackhole) {
+		LocalDate date = LocalDate.of(2025, 1, 1);
+		for (int d = 0; d < DAYS; d++, date = date.plusDays(1)) {
+			for (String serviceId : serviceIds) {
+				blackhole.consume(fixture.calendar.isActive(serviceId, date));
+			}
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(TRIPS)
+	public void serviceDate(Blackhole blackhole) {
+		for (int t = 0; t < TRIPS; t++) {
+			blackhole.consume(fixture.schedule.serviceDate(tripIds[t], scheduled[t], observed));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(TRIPS)
+	public void serviceDayInstant(Blackhole blackhole) {
+		for (int t = 0; t < TRIPS; t++) {
+			blackhole.consume(ServiceCalendar.at(FeedFixture.DAY, scheduled[t], FeedFixture.ZONE));
+		}
+	}
+}
@@ -0,0 +1,152 @@
+package com.transit.delay_prediction.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.ZonedDateTime;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shape-based map matching at NYC bus scale: 600 shapes of 400 points meandering across the city, 30,000
+ * trips of 40 stops and 6,000 vehicles near their trip's shape. Measures building the {@link ShapeMatchIndex},
+ * its stateless shape match and the {@link TripDeviationEngine} as vehicles advance one shape point per
+ * invocation, against the stop time lookup of the {@link ScheduleIndex} used when the feed names the stop.
+ * Lookup scores are per vehicle.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ShapeMatchBenchmark {
+	private static final int SHAPES = 600;
+	private static final int POINTS = 400;
+	private static final int TRIPS = 30_000;
+	private static final int STOPS_PER_TRIP = 40;
+	private static final int VEHICLES = 6_000;
+
+	private double[][] shapeLat;
+	private double[][] shapeLon;
+	private ScheduleIndex schedule;
+	private ShapeMatchIndex index;
+	private String[] vehicleIds;
+	private String[] tripIds;
+	private String[] stopIds;
+	private int[] sequences;
+	private double[] lat;
+	private double[] lon;
+	private int[] shapeOf;
+	private TripDeviationEngine engine;
+	private int round;
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(42);
+		shapeLat = new double[SHAPES][POINTS];
+		shapeLon = new double[SHAPES][POINTS];
+		for (int s = 0; s < SHAPES; s++) {
+			double lat = 40.55 + random.nextDouble() * 0.3;
+			double lon = -74.15 + random.nextDouble() * 0.4;
+			double heading = random.nextDouble() * 2 * Math.PI;
+			for (int p = 0; p < POINTS; p++) {
+				heading += (random.nextDouble() - 0.5) * 0.3;
+				lat += Math.sin(heading) * 0.0005;
+				lon += Math.cos(heading) * 0.0007;
+				shapeLat[s][p] = lat;
+				shapeLon[s][p] = lon;
+			}
+		}
+		ScheduleIndex.Builder scheduleBuilder = new ScheduleIndex.Builder();
+		for (int t = 0; t < TRIPS; t++) {
+			int shape = t % SHAPES;
+			int departure = 18_000 + random.nextInt(60_000);
+			for (int i = 0; i < STOPS_PER_TRIP; i++) {
+				scheduleBuilder.add("T" + t, "S" + shape + "_" + i, i + 1, departure + i * 90, departure + i * 90);
+			}
+		}
+		schedule = scheduleBuilder.build();
+		index = buildIndex();
+
+		vehicleIds = new String[VEHICLES];
+		tripIds = new String[VEHICLES];
+		stopIds = new String[VEHICLES];
+		sequences = new int[VEHICLES];
+		lat = new double[VEHICLES];
+		lon = new double[VEHICLES];
+		shapeOf = new int[VEHICLES];
+		for (int v = 0; v < VEHICLES; v++) {
+			int trip = random.nextInt(TRIPS);
+			int shape = trip % SHAPES;
+			int p = random.nextInt(POINTS);
+			int stop = random.nextInt(STOPS_PER_TRIP);
+			vehicleIds[v] = "V" + v;
+			tripIds[v] = "T" + trip;
+			stopIds[v] = "S" + shape + "_" + stop;
+			sequences[v] = stop + 1;
+			shapeOf[v] = shape;
+			lat[v] = shapeLat[shape][p] + (random.nextDouble() - 0.5) * 0.0004;
+			lon[v] = shapeLon[shape][p] + (random.nextDouble() - 0.5) * 0.0004;
+		}
+		engine = new TripDeviationEngine();
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public ShapeMatchIndex buildIndex() {
+		ShapeMatchIndex.Builder builder = new ShapeMatchIndex.Builder(schedule, ShapeMatchIndex.DEFAULT_MAX_DISTANCE_METRES);
+		for (int s = 0; s < SHAPES; s++) {
+			for (int p = 0; p < POINTS; p++) {
+				builder.addShapePoint("SH" + s, shapeLat[s][p], shapeLon[s][p]);
+			}
+			for (int i = 0; i < STOPS_PER_TRIP; i++) {
+				int p = i * POINTS / STOPS_PER_TRIP;
+				builder.addStop("S" + s + "_" + i, shapeLat[s][p] + 0.0001, shapeLon[s][p]);
+			}
+		}
+		for (int t = 0; t < TRIPS; t++) {
+			builder.addTripShape("T" + t, "SH" + t % SHAPES);
+		}
+		return builder.build();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(VEHICLES)
+	public void stopTimeLookup(Blackhole blackhole) {
+		ScheduleIndex schedule = index.schedule();
+		for (int v = 0; v < VEHICLES; v++) {
+			blackhole.consume(schedule.arrivalSeconds(tripIds[v], stopIds[v], sequences[v]));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(VEHICLES)
+	public void shapeMatch(Blackhole blackhole) {
+		for (int v = 0; v < VEHICLES; v++) {
+			blackhole.consume(index.scheduledSeconds(tripIds[v], lat[v], lon[v]));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(VEHICLES)
+	public void deviationEngine(Blackhole blackhole) {
+		int point = round % POINTS;
+		ZonedDateTime observed = ZonedDateTime.of(2025, 6, 11, 5, 0, 0, 0, FeedFixture.ZONE).plusSeconds(round * 30L);
+		round++;
+		for (int v = 0; v < VEHICLES; v++) {
+			blackhole.consume(engine.observe(index, vehicleIds[v], tripIds[v], null, ScheduleIndex.NOT_FOUND, null,
+					shapeLat[shapeOf[v]][point], shapeLon[shapeOf[v]][point], observed));
+		}
+	}
+}
@@ -0,0 +1,190 @@
+package com.transit.delay_prediction.service;
+
+import com.transit.delay_prediction.entity.VehiclePosition;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the stop KD-tree and the vehicle grid with a linear scan at NYC scale: about 16,000 bus
+ * stops and 6,000 buses spread over the five boroughs. Measures building each index and 10-nearest and
+ * 400 m radius queries; query scores are per query.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SpatialIndexBenchmark {
+	private static final int STOPS = 16_000;
+	private static final int VEHICLES = 6_000;
+	private static final int QUERIES = 4_096;
+	private static final int NEAREST = 10;
+	private static final double RADIUS_METRES = 400;
+
+	private static final double MIN_LAT = 40.49;
+	private static final double MAX_LAT = 40.92;
+	private static final double MIN_LON = -74.26;
+	private static final double MAX_LON = -73.70;
+
+	private double[] stopLat;
+	private double[] stopLon;
+	private double[] vehicleLat;
+	private double[] vehicleLon;
+	private List<VehiclePosition> fleet;
+	private double[] queryLat;
+	private double[] queryLon;
+	private StopSpatialIndex stops;
+	private LiveVehicleSnapshot vehicles;
+	private LocalProjection stopProjection;
+	private LocalProjection vehicleProjection;
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(42);
+		stopLat = new double[STOPS];
+		stopLon = new double[STOPS];
+		for (int i = 0; i < STOPS; i++) {
+			stopLat[i] = MIN_LAT + random.nextDouble() * (MAX_LAT - MIN_LAT);
+			stopLon[i] = MIN_LON + random.nextDouble() * (MAX_LON - MIN_LON);
+		}
+		fleet = new ArrayList<>(VEHICLES);
+		vehicleLat = new double[VEHICLES];
+		vehicleLon = new double[VEHICLES];
+		for (int i = 0; i < VEHICLES; i++) {
+			VehiclePosition position = new VehiclePosition();
+			position.setVehicleId("MTA NYCT_" + i);
+			position.setRouteId("B" + i % 200);
+			position.setLatitude(vehicleLat[i] = MIN_LAT + random.nextDouble() * (MAX_LAT - MIN_LAT));
+			position.setLongitude(vehicleLon[i] = MIN_LON + random.nextDouble() * (MAX_LON - MIN_LON));
+			fleet.add(position);
+		}
+		queryLat = new double[QUERIES];
+		queryLon = new double[QUERIES];
+		for (int i = 0; i < QUERIES; i++) {
+			queryLat[i] = MIN_LAT + random.nextDouble() * (MAX_LAT - MIN_LAT);
+			queryLon[i] = MIN_LON + random.nextDouble() * (MAX_LON - MIN_LON);
+		}
+		stops = buildStopIndex();
+		vehicles = buildVehicleSnapshot();
+		stopProjection = LocalProjection.around(stopLat);
+		vehicleProjection = LocalProjection.around(vehicleLat);
+	}
+
+	@Benchmark
+	public StopSpatialIndex buildStopIndex() {
+		StopSpatialIndex.Builder builder = new StopSpatialIndex.Builder();
+		for (int i = 0; i < STOPS; i++) {
+			builder.add("S" + i, null, stopLat[i], stopLon[i]);
+		}
+		return builder.build();
+	}
+
+	@Benchmark
+	public LiveVehicleSnapshot buildVehicleSnapshot() {
+		return LiveVehicleSnapshot.of(fleet, tripId -> ScheduleIndex.NOT_FOUND);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(QUERIES)
+	public void stopsNearestKdTree(Blackhole blackhole) {
+		for (int i = 0; i < QUERIES; i++) {
+			blackhole.consume(stops.nearest(queryLat[i], queryLon[i], NEAREST, Double.POSITIVE_INFINITY));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(QUERIES)
+	public void stopsNearestScan(Blackhole blackhole) {
+		for (int i = 0; i < QUERIES; i++) {
+			blackhole.consume(linearNearest(stopProjection, stopLat, stopLon, queryLat[i], queryLon[i]));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(QUERIES)
+	public void stopsRadiusKdTree(Blackhole blackhole) {
+		for (int i = 0; i < QUERIES; i++) {
+			blackhole.consume(stops.within(queryLat[i], queryLon[i], RADIUS_METRES));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(QUERIES)
+	public void stopsRadiusScan(Blackhole blackhole) {
+		for (int i = 0; i < QUERIES; i++) {
+			blackhole.consume(linearRadius(stopProjection, stopLat, stopLon, queryLat[i], queryLon[i]));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(QUERIES)
+	public void vehiclesNearestGrid(Blackhole blackhole) {
+		for (int i = 0; i < QUERIES; i++) {
+			blackhole.consume(vehicles.nearest(queryLat[i], queryLon[i], NEAREST, Double.POSITIVE_INFINITY));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(QUERIES)
+	public void vehiclesNearestScan(Blackhole blackhole) {
+		for (int i = 0; i < QUERIES; i++) {
+			blackhole.consume(linearNearest(vehicleProjection, vehicleLat, vehicleLon, queryLat[i], queryLon[i]));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(QUERIES)
+	public void vehiclesRadiusGrid(Blackhole blackhole) {
+		for (int i = 0; i < QUERIES; i++) {
+			blackhole.consume(vehicles.within(queryLat[i], queryLon[i], RADIUS_METRES));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(QUERIES)
+	public void vehiclesRadiusScan(Blackhole blackhole) {
+		for (int i = 0; i < QUERIES; i++) {
+			blackhole.consume(linearRadius(vehicleProjection, vehicleLat, vehicleLon, queryLat[i], queryLon[i]));
+		}
+	}
+
+	private static int[] linearNearest(LocalProjection projection, double[] lat, double[] lon, double qLat, double qLon) {
+		NearestHeap heap = new NearestHeap(NEAREST);
+		double qx = projection.x(qLon);
+		double qy = projection.y(qLat);
+		for (int i = 0; i < lat.length; i++) {
+			double dx = projection.x(lon[i]) - qx;
+			double dy = projection.y(lat[i]) - qy;
+			heap.offer(i, dx * dx + dy * dy);
+		}
+		return heap.drainSorted();
+	}
+
+	private static int linearRadius(LocalProjection projection, double[] lat, double[] lon, double qLat, double qLon) {
+		double qx = projection.x(qLon);
+		double qy = projection.y(qLat);
+		int found = 0;
+		for (int i = 0; i < lat.length; i++) {
+			double dx = projection.x(lon[i]) - qx;
+			double dy = projection.y(lat[i]) - qy;
+			if (dx * dx + dy * dy <= RADIUS_METRES * RADIUS_METRES) found++;
+		}
+		return found;
+	}
+}
@@ -0,0 +1,180 @@
+package com.transit.delay_prediction.controller;
+
+import com.transit.delay_prediction.entity.VehiclePosition;
+import com.transit.delay_prediction.service.LiveVehicleService;
+import com.transit.delay_prediction.service.ScheduleIndexService;
+import org.springframework.boot.logging.LogLevel;
+import org.springframework.boot.logging.LoggingSystem;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.http.server.reactive.HttpHandler;
+import org.springframework.http.server.reactive.ReactorHttpHandlerAdapter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+import org.springframework.web.reactive.config.EnableWebFlux;
+import org.springframework.web.server.adapter.WebHttpHandlerBuilder;
+import reactor.core.publisher.Flux;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * HTTP load benchmark of the live vehicle read API. Serves {@link LiveVehicleController} over Reactor Netty
+ * with a snapshot of synthetic Brooklyn vehicles and reports client-observed latency percentiles for a
+ * mix of vehicle, route and bounding-box queries, next to the server's own handling time (from the request
+ * reaching the handler until its response is written). Security filters are not included.
+ * Run with the loadtest profile (see pom.xml). Arguments: [vehicles] [requests] [concurrency].
+ * <p>
+ * The target is a client-observed p99 under 1 ms. On a single CPU shared by client and server, 2,000 vehicles
+ * and 150,000 requests at concurrency 1 gave a server p99 of 0.3-0.9 ms but a client p99 of 2.4-3.2 ms over
+ * two runs. The tail is the client and server threads being preempted, for up to the 4 ms scheduler tick,
+ * not request handling. The target has yet to be shown with the client on separate cores.
+ */
+public class LiveVehicleApiBenchmark {
+	private static final double P99_TARGET_MILLIS = 1.0;
+
+	@EnableWebFlux
+	static class WebConfig {
+	}
+
+	public static void main(String[] args) {
+		int vehicles = args.length > 0 ? Integer.parseInt(args[0]) : 2_000;
+		int requests = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+		int concurrency = args.length > 2 ? Integer.parseInt(args[2]) : 32;
+		ServerLatencies served = new ServerLatencies(requests);
+
+		LoggingSystem logging = LoggingSystem.get(LiveVehicleApiBenchmark.class.getClassLoader());
+		logging.beforeInitialize();
+		logging.setLogLevel(LoggingSystem.ROOT_LOGGER_NAME, LogLevel.WARN);
+
+		AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+		context.registerBean(JdbcTemplate.class, () -> new JdbcTemplate(new SimpleDriverDataSource()));
+		context.register(WebConfig.class, ScheduleIndexService.class, LiveVehicleService.class, LiveVehicleController.class);
+		context.refresh();
+		context.getBean(LiveVehicleService.class).update(syntheticVehicles(vehicles));
+
+		DisposableServer server = HttpServer.create().host("127.0.0.1").port(0)
+				.handle(new ReactorHttpHandlerAdapter(timed(WebHttpHandlerBuilder.applicationContext(context).build(), served)))
+				.bindNow();
+		HttpClient client = HttpClient.create(ConnectionProvider.create("benchmark", concurrency))
+				.baseUrl("http://127.0.0.1:" + server.port());
+		try {
+			run(client, queries(vehicles, 10_000), requests / 10, concurrency);
+			served.reset();
+			long[] latencies = run(client, queries(vehicles, requests), requests, concurrency);
+			report("client", latencies);
+			report("server", served.recorded());
+			System.out.printf("p99 target %.1f ms: %s%n", P99_TARGET_MILLIS,
+					percentile(latencies, 0.99) < P99_TARGET_MILLIS ? "met" : "NOT met");
+		} finally {
+			server.disposeNow();
+			context.close();
+		}
+	}
+
+	private static long[] run(HttpClient client, List<String> uris, int requests, int concurrency) {
+		long[] latencies = new long[requests];
+		long start = System.nanoTime();
+		Flux.range(0, requests)
+				.flatMap(i -> {
+					long sent = System.nanoTime();
+					return client.get().uri(uris.get(i % uris.size()))
+							.responseContent().aggregate().asString().defaultIfEmpty("")
+							.doOnNext(body -> latencies[i] = System.nanoTime() - sent);
+				}, concurrency)
+				.blockLast();
+		long elapsed = System.nanoTime() - start;
+		System.out.printf("%d requests in %d ms (%.0f req/s)%n", requests, elapsed / 1_000_000, requests * 1e9 / elapsed);
+		return latencies;
+	}
+
+	/**
+	 * Records how long the server takes for each request, leaving out the client and the loopback.
+	 */
+	private static HttpHandler timed(HttpHandler handler, ServerLatencies served) {
+		return (request, response) -> {
+			long start = System.nanoTime();
+			return handler.handle(request, response).doFinally(signal -> served.add(System.nanoTime() - start));
+		};
+	}
+
+	private static final class ServerLatencies {
+		private final long[] latencies;
+		private final AtomicInteger count = new AtomicInteger();
+
+		ServerLatencies(int capacity) {
+			latencies = new long[capacity];
+		}
+
+		void add(long nanos) {
+			int i = count.getAndIncrement();
+			if (i < latencies.length) latencies[i] = nanos;
+		}
+
+		void reset() {
+			count.set(0);
+		}
+
+		long[] recorded() {
+			return Arrays.copyOf(latencies, Math.min(count.get(), latencies.length));
+		}
+	}
+
+	/**
+	 * Sorts the latencies and prints their percentiles.
+	 */
+	private static void report(String side, long[] latencies) {
+		Arrays.sort(latencies);
+		System.out.printf("%s latency p50 %.3f ms, p99 %.3f ms, p99.9 %.3f ms, max %.3f ms%n", side,
+				percentile(latencies, 0.50), percentile(latencies, 0.99), percentile(latencies, 0.999),
+				latencies[latencies.length - 1] / 1e6);
+	}
+
+	private static double percentile(long[] sorted, double p) {
+		return sorted[(int) Math.max(0, Math.ceil(p * sorted.length) - 1)] / 1e6;
+	}
+
+	private static List<String> queries(int vehicles, int count) {
+		Random random = new Random(7);
+		List<String> uris = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			switch (i % 3) {
+				case 0 -> uris.add("/api/vehicles/MTA%20NYCT_" + random.nextInt(vehicles));
+				case 1 -> uris.add("/api/routes/B" + (1 + random.nextInt(80)) + "/vehicles?directionId=" + random.nextInt(2));
+				default -> {
+					double lat = 40.57 + random.nextDouble() * 0.13;
+					double lon = -74.04 + random.nextDouble() * 0.18;
+					uris.add("/api/vehicles?minLat=" + lat + "&minLon=" + lon + "&maxLat=" + (lat + 0.01) + "&maxLon=" + (lon + 0.01));
+				}
+			}
+		}
+		return uris;
+	}
+
+	private static List<VehiclePosition> syntheticVehicles(int count) {
+		Random random = new Random(42);
+		LocalDateTime now = LocalDateTime.now(ZoneId.of("America/New_York"));
+		List<VehiclePosition> positions = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			VehiclePosition position = new VehiclePosition();
+			position.setVehicleId("MTA NYCT_" + i);
+			position.setRouteId("B" + (1 + random.nextInt(80)));
+			position.setTripId("T" + i);
+			position.setStopId(String.valueOf(300_000 + random.nextInt(5_000)));
+			position.setLatitude(40.57 + random.nextDouble() * 0.13);
+			position.setLongitude(-74.04 + random.nextDouble() * 0.18);
+			position.setTimestamp(now);
+			position.setDelay(random.nextInt(900) - 120);
+			positions.add(position);
+		}
+		return positions;
+	}
+}
@@ -0,0 +1,143 @@
+package com.transit.delay_prediction.controller;
+
+import com.transit.delay_prediction.entity.VehiclePosition;
+import com.transit.delay_prediction.service.LiveVehicleService;
+import com.transit.delay_prediction.service.ScheduleIndexService;
+import org.springframework.boot.logging.LogLevel;
+import org.springframework.boot.logging.LoggingSystem;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.http.server.reactive.ReactorHttpHandlerAdapter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+import org.springframework.web.reactive.config.EnableWebFlux;
+import org.springframework.web.server.adapter.WebHttpHandlerBuilder;
+import reactor.core.Disposable;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.netty.resources.LoopResources;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fan-out benchmark of the vehicle delta stream. Opens many server-sent event subscriptions, each for
+ * a few routes, then applies ingestion cycles that move a share of the vehicles and reports the time
+ * from the cycle until every subscriber has received its delta.
+ * Run with the loadtest profile (see pom.xml). Arguments: [subscribers] [vehicles] [cycles].
+ */
+public class LiveVehicleStreamBenchmark {
+
+	@EnableWebFlux
+	static class WebConfig {
+	}
+
+	private static final int ROUTES = 80;
+
+	public static void main(String[] args) throws InterruptedException {
+		int subscribers = args.length > 0 ? Integer.parseInt(args[0]) : 2_000;
+		int vehicles = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+		int cycles = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+		LoggingSystem logging = LoggingSystem.get(LiveVehicleStreamBenchmark.class.getClassLoader());
+		logging.beforeInitialize();
+		logging.setLogLevel(LoggingSystem.ROOT_LOGGER_NAME, LogLevel.WARN);
+
+		AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+		context.registerBean(JdbcTemplate.class, () -> new JdbcTemplate(new SimpleDriverDataSource()));
+		context.register(WebConfig.class, ScheduleIndexService.class, LiveVehicleService.class, LiveVehicleController.class);
+		context.refresh();
+		LiveVehicleService service = context.getBean(LiveVehicleService.class);
+		Random random = new Random(42);
+		List<VehiclePosition> fleet = syntheticVehicles(vehicles, random);
+		service.update(fleet);
+
+		DisposableServer server = HttpServer.create().host("127.0.0.1").port(0)
+				.handle(new ReactorHttpHandlerAdapter(WebHttpHandlerBuilder.applicationContext(context).build()))
+				.bindNow();
+		HttpClient client = HttpClient.create(ConnectionProvider.newConnection())
+				.runOn(LoopResources.create("benchmark-client"))
+				.baseUrl("http://127.0.0.1:" + server.port());
+
+		CountDownLatch[] received = new CountDownLatch[cycles + 1];
+		for (int c = 0; c <= cycles; c++) {
+			received[c] = new CountDownLatch(subscribers);
+		}
+		int[] seen = new int[subscribers];
+		List<Disposable> connections = new ArrayList<>(subscribers);
+		long connectStart = System.nanoTime();
+		for (int s = 0; s < subscribers; s++) {
+			int subscriber = s;
+			String routes = "B" + (1 + s % ROUTES) + ",B" + (1 + (s * 7 + 3) % ROUTES);
+			connections.add(client.get().uri("/api/stream/vehicles?routes=" + routes)
+					.responseContent().asString()
+					.filter(chunk -> chunk.contains("data:"))
+					.subscribe(chunk -> {
+						int cycle = seen[subscriber]++;
+						if (cycle <= cycles) received[cycle].countDown();
+					}));
+		}
+		try {
+			received[0].await(60, TimeUnit.SECONDS);
+			System.out.printf("%d subscribers connected and seeded in %d ms%n", subscribers - received[0].getCount(),
+					(System.nanoTime() - connectStart) / 1_000_000);
+			for (int c = 1; c <= cycles; c++) {
+				List<VehiclePosition> cycle = new ArrayList<>(fleet.size());
+				LocalDateTime now = LocalDateTime.now(ZoneId.of("America/New_York"));
+				for (VehiclePosition position : fleet) {
+					VehiclePosition next = copy(position);
+					next.setLatitude(position.getLatitude() + random.nextDouble() * 0.001);
+					next.setTimestamp(now);
+					cycle.add(next);
+				}
+				fleet = cycle;
+				long start = System.nanoTime();
+				service.update(fleet);
+				boolean complete = received[c].await(60, TimeUnit.SECONDS);
+				System.out.printf("cycle %d: %d vehicles changed, %s subscribers received their delta in %d ms%n",
+						c, fleet.size(), complete ? "all" : subscribers - received[c].getCount() + " of",
+						(System.nanoTime() - start) / 1_000_000);
+			}
+		} finally {
+			connections.forEach(Disposable::dispose);
+			server.disposeNow();
+			context.close();
+		}
+	}
+
+	private static VehiclePosition copy(VehiclePosition position) {
+		VehiclePosition copy = new VehiclePosition();
+		copy.setVehicleId(position.getVehicleId());
+		copy.setRouteId(position.getRouteId());
+		copy.setTripId(position.getTripId());
+		copy.setStopId(position.getStopId());
+		copy.setLatitude(position.getLatitude());
+		copy.setLongitude(position.getLongitude());
+		copy.setDelay(position.getDelay());
+		return copy;
+	}
+
+	private static List<VehiclePosition> syntheticVehicles(int count, Random random) {
+		LocalDateTime now = LocalDateTime.now(ZoneId.of("America/New_York"));
+		List<VehiclePosition> positions = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			VehiclePosition position = new VehiclePosition();
+			position.setVehicleId("MTA NYCT_" + i);
+			position.setRouteId("B" + (1 + random.nextInt(ROUTES)));
+			position.setTripId("T" + i);
+			position.setStopId(String.valueOf(300_000 + random.nextInt(5_000)));
+			position.setLatitude(40.57 + random.nextDouble() * 0.13);
+			position.setLongitude(-74.04 + random.nextDouble() * 0.18);
+			position.setTimestamp(now);
+			position.setDelay(random.nextInt(900) - 120);
+			positions.add(position);
+		}
+		return positions;
+	}
+}
@@ -0,0 +1,238 @@
+package com.transit.delay_prediction.service;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Reports how the running application keeps up with a feed, from its Prometheus endpoint:
+ * <pre>
+ * ./mvnw -Ploadtest test-compile exec:exec@load-report -Dloadtest.args="--duration-seconds=600"
+ * </pre>
+ * The endpoint is scraped every {@code --interval-seconds} (default 15) for {@code --duration-seconds}
+ * (default 300), printing throughput and resource usage of each interval, then a summary of the whole run:
+ * sustained entities/sec in and out, cycles, end-to-end latency (feed header timestamp to publish) and
+ * enrichment percentiles from the histogram buckets, store write latency and errors, write-behind queue
+ * depth, CPU, heap and GC. Counters are compared between the first and last scrape, so the application
+ * should already be running when the report starts. Options: {@code --metrics} (default
+ * http://localhost:8080/actuator/prometheus), {@code --feed} (only meters of that feed; default all).
+ */
+public final class LoadReport {
+    private static final String[] STORES = {"redis", "postgres", "kafka"};
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private final URI endpoint;
+    private final String feed;
+
+    private LoadReport(URI endpoint, String feed) {
+        this.endpoint = endpoint;
+        this.feed = feed;
+    }
+
+    /**
+     * Samples of one scrape by series name, each with its labels.
+     */
+    private record Scrape(long nanos, Map<String, List<Sample>> series) {
+        /**
+         * @return Sum of the samples of a series whose labels include all of the given ones.
+         */
+        double sum(String name, String... labels) {
+            double sum = 0;
+            for (Sample sample : series.getOrDefault(name, List.of())) {
+                if (sample.matches(labels)) sum += sample.value();
+            }
+            return sum;
+        }
+
+        double max(String name, String... labels) {
+            double max = 0;
+            for (Sample sample : series.getOrDefault(name, List.of())) {
+                if (sample.matches(labels)) max = Math.max(max, sample.value());
+            }
+            return max;
+        }
+
+        /**
+         * @return Cumulative bucket counts of a histogram by upper bound, summed over matching series.
+         */
+        TreeMap<Double, Double> buckets(String name, String... labels) {
+            TreeMap<Double, Double> buckets = new TreeMap<>();
+            for (Sample sample : series.getOrDefault(name + "_bucket", List.of())) {
+                if (sample.matches(labels)) {
+                    String le = sample.labels().get("le");
+                    buckets.merge(le.equals("+Inf") ? Double.POSITIVE_INFINITY : Double.parseDouble(le),
+                            sample.value(), Double::sum);
+                }
+            }
+            return buckets;
+        }
+    }
+
+    private record Sample(Map<String, String> labels, double value) {
+        boolean matches(String... pairs) {
+            for (int i = 0; i < pairs.length; i += 2) {
+                if (pairs[i + 1] != null && !pairs[i + 1].equals(labels.get(pairs[i]))) return false;
+            }
+            return true;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestArgs options = new LoadTestArgs(args);
+        LoadReport report = new LoadReport(URI.create(options.get("metrics", "http://localhost:8080/actuator/prometheus")),
+                options.get("feed", null));
+        Duration interval = Duration.ofSeconds(options.getInt("interval-seconds", 15));
+        long end = System.nanoTime() + Duration.ofSeconds(options.getInt("duration-seconds", 300)).toNanos();
+
+        Scrape first = report.scrape();
+        Scrape previous = first;
+        double totalCpu = 0;
+        int intervals = 0;
+        double maxCpu = 0;
+        double maxHeap = 0;
+        double maxQueue = 0;
+        System.out.printf("%8s %12s %12s %8s %8s %10s %10s%n",
+                "elapsed", "in/s", "out/s", "cpu", "heap MB", "queue", "lag p99 s");
+        while (System.nanoTime() < end) {
+            Thread.sleep(interval.toMillis());
+            Scrape current = report.scrape();
+            double cpu = current.sum("process_cpu_usage");
+            double heap = current.sum("jvm_memory_used_bytes", "area", "heap") / 1_048_576;
+            double queue = current.sum("vehicle_position_sink_queue");
+            totalCpu += cpu;
+            intervals++;
+            maxCpu = Math.max(maxCpu, cpu);
+            maxHeap = Math.max(maxHeap, heap);
+            maxQueue = Math.max(maxQueue, queue);
+            System.out.printf("%7.0fs %12.1f %12.1f %7.0f%% %8.0f %10.0f %10.2f%n",
+                    (current.nanos() - first.nanos()) / 1e9,
+                    report.rate(previous, current, "gtfs_rt_entities_total", "stage", "in"),
+                    report.rate(previous, current, "gtfs_rt_entities_total", "stage", "out"),
+                    cpu * 100, heap, queue,
+                    report.quantile(previous, current, "gtfs_rt_publish_lag_seconds", 0.99));
+            previous = current;
+        }
+        report.summarize(first, previous, intervals > 0 ? totalCpu / intervals : Double.NaN, maxCpu, maxHeap, maxQueue);
+    }
+
+    private Scrape scrape() throws IOException, InterruptedException {
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(endpoint).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IOException("Scrape of " + endpoint + " failed with status " + response.statusCode());
+        }
+        Map<String, List<Sample>> series = new HashMap<>();
+        for (String line : response.body().split("\n")) {
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            int braces = line.indexOf('{');
+            int space = line.lastIndexOf(' ');
+            String name = braces >= 0 ? line.substring(0, braces) : line.substring(0, space);
+            Map<String, String> labels = new HashMap<>();
+            if (braces >= 0) {
+                String body = line.substring(braces + 1, line.lastIndexOf('}'));
+                for (String pair : body.split("\",")) {
+                    int equals = pair.indexOf('=');
+                    if (equals < 0) continue;
+                    labels.put(pair.substring(0, equals).trim(), pair.substring(equals + 2).replace("\"", ""));
+                }
+            }
+            series.computeIfAbsent(name, key -> new ArrayList<>())
+                    .add(new Sample(labels, Double.parseDouble(line.substring(space + 1))));
+        }
+        return new Scrape(System.nanoTime(), series);
+    }
+
+    private double delta(Scrape from, Scrape to, String name, String... labels) {
+        return to.sum(name, withFeed(labels)) - from.sum(name, withFeed(labels));
+    }
+
+    private double rate(Scrape from, Scrape to, String name, String... labels) {
+        return delta(from, to, name, labels) / ((to.nanos() - from.nanos()) / 1e9);
+    }
+
+    /**
+     * Estimates a quantile of the observations between two scrapes from a histogram's buckets, interpolating
+     * linearly within the bucket it falls in.
+     * @return The quantile in the histogram's unit, or NaN without observations.
+     */
+    private double quantile(Scrape from, Scrape to, String name, double quantile, String... labels) {
+        TreeMap<Double, Double> before = from.buckets(name, withFeed(labels));
+        TreeMap<Double, Double> after = to.buckets(name, withFeed(labels));
+        double total = after.isEmpty() ? 0 : after.lastEntry().getValue() - before.getOrDefault(after.lastKey(), 0.0);
+        if (total <= 0) return Double.NaN;
+        double rank = quantile * total;
+        double lowerBound = 0;
+        double lowerCount = 0;
+        for (Map.Entry<Double, Double> bucket : after.entrySet()) {
+            double count = bucket.getValue() - before.getOrDefault(bucket.getKey(), 0.0);
+            if (count >= rank) {
+                if (bucket.getKey().isInfinite()) return lowerBound;
+                return lowerBound + (bucket.getKey() - lowerBound) * (rank - lowerCount) / Math.max(1e-9, count - lowerCount);
+            }
+            lowerBound = bucket.getKey();
+            lowerCount = count;
+        }
+        return lowerBound;
+    }
+
+    private String[] withFeed(String... labels) {
+        String[] pairs = new String[labels.length + 2];
+        System.arraycopy(labels, 0, pairs, 0, labels.length);
+        pairs[labels.length] = "feed";
+        pairs[labels.length + 1] = feed;
+        return pairs;
+    }
+
+    private void summarize(Scrape first, Scrape last, double meanCpu, double maxCpu, double maxHeap, double maxQueue) {
+        double seconds = (last.nanos() - first.nanos()) / 1e9;
+        double cycles = delta(first, last, "gtfs_rt_cycle_seconds_count");
+        double failed = delta(first, last, "gtfs_rt_cycle_seconds_count", "outcome", "error");
+        System.out.printf("%nLoad report over %.0f s of %s%s%n", seconds, endpoint, feed != null ? " (feed " + feed + ")" : "");
+        System.out.printf("  Entities          %.1f/s in, %.1f/s filtered, %.1f/s out%n",
+                rate(first, last, "gtfs_rt_entities_total", "stage", "in"),
+                rate(first, last, "gtfs_rt_entities_total", "stage", "filtered"),
+                rate(first, last, "gtfs_rt_entities_total", "stage", "out"));
+        System.out.printf("  Cycles            %.0f (%.0f failed, %.0f skipped), mean %.0f ms%n", cycles, failed,
+                delta(first, last, "gtfs_rt_cycles_skipped_total"),
+                cycles > 0 ? delta(first, last, "gtfs_rt_cycle_seconds_sum") * 1000 / cycles : Double.NaN);
+        double parses = delta(first, last, "gtfs_rt_parse_seconds_count");
+        System.out.printf("  Fetch and parse   mean %.0f KB, parse mean %.1f ms%n",
+                parses > 0 ? delta(first, last, "gtfs_rt_fetch_bytes_sum") / 1024 / parses : Double.NaN,
+                parses > 0 ? delta(first, last, "gtfs_rt_parse_seconds_sum") * 1000 / parses : Double.NaN);
+        System.out.printf("  End-to-end lag    p50 %.2f s, p95 %.2f s, p99 %.2f s%n",
+                quantile(first, last, "gtfs_rt_publish_lag_seconds", 0.5),
+                quantile(first, last, "gtfs_rt_publish_lag_seconds", 0.95),
+                quantile(first, last, "gtfs_rt_publish_lag_seconds", 0.99));
+        System.out.printf("  Enrichment        p50 %.1f us, p99 %.1f us%n",
+                quantile(first, last, "gtfs_rt_enrich_seconds", 0.5) * 1e6,
+                quantile(first, last, "gtfs_rt_enrich_seconds", 0.99) * 1e6);
+        for (String store : STORES) {
+            double writes = last.sum("vehicle_position_write_seconds_count", "store", store)
+                    - first.sum("vehicle_position_write_seconds_count", "store", store);
+            double time = last.sum("vehicle_position_write_seconds_sum", "store", store)
+                    - first.sum("vehicle_position_write_seconds_sum", "store", store);
+            double failedRows = last.sum("vehicle_position_write_rows_total", "store", store, "outcome", "error")
+                    - first.sum("vehicle_position_write_rows_total", "store", store, "outcome", "error");
+            double rows = last.sum("vehicle_position_write_rows_total", "store", store)
+                    - first.sum("vehicle_position_write_rows_total", "store", store);
+            System.out.printf("  %-17s %.0f writes, mean %.2f ms, %.1f rows/s, %.0f rows failed%n", "Writes " + store,
+                    writes, writes > 0 ? time * 1000 / writes : Double.NaN, rows / seconds, failedRows);
+        }
+        System.out.printf("  Write-behind      max %.0f of %.0f queued%n", maxQueue, last.max("vehicle_position_sink_capacity"));
+        System.out.printf("  CPU               mean %.0f%%, max %.0f%% of %.0f cores%n",
+                meanCpu * 100, maxCpu * 100, last.sum("system_cpu_count"));
+        System.out.printf("  Heap              max %.0f MB used of %.0f MB%n", maxHeap,
+                last.sum("jvm_memory_max_bytes", "area", "heap") / 1_048_576);
+        System.out.printf("  GC                %.2f s paused in %.0f pauses%n",
+                last.sum("jvm_gc_pause_seconds_sum") - first.sum("jvm_gc_pause_seconds_sum"),
+                last.sum("jvm_gc_pause_seconds_count") - first.sum("jvm_gc_pause_seconds_count"));
+    }
+}
@@ -0,0 +1,113 @@
+package com.transit.delay_prediction.service;
+
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import org.reactivestreams.Publisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Local stand-in for the MTA BusTime GTFS-RT endpoints, serving feeds of a {@link SyntheticFleet} driven by a
+ * GTFS static directory:
+ * <pre>
+ * ./mvnw -Ploadtest test-compile exec:exec@feed-server -Dloadtest.args="--gtfs=data/gtfs_static/gtfs_b --vehicles=10000"
+ * </pre>
+ * {@code /vehiclePositions} and {@code /tripUpdates} return the latest snapshot, regenerated every
+ * {@code --update-seconds} (default 30, as BusTime). Responses carry an ETag and Last-Modified from the
+ * snapshot timestamp and conditional requests for an unchanged snapshot get a 304, so the ingestion
+ * service's adaptive cadence sees a realistic feed. Query parameters such as {@code key} are ignored.
+ * Options: {@code --gtfs} (default data/gtfs_static/gtfs_b), {@code --vehicles} (default 1000),
+ * {@code --port} (default 8090), {@code --update-seconds}.
+ */
+public final class SyntheticFeedServer {
+    private static final Logger logger = LoggerFactory.getLogger(SyntheticFeedServer.class);
+
+    private record Snapshot(long timestamp, byte[] vehiclePositions, byte[] tripUpdates) {
+        String etag() {
+            return "\"" + timestamp + "\"";
+        }
+    }
+
+    private final SyntheticFleet fleet;
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+    private final AtomicLong served = new AtomicLong();
+    private final AtomicLong notModified = new AtomicLong();
+
+    private SyntheticFeedServer(SyntheticFleet fleet) {
+        this.fleet = fleet;
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestArgs options = new LoadTestArgs(args);
+        SyntheticFleet fleet = SyntheticFleet.load(Path.of(options.get("gtfs", "data/gtfs_static/gtfs_b")),
+                options.getInt("vehicles", 1000));
+        SyntheticFeedServer server = new SyntheticFeedServer(fleet);
+        server.update();
+
+        ScheduledExecutorService updater = Executors.newSingleThreadScheduledExecutor();
+        int updateSeconds = options.getInt("update-seconds", 30);
+        updater.scheduleAtFixedRate(() -> {
+            try {
+                server.update();
+            } catch (RuntimeException e) {
+                logger.error("Failed to generate snapshot: {}", e.getMessage(), e);
+            }
+        }, updateSeconds, updateSeconds, TimeUnit.SECONDS);
+
+        DisposableServer http = HttpServer.create()
+                .port(options.getInt("port", 8090))
+                .route(routes -> routes
+                        .get("/vehiclePositions", (request, response) ->
+                                server.serve(request, response, server.snapshot.get(), true))
+                        .get("/tripUpdates", (request, response) ->
+                                server.serve(request, response, server.snapshot.get(), false)))
+                .bindNow();
+        logger.info("Serving {} synthetic vehicles at http://localhost:{}/vehiclePositions and /tripUpdates, "
+                + "updated every {} s", fleet.vehicles(), http.port(), updateSeconds);
+        http.onDispose().block();
+    }
+
+    private void update() {
+        long start = System.nanoTime();
+        long timestamp = Instant.now().getEpochSecond();
+        int trips = fleet.advance(timestamp);
+        Snapshot next = new Snapshot(timestamp, fleet.vehiclePositions(timestamp).toByteArray(),
+                fleet.tripUpdates(timestamp).toByteArray());
+        Snapshot previous = snapshot.getAndSet(next);
+        logger.info("Snapshot {}: {} vehicles on {} trips in service, {} KB of positions, {} KB of trip updates, "
+                        + "generated in {} ms; {} feeds served and {} not modified since the last snapshot",
+                timestamp, fleet.vehicles(), trips, next.vehiclePositions().length / 1024,
+                next.tripUpdates().length / 1024, (System.nanoTime() - start) / 1_000_000,
+                previous != null ? served.getAndSet(0) : 0, previous != null ? notModified.getAndSet(0) : 0);
+    }
+
+    private Publisher<Void> serve(HttpServerRequest request, HttpServerResponse response, Snapshot current,
+                                  boolean vehiclePositions) {
+        if (current.etag().equals(request.requestHeaders().get(HttpHeaderNames.IF_NONE_MATCH))) {
+            notModified.incrementAndGet();
+            return response.status(HttpResponseStatus.NOT_MODIFIED).send();
+        }
+        served.incrementAndGet();
+        return response
+                .header(HttpHeaderNames.CONTENT_TYPE, "application/x-protobuf")
+                .header(HttpHeaderNames.ETAG, current.etag())
+                .header(HttpHeaderNames.LAST_MODIFIED, DateTimeFormatter.RFC_1123_DATE_TIME
+                        .format(Instant.ofEpochSecond(current.timestamp()).atOffset(ZoneOffset.UTC)))
+                .sendByteArray(Mono.just(vehiclePositions ? current.vehiclePositions() : current.tripUpdates()));
+    }
+}
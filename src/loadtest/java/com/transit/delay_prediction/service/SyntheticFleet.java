@@ -0,0 +1,400 @@
+package com.transit.delay_prediction.service;
+
+import com.google.transit.realtime.GtfsRealtime.FeedEntity;
+import com.google.transit.realtime.GtfsRealtime.FeedHeader;
+import com.google.transit.realtime.GtfsRealtime.FeedMessage;
+import com.google.transit.realtime.GtfsRealtime.Position;
+import com.google.transit.realtime.GtfsRealtime.TripDescriptor;
+import com.google.transit.realtime.GtfsRealtime.TripUpdate;
+import com.google.transit.realtime.GtfsRealtime.TripUpdate.StopTimeEvent;
+import com.google.transit.realtime.GtfsRealtime.TripUpdate.StopTimeUpdate;
+import com.google.transit.realtime.GtfsRealtime.VehicleDescriptor;
+import com.google.transit.realtime.GtfsRealtime.VehiclePosition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Simulated fleet driving the GTFS static schedule of one feed directory, for {@link SyntheticFeedServer}.
+ * Each vehicle serves one trip at a time, at the trip's scheduled progress minus a delay of its own that
+ * drifts slowly, and is placed along the trip's shape by that progress; when its trip ends it takes over
+ * a trip that is in service. With more vehicles than trips in service, trips are shared, as by bunched buses.
+ * Vehicle positions and TripUpdates are generated for the same instant, so both feeds agree.
+ * When no trip runs at the current time (a fixture outside its calendar, or the middle of the night), the
+ * calendar is ignored, and failing that the schedule is replayed from its busiest hour on; the delays the
+ * application derives are then meaningless, but the load is the same.
+ * Not thread-safe.
+ */
+final class SyntheticFleet {
+    private static final Logger logger = LoggerFactory.getLogger(SyntheticFleet.class);
+
+    static final ZoneId ZONE = ZoneId.of("America/New_York");
+
+    private static final int NO_TRIP = -1;
+    private static final double DRIFT_SECONDS = 90;
+    private static final double DRIFT_PERIOD_SECONDS = 1800;
+
+    private final ServiceCalendar calendar;
+
+    // Trips with a shape and at least two stop times
+    private final String[] tripIds;
+    private final String[] routeIds;
+    private final String[] serviceIds;
+    private final int[] directions;
+    private final int[] tripShapes;
+    private final String[][] stopIds;
+    private final int[][] stopSequences;
+    private final int[][] arrivals; // Seconds since the start of the service day
+
+    // Shape points and their cumulative distance in metres
+    private final double[][] shapeLats;
+    private final double[][] shapeLons;
+    private final double[][] shapeDistances;
+
+    // Vehicles
+    private final int[] vehicleTrip;
+    private final long[] vehicleServiceDay; // Epoch second of the start of the trip's service day
+    private final int[] baseDelay;
+
+    private int nextActive;
+    private boolean ignoreCalendar;
+    private long clockShift; // Added to the wall clock when replaying the schedule
+
+    private SyntheticFleet(Path gtfs, int vehicles) throws IOException {
+        ServiceCalendar.Builder calendarBuilder = new ServiceCalendar.Builder();
+        if (Files.exists(gtfs.resolve("calendar.txt"))) {
+            try (Stream<GtfsCsvReader.Row> rows = GtfsCsvReader.rows(gtfs.resolve("calendar.txt"))) {
+                String[] columns = {"monday", "tuesday", "wednesday", "thursday", "friday", "saturday", "sunday"};
+                rows.forEach(row -> {
+                    boolean[] days = new boolean[7];
+                    for (int i = 0; i < 7; i++) {
+                        days[i] = row.getInt(columns[i], 0) == 1;
+                    }
+                    calendarBuilder.addWeekly(row.get("service_id"), days,
+                            GtfsStaticIngestionService.parseGtfsDate(row.get("start_date")),
+                            GtfsStaticIngestionService.parseGtfsDate(row.get("end_date")));
+                });
+            }
+        }
+        if (Files.exists(gtfs.resolve("calendar_dates.txt"))) {
+            try (Stream<GtfsCsvReader.Row> rows = GtfsCsvReader.rows(gtfs.resolve("calendar_dates.txt"))) {
+                rows.forEach(row -> calendarBuilder.addException(row.get("service_id"),
+                        GtfsStaticIngestionService.parseGtfsDate(row.get("date")), row.getInt("exception_type", 0)));
+            }
+        }
+        calendar = calendarBuilder.build();
+
+        Map<String, Integer> shapeIndex = new HashMap<>();
+        List<List<double[]>> shapePoints = new ArrayList<>();
+        try (Stream<GtfsCsvReader.Row> rows = GtfsCsvReader.rows(gtfs.resolve("shapes.txt"))) {
+            rows.forEach(row -> {
+                int shape = shapeIndex.computeIfAbsent(row.get("shape_id"), id -> {
+                    shapePoints.add(new ArrayList<>());
+                    return shapePoints.size() - 1;
+                });
+                shapePoints.get(shape).add(new double[] {row.getInt("shape_pt_sequence", 0),
+                        row.getDouble("shape_pt_lat"), row.getDouble("shape_pt_lon")});
+            });
+        }
+        shapeLats = new double[shapePoints.size()][];
+        shapeLons = new double[shapePoints.size()][];
+        shapeDistances = new double[shapePoints.size()][];
+        for (int shape = 0; shape < shapePoints.size(); shape++) {
+            List<double[]> points = shapePoints.get(shape);
+            points.sort(Comparator.comparingDouble(point -> point[0]));
+            shapeLats[shape] = new double[points.size()];
+            shapeLons[shape] = new double[points.size()];
+            shapeDistances[shape] = new double[points.size()];
+            for (int i = 0; i < points.size(); i++) {
+                shapeLats[shape][i] = points.get(i)[1];
+                shapeLons[shape][i] = points.get(i)[2];
+                shapeDistances[shape][i] = i == 0 ? 0 : shapeDistances[shape][i - 1]
+                        + LocalProjection.distanceMetres(shapeLats[shape][i - 1], shapeLons[shape][i - 1],
+                                shapeLats[shape][i], shapeLons[shape][i]);
+            }
+        }
+
+        record TripRow(String routeId, String serviceId, int direction, int shape) {
+        }
+        Map<String, TripRow> tripRows = new HashMap<>();
+        try (Stream<GtfsCsvReader.Row> rows = GtfsCsvReader.rows(gtfs.resolve("trips.txt"))) {
+            rows.forEach(row -> {
+                Integer shape = shapeIndex.get(row.get("shape_id"));
+                if (shape != null && shapeLats[shape].length > 1) {
+                    tripRows.put(row.get("trip_id"), new TripRow(row.get("route_id"), row.get("service_id"),
+                            row.getInt("direction_id", ScheduleIndex.NOT_FOUND), shape));
+                }
+            });
+        }
+
+        // {stop_sequence, arrival, interned stop} of each trip, in file order
+        Map<String, List<int[]>> tripStops = new HashMap<>();
+        Map<String, Integer> stopIndex = new HashMap<>();
+        List<String> stops = new ArrayList<>();
+        try (Stream<GtfsCsvReader.Row> rows = GtfsCsvReader.rows(gtfs.resolve("stop_times.txt"))) {
+            rows.forEach(row -> {
+                String tripId = row.get("trip_id");
+                int arrival = GtfsStaticIngestionService.parseGtfsSeconds(row.get("arrival_time"));
+                if (!tripRows.containsKey(tripId) || arrival < 0) return;
+                int stop = stopIndex.computeIfAbsent(row.get("stop_id"), id -> {
+                    stops.add(id);
+                    return stops.size() - 1;
+                });
+                tripStops.computeIfAbsent(tripId, id -> new ArrayList<>())
+                        .add(new int[] {row.getInt("stop_sequence", 0), arrival, stop});
+            });
+        }
+        tripStops.values().removeIf(tripStopTimes -> tripStopTimes.size() < 2);
+
+        int tripCount = tripStops.size();
+        tripIds = new String[tripCount];
+        routeIds = new String[tripCount];
+        serviceIds = new String[tripCount];
+        directions = new int[tripCount];
+        tripShapes = new int[tripCount];
+        stopIds = new String[tripCount][];
+        stopSequences = new int[tripCount][];
+        arrivals = new int[tripCount][];
+        int trip = 0;
+        for (Map.Entry<String, List<int[]>> entry : tripStops.entrySet()) {
+            TripRow row = tripRows.get(entry.getKey());
+            List<int[]> stopTimes = entry.getValue();
+            stopTimes.sort(Comparator.comparingInt(stopTime -> stopTime[0]));
+            tripIds[trip] = entry.getKey();
+            routeIds[trip] = row.routeId();
+            serviceIds[trip] = row.serviceId();
+            directions[trip] = row.direction();
+            tripShapes[trip] = row.shape();
+            stopIds[trip] = new String[stopTimes.size()];
+            stopSequences[trip] = new int[stopTimes.size()];
+            arrivals[trip] = new int[stopTimes.size()];
+            for (int i = 0; i < stopTimes.size(); i++) {
+                stopSequences[trip][i] = stopTimes.get(i)[0];
+                arrivals[trip][i] = stopTimes.get(i)[1];
+                stopIds[trip][i] = stops.get(stopTimes.get(i)[2]);
+            }
+            trip++;
+        }
+        if (tripCount == 0) {
+            throw new IllegalArgumentException("No trips with a shape and stop times in " + gtfs);
+        }
+
+        vehicleTrip = new int[vehicles];
+        vehicleServiceDay = new long[vehicles];
+        baseDelay = new int[vehicles];
+        Arrays.fill(vehicleTrip, NO_TRIP);
+        Random random = new Random(42);
+        for (int v = 0; v < vehicles; v++) {
+            baseDelay[v] = random.nextInt(600) - 120;
+        }
+        logger.info("Loaded {} trips on {} shapes from {} for {} vehicles", tripCount, shapeLats.length, gtfs, vehicles);
+    }
+
+    static SyntheticFleet load(Path gtfs, int vehicles) throws IOException {
+        return new SyntheticFleet(gtfs, vehicles);
+    }
+
+    int vehicles() {
+        return vehicleTrip.length;
+    }
+
+    /**
+     * Moves every vehicle to the given instant, handing vehicles whose trip has ended a trip in service.
+     * @return Number of distinct trips in service.
+     */
+    int advance(long epochSecond) {
+        List<long[]> active = activeTrips(epochSecond + clockShift);
+        if (active.isEmpty() && !ignoreCalendar) {
+            logger.warn("No trip of the calendar runs now, ignoring the calendar");
+            ignoreCalendar = true;
+            active = activeTrips(epochSecond + clockShift);
+        }
+        if (active.isEmpty()) {
+            clockShift = busiestSecond(epochSecond) - epochSecond;
+            logger.warn("No trip runs at this time of day, replaying the schedule {} minutes ahead", clockShift / 60);
+            active = activeTrips(epochSecond + clockShift);
+        }
+        if (active.isEmpty()) {
+            throw new IllegalStateException("No trip of the schedule is ever in service");
+        }
+        for (int v = 0; v < vehicleTrip.length; v++) {
+            int trip = vehicleTrip[v];
+            if (trip == NO_TRIP || scheduleSecond(v, epochSecond) > arrivals[trip][arrivals[trip].length - 1]) {
+                long[] next = active.get(nextActive++ % active.size());
+                vehicleTrip[v] = (int) next[0];
+                vehicleServiceDay[v] = next[1];
+            }
+        }
+        return active.size();
+    }
+
+    /**
+     * @return {trip, service day start} of every trip in service at the given schedule time, on the service
+     * day it started or the day before (trips past midnight).
+     */
+    private List<long[]> activeTrips(long epochSecond) {
+        List<long[]> active = new ArrayList<>();
+        LocalDate today = Instant.ofEpochSecond(epochSecond).atZone(ZONE).toLocalDate();
+        for (LocalDate serviceDate : List.of(today, today.minusDays(1))) {
+            long serviceDay = ServiceCalendar.at(serviceDate, 0, ZONE).toEpochSecond();
+            long second = epochSecond - serviceDay;
+            for (int trip = 0; trip < tripIds.length; trip++) {
+                if (arrivals[trip][0] <= second && second <= arrivals[trip][arrivals[trip].length - 1]
+                        && (ignoreCalendar || calendar.isActive(serviceIds[trip], serviceDate))) {
+                    active.add(new long[] {trip, serviceDay});
+                }
+            }
+        }
+        return active;
+    }
+
+    /**
+     * @return An epoch second on the service day of {@code epochSecond} at which most trips are in service.
+     */
+    private long busiestSecond(long epochSecond) {
+        int slotSeconds = 300;
+        int[] tripsBySlot = new int[48 * 3600 / slotSeconds];
+        for (int[] tripArrivals : arrivals) {
+            int last = Math.min(tripsBySlot.length - 1, tripArrivals[tripArrivals.length - 1] / slotSeconds - 1);
+            for (int slot = (tripArrivals[0] + slotSeconds - 1) / slotSeconds; slot <= last; slot++) {
+                tripsBySlot[slot]++;
+            }
+        }
+        int busiest = 0;
+        for (int slot = 1; slot < tripsBySlot.length; slot++) {
+            if (tripsBySlot[slot] > tripsBySlot[busiest]) busiest = slot;
+        }
+        LocalDate today = Instant.ofEpochSecond(epochSecond).atZone(ZONE).toLocalDate();
+        return ServiceCalendar.at(today, busiest * slotSeconds + slotSeconds / 2, ZONE).toEpochSecond();
+    }
+
+    private int delay(int vehicle, long epochSecond) {
+        return baseDelay[vehicle]
+                + (int) (DRIFT_SECONDS * Math.sin(2 * Math.PI * epochSecond / DRIFT_PERIOD_SECONDS + vehicle));
+    }
+
+    /**
+     * @return Seconds since the start of the vehicle's service day at which the schedule has the vehicle now.
+     */
+    private long scheduleSecond(int vehicle, long epochSecond) {
+        return epochSecond + clockShift - vehicleServiceDay[vehicle] - delay(vehicle, epochSecond);
+    }
+
+    /**
+     * @return Index of the first stop of a trip scheduled at or after the given second, or the last stop.
+     */
+    private int nextStop(int trip, long second) {
+        int index = Arrays.binarySearch(arrivals[trip], (int) Math.min(Integer.MAX_VALUE, Math.max(0, second)));
+        if (index < 0) index = -index - 1;
+        return Math.min(index, arrivals[trip].length - 1);
+    }
+
+    /**
+     * A vehicle position feed of every vehicle at the last {@link #advance} instant. Vehicles report up to
+     * 30 seconds before the header timestamp.
+     */
+    FeedMessage vehiclePositions(long epochSecond) {
+        FeedMessage.Builder feed = FeedMessage.newBuilder().setHeader(header(epochSecond));
+        for (int v = 0; v < vehicleTrip.length; v++) {
+            long reportedAt = epochSecond - v % 30;
+            int trip = vehicleTrip[v];
+            int[] tripArrivals = arrivals[trip];
+            long second = scheduleSecond(v, reportedAt);
+            double progress = Math.max(0, Math.min(1,
+                    (double) (second - tripArrivals[0]) / (tripArrivals[tripArrivals.length - 1] - tripArrivals[0])));
+            int shape = tripShapes[trip];
+            double[] distances = shapeDistances[shape];
+            double distance = progress * distances[distances.length - 1];
+            int segment = Arrays.binarySearch(distances, distance);
+            if (segment < 0) segment = -segment - 2;
+            segment = Math.max(0, Math.min(segment, distances.length - 2));
+            double length = distances[segment + 1] - distances[segment];
+            double along = length > 0 ? (distance - distances[segment]) / length : 0;
+            double lat = shapeLats[shape][segment] + along * (shapeLats[shape][segment + 1] - shapeLats[shape][segment]);
+            double lon = shapeLons[shape][segment] + along * (shapeLons[shape][segment + 1] - shapeLons[shape][segment]);
+            double bearing = Math.toDegrees(Math.atan2(
+                    (shapeLons[shape][segment + 1] - shapeLons[shape][segment]) * Math.cos(Math.toRadians(lat)),
+                    shapeLats[shape][segment + 1] - shapeLats[shape][segment]));
+            int next = nextStop(trip, second);
+            String vehicleId = vehicleId(v);
+            feed.addEntity(FeedEntity.newBuilder()
+                    .setId(vehicleId)
+                    .setVehicle(VehiclePosition.newBuilder()
+                            .setTrip(trip(trip, vehicleServiceDay[v]))
+                            .setVehicle(VehicleDescriptor.newBuilder().setId(vehicleId))
+                            .setPosition(Position.newBuilder().setLatitude((float) lat).setLongitude((float) lon)
+                                    .setBearing((float) ((bearing + 360) % 360)))
+                            .setStopId(stopIds[trip][next])
+                            .setCurrentStopSequence(stopSequences[trip][next])
+                            .setCurrentStatus(VehiclePosition.VehicleStopStatus.IN_TRANSIT_TO)
+                            .setTimestamp(reportedAt)));
+        }
+        return feed.build();
+    }
+
+    /**
+     * A TripUpdates feed predicting the remaining stops of every trip in service, from the delay of the
+     * first vehicle serving it.
+     */
+    FeedMessage tripUpdates(long epochSecond) {
+        FeedMessage.Builder feed = FeedMessage.newBuilder().setHeader(header(epochSecond));
+        Map<Long, Boolean> predicted = new HashMap<>();
+        for (int v = 0; v < vehicleTrip.length; v++) {
+            int trip = vehicleTrip[v];
+            if (predicted.putIfAbsent(((long) trip << 32) ^ vehicleServiceDay[v], Boolean.TRUE) != null) continue;
+            int delay = delay(v, epochSecond);
+            TripUpdate.Builder update = TripUpdate.newBuilder()
+                    .setTrip(trip(trip, vehicleServiceDay[v]))
+                    .setVehicle(VehicleDescriptor.newBuilder().setId(vehicleId(v)))
+                    .setTimestamp(epochSecond);
+            for (int i = nextStop(trip, scheduleSecond(v, epochSecond)); i < arrivals[trip].length; i++) {
+                update.addStopTimeUpdate(StopTimeUpdate.newBuilder()
+                        .setStopId(stopIds[trip][i])
+                        .setStopSequence(stopSequences[trip][i])
+                        .setArrival(StopTimeEvent.newBuilder()
+                                .setTime(vehicleServiceDay[v] - clockShift + arrivals[trip][i] + delay)));
+            }
+            feed.addEntity(FeedEntity.newBuilder().setId(tripIds[trip]).setTripUpdate(update));
+        }
+        return feed.build();
+    }
+
+    private static FeedHeader header(long epochSecond) {
+        return FeedHeader.newBuilder()
+                .setGtfsRealtimeVersion("1.0")
+                .setIncrementality(FeedHeader.Incrementality.FULL_DATASET)
+                .setTimestamp(epochSecond)
+                .build();
+    }
+
+    private TripDescriptor trip(int trip, long serviceDay) {
+        TripDescriptor.Builder descriptor = TripDescriptor.newBuilder()
+                .setTripId(tripIds[trip])
+                .setRouteId(routeIds[trip])
+                .setStartDate(Instant.ofEpochSecond(serviceDay + 43_200).atZone(ZONE).toLocalDate()
+                        .format(DateTimeFormatter.BASIC_ISO_DATE));
+        if (directions[trip] != ScheduleIndex.NOT_FOUND) {
+            descriptor.setDirectionId(directions[trip]);
+        }
+        return descriptor.build();
+    }
+
+    private static String vehicleId(int vehicle) {
+        return "MTA NYCT_" + (10_000 + vehicle);
+    }
+}
@@ -2,19 +2,30 @@ package com.transit.delay_prediction.config;
 
 import com.transit.delay_prediction.repository.StopTimeRepository;
 import com.transit.delay_prediction.service.GtfsStaticIngestionService;
+import com.transit.delay_prediction.service.IngestionReport;
+import com.transit.delay_prediction.service.ScheduleIndexService;
+import com.transit.delay_prediction.service.ShapeMatchService;
+import com.transit.delay_prediction.service.StopIndexService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import java.io.File;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Configuration class to initialize GTFS static data ingestion on application startup.
- * Processes GTFS files for Brooklyn (gtfs_b) only if data is not already in the database.
+ * Processes GTFS files for Brooklyn (gtfs_b) only if data is not already in the database, unless
+ * gtfs.static.reload.enabled is set, in which case changed files are applied as a delta.
+ * All configured borough feeds are handed to the ingestion service together so they load in parallel.
+ * The in-memory indexes used for real-time delay lookup (schedule and shape matching) and the stop
+ * spatial index are rebuilt once static data is present.
  */
 @Configuration
 public class GtfsDataInitializer {
@@ -26,47 +37,89 @@ public class GtfsDataInitializer {
     @Autowired
     private StopTimeRepository stopTimeRepository;
 
+    @Autowired
+    private ScheduleIndexService scheduleIndexService;
+
+    @Autowired
+    private ShapeMatchService shapeMatchService;
+
+    @Autowired
+    private StopIndexService stopIndexService;
+
+    @Value("${gtfs.static.reload.enabled:false}")
+    private boolean reloadEnabled;
+
     @Bean
     public CommandLineRunner initGtfsData() {
         return args -> {
             logger.info("Checking for existing GTFS static data");
             long stopTimeCount = stopTimeRepository.count();
-            if (stopTimeCount > 0) {
+            if (stopTimeCount > 0 && !reloadEnabled) {
                 logger.info("Found {} StopTime records in database, skipping GTFS static data ingestion", stopTimeCount);
+                rebuildIndexes();
                 return;
             }
 
             logger.info("Starting GTFS static data initialization");
-            String basePath = Paths.get("data", "gtfs_static").toAbsolutePath().toString();
-            logger.info("Base GTFS path: {}", basePath);
-            //String[] boroughs = {"gtfs_b","gtfs_busco", "gtfs_bx", "gtfs_m", "gtfs_q", "gtfs_si"}; // Original code for all boroughs
-            String[] boroughs = {"gtfs_b"}; // Limited to gtfs_b
-            for (String borough : boroughs) {
-                String path = Paths.get(basePath, borough).toString();
-                File gtfsDir = new File(path);
-                logger.info("Checking GTFS directory: {}", path);
-                if (!gtfsDir.exists() || !gtfsDir.isDirectory()) {
-                    logger.warn("GTFS directory does not exist or is not a directory: {}", path);
-                    continue;
-                }
-                File[] files = gtfsDir.listFiles();
-                if (files == null || files.length == 0) {
-                    logger.warn("No files found in GTFS directory: {}", path);
-                    continue;
-                }
-                logger.info("Found {} files in GTFS directory: {}", files.length, path);
-                for (File file : files) {
-                    logger.info("File: {}, Size: {} bytes", file.getName(), file.length());
-                }
-                logger.info("Ingesting GTFS data from: {}", path);
+            List<String> paths = gtfsPaths();
+            if (paths.isEmpty()) {
+                logger.warn("No GTFS directories to ingest");
+                rebuildIndexes();
+                return;
+            }
+
+            if (stopTimeCount > 0) {
+                logger.info("Found {} StopTime records in database, reloading changed GTFS data from: {}", stopTimeCount, paths);
                 try {
-                    ingestionService.ingestGtfsStaticData(path);
-                    logger.info("Successfully ingested GTFS data for: {}", borough);
+                    ingestionService.reloadGtfsStaticData(paths);
                 } catch (Exception e) {
-                    logger.error("Failed to ingest GTFS data for {}: {}", borough, e.getMessage(), e);
+                    logger.error("Failed to reload GTFS data, keeping the stored version: {}", e.getMessage(), e);
+                }
+            } else {
+                logger.info("Ingesting GTFS data from: {}", paths);
+                IngestionReport report = ingestionService.ingestGtfsStaticData(paths);
+                if (report.hasFailures()) {
+                    logger.error("GTFS static data ingestion finished with failed stages, see stage log above");
                 }
             }
+            rebuildIndexes();
             logger.info("GTFS static data initialization completed");
         };
     }
+
+    private void rebuildIndexes() {
+        shapeMatchService.rebuild(scheduleIndexService.rebuild());
+        stopIndexService.rebuild();
+    }
+
+    /**
+     * Lists the borough GTFS directories that exist and contain files.
+     */
+    private List<String> gtfsPaths() {
+        String basePath = Paths.get("data", "gtfs_static").toAbsolutePath().toString();
+        logger.info("Base GTFS path: {}", basePath);
+        //String[] boroughs = {"gtfs_b","gtfs_busco", "gtfs_bx", "gtfs_m", "gtfs_q", "gtfs_si"}; // Original code for all boroughs
+        String[] boroughs = {"gtfs_b"}; // Limited to gtfs_b
+        List<String> paths = new ArrayList<>();
+        for (String borough : boroughs) {
+            String path = Paths.get(basePath, borough).toString();
+            File gtfsDir = new File(path);
+            logger.info("Checking GTFS directory: {}", path);
+            if (!gtfsDir.exists() || !gtfsDir.isDirectory()) {
+                logger.warn("GTFS directory does not exist or is not a directory: {}", path);
+                continue;
+            }
+            File[] files = gtfsDir.listFiles();
+            if (files == null || files.length == 0) {
+                logger.warn("No files found in GTFS directory: {}", path);
+                continue;
+            }
+            logger.info("Found {} files in GTFS directory: {}", files.length, path);
+            for (File file : files) {
+                logger.info("File: {}, Size: {} bytes", file.getName(), file.length());
+            }
+            paths.add(path);
+        }
+        return paths;
+    }
 }
\ No newline at end of file
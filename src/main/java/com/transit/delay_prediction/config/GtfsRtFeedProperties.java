@@ -0,0 +1,60 @@
+package com.transit.delay_prediction.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.util.List;
+
+/**
+ * GTFS-RT vehicle position feeds to poll, bound from {@code gtfs-rt.*}:
+ * <pre>
+ * gtfs-rt.workers=2
+ * gtfs-rt.polling=true
+ * gtfs-rt.feeds[0].name=mta-bus
+ * gtfs-rt.feeds[0].url=http://gtfsrt.prod.obanyc.com/vehiclePositions
+ * gtfs-rt.feeds[0].route-prefixes=B,Q
+ * gtfs-rt.feeds[0].min-poll-seconds=5
+ * gtfs-rt.feeds[0].max-poll-seconds=60
+ * gtfs-rt.feeds[1].name=mta-bus-trips
+ * gtfs-rt.feeds[1].type=trip-updates
+ * gtfs-rt.feeds[1].url=http://gtfsrt.prod.obanyc.com/tripUpdates
+ * gtfs-rt.feeds[1].route-prefixes=B,Q
+ * </pre>
+ * Without any feed, the MTA BusTime vehicle position and TripUpdates feeds of {@code mta.bustime.*} are
+ * polled for Brooklyn routes.
+ * @param workers Most poll cycles running at once, across all feeds.
+ * @param polling Whether the feeds are polled; turn off to only replay archived snapshots of them.
+ * @param feeds Feeds to poll; each runs at most one cycle at a time.
+ */
+@ConfigurationProperties(prefix = "gtfs-rt")
+public record GtfsRtFeedProperties(@DefaultValue("2") int workers, @DefaultValue("true") boolean polling,
+                                   List<Feed> feeds) {
+
+    public GtfsRtFeedProperties {
+        feeds = feeds != null ? List.copyOf(feeds) : List.of();
+    }
+
+    /**
+     * @param name Name used in logs and status.
+     * @param type Kind of entities the feed carries; defaults to vehicle positions.
+     * @param url Feed URL.
+     * @param apiKey Key sent as the {@code key} query parameter; defaults to {@code mta.bustime.api.key}.
+     *               Set it to an empty value for feeds that take no key.
+     * @param routePrefixes Route ids starting with any of these are ingested; empty accepts every route.
+     * @param minPollSeconds Shortest delay between polls; defaults to {@code mta.bustime.poll.min-seconds}.
+     * @param maxPollSeconds Longest delay between polls; defaults to {@code mta.bustime.poll.max-seconds}.
+     */
+    public record Feed(String name, Type type, String url, String apiKey, List<String> routePrefixes,
+                       Integer minPollSeconds, Integer maxPollSeconds) {
+
+        public Feed {
+            type = type != null ? type : Type.VEHICLE_POSITIONS;
+            routePrefixes = routePrefixes != null ? List.copyOf(routePrefixes) : List.of();
+        }
+    }
+
+    public enum Type {
+        VEHICLE_POSITIONS,
+        TRIP_UPDATES
+    }
+}
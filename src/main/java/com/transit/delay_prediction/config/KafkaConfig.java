@@ -0,0 +1,81 @@
+package com.transit.delay_prediction.config;
+
+import com.transit.delay_prediction.entity.VehiclePosition;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.Serializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.util.Map;
+
+/**
+ * Configuration for the producer publishing vehicle positions to Kafka.
+ * Connection settings come from {@code spring.kafka.*}; batching and compression default to values
+ * tuned for many small records per feed cycle, and any {@code spring.kafka.producer.*} setting wins.
+ */
+@Configuration
+public class KafkaConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(KafkaConfig.class);
+
+    @Value("${kafka.vehicle-position.format:json}")
+    private String format;
+
+    @Value("${kafka.vehicle-position.partitioner:com.transit.delay_prediction.config.RoutePartitioner}")
+    private String partitioner;
+
+    @Value("${kafka.vehicle-position.linger-ms:20}")
+    private int lingerMs;
+
+    @Value("${kafka.vehicle-position.batch-bytes:65536}")
+    private int batchBytes;
+
+    @Value("${kafka.vehicle-position.compression:lz4}")
+    private String compression;
+
+    @Value("${kafka.vehicle-position.max-block-ms:10000}")
+    private long maxBlockMs;
+
+    /**
+     * Producer for VehiclePosition values keyed by vehicle id.
+     * Values are JSON by default, which the ML service consumes; {@code kafka.vehicle-position.format=protobuf}
+     * selects the compact {@link VehiclePositionProtobufSerializer} encoding.
+     */
+    @Bean
+    public ProducerFactory<String, VehiclePosition> vehiclePositionProducerFactory(KafkaProperties kafkaProperties) {
+        Map<String, Object> config = kafkaProperties.buildProducerProperties(null);
+        config.putIfAbsent(ProducerConfig.LINGER_MS_CONFIG, lingerMs);
+        config.putIfAbsent(ProducerConfig.BATCH_SIZE_CONFIG, batchBytes);
+        config.putIfAbsent(ProducerConfig.COMPRESSION_TYPE_CONFIG, compression);
+        config.putIfAbsent(ProducerConfig.MAX_BLOCK_MS_CONFIG, maxBlockMs);
+        config.put(ProducerConfig.PARTITIONER_CLASS_CONFIG, partitioner);
+
+        Serializer<VehiclePosition> valueSerializer;
+        if ("protobuf".equalsIgnoreCase(format)) {
+            valueSerializer = new VehiclePositionProtobufSerializer();
+        } else {
+            JsonSerializer<VehiclePosition> json = new JsonSerializer<>();
+            json.setAddTypeInfo(false);
+            valueSerializer = json;
+        }
+        logger.info("Kafka producer for VehiclePosition configured with {} values, linger.ms={}, compression={}, partitioner={}",
+                format, config.get(ProducerConfig.LINGER_MS_CONFIG), config.get(ProducerConfig.COMPRESSION_TYPE_CONFIG),
+                partitioner);
+        return new DefaultKafkaProducerFactory<>(config, new StringSerializer(), valueSerializer);
+    }
+
+    @Bean
+    public KafkaTemplate<String, VehiclePosition> vehiclePositionKafkaTemplate(
+            ProducerFactory<String, VehiclePosition> vehiclePositionProducerFactory) {
+        return new KafkaTemplate<>(vehiclePositionProducerFactory);
+    }
+}
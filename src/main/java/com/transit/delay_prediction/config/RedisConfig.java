@@ -14,6 +14,7 @@ import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
 import org.springframework.data.redis.core.ReactiveRedisTemplate;
 import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 import jakarta.annotation.PostConstruct;
@@ -32,6 +33,9 @@ public class RedisConfig {
     @Value("${spring.data.redis.port}")
     private int redisPort;
 
+    @Value("${redis.vehicle-position.codec:json}")
+    private String vehiclePositionCodec;
+
     /**
      * Log configuration initialization for debugging.
      */
@@ -52,16 +56,14 @@ public class RedisConfig {
 
     /**
      * Configures ReactiveRedisTemplate for storing VehiclePosition objects.
-     * Uses Jackson2JsonRedisSerializer with JavaTimeModule for LocalDateTime support.
+     * Values are JSON by default; {@code redis.vehicle-position.codec=binary} selects the compact
+     * {@link VehiclePositionBinarySerializer}.
      */
     @Bean
     public ReactiveRedisTemplate<String, VehiclePosition> reactiveRedisTemplate(ReactiveRedisConnectionFactory connectionFactory) {
-        ObjectMapper objectMapper = new ObjectMapper();
-        objectMapper.registerModule(new JavaTimeModule());
-
-        Jackson2JsonRedisSerializer<VehiclePosition> valueSerializer =
-                new Jackson2JsonRedisSerializer<>(VehiclePosition.class);
-        valueSerializer.setObjectMapper(objectMapper);
+        RedisSerializer<VehiclePosition> valueSerializer = "binary".equalsIgnoreCase(vehiclePositionCodec)
+                ? new VehiclePositionBinarySerializer()
+                : jsonSerializer();
 
         StringRedisSerializer keySerializer = new StringRedisSerializer();
 
@@ -72,7 +74,17 @@ public class RedisConfig {
                 .hashValue(valueSerializer)
                 .build();
 
-        logger.info("ReactiveRedisTemplate configured for VehiclePosition with connection factory host: {}", redisHost);
+        logger.info("ReactiveRedisTemplate configured for VehiclePosition ({} values) with connection factory host: {}",
+                vehiclePositionCodec, redisHost);
         return new ReactiveRedisTemplate<>(connectionFactory, context);
     }
+
+    /**
+     * JSON serializer for VehiclePosition, with JavaTimeModule for LocalDateTime support.
+     */
+    static RedisSerializer<VehiclePosition> jsonSerializer() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        return new Jackson2JsonRedisSerializer<>(objectMapper, VehiclePosition.class);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,38 @@
+package com.transit.delay_prediction.config;
+
+import com.transit.delay_prediction.entity.VehiclePosition;
+import org.apache.kafka.clients.producer.Partitioner;
+import org.apache.kafka.common.Cluster;
+import org.apache.kafka.common.utils.Utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Kafka partitioner that places every position of a route on the same partition, so consumers see
+ * a route's vehicles in order and can be scaled out by route. The record key (vehicle id) is used
+ * for values that carry no route.
+ * Selected through {@code kafka.vehicle-position.partitioner}.
+ */
+public class RoutePartitioner implements Partitioner {
+
+    @Override
+    public int partition(String topic, Object key, byte[] keyBytes, Object value, byte[] valueBytes, Cluster cluster) {
+        int partitions = cluster.partitionsForTopic(topic).size();
+        byte[] routing = value instanceof VehiclePosition position && position.getRouteId() != null
+                ? position.getRouteId().getBytes(StandardCharsets.UTF_8)
+                : keyBytes;
+        if (routing == null) {
+            return 0;
+        }
+        return Utils.toPositive(Utils.murmur2(routing)) % partitions;
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs) {
+    }
+
+    @Override
+    public void close() {
+    }
+}
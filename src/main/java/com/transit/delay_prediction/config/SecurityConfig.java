@@ -0,0 +1,32 @@
+package com.transit.delay_prediction.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
+import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+
+import static org.springframework.security.config.Customizer.withDefaults;
+
+/**
+ * Security for the WebFlux endpoints.
+ * Live vehicle data is public, so GET requests under /api are open, as are the health and Prometheus
+ * scrape endpoints; everything else keeps the Spring Boot default of HTTP basic authentication.
+ */
+@Configuration
+@EnableWebFluxSecurity
+public class SecurityConfig {
+
+    @Bean
+    public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http) {
+        return http
+                .authorizeExchange(exchanges -> exchanges
+                        .pathMatchers(HttpMethod.GET, "/api/**").permitAll()
+                        .pathMatchers(HttpMethod.GET, "/actuator/health", "/actuator/prometheus").permitAll()
+                        .anyExchange().authenticated())
+                .httpBasic(withDefaults())
+                .formLogin(withDefaults())
+                .build();
+    }
+}
@@ -0,0 +1,162 @@
+package com.transit.delay_prediction.config;
+
+import com.transit.delay_prediction.entity.VehiclePosition;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Compact fixed-layout Redis serializer for VehiclePosition, an alternative to JSON.
+ * Layout: version byte, presence flags byte, id (long, if present), vehicleId, tripId, routeId and
+ * stopId (unsigned short length + UTF-8, 0xFFFF for null), latitude and longitude (double),
+ * timestamp (local epoch seconds as long + nanos as int, if present), delay (int; since version 4 only if
+ * present), predictedDelay
+ * (double, if present; since version 2), upstreamStopId (string), upstreamArrival (local epoch seconds
+ * as long, if present) and upstreamDelay (int, if present; since version 3).
+ * Field names are not stored, so a value is typically less than half its JSON size.
+ */
+public class VehiclePositionBinarySerializer implements RedisSerializer<VehiclePosition> {
+    private static final byte VERSION = 4;
+    private static final int HAS_ID = 1;
+    private static final int HAS_TIMESTAMP = 2;
+    private static final int HAS_PREDICTED_DELAY = 4;
+    private static final int HAS_UPSTREAM_ARRIVAL = 8;
+    private static final int HAS_UPSTREAM_DELAY = 16;
+    private static final int HAS_DELAY = 32;
+    private static final int NULL_STRING = 0xFFFF;
+
+    @Override
+    public byte[] serialize(VehiclePosition position) {
+        if (position == null) {
+            return null;
+        }
+        byte[] vehicleId = utf8(position.getVehicleId());
+        byte[] tripId = utf8(position.getTripId());
+        byte[] routeId = utf8(position.getRouteId());
+        byte[] stopId = utf8(position.getStopId());
+        byte[] upstreamStopId = utf8(position.getUpstreamStopId());
+        int size = 2 + (position.getId() != null ? 8 : 0)
+                + stringSize(vehicleId) + stringSize(tripId) + stringSize(routeId) + stringSize(stopId)
+                + 16 + (position.getTimestamp() != null ? 12 : 0) + (position.getDelay() != null ? 4 : 0)
+                + (position.getPredictedDelay() != null ? 8 : 0)
+                + stringSize(upstreamStopId) + (position.getUpstreamArrival() != null ? 8 : 0)
+                + (position.getUpstreamDelay() != null ? 4 : 0);
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.put(VERSION);
+        buffer.put((byte) ((position.getId() != null ? HAS_ID : 0)
+                | (position.getTimestamp() != null ? HAS_TIMESTAMP : 0)
+                | (position.getPredictedDelay() != null ? HAS_PREDICTED_DELAY : 0)
+                | (position.getUpstreamArrival() != null ? HAS_UPSTREAM_ARRIVAL : 0)
+                | (position.getUpstreamDelay() != null ? HAS_UPSTREAM_DELAY : 0)
+                | (position.getDelay() != null ? HAS_DELAY : 0)));
+        if (position.getId() != null) {
+            buffer.putLong(position.getId());
+        }
+        putString(buffer, vehicleId);
+        putString(buffer, tripId);
+        putString(buffer, routeId);
+        putString(buffer, stopId);
+        buffer.putDouble(position.getLatitude());
+        buffer.putDouble(position.getLongitude());
+        if (position.getTimestamp() != null) {
+            buffer.putLong(position.getTimestamp().toEpochSecond(ZoneOffset.UTC));
+            buffer.putInt(position.getTimestamp().getNano());
+        }
+        if (position.getDelay() != null) {
+            buffer.putInt(position.getDelay());
+        }
+        if (position.getPredictedDelay() != null) {
+            buffer.putDouble(position.getPredictedDelay());
+        }
+        putString(buffer, upstreamStopId);
+        if (position.getUpstreamArrival() != null) {
+            buffer.putLong(position.getUpstreamArrival().toEpochSecond(ZoneOffset.UTC));
+        }
+        if (position.getUpstreamDelay() != null) {
+            buffer.putInt(position.getUpstreamDelay());
+        }
+        return buffer.array();
+    }
+
+    @Override
+    public VehiclePosition deserialize(byte[] bytes) {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            byte version = buffer.get();
+            if (version < 1 || version > VERSION) {
+                throw new SerializationException("Unsupported VehiclePosition encoding version " + version);
+            }
+            int flags = buffer.get();
+            VehiclePosition position = new VehiclePosition();
+            if ((flags & HAS_ID) != 0) {
+                position.setId(buffer.getLong());
+            }
+            position.setVehicleId(getString(buffer));
+            position.setTripId(getString(buffer));
+            position.setRouteId(getString(buffer));
+            position.setStopId(getString(buffer));
+            position.setLatitude(buffer.getDouble());
+            position.setLongitude(buffer.getDouble());
+            if ((flags & HAS_TIMESTAMP) != 0) {
+                position.setTimestamp(LocalDateTime.ofEpochSecond(buffer.getLong(), buffer.getInt(), ZoneOffset.UTC));
+            }
+            if (version < 4 || (flags & HAS_DELAY) != 0) {
+                position.setDelay(buffer.getInt());
+            }
+            if ((flags & HAS_PREDICTED_DELAY) != 0) {
+                position.setPredictedDelay(buffer.getDouble());
+            }
+            if (version >= 3) {
+                position.setUpstreamStopId(getString(buffer));
+                if ((flags & HAS_UPSTREAM_ARRIVAL) != 0) {
+                    position.setUpstreamArrival(LocalDateTime.ofEpochSecond(buffer.getLong(), 0, ZoneOffset.UTC));
+                }
+                if ((flags & HAS_UPSTREAM_DELAY) != 0) {
+                    position.setUpstreamDelay(buffer.getInt());
+                }
+            }
+            return position;
+        } catch (BufferUnderflowException e) {
+            throw new SerializationException("Truncated VehiclePosition value", e);
+        }
+    }
+
+    private static byte[] utf8(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    private static int stringSize(byte[] value) {
+        return 2 + (value != null ? value.length : 0);
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] value) {
+        if (value == null) {
+            buffer.putShort((short) NULL_STRING);
+            return;
+        }
+        if (value.length >= NULL_STRING) {
+            throw new SerializationException("String of " + value.length + " bytes is too long to encode");
+        }
+        buffer.putShort((short) value.length);
+        buffer.put(value);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = Short.toUnsignedInt(buffer.getShort());
+        if (length == NULL_STRING) {
+            return null;
+        }
+        byte[] value = new byte[length];
+        buffer.get(value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,100 @@
+package com.transit.delay_prediction.config;
+
+import com.google.protobuf.CodedOutputStream;
+import com.transit.delay_prediction.entity.VehiclePosition;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Kafka serializer writing VehiclePosition in the protobuf wire format of
+ * {@code src/main/proto/vehicle_position.proto}. Fields are written directly with a CodedOutputStream,
+ * so no generated classes are needed; default values are omitted as proto3 does, delay_seconds is present
+ * only when the delay is known, and predicted_delay_seconds and upstream_delay_seconds only when a
+ * prediction was made.
+ * Timestamps, local times in the feed's time zone, are sent as epoch milliseconds.
+ */
+public class VehiclePositionProtobufSerializer implements Serializer<VehiclePosition> {
+    private static final ZoneId FEED_ZONE = ZoneId.of("America/New_York");
+
+    private static final int ID = 1;
+    private static final int VEHICLE_ID = 2;
+    private static final int TRIP_ID = 3;
+    private static final int ROUTE_ID = 4;
+    private static final int STOP_ID = 5;
+    private static final int LATITUDE = 6;
+    private static final int LONGITUDE = 7;
+    private static final int TIMESTAMP_MS = 8;
+    private static final int DELAY_SECONDS = 9;
+    private static final int PREDICTED_DELAY_SECONDS = 10;
+    private static final int UPSTREAM_STOP_ID = 11;
+    private static final int UPSTREAM_ARRIVAL_MS = 12;
+    private static final int UPSTREAM_DELAY_SECONDS = 13;
+
+    @Override
+    public byte[] serialize(String topic, VehiclePosition position) {
+        if (position == null) {
+            return null;
+        }
+        long id = position.getId() != null ? position.getId() : 0;
+        long timestampMs = epochMillis(position.getTimestamp());
+        long upstreamArrivalMs = epochMillis(position.getUpstreamArrival());
+        int size = 0;
+        if (id != 0) size += CodedOutputStream.computeInt64Size(ID, id);
+        size += stringSize(VEHICLE_ID, position.getVehicleId());
+        size += stringSize(TRIP_ID, position.getTripId());
+        size += stringSize(ROUTE_ID, position.getRouteId());
+        size += stringSize(STOP_ID, position.getStopId());
+        if (position.getLatitude() != 0) size += CodedOutputStream.computeDoubleSize(LATITUDE, position.getLatitude());
+        if (position.getLongitude() != 0) size += CodedOutputStream.computeDoubleSize(LONGITUDE, position.getLongitude());
+        if (timestampMs != 0) size += CodedOutputStream.computeInt64Size(TIMESTAMP_MS, timestampMs);
+        if (position.getDelay() != null) size += CodedOutputStream.computeSInt32Size(DELAY_SECONDS, position.getDelay());
+        if (position.getPredictedDelay() != null) {
+            size += CodedOutputStream.computeDoubleSize(PREDICTED_DELAY_SECONDS, position.getPredictedDelay());
+        }
+        size += stringSize(UPSTREAM_STOP_ID, position.getUpstreamStopId());
+        if (upstreamArrivalMs != 0) size += CodedOutputStream.computeInt64Size(UPSTREAM_ARRIVAL_MS, upstreamArrivalMs);
+        if (position.getUpstreamDelay() != null) {
+            size += CodedOutputStream.computeSInt32Size(UPSTREAM_DELAY_SECONDS, position.getUpstreamDelay());
+        }
+
+        byte[] bytes = new byte[size];
+        CodedOutputStream out = CodedOutputStream.newInstance(bytes);
+        try {
+            if (id != 0) out.writeInt64(ID, id);
+            writeString(out, VEHICLE_ID, position.getVehicleId());
+            writeString(out, TRIP_ID, position.getTripId());
+            writeString(out, ROUTE_ID, position.getRouteId());
+            writeString(out, STOP_ID, position.getStopId());
+            if (position.getLatitude() != 0) out.writeDouble(LATITUDE, position.getLatitude());
+            if (position.getLongitude() != 0) out.writeDouble(LONGITUDE, position.getLongitude());
+            if (timestampMs != 0) out.writeInt64(TIMESTAMP_MS, timestampMs);
+            if (position.getDelay() != null) out.writeSInt32(DELAY_SECONDS, position.getDelay());
+            if (position.getPredictedDelay() != null) out.writeDouble(PREDICTED_DELAY_SECONDS, position.getPredictedDelay());
+            writeString(out, UPSTREAM_STOP_ID, position.getUpstreamStopId());
+            if (upstreamArrivalMs != 0) out.writeInt64(UPSTREAM_ARRIVAL_MS, upstreamArrivalMs);
+            if (position.getUpstreamDelay() != null) out.writeSInt32(UPSTREAM_DELAY_SECONDS, position.getUpstreamDelay());
+            out.checkNoSpaceLeft();
+        } catch (IOException e) {
+            throw new SerializationException("Failed to encode vehicle position " + position.getVehicleId(), e);
+        }
+        return bytes;
+    }
+
+    private static long epochMillis(LocalDateTime time) {
+        return time != null ? time.atZone(FEED_ZONE).toInstant().toEpochMilli() : 0;
+    }
+
+    private static int stringSize(int field, String value) {
+        return value == null || value.isEmpty() ? 0 : CodedOutputStream.computeStringSize(field, value);
+    }
+
+    private static void writeString(CodedOutputStream out, int field, String value) throws IOException {
+        if (value != null && !value.isEmpty()) {
+            out.writeString(field, value);
+        }
+    }
+}
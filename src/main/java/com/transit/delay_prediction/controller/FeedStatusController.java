@@ -0,0 +1,30 @@
+package com.transit.delay_prediction.controller;
+
+import com.transit.delay_prediction.service.FeedStatus;
+import com.transit.delay_prediction.service.GtfsRtIngestionService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Ingestion statistics of the polled GTFS-RT feeds.
+ */
+@RestController
+@RequestMapping("/api")
+public class FeedStatusController {
+
+    @Autowired
+    private GtfsRtIngestionService ingestionService;
+
+    /**
+     * Cycles run, skipped and failed, scheduling lag, cycle duration and data lag of each feed.
+     */
+    @GetMapping("/feeds")
+    public Mono<List<FeedStatus>> feeds() {
+        return Mono.just(ingestionService.feedStatus());
+    }
+}
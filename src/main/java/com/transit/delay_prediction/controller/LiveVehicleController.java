@@ -0,0 +1,117 @@
+package com.transit.delay_prediction.controller;
+
+import com.transit.delay_prediction.entity.VehiclePosition;
+import com.transit.delay_prediction.service.LiveVehicleService;
+import com.transit.delay_prediction.service.LiveVehicleSnapshot;
+import com.transit.delay_prediction.service.VehicleDelta;
+import com.transit.delay_prediction.service.VehicleFilter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Read API for live vehicle positions, answered from the in-memory {@link LiveVehicleSnapshot}
+ * without touching Redis or PostgreSQL, and a server-sent event stream of their changes.
+ */
+@RestController
+@RequestMapping("/api")
+public class LiveVehicleController {
+
+    @Autowired
+    private LiveVehicleService liveVehicleService;
+
+    @Value("${live.vehicle.stream.keepalive-seconds:15}")
+    private int keepaliveSeconds;
+
+    /**
+     * Latest position of a vehicle.
+     * @return 404 if the vehicle has not reported recently.
+     */
+    @GetMapping("/vehicles/{vehicleId}")
+    public Mono<VehiclePosition> vehicle(@PathVariable String vehicleId) {
+        VehiclePosition position = liveVehicleService.current().vehicle(vehicleId);
+        if (position == null) {
+            return Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "No live position for vehicle " + vehicleId));
+        }
+        return Mono.just(position);
+    }
+
+    /**
+     * Live vehicles nearest to a point. With only {@code radius}, all vehicles within it; otherwise the
+     * {@code k} nearest (default 10), optionally no farther than {@code radius} metres.
+     */
+    @GetMapping("/vehicles/nearby")
+    public Mono<List<VehiclePosition>> nearby(@RequestParam double lat, @RequestParam double lon,
+                                              @RequestParam(required = false) Integer k,
+                                              @RequestParam(required = false) Double radius) {
+        NearbyQuery query = NearbyQuery.of(k, radius);
+        LiveVehicleSnapshot snapshot = liveVehicleService.current();
+        return Mono.just(query.isRadius()
+                ? snapshot.within(lat, lon, query.radius())
+                : snapshot.nearest(lat, lon, query.k(), query.radius()));
+    }
+
+    /**
+     * Live vehicles on a route, optionally restricted to one GTFS direction_id.
+     */
+    @GetMapping("/routes/{routeId}/vehicles")
+    public Mono<List<VehiclePosition>> route(@PathVariable String routeId,
+                                             @RequestParam(required = false) Integer directionId) {
+        return Mono.just(liveVehicleService.current()
+                .route(routeId, directionId != null ? directionId : LiveVehicleSnapshot.ANY_DIRECTION));
+    }
+
+    /**
+     * Live vehicles inside a bounding box.
+     */
+    @GetMapping("/vehicles")
+    public Mono<List<VehiclePosition>> within(@RequestParam double minLat, @RequestParam double minLon,
+                                              @RequestParam double maxLat, @RequestParam double maxLon) {
+        if (minLat > maxLat || minLon > maxLon) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Bounding box minimum exceeds maximum"));
+        }
+        return Mono.just(liveVehicleService.current().within(minLat, minLon, maxLat, maxLon));
+    }
+
+    /**
+     * Server-sent events of {@link VehicleDelta}s for the vehicles on the given routes and inside the
+     * given bounding box; both are optional. The first event holds every matching vehicle, later events
+     * only the vehicles that changed, and a comment is sent periodically to keep idle connections open.
+     */
+    @GetMapping(path = "/stream/vehicles", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<VehicleDelta>> stream(@RequestParam(required = false) Set<String> routes,
+                                                      @RequestParam(required = false) Double minLat,
+                                                      @RequestParam(required = false) Double minLon,
+                                                      @RequestParam(required = false) Double maxLat,
+                                                      @RequestParam(required = false) Double maxLon) {
+        VehicleFilter filter = routes != null ? VehicleFilter.routes(routes) : VehicleFilter.ALL;
+        if (minLat != null || minLon != null || maxLat != null || maxLon != null) {
+            if (minLat == null || minLon == null || maxLat == null || maxLon == null) {
+                return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Bounding box needs all four bounds"));
+            }
+            if (minLat > maxLat || minLon > maxLon) {
+                return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Bounding box minimum exceeds maximum"));
+            }
+            filter = filter.within(minLat, minLon, maxLat, maxLon);
+        }
+        Flux<ServerSentEvent<VehicleDelta>> keepalive = Flux.interval(Duration.ofSeconds(keepaliveSeconds))
+                .map(i -> ServerSentEvent.<VehicleDelta>builder().comment("keepalive").build());
+        return liveVehicleService.subscribe(filter)
+                .map(delta -> ServerSentEvent.builder(delta).build())
+                .mergeWith(keepalive);
+    }
+}
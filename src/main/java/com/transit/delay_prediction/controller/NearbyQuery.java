@@ -0,0 +1,24 @@
+package com.transit.delay_prediction.controller;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Parameters of a nearby query: the k nearest results, optionally within a radius in metres, or all
+ * results within a radius when only the radius is given.
+ */
+record NearbyQuery(int k, double radius, boolean isRadius) {
+    static final int DEFAULT_K = 10;
+    static final int MAX_K = 1000;
+
+    static NearbyQuery of(Integer k, Double radius) {
+        if (k != null && (k < 1 || k > MAX_K)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "k must be between 1 and " + MAX_K);
+        }
+        if (radius != null && !(radius > 0)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "radius must be positive");
+        }
+        return new NearbyQuery(k != null ? k : DEFAULT_K, radius != null ? radius : Double.POSITIVE_INFINITY,
+                k == null && radius != null);
+    }
+}
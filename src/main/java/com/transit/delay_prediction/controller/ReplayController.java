@@ -0,0 +1,72 @@
+package com.transit.delay_prediction.controller;
+
+import com.transit.delay_prediction.service.FeedReplayService;
+import com.transit.delay_prediction.service.ReplayStatus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+
+/**
+ * Replays of archived GTFS-RT snapshots through the ingestion pipeline.
+ */
+@RestController
+@RequestMapping("/api")
+public class ReplayController {
+
+    @Autowired
+    private FeedReplayService replayService;
+
+    /**
+     * Starts replaying a feed's snapshots between two ISO-8601 instants, e.g.
+     * {@code POST /api/replay?feed=mta-bustime&from=2025-01-06T07:00:00Z&to=2025-01-06T10:00:00Z&speed=10}.
+     * @param speed Multiple of the original pace; 0 replays as fast as possible.
+     * @return 409 if a replay is already running, feeds are polled or the archive is disabled, 400 for an unknown
+     *         feed or empty range.
+     */
+    @PostMapping("/replay")
+    public Mono<ReplayStatus> start(@RequestParam String feed, @RequestParam Instant from, @RequestParam Instant to,
+                                    @RequestParam(defaultValue = "1") double speed) {
+        try {
+            return Mono.just(replayService.start(feed, from, to, speed));
+        } catch (IllegalStateException e) {
+            return Mono.error(new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage()));
+        }
+    }
+
+    /**
+     * Progress of the running or last replay.
+     * @return 404 if no replay was started.
+     */
+    @GetMapping("/replay")
+    public Mono<ReplayStatus> status() {
+        ReplayStatus status = replayService.status();
+        if (status == null) {
+            return Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "No replay was started"));
+        }
+        return Mono.just(status);
+    }
+
+    /**
+     * Cancels the running replay.
+     * @return 404 if no replay is running.
+     */
+    @DeleteMapping("/replay")
+    public Mono<ReplayStatus> cancel() {
+        ReplayStatus status = replayService.cancel();
+        if (status == null) {
+            return Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "No replay is running"));
+        }
+        return Mono.just(status);
+    }
+}
@@ -0,0 +1,38 @@
+package com.transit.delay_prediction.controller;
+
+import com.transit.delay_prediction.service.StopIndexService;
+import com.transit.delay_prediction.service.StopSpatialIndex;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Stop lookups answered from the in-memory {@link StopSpatialIndex}.
+ */
+@RestController
+@RequestMapping("/api")
+public class StopController {
+
+    @Autowired
+    private StopIndexService stopIndexService;
+
+    /**
+     * Stops nearest to a point, with their distance in metres. With only {@code radius}, all stops
+     * within it; otherwise the {@code k} nearest (default 10), optionally no farther than {@code radius}.
+     */
+    @GetMapping("/stops/nearby")
+    public Mono<List<StopSpatialIndex.NearbyStop>> nearby(@RequestParam double lat, @RequestParam double lon,
+                                                          @RequestParam(required = false) Integer k,
+                                                          @RequestParam(required = false) Double radius) {
+        NearbyQuery query = NearbyQuery.of(k, radius);
+        StopSpatialIndex index = stopIndexService.current();
+        return Mono.just(query.isRadius()
+                ? index.within(lat, lon, query.radius())
+                : index.nearest(lat, lon, query.k(), query.radius()));
+    }
+}
@@ -0,0 +1,36 @@
+package com.transit.delay_prediction.controller;
+
+import com.transit.delay_prediction.service.TripStateService;
+import com.transit.delay_prediction.service.TripStatus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+/**
+ * Merged real-time state of live trips from the vehicle position and TripUpdates feeds.
+ */
+@RestController
+@RequestMapping("/api")
+public class TripStateController {
+
+    @Autowired
+    private TripStateService tripStateService;
+
+    /**
+     * Observed delay and upstream stop predictions of a trip.
+     * @return 404 if neither feed reported the trip recently.
+     */
+    @GetMapping("/trips/{tripId}")
+    public Mono<TripStatus> trip(@PathVariable String tripId) {
+        TripStatus status = tripStateService.trip(tripId);
+        if (status == null) {
+            return Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "No live state for trip " + tripId));
+        }
+        return Mono.just(status);
+    }
+}
@@ -0,0 +1,30 @@
+package com.transit.delay_prediction.entity;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import java.time.LocalDateTime;
+
+/**
+ * SHA-256 of a GTFS static file as last loaded, used to skip unchanged files on reload.
+ */
+@Entity
+public class GtfsFileFingerprint {
+    @Id
+    private String id; // Composite of feed and fileName
+    private String feed;
+    private String fileName;
+    private String sha256;
+    private LocalDateTime loadedAt;
+
+    // Getters and setters
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+    public String getFeed() { return feed; }
+    public void setFeed(String feed) { this.feed = feed; }
+    public String getFileName() { return fileName; }
+    public void setFileName(String fileName) { this.fileName = fileName; }
+    public String getSha256() { return sha256; }
+    public void setSha256(String sha256) { this.sha256 = sha256; }
+    public LocalDateTime getLoadedAt() { return loadedAt; }
+    public void setLoadedAt(LocalDateTime loadedAt) { this.loadedAt = loadedAt; }
+}
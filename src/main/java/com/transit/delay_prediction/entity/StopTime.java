@@ -15,6 +15,8 @@ public class StopTime {
     private Trip trip;
     private LocalTime arrivalTime;
     private LocalTime departureTime;
+    private Integer arrivalSeconds; // Since service-day start; unlike arrivalTime, may exceed 24:00:00
+    private Integer departureSeconds;
     @ManyToOne
     @JoinColumn(name = "stop_id")
     private Stop stop;
@@ -32,6 +34,10 @@ public class StopTime {
     public void setArrivalTime(LocalTime arrivalTime) { this.arrivalTime = arrivalTime; }
     public LocalTime getDepartureTime() { return departureTime; }
     public void setDepartureTime(LocalTime departureTime) { this.departureTime = departureTime; }
+    public Integer getArrivalSeconds() { return arrivalSeconds; }
+    public void setArrivalSeconds(Integer arrivalSeconds) { this.arrivalSeconds = arrivalSeconds; }
+    public Integer getDepartureSeconds() { return departureSeconds; }
+    public void setDepartureSeconds(Integer departureSeconds) { this.departureSeconds = departureSeconds; }
     public Stop getStop() { return stop; }
     public void setStop(Stop stop) { this.stop = stop; }
     public int getStopSequence() { return stopSequence; }
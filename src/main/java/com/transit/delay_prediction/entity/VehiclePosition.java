@@ -6,6 +6,7 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Transient;
 
 import java.time.LocalDateTime;
 
@@ -26,5 +27,13 @@ public class VehiclePosition {
     private double latitude;
     private double longitude;
     private LocalDateTime timestamp;
-    private int delay; // Delay in seconds
+    private Integer delay; // Delay in seconds, null when the vehicle could not be placed on its schedule
+    @Transient
+    private Double predictedDelay; // Predicted delay in seconds, null when no model is loaded
+    @Transient
+    private String upstreamStopId; // Stop of the agency's TripUpdates prediction joined to this position, or null
+    @Transient
+    private LocalDateTime upstreamArrival; // Agency's predicted arrival at that stop, or null
+    @Transient
+    private Integer upstreamDelay; // Agency's predicted delay in seconds, or null
 }
\ No newline at end of file
@@ -0,0 +1,9 @@
+package com.transit.delay_prediction.repository;
+
+import com.transit.delay_prediction.entity.GtfsFileFingerprint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface GtfsFileFingerprintRepository extends JpaRepository<GtfsFileFingerprint, String> {
+}
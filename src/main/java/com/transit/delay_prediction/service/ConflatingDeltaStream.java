@@ -0,0 +1,83 @@
+package com.transit.delay_prediction.service;
+
+import com.transit.delay_prediction.entity.VehiclePosition;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Per-subscriber delta stream with conflation. Changes from every cycle are filtered and merged into
+ * a pending delta keyed by vehicle, latest value winning, and the pending delta is emitted only when
+ * the subscriber has demand. A slow subscriber therefore holds at most one pending entry per vehicle
+ * instead of a growing queue of cycles, and catches up with the latest state when it reads again.
+ */
+final class ConflatingDeltaStream {
+    private final VehicleFilter filter;
+    private final Map<String, VehicleDelta.Update> updated = new LinkedHashMap<>();
+    private final Set<String> removed = new LinkedHashSet<>();
+    private FluxSink<VehicleDelta> sink;
+
+    private ConflatingDeltaStream(VehicleFilter filter) {
+        this.filter = filter;
+    }
+
+    /**
+     * @param changes Hot stream of the changes of each cycle, published after the cycle's snapshot.
+     * @param snapshot Current snapshot; its matching vehicles form the first delta.
+     */
+    static Flux<VehicleDelta> create(Flux<List<VehicleChange>> changes, Supplier<LiveVehicleSnapshot> snapshot,
+                                     VehicleFilter filter) {
+        return Flux.create(sink -> {
+            ConflatingDeltaStream stream = new ConflatingDeltaStream(filter);
+            stream.sink = sink;
+            Disposable subscription = changes.subscribe(stream::offer, sink::error, sink::complete);
+            sink.onDispose(subscription);
+            stream.seed(snapshot.get());
+            sink.onRequest(n -> stream.drain());
+        });
+    }
+
+    /**
+     * Adds the matching vehicles of a snapshot without overwriting changes already received: those come
+     * from a cycle at least as recent as the snapshot, since a cycle's snapshot is published first.
+     */
+    private synchronized void seed(LiveVehicleSnapshot snapshot) {
+        for (VehiclePosition position : snapshot.all()) {
+            String vehicleId = position.getVehicleId();
+            if (filter.matches(position) && !updated.containsKey(vehicleId) && !removed.contains(vehicleId)) {
+                updated.put(vehicleId, VehicleDelta.Update.of(position, snapshot.directionId(vehicleId)));
+            }
+        }
+    }
+
+    synchronized void offer(List<VehicleChange> changes) {
+        for (VehicleChange change : changes) {
+            if (change.current() != null && filter.matches(change.current())) {
+                updated.put(change.vehicleId(), change.update());
+                removed.remove(change.vehicleId());
+            } else if (change.previous() != null && filter.matches(change.previous())) {
+                updated.remove(change.vehicleId());
+                removed.add(change.vehicleId());
+            }
+        }
+        drain();
+    }
+
+    private synchronized void drain() {
+        if (sink.requestedFromDownstream() == 0 || sink.isCancelled() || (updated.isEmpty() && removed.isEmpty())) {
+            return;
+        }
+        VehicleDelta delta = new VehicleDelta(new ArrayList<>(updated.values()), new ArrayList<>(removed));
+        updated.clear();
+        removed.clear();
+        sink.next(delta);
+    }
+}
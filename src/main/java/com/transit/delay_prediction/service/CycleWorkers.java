@@ -0,0 +1,68 @@
+package com.transit.delay_prediction.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.publisher.Sinks;
+
+import java.util.function.Supplier;
+
+/**
+ * Bounded pool of poll cycle workers shared by all feeds. Cycles are queued in submission order and at most
+ * {@code workers} run at once; a cycle that has not started by its deadline is skipped instead, so a feed
+ * that fell behind polls fresh data next rather than working through stale cycles.
+ */
+final class CycleWorkers {
+    private static final Logger logger = LoggerFactory.getLogger(CycleWorkers.class);
+
+    private record Job(Supplier<Mono<Void>> cycle, long deadlineMillis, MonoSink<Boolean> result) {
+    }
+
+    private final Sinks.Many<Job> jobs = Sinks.many().unicast().onBackpressureBuffer();
+    private final Disposable dispatcher;
+
+    CycleWorkers(int workers) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("At least one worker is required, got " + workers);
+        }
+        this.dispatcher = jobs.asFlux()
+                .flatMap(this::run, workers)
+                .subscribe(null, error -> logger.error("Cycle dispatcher stopped: {}", error.getMessage(), error));
+    }
+
+    /**
+     * Queues a cycle.
+     * @param cycle Creates the cycle when a worker picks it up.
+     * @param deadlineMillis Epoch milliseconds after which the cycle is skipped if it has not started.
+     * @return Mono of true once the cycle has completed, or false if it was skipped. Fails if the cycle fails.
+     */
+    Mono<Boolean> submit(Supplier<Mono<Void>> cycle, long deadlineMillis) {
+        return Mono.create(result -> {
+            synchronized (jobs) {
+                jobs.emitNext(new Job(cycle, deadlineMillis, result), Sinks.EmitFailureHandler.FAIL_FAST);
+            }
+        });
+    }
+
+    private Mono<Void> run(Job job) {
+        if (System.currentTimeMillis() > job.deadlineMillis()) {
+            job.result().success(false);
+            return Mono.empty();
+        }
+        return Mono.defer(job.cycle())
+                .doOnSuccess(ignored -> job.result().success(true))
+                .onErrorResume(error -> {
+                    job.result().error(error);
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * Stops the workers. Running cycles are cancelled and queued ones never start.
+     */
+    void dispose() {
+        dispatcher.dispose();
+    }
+}
@@ -0,0 +1,167 @@
+package com.transit.delay_prediction.service;
+
+import org.reactivestreams.Subscription;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import reactor.core.CoreSubscriber;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Blocking InputStream view of a reactive stream of DataBuffers.
+ * Buffers are requested a few at a time as they are consumed, so the producing event loop never
+ * blocks and at most {@code PREFETCH} buffers are held; each buffer is released once read.
+ * Reads must happen off the event loop. Time spent waiting for buffers is accumulated, so readers can
+ * tell their own work apart from the download.
+ */
+final class DataBufferInputStream extends InputStream implements CoreSubscriber<DataBuffer> {
+    private static final int PREFETCH = 4;
+    private static final Object COMPLETE = new Object();
+    private static final Object CLOSED = new Object();
+
+    private final BlockingQueue<Object> queue = new LinkedBlockingQueue<>();
+    private volatile Subscription subscription;
+    private volatile boolean closed;
+    private DataBuffer current; // Guarded by this, so close() never releases a buffer being read
+    private boolean ended;
+    private long waitNanos;
+
+    @Override
+    public void onSubscribe(Subscription s) {
+        subscription = s;
+        s.request(PREFETCH);
+    }
+
+    @Override
+    public void onNext(DataBuffer buffer) {
+        queue.add(buffer);
+        if (closed) releaseQueued();
+    }
+
+    @Override
+    public void onError(Throwable error) {
+        queue.add(error);
+    }
+
+    @Override
+    public void onComplete() {
+        queue.add(COMPLETE);
+    }
+
+    @Override
+    public int read() throws IOException {
+        while (true) {
+            synchronized (this) {
+                if (readable()) return current.read() & 0xFF;
+                if (ended) return -1;
+            }
+            if (!await()) return -1;
+        }
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        if (length == 0) return 0;
+        while (true) {
+            synchronized (this) {
+                if (readable()) {
+                    int count = Math.min(length, current.readableByteCount());
+                    current.read(bytes, offset, count);
+                    return count;
+                }
+                if (ended) return -1;
+            }
+            if (!await()) return -1;
+        }
+    }
+
+    /**
+     * @return Whether {@code current} has readable bytes; releases it if not.
+     */
+    private boolean readable() throws IOException {
+        if (closed) throw new IOException("Feed stream closed");
+        if (current == null) return false;
+        if (current.readableByteCount() > 0) return true;
+        DataBufferUtils.release(current);
+        current = null;
+        return false;
+    }
+
+    /**
+     * Waits for the next buffer and makes it {@code current}.
+     * @return False at end of stream.
+     */
+    private boolean await() throws IOException {
+        Object next;
+        long start = System.nanoTime();
+        try {
+            next = queue.take();
+            waitNanos += System.nanoTime() - start;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for feed data", e);
+        }
+        if (next == CLOSED) {
+            throw new IOException("Feed stream closed");
+        }
+        if (next == COMPLETE) {
+            ended = true;
+            return false;
+        }
+        if (next instanceof Throwable error) {
+            ended = true;
+            throw new IOException("Feed download failed: " + error.getMessage(), error);
+        }
+        DataBuffer buffer = (DataBuffer) next;
+        synchronized (this) {
+            if (closed) {
+                DataBufferUtils.release(buffer);
+                throw new IOException("Feed stream closed");
+            }
+            current = buffer;
+        }
+        subscription.request(1);
+        return true;
+    }
+
+    /**
+     * @return Nanoseconds readers have spent waiting for buffers to arrive.
+     */
+    long waitNanos() {
+        return waitNanos;
+    }
+
+    /**
+     * Cancels the download and releases its buffers. May be called from another thread than the reader's; a
+     * reader waiting for a buffer is woken up and fails.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        Subscription s = subscription;
+        if (s != null) {
+            s.cancel();
+        }
+        synchronized (this) {
+            if (current != null) {
+                DataBufferUtils.release(current);
+                current = null;
+            }
+        }
+        releaseQueued();
+        queue.add(CLOSED);
+    }
+
+    private void releaseQueued() {
+        queue.removeIf(next -> {
+            if (next instanceof DataBuffer buffer) {
+                DataBufferUtils.release(buffer);
+                return true;
+            }
+            return false;
+        });
+    }
+}
@@ -0,0 +1,142 @@
+package com.transit.delay_prediction.service;
+
+import com.transit.delay_prediction.entity.VehiclePosition;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-process delay prediction with the tree ensemble exported by the ML service.
+ * The model file ({@code prediction.model.path}) is loaded at startup and reloaded when its modification
+ * time changes; until a model exists, predictions are absent. Features are the ones the Python
+ * DelayModel is trained on: label-encoded route and stop, hour of day, day of week (Monday = 0),
+ * latitude and longitude.
+ */
+@Service
+public class DelayPredictionService {
+    private static final Logger logger = LoggerFactory.getLogger(DelayPredictionService.class);
+
+    private static final int ROUTE = 0;
+    private static final int STOP = 1;
+    private static final int HOUR = 2;
+    private static final int DAY_OF_WEEK = 3;
+    private static final int LATITUDE = 4;
+    private static final int LONGITUDE = 5;
+    private static final List<String> FEATURE_NAMES =
+            List.of("route_id_encoded", "stop_id_encoded", "hour", "day_of_week", "latitude", "longitude");
+
+    @Value("${prediction.model.path:/app/models/delay_model.json}")
+    private Path modelPath;
+
+    @Value("${prediction.model.refresh-seconds:300}")
+    private int refreshSeconds;
+
+    private volatile Loaded current;
+    private ScheduledExecutorService scheduler;
+
+    private final ThreadLocal<double[]> features = ThreadLocal.withInitial(() -> new double[FEATURE_NAMES.size()]);
+
+    /**
+     * A model with the feature each of its inputs is built from.
+     */
+    private record Loaded(TreeEnsembleModel model, int[] inputs, FileTime modified) {
+    }
+
+    @PostConstruct
+    public void start() {
+        reload();
+        scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("delay-model-refresh-"));
+        scheduler.scheduleWithFixedDelay(this::reload, refreshSeconds, refreshSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Loads the model file if it exists and changed since the last load. A file that fails to load
+     * leaves the previous model in place.
+     */
+    public void reload() {
+        try {
+            if (!Files.exists(modelPath)) {
+                if (current == null) {
+                    logger.info("No delay model at {}, predictions disabled until one is exported", modelPath);
+                }
+                return;
+            }
+            FileTime modified = Files.getLastModifiedTime(modelPath);
+            Loaded loaded = current;
+            if (loaded != null && modified.equals(loaded.modified())) {
+                return;
+            }
+            long start = System.nanoTime();
+            TreeEnsembleModel model;
+            try (InputStream in = Files.newInputStream(modelPath)) {
+                model = TreeEnsembleModel.read(in);
+            }
+            current = new Loaded(model, inputs(model), modified);
+            logger.info("Loaded delay model with {} trees from {} in {} ms",
+                    model.treeCount(), modelPath, (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException | RuntimeException e) {
+            logger.error("Failed to load delay model from {}: {}", modelPath, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Predicts the delay of a vehicle from its current position.
+     * @return Predicted delay in seconds, or null if no model is loaded.
+     */
+    public Double predict(VehiclePosition position) {
+        Loaded loaded = current;
+        return loaded != null ? predict(loaded, position) : null;
+    }
+
+    private double predict(Loaded loaded, VehiclePosition position) {
+        double[] x = features.get();
+        TreeEnsembleModel model = loaded.model();
+        int[] inputs = loaded.inputs();
+        for (int i = 0; i < inputs.length; i++) {
+            x[i] = switch (inputs[i]) {
+                case ROUTE -> model.encode("route_id", position.getRouteId());
+                case STOP -> model.encode("stop_id", position.getStopId());
+                case HOUR -> position.getTimestamp() != null ? position.getTimestamp().getHour() : 0;
+                case DAY_OF_WEEK -> position.getTimestamp() != null ? position.getTimestamp().getDayOfWeek().getValue() - 1 : 0;
+                case LATITUDE -> position.getLatitude();
+                default -> position.getLongitude();
+            };
+        }
+        return model.predict(x);
+    }
+
+    private static int[] inputs(TreeEnsembleModel model) {
+        List<String> names = model.getFeatures();
+        if (names.size() > FEATURE_NAMES.size()) {
+            throw new IllegalArgumentException("Model expects " + names.size() + " features, at most "
+                    + FEATURE_NAMES.size() + " are available");
+        }
+        int[] inputs = new int[names.size()];
+        for (int i = 0; i < inputs.length; i++) {
+            inputs[i] = FEATURE_NAMES.indexOf(names.get(i));
+            if (inputs[i] < 0) {
+                throw new IllegalArgumentException("Model expects unknown feature " + names.get(i));
+            }
+        }
+        return inputs;
+    }
+}
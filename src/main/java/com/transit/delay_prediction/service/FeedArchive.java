@@ -0,0 +1,207 @@
+package com.transit.delay_prediction.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+
+/**
+ * Archive of the raw GTFS-RT snapshots of every feed, for replaying a time range through the pipeline later.
+ * Enabled by setting {@code gtfs-rt.archive.dir}; each feed gets a {@link FeedArchiveLog} in a subdirectory.
+ * A snapshot is compressed with Deflate (level {@code gtfs-rt.archive.compression-level}, default 3) while it
+ * is decoded, and appended once the whole feed was read and its header accepted, so unchanged and failed feeds
+ * are not archived. Segments roll over at {@code gtfs-rt.archive.segment-mb} (default 64). Archiving never
+ * fails ingestion: errors are logged and counted in {@code gtfs.rt.archive.failures}.
+ */
+@Service
+public class FeedArchive {
+    private static final Logger logger = LoggerFactory.getLogger(FeedArchive.class);
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${gtfs-rt.archive.dir:}")
+    private String directory;
+
+    @Value("${gtfs-rt.archive.segment-mb:64}")
+    private long segmentMegabytes;
+
+    @Value("${gtfs-rt.archive.compression-level:3}")
+    private int compressionLevel;
+
+    private final Map<String, FeedArchiveLog> logs = new ConcurrentHashMap<>();
+
+    /**
+     * One archived snapshot.
+     * @param timestamp FeedHeader timestamp in epoch seconds, or when it was fetched if the header had none.
+     * @param feed The FeedMessage as fetched.
+     */
+    public record Snapshot(long timestamp, byte[] feed) {
+    }
+
+    public boolean isEnabled() {
+        return !directory.isEmpty();
+    }
+
+    /**
+     * Starts recording a snapshot of a feed as it is decoded.
+     * @return Recording to pass the decoder's copy of the feed to, or null if archiving is disabled.
+     */
+    Recording record(String feed) {
+        return isEnabled() ? new Recording(feed) : null;
+    }
+
+    /**
+     * Reads the archived snapshots of a feed within a time range, both ends inclusive, in timestamp order.
+     * Snapshots are read from disk and inflated one at a time as they are requested.
+     * @return Flux of snapshots, failing if one is corrupt.
+     */
+    public Flux<Snapshot> read(String feed, Instant from, Instant to) {
+        if (!isEnabled()) {
+            return Flux.error(new IllegalStateException("Feed archive is disabled, set gtfs-rt.archive.dir"));
+        }
+        FeedArchiveLog log = log(feed);
+        return Mono.fromCallable(() -> log.find(from.getEpochSecond(), to.getEpochSecond()))
+                .flatMapIterable(entries -> entries)
+                .concatMap(entry -> Mono.fromCallable(() -> inflate(log.read(entry))), 1)
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private static Snapshot inflate(FeedArchiveLog.Record record) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(record.compressed());
+            byte[] feed = new byte[record.rawLength()];
+            int length = 0;
+            while (length < feed.length && !inflater.finished()) {
+                int inflated = inflater.inflate(feed, length, feed.length - length);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                length += inflated;
+            }
+            if (length != feed.length || !inflater.finished()) {
+                throw new IOException("Archived snapshot " + record.timestamp() + " inflated to " + length
+                        + " bytes, expected " + feed.length);
+            }
+            return new Snapshot(record.timestamp(), feed);
+        } catch (DataFormatException e) {
+            throw new IOException("Archived snapshot " + record.timestamp() + " is corrupt", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private FeedArchiveLog log(String feed) {
+        return logs.computeIfAbsent(feed, name -> new FeedArchiveLog(
+                Path.of(directory, name.replaceAll("[^A-Za-z0-9._-]", "_")), segmentMegabytes * 1024 * 1024));
+    }
+
+    private void append(String feed, long timestamp, Buffer compressed, long rawLength) {
+        try {
+            if (log(feed).append(timestamp, compressed.array(), compressed.size(), Math.toIntExact(rawLength))) {
+                counter("gtfs.rt.archive.bytes", feed, "form", "raw").increment(rawLength);
+                counter("gtfs.rt.archive.bytes", feed, "form", "compressed").increment(compressed.size());
+                logger.debug("Archived snapshot {} of feed {}: {} bytes compressed to {}", timestamp, feed,
+                        rawLength, compressed.size());
+            } else {
+                logger.debug("Not archiving snapshot {} of feed {}: not newer than the archived ones", timestamp, feed);
+            }
+        } catch (IOException | RuntimeException e) {
+            counter("gtfs.rt.archive.failures", feed).increment();
+            logger.warn("Failed to archive snapshot {} of feed {}: {}", timestamp, feed, e.getMessage());
+        }
+    }
+
+    private Counter counter(String name, String feed, String... tags) {
+        return Counter.builder(name)
+                .tag("feed", feed)
+                .tags(tags)
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void close() {
+        for (Map.Entry<String, FeedArchiveLog> log : logs.entrySet()) {
+            try {
+                log.getValue().close();
+            } catch (IOException e) {
+                logger.warn("Failed to close feed archive of {}: {}", log.getKey(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * A snapshot being compressed as it is decoded. Written to by the decoding thread only; must be closed
+     * to release the compressor whether or not it was committed.
+     */
+    final class Recording implements Closeable {
+        private final String feed;
+        private final Deflater deflater = new Deflater(compressionLevel);
+        private final Buffer compressed = new Buffer();
+        private final DeflaterOutputStream output = new DeflaterOutputStream(compressed, deflater, 64 * 1024);
+
+        private Recording(String feed) {
+            this.feed = feed;
+        }
+
+        /**
+         * @return Stream the decoder copies the raw feed to.
+         */
+        OutputStream output() {
+            return output;
+        }
+
+        /**
+         * Archives the recorded snapshot if its feed was read to the end with an accepted header.
+         */
+        void commit(GtfsRtFeedDecoder.Stats stats) {
+            if (stats.headerRejected()) return;
+            try {
+                output.finish();
+            } catch (IOException e) {
+                counter("gtfs.rt.archive.failures", feed).increment();
+                logger.warn("Failed to compress snapshot of feed {}: {}", feed, e.getMessage());
+                return;
+            }
+            append(feed, stats.timestamp() > 0 ? stats.timestamp() : Instant.now().getEpochSecond(), compressed,
+                    deflater.getBytesRead());
+        }
+
+        @Override
+        public void close() {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Output buffer whose contents can be written out without a copy.
+     */
+    private static final class Buffer extends ByteArrayOutputStream {
+        Buffer() {
+            super(64 * 1024);
+        }
+
+        byte[] array() {
+            return buf;
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package com.transit.delay_prediction.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of the compressed snapshots of one feed, kept in a directory as pairs of segment and index
+ * files named after the header timestamp of their first snapshot:
+ * <ul>
+ *   <li>{@code <timestamp>.seg}: an 8-byte header (magic, version), then one record per snapshot: header
+ *       timestamp (long), raw length (int), compressed length (int), CRC-32 of the compressed bytes (int) and
+ *       the compressed bytes.</li>
+ *   <li>{@code <timestamp>.idx}: one 16-byte entry per record, its timestamp and offset in the segment.
+ *       Entries are in timestamp order, so a time range is found by binary search over the memory-mapped index.</li>
+ * </ul>
+ * A record's index entry is written after the record, so only complete records are ever indexed; bytes of a
+ * record interrupted by a crash, and a partial trailing index entry, are ignored. Each process appends to a new
+ * segment, and starts another once the current one reaches its size limit. Snapshots whose timestamp precedes
+ * the last archived one are dropped to keep the index sorted. Writes are not forced to disk.
+ */
+final class FeedArchiveLog implements Closeable {
+    static final int MAGIC = 0x47525441; // "GRTA"
+    static final int VERSION = 1;
+    static final int SEGMENT_HEADER_BYTES = 8;
+    static final int RECORD_HEADER_BYTES = 20;
+    static final int INDEX_ENTRY_BYTES = 16;
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String INDEX_SUFFIX = ".idx";
+
+    private final Path directory;
+    private final long segmentBytes;
+
+    // Segment being appended to, opened on the first append
+    private FileChannel data;
+    private FileChannel index;
+    private long segmentTimestamp;
+    private long lastTimestamp = Long.MIN_VALUE;
+
+    /**
+     * Location of one archived snapshot.
+     */
+    record Entry(Path segment, long timestamp, long offset) {
+    }
+
+    /**
+     * One archived snapshot as stored.
+     */
+    record Record(long timestamp, int rawLength, byte[] compressed) {
+    }
+
+    /**
+     * @param segmentBytes Size after which the next snapshot starts a new segment.
+     */
+    FeedArchiveLog(Path directory, long segmentBytes) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+    }
+
+    /**
+     * Appends a snapshot.
+     * @param compressed Buffer holding the compressed snapshot in its first {@code length} bytes.
+     * @return False if the snapshot was dropped for preceding the last archived one.
+     */
+    synchronized boolean append(long timestamp, byte[] compressed, int length, int rawLength) throws IOException {
+        if (data == null) {
+            Files.createDirectories(directory);
+            lastTimestamp = Math.max(lastTimestamp, lastArchivedTimestamp());
+        }
+        if (timestamp < lastTimestamp || (timestamp == lastTimestamp && data == null)) {
+            return false;
+        }
+        if (data == null || (data.size() >= segmentBytes && timestamp > segmentTimestamp)) {
+            startSegment(timestamp);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(compressed, 0, length);
+        long offset = data.size();
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + length)
+                .putLong(timestamp)
+                .putInt(rawLength)
+                .putInt(length)
+                .putInt((int) crc.getValue())
+                .put(compressed, 0, length)
+                .flip();
+        writeFully(data, record, offset);
+        writeFully(index, ByteBuffer.allocate(INDEX_ENTRY_BYTES).putLong(timestamp).putLong(offset).flip(),
+                index.size());
+        lastTimestamp = timestamp;
+        return true;
+    }
+
+    private void startSegment(long timestamp) throws IOException {
+        closeSegment();
+        segmentTimestamp = timestamp;
+        try {
+            data = FileChannel.open(directory.resolve(timestamp + SEGMENT_SUFFIX),
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            index = FileChannel.open(directory.resolve(timestamp + INDEX_SUFFIX),
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            writeFully(data, ByteBuffer.allocate(SEGMENT_HEADER_BYTES).putInt(MAGIC).putInt(VERSION).flip(), 0);
+        } catch (IOException e) {
+            closeSegment();
+            throw e;
+        }
+    }
+
+    /**
+     * @return Timestamp of the last snapshot of the newest segment, or of the segment itself if it holds none.
+     */
+    private long lastArchivedTimestamp() throws IOException {
+        List<Long> segments = segments();
+        if (segments.isEmpty()) return Long.MIN_VALUE;
+        long newest = segments.get(segments.size() - 1);
+        try (FileChannel channel = FileChannel.open(directory.resolve(newest + INDEX_SUFFIX), StandardOpenOption.READ)) {
+            long entries = channel.size() / INDEX_ENTRY_BYTES;
+            if (entries == 0) return newest;
+            ByteBuffer entry = ByteBuffer.allocate(Long.BYTES);
+            readFully(channel, entry, (entries - 1) * INDEX_ENTRY_BYTES);
+            return Math.max(newest, entry.flip().getLong());
+        }
+    }
+
+    /**
+     * @return Locations of the snapshots with timestamps between two epoch seconds, both inclusive, in order.
+     */
+    List<Entry> find(long from, long to) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        List<Long> segments = segments();
+        for (int i = 0; i < segments.size(); i++) {
+            // A segment holds timestamps up to the first of the next one
+            if (segments.get(i) > to || (i + 1 < segments.size() && segments.get(i + 1) < from)) continue;
+            Path segment = directory.resolve(segments.get(i) + SEGMENT_SUFFIX);
+            try (FileChannel channel = FileChannel.open(directory.resolve(segments.get(i) + INDEX_SUFFIX),
+                    StandardOpenOption.READ)) {
+                int count = (int) (channel.size() / INDEX_ENTRY_BYTES);
+                if (count == 0) continue;
+                MappedByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, 0, (long) count * INDEX_ENTRY_BYTES);
+                for (int entry = firstAtOrAfter(index, count, from); entry < count; entry++) {
+                    long timestamp = index.getLong(entry * INDEX_ENTRY_BYTES);
+                    if (timestamp > to) break;
+                    entries.add(new Entry(segment, timestamp, index.getLong(entry * INDEX_ENTRY_BYTES + Long.BYTES)));
+                }
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * @return Position of the first index entry with a timestamp of at least {@code from}, or {@code count}.
+     */
+    private static int firstAtOrAfter(MappedByteBuffer index, int count, long from) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (index.getLong(middle * INDEX_ENTRY_BYTES) < from) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Reads an archived snapshot and verifies its checksum.
+     * @throws IOException If the segment is not an archive segment or the record is corrupt.
+     */
+    Record read(Entry entry) throws IOException {
+        try (FileChannel channel = FileChannel.open(entry.segment(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_BYTES);
+            readFully(channel, header, 0);
+            if (header.flip().getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("Not a feed archive segment: " + entry.segment());
+            }
+            ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+            readFully(channel, recordHeader, entry.offset());
+            recordHeader.flip();
+            long timestamp = recordHeader.getLong();
+            int rawLength = recordHeader.getInt();
+            int length = recordHeader.getInt();
+            int checksum = recordHeader.getInt();
+            if (timestamp != entry.timestamp() || length < 0
+                    || entry.offset() + RECORD_HEADER_BYTES + length > channel.size()) {
+                throw new IOException("Corrupt record at offset " + entry.offset() + " of " + entry.segment());
+            }
+            byte[] compressed = new byte[length];
+            readFully(channel, ByteBuffer.wrap(compressed), entry.offset() + RECORD_HEADER_BYTES);
+            CRC32 crc = new CRC32();
+            crc.update(compressed);
+            if ((int) crc.getValue() != checksum) {
+                throw new IOException("Checksum mismatch at offset " + entry.offset() + " of " + entry.segment());
+            }
+            return new Record(timestamp, rawLength, compressed);
+        }
+    }
+
+    /**
+     * @return First timestamps of the segments in the directory, in order.
+     */
+    private List<Long> segments() throws IOException {
+        if (!Files.isDirectory(directory)) return List.of();
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString())
+                    .filter(file -> file.endsWith(SEGMENT_SUFFIX))
+                    .map(file -> file.substring(0, file.length() - SEGMENT_SUFFIX.length()))
+                    .filter(timestamp -> timestamp.matches("-?\\d+"))
+                    .map(Long::parseLong)
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) throw new IOException("Unexpected end of " + channel);
+            position += read;
+        }
+    }
+
+    private void closeSegment() throws IOException {
+        try {
+            if (data != null) data.close();
+        } finally {
+            if (index != null) index.close();
+            data = null;
+            index = null;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        closeSegment();
+    }
+}
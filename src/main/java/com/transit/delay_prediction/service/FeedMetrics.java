@@ -0,0 +1,198 @@
+package com.transit.delay_prediction.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Meters of one polled GTFS-RT feed, all tagged with the feed name, and the totals of its current cycle for
+ * the per-cycle log line. Meters are registered once, so recording on the per-entity path is a field access.
+ * Cycles of one feed never overlap and the signals of one cycle are serialized, so the totals need no locking.
+ */
+final class FeedMetrics {
+    private final MeterRegistry registry;
+    private final String feed;
+    private final boolean replay;
+
+    private final DistributionSummary fetchBytes;
+    private final Timer parse;
+    private final Counter entitiesIn;
+    private final Counter entitiesFiltered;
+    private final Counter entitiesOut;
+    private final Counter[] changes = new Counter[VehicleChangeDetector.Change.values().length];
+    private final Timer enrich;
+    private final Timer publishLag;
+    private final Timer cycleSucceeded;
+    private final Timer cycleFailed;
+
+    // Totals of the current cycle
+    private long bytes;
+    private int entities;
+    private int matched;
+    private long parseNanos;
+    private int out;
+    private final int[] changeCounts = new int[VehicleChangeDetector.Change.values().length];
+
+    FeedMetrics(MeterRegistry registry, FeedPoller poller) {
+        this.registry = registry;
+        this.feed = poller.name();
+        this.replay = poller.isReplay();
+        this.fetchBytes = DistributionSummary.builder("gtfs.rt.fetch.bytes")
+                .description("Size of fetched GTFS-RT feeds")
+                .baseUnit("bytes")
+                .tag("feed", feed)
+                .register(registry);
+        this.parse = Timer.builder("gtfs.rt.parse")
+                .description("Time spent decoding GTFS-RT feeds, excluding the download")
+                .tag("feed", feed)
+                .register(registry);
+        this.entitiesIn = entities("in");
+        this.entitiesFiltered = entities("filtered");
+        this.entitiesOut = entities("out");
+        for (VehicleChangeDetector.Change change : VehicleChangeDetector.Change.values()) {
+            changes[change.ordinal()] = Counter.builder("gtfs.rt.vehicle.changes")
+                    .description("Vehicle updates by change since the vehicle was last seen")
+                    .tag("feed", feed)
+                    .tag("change", change.name().toLowerCase())
+                    .register(registry);
+        }
+        this.enrich = Timer.builder("gtfs.rt.enrich")
+                .description("Time to turn one feed entity into an enriched vehicle position")
+                .tag("feed", feed)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(1_000))
+                .maximumExpectedValue(Duration.ofMillis(100))
+                .register(registry);
+        this.publishLag = Timer.builder("gtfs.rt.publish.lag")
+                .description("Time from the feed header timestamp until its data was stored and published")
+                .tag("feed", feed)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(100))
+                .maximumExpectedValue(Duration.ofMinutes(10))
+                .register(registry);
+        this.cycleSucceeded = cycle("success");
+        this.cycleFailed = cycle("error");
+        FunctionCounter.builder("gtfs.rt.cycles.skipped", poller, p -> p.status().skipped())
+                .description("Poll cycles skipped because no worker was free before the next was due")
+                .tag("feed", feed)
+                .register(registry);
+        TimeGauge.builder("gtfs.rt.scheduling.lag", poller, TimeUnit.MILLISECONDS, p -> p.status().schedulingLagMillis())
+                .description("How long the last cycle waited for a worker after it was due")
+                .tag("feed", feed)
+                .register(registry);
+        TimeGauge.builder("gtfs.rt.data.lag", poller, TimeUnit.SECONDS, p -> p.status().dataLagSeconds())
+                .description("Age of the last processed snapshot when its cycle completed, -1 before the first")
+                .tag("feed", feed)
+                .register(registry);
+    }
+
+    private Counter entities(String stage) {
+        return Counter.builder("gtfs.rt.entities")
+                .description("GTFS-RT feed entities by pipeline stage")
+                .tag("feed", feed)
+                .tag("stage", stage)
+                .register(registry);
+    }
+
+    private Timer cycle(String outcome) {
+        return Timer.builder("gtfs.rt.cycle")
+                .description("Duration of poll cycles")
+                .tag("feed", feed)
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    void startCycle() {
+        bytes = 0;
+        entities = 0;
+        matched = 0;
+        parseNanos = 0;
+        out = 0;
+        Arrays.fill(changeCounts, 0);
+    }
+
+    /**
+     * Records how long the feed took to respond.
+     * @param status HTTP status of the response, or "error" if none arrived.
+     */
+    void fetched(String status, long startNanos) {
+        Timer.builder("gtfs.rt.fetch")
+                .description("Time until GTFS-RT feed response headers arrived")
+                .tag("feed", feed)
+                .tag("status", status)
+                .register(registry)
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    void decoded(GtfsRtFeedDecoder.Stats stats) {
+        bytes = stats.bytes();
+        entities = stats.entities();
+        matched = stats.matched();
+        parseNanos = stats.parseNanos();
+        fetchBytes.record(stats.bytes());
+        parse.record(stats.parseNanos(), TimeUnit.NANOSECONDS);
+        entitiesIn.increment(stats.entities());
+        entitiesFiltered.increment(stats.entities() - stats.matched());
+    }
+
+    void enriched(long startNanos) {
+        enrich.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    void changed(VehicleChangeDetector.Change change) {
+        changes[change.ordinal()].increment();
+        changeCounts[change.ordinal()]++;
+    }
+
+    /**
+     * Counts entities that made it through the pipeline. Replayed snapshots are as old as the archive, so
+     * their publish lag is not recorded.
+     * @param feedTimestamp Epoch seconds of the feed header they came from, or 0 if unknown.
+     */
+    void published(int count, long feedTimestamp) {
+        out += count;
+        entitiesOut.increment(count);
+        if (feedTimestamp > 0 && !replay) {
+            publishLag.record(Math.max(0, System.currentTimeMillis() - feedTimestamp * 1000), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    void completed(long startedMillis, long nowMillis) {
+        cycleSucceeded.record(nowMillis - startedMillis, TimeUnit.MILLISECONDS);
+    }
+
+    void failed(long startedMillis, long nowMillis) {
+        cycleFailed.record(nowMillis - startedMillis, TimeUnit.MILLISECONDS);
+    }
+
+    long bytes() {
+        return bytes;
+    }
+
+    int entities() {
+        return entities;
+    }
+
+    int matched() {
+        return matched;
+    }
+
+    long parseMillis() {
+        return parseNanos / 1_000_000;
+    }
+
+    int out() {
+        return out;
+    }
+
+    int changes(VehicleChangeDetector.Change change) {
+        return changeCounts[change.ordinal()];
+    }
+}
@@ -0,0 +1,240 @@
+package com.transit.delay_prediction.service;
+
+import com.google.transit.realtime.GtfsRealtime.FeedHeader;
+import com.transit.delay_prediction.config.GtfsRtFeedProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * State of one polled GTFS-RT feed: its definition, adaptive cadence, HTTP validators, last processed
+ * header timestamp, vehicle change detector, statistics and meters. Cycles of one feed never overlap, so the
+ * state needs no locking; statistics are volatile for readers of {@link #status()}.
+ * Replays of a feed's archived snapshots run through a separate poller of the same feed (see {@link #forReplay}).
+ */
+final class FeedPoller {
+    private static final Logger logger = LoggerFactory.getLogger(FeedPoller.class);
+
+    private final String name;
+    private final GtfsRtFeedProperties.Type type;
+    private final String url;
+    private final String apiKey;
+    private final List<String> routePrefixes;
+    private final long heartbeatSeconds;
+    private final boolean replay;
+    private final PollingCadence cadence;
+    private final VehicleChangeDetector changeDetector;
+    private final FeedMetrics metrics;
+
+    // Validators and header timestamp of the last processed snapshot
+    private volatile String etag;
+    private volatile String lastModified;
+    private volatile long lastFeedTimestamp;
+
+    // Validators and header timestamp of the snapshot of the running cycle, recorded once it completes
+    private boolean validatorsPending;
+    private String pendingEtag;
+    private String pendingLastModified;
+    private volatile long pendingFeedTimestamp;
+
+    private volatile long cycles;
+    private volatile long skipped;
+    private volatile long failures;
+    private volatile long schedulingLagMillis;
+    private volatile long cycleMillis;
+    private volatile long dataLagSeconds = -1;
+    private volatile Instant lastCompleted;
+
+    /**
+     * @param apiKey Key sent as the {@code key} query parameter, or null/empty for none.
+     * @param routePrefixes Accepted route id prefixes; empty accepts every route.
+     */
+    FeedPoller(String name, GtfsRtFeedProperties.Type type, String url, String apiKey, List<String> routePrefixes,
+               Duration minPoll, Duration maxPoll, long heartbeatSeconds, MeterRegistry registry) {
+        this(name, type, url, apiKey, routePrefixes, minPoll, maxPoll, heartbeatSeconds, false, registry);
+    }
+
+    private FeedPoller(String name, GtfsRtFeedProperties.Type type, String url, String apiKey,
+                       List<String> routePrefixes, Duration minPoll, Duration maxPoll, long heartbeatSeconds,
+                       boolean replay, MeterRegistry registry) {
+        this.name = name;
+        this.type = type;
+        this.url = url;
+        this.apiKey = apiKey;
+        this.routePrefixes = List.copyOf(routePrefixes);
+        this.heartbeatSeconds = heartbeatSeconds;
+        this.replay = replay;
+        this.cadence = new PollingCadence(minPoll, maxPoll, Duration.ofSeconds(30));
+        this.changeDetector = new VehicleChangeDetector(heartbeatSeconds);
+        this.metrics = new FeedMetrics(registry, this);
+    }
+
+    /**
+     * @return A poller named {@code <name>-replay} that feeds archived snapshots of this feed through the
+     * pipeline, with its own state and meters. Its snapshots are judged by their header timestamps rather
+     * than the clock.
+     */
+    FeedPoller forReplay(MeterRegistry registry) {
+        Duration never = Duration.ofDays(1);
+        return new FeedPoller(name + "-replay", type, url, apiKey, routePrefixes, never, never, heartbeatSeconds,
+                true, registry);
+    }
+
+    /**
+     * Forgets the last processed snapshot, so a replay can start over at an earlier one.
+     */
+    void rewind() {
+        etag = null;
+        lastModified = null;
+        lastFeedTimestamp = 0;
+        discardPending();
+    }
+
+    String name() {
+        return name;
+    }
+
+    boolean isReplay() {
+        return replay;
+    }
+
+    GtfsRtFeedProperties.Type type() {
+        return type;
+    }
+
+    String url() {
+        return url;
+    }
+
+    String apiKey() {
+        return apiKey;
+    }
+
+    String etag() {
+        return etag;
+    }
+
+    String lastModified() {
+        return lastModified;
+    }
+
+    VehicleChangeDetector changeDetector() {
+        return changeDetector;
+    }
+
+    FeedMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * @return Header timestamp of the last processed snapshot in epoch seconds, or 0 before the first.
+     */
+    long lastFeedTimestamp() {
+        return lastFeedTimestamp;
+    }
+
+    /**
+     * @return Header timestamp of the snapshot being processed in epoch seconds, or of the last processed one
+     * if the running cycle has none.
+     */
+    long snapshotTimestamp() {
+        long pending = pendingFeedTimestamp;
+        return pending > 0 ? pending : lastFeedTimestamp;
+    }
+
+    boolean acceptsRoute(String routeId) {
+        if (routeId == null) return false;
+        if (routePrefixes.isEmpty()) return true;
+        for (String prefix : routePrefixes) {
+            if (routeId.startsWith(prefix)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return Delay before the next poll.
+     */
+    Duration nextDelay(long nowMillis) {
+        return cadence.nextDelay(nowMillis);
+    }
+
+    void onValidators(String etag, String lastModified) {
+        validatorsPending = true;
+        pendingEtag = etag;
+        pendingLastModified = lastModified;
+    }
+
+    void onNotModified() {
+        cadence.onUnchanged();
+    }
+
+    /**
+     * Accepts a feed only if its header timestamp is newer than the last processed one.
+     * Feeds without a header timestamp are always accepted. The timestamp only becomes the last processed
+     * one when the cycle completes, so a failed cycle's snapshot is processed again by the next poll.
+     */
+    boolean isNewSnapshot(FeedHeader header) {
+        long timestamp = header.getTimestamp();
+        if (timestamp == 0) {
+            return true;
+        }
+        if (timestamp <= lastFeedTimestamp) {
+            logger.debug("Feed {}: timestamp {} already processed, skipping", name, timestamp);
+            cadence.onUnchanged();
+            return false;
+        }
+        pendingFeedTimestamp = timestamp;
+        return true;
+    }
+
+    void onStarted(long lagMillis) {
+        discardPending();
+        schedulingLagMillis = lagMillis;
+        metrics.startCycle();
+    }
+
+    void onCompleted(long startedMillis, long nowMillis) {
+        if (validatorsPending) {
+            etag = pendingEtag;
+            lastModified = pendingLastModified;
+        }
+        if (pendingFeedTimestamp > 0) {
+            lastFeedTimestamp = pendingFeedTimestamp;
+            cadence.onSnapshot(pendingFeedTimestamp);
+        }
+        discardPending();
+        metrics.completed(startedMillis, nowMillis);
+        cycles++;
+        cycleMillis = nowMillis - startedMillis;
+        dataLagSeconds = lastFeedTimestamp > 0 ? nowMillis / 1000 - lastFeedTimestamp : -1;
+        lastCompleted = Instant.ofEpochMilli(nowMillis);
+    }
+
+    void onFailed(long startedMillis, long nowMillis) {
+        discardPending();
+        metrics.failed(startedMillis, nowMillis);
+        cycles++;
+        failures++;
+        cycleMillis = nowMillis - startedMillis;
+    }
+
+    private void discardPending() {
+        validatorsPending = false;
+        pendingEtag = null;
+        pendingLastModified = null;
+        pendingFeedTimestamp = 0;
+    }
+
+    void onSkipped() {
+        skipped++;
+    }
+
+    FeedStatus status() {
+        return new FeedStatus(name, cycles, skipped, failures, schedulingLagMillis, cycleMillis, dataLagSeconds,
+                lastCompleted);
+    }
+}
@@ -0,0 +1,159 @@
+package com.transit.delay_prediction.service;
+
+import com.transit.delay_prediction.config.GtfsRtFeedProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Replays the archived snapshots of a feed within a time range through the ingestion pipeline, at their
+ * original pace, accelerated, or as fast as possible. Replayed snapshots are processed like fetched ones, so
+ * their positions are stored and published to Redis, PostgreSQL and Kafka, and they share the schedule
+ * deviation and trip state of live ingestion. Replays therefore only run on an instance with polling turned
+ * off ({@code gtfs-rt.polling=false}), which should be pointed at separate stores.
+ * Replays run one at a time, as feed {@code <name>-replay} in the feed meters and logs.
+ */
+@Service
+public class FeedReplayService {
+    private static final Logger logger = LoggerFactory.getLogger(FeedReplayService.class);
+
+    @Autowired
+    private FeedArchive archive;
+
+    @Autowired
+    private GtfsRtIngestionService ingestionService;
+
+    @Autowired
+    private TripStateService tripStateService;
+
+    @Autowired
+    private ScheduleDeviationService deviationService;
+
+    @Autowired
+    private GtfsRtFeedProperties feedProperties;
+
+    private Replay current;
+
+    /**
+     * A replay in progress or ended; its progress is written by the replaying thread only.
+     */
+    private static final class Replay {
+        final String feed;
+        final Instant from;
+        final Instant to;
+        final double speed;
+        final Instant started = Instant.now();
+        final long startedNanos = System.nanoTime();
+        long firstTimestamp = -1;
+        volatile ReplayStatus.State state = ReplayStatus.State.RUNNING;
+        volatile long snapshots;
+        volatile long replayedUntil;
+        volatile Instant finished;
+        volatile String error;
+        Disposable subscription;
+
+        Replay(String feed, Instant from, Instant to, double speed) {
+            this.feed = feed;
+            this.from = from;
+            this.to = to;
+            this.speed = speed;
+        }
+
+        synchronized void end(ReplayStatus.State outcome, String reason) {
+            if (state != ReplayStatus.State.RUNNING) return;
+            state = outcome;
+            error = reason;
+            finished = Instant.now();
+        }
+
+        ReplayStatus status() {
+            return new ReplayStatus(feed, from, to, speed, state, snapshots,
+                    replayedUntil > 0 ? Instant.ofEpochSecond(replayedUntil) : null, started, finished, error);
+        }
+    }
+
+    /**
+     * Starts replaying the archived snapshots of a feed between two instants, both inclusive.
+     * Each snapshot is processed when its offset from the first one, divided by the speed, has elapsed.
+     * @param speed Multiple of the original pace, e.g. 10 to replay an hour in six minutes; 0 or less replays
+     *              each snapshot as soon as the previous one has been processed.
+     * @throws IllegalStateException If a replay is running, feeds are polled or the archive is disabled.
+     * @throws IllegalArgumentException If the feed is unknown or the range is empty.
+     */
+    public synchronized ReplayStatus start(String feed, Instant from, Instant to, double speed) {
+        if (!archive.isEnabled()) {
+            throw new IllegalStateException("Feed archive is disabled, set gtfs-rt.archive.dir");
+        }
+        if (feedProperties.polling()) {
+            // Older replayed observations would be judged against live state, and overwrite live data
+            throw new IllegalStateException("Replays need an instance with gtfs-rt.polling=false");
+        }
+        if (current != null && current.state == ReplayStatus.State.RUNNING) {
+            throw new IllegalStateException("A replay of feed " + current.feed + " is already running");
+        }
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("Replay range ends at " + to + " before it starts at " + from);
+        }
+        FeedPoller poller = ingestionService.replayPoller(feed);
+        Replay replay = new Replay(feed, from, to, speed);
+        replay.subscription = archive.read(feed, from, to)
+            .concatMap(snapshot -> {
+                if (replay.firstTimestamp < 0) replay.firstTimestamp = snapshot.timestamp();
+                long dueNanos = speed > 0
+                    ? (long) ((snapshot.timestamp() - replay.firstTimestamp) * 1e9 / speed)
+                        - (System.nanoTime() - replay.startedNanos)
+                    : 0;
+                return Mono.delay(Duration.ofNanos(Math.max(0, dueNanos)))
+                    .then(ingestionService.replayCycle(poller, snapshot.feed()))
+                    .doOnSuccess(done -> {
+                        replay.snapshots++;
+                        replay.replayedUntil = snapshot.timestamp();
+                    });
+            }, 1)
+            .doFinally(signal -> {
+                tripStateService.expire();
+                deviationService.expire();
+            })
+            .subscribe(
+                done -> { },
+                error -> {
+                    replay.end(ReplayStatus.State.FAILED, error.getMessage());
+                    logger.error("Replay of feed {} failed after {} snapshots: {}", feed, replay.snapshots,
+                        error.getMessage(), error);
+                },
+                () -> {
+                    replay.end(ReplayStatus.State.COMPLETED, null);
+                    logger.info("Replayed {} snapshots of feed {} from {} to {}", replay.snapshots, feed, from, to);
+                });
+        current = replay;
+        logger.info("Replaying feed {} from {} to {} at {}", feed, from, to, speed > 0 ? speed + "x" : "full speed");
+        return replay.status();
+    }
+
+    /**
+     * @return Progress of the running or last replay, or null if none was started.
+     */
+    public synchronized ReplayStatus status() {
+        return current != null ? current.status() : null;
+    }
+
+    /**
+     * Stops the running replay; positions of the snapshot being processed may have been partly stored.
+     * @return Status of the cancelled replay, or null if none is running.
+     */
+    public synchronized ReplayStatus cancel() {
+        if (current == null || current.state != ReplayStatus.State.RUNNING) {
+            return null;
+        }
+        current.end(ReplayStatus.State.CANCELLED, null);
+        current.subscription.dispose();
+        logger.info("Cancelled replay of feed {} after {} snapshots", current.feed, current.snapshots);
+        return current.status();
+    }
+}
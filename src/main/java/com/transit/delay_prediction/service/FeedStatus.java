@@ -0,0 +1,19 @@
+package com.transit.delay_prediction.service;
+
+import java.time.Instant;
+
+/**
+ * Point-in-time statistics of one polled GTFS-RT feed.
+ * @param name Feed name.
+ * @param cycles Poll cycles run.
+ * @param skipped Poll cycles skipped because no worker was free before the next one was due.
+ * @param failures Poll cycles that failed.
+ * @param schedulingLagMillis How long the last cycle waited for a worker after it was due.
+ * @param cycleMillis Duration of the last cycle.
+ * @param dataLagSeconds Age of the last processed snapshot (its FeedHeader timestamp) when its cycle completed,
+ *                       or -1 before the first snapshot.
+ * @param lastCompleted When the last cycle completed, or null.
+ */
+public record FeedStatus(String name, long cycles, long skipped, long failures, long schedulingLagMillis,
+                         long cycleMillis, long dataLagSeconds, Instant lastCompleted) {
+}
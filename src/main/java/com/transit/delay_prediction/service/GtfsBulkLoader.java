@@ -0,0 +1,305 @@
+package com.transit.delay_prediction.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Bulk writer for GTFS static tables.
+ * In "copy" mode rows are streamed with PostgreSQL COPY into a temporary staging table and merged
+ * into the target with a single INSERT ... ON CONFLICT, so re-running a load behaves like the
+ * per-row {@code save()} it replaces. In "batch" mode the same upsert is sent as JDBC batches.
+ * When a key is repeated, its last row wins. Rows whose stored values are identical are never rewritten.
+ * Rows written and time spent per table are metered as {@code gtfs.static.rows} and {@code gtfs.static.load}.
+ */
+@Service
+public class GtfsBulkLoader {
+    private static final Logger logger = LoggerFactory.getLogger(GtfsBulkLoader.class);
+
+    private static final int COPY_BUFFER_CHARS = 256 * 1024;
+    // Staging column numbering rows in the order they were written, so the last row of a repeated key wins
+    private static final String STAGE_ORDINAL = quote("stage_ordinal");
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${gtfs.static.bulk-load.mode:copy}")
+    private String mode;
+
+    @Value("${gtfs.static.bulk-load.batch-size:5000}")
+    private int batchSize;
+
+    /**
+     * Counts of one merge from a staging table.
+     */
+    public record MergeResult(long inserted, long updated) {
+    }
+
+    /**
+     * Writes all rows into the given table, inserting new keys and overwriting changed ones.
+     * @param table Target table.
+     * @param rows Row values in {@link GtfsTable#getColumns()} order.
+     * @return Number of rows written.
+     */
+    @Transactional
+    public long load(GtfsTable table, Stream<Object[]> rows) {
+        long start = System.nanoTime();
+        long count = withConnection(table, connection -> {
+            if (!useCopy(connection)) {
+                return batch(table, rows);
+            }
+            long staged = stageRows(connection, table, rows);
+            merge(connection, table);
+            try (var statement = connection.createStatement()) {
+                statement.execute("DROP TABLE " + stageName(table));
+            }
+            return staged;
+        });
+        record(table, count, start);
+        long elapsedMillis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        logger.info("Bulk-loaded {} {} rows in {} ms ({} rows/sec)",
+                count, table.getTableName(), elapsedMillis, count * 1000 / elapsedMillis);
+        return count;
+    }
+
+    /**
+     * Writes rows into a temporary staging table that lives until the surrounding transaction ends.
+     * Repeated calls for the same table append to the same staging table. Used with {@link #mergeStaged} and {@link #deleteMissing} to apply a whole new version of a
+     * table inside one transaction.
+     * @return Number of rows staged.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public long stage(GtfsTable table, Stream<Object[]> rows) {
+        long start = System.nanoTime();
+        long count = withConnection(table, connection -> stageRows(connection, table, rows));
+        record(table, count, start);
+        return count;
+    }
+
+    private void record(GtfsTable table, long rows, long startNanos) {
+        Counter.builder("gtfs.static.rows")
+                .description("GTFS static rows written")
+                .tag("table", table.getTableName())
+                .register(meterRegistry)
+                .increment(rows);
+        Timer.builder("gtfs.static.load")
+                .description("Time spent writing GTFS static rows")
+                .tag("table", table.getTableName())
+                .register(meterRegistry)
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Inserts staged rows with new keys and updates stored rows whose values differ; identical rows are not touched.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public MergeResult mergeStaged(GtfsTable table) {
+        return withConnection(table, connection -> merge(connection, table));
+    }
+
+    /**
+     * Deletes stored rows whose key is absent from the staging table.
+     * @return Number of rows deleted.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public long deleteMissing(GtfsTable table) {
+        String pk = quote(table.getPrimaryKey());
+        return withConnection(table, connection -> {
+            try (var statement = connection.createStatement()) {
+                return (long) statement.executeUpdate("DELETE FROM " + quote(table.getTableName()) + " t WHERE NOT EXISTS "
+                        + "(SELECT 1 FROM " + stageName(table) + " s WHERE s." + pk + " = t." + pk + ")");
+            }
+        });
+    }
+
+    /**
+     * Reads every primary key currently stored in the table, for resolving foreign keys in memory.
+     * @param table Table to read.
+     * @return Set of primary key values.
+     */
+    public Set<String> existingKeys(GtfsTable table) {
+        return new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT " + quote(table.getPrimaryKey()) + " FROM " + quote(table.getTableName()), String.class));
+    }
+
+    private interface ConnectionCallback<T> {
+        T apply(Connection connection) throws SQLException;
+    }
+
+    private <T> T withConnection(GtfsTable table, ConnectionCallback<T> callback) {
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try {
+            return callback.apply(connection);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Bulk load of " + table.getTableName() + " failed: " + e.getMessage(), e);
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+
+    private boolean useCopy(Connection connection) throws SQLException {
+        return "copy".equalsIgnoreCase(mode) && connection.isWrapperFor(PGConnection.class);
+    }
+
+    private long stageRows(Connection connection, GtfsTable table, Stream<Object[]> rows) throws SQLException {
+        String stage = stageName(table);
+        try (var statement = connection.createStatement()) {
+            statement.execute("CREATE TEMP TABLE IF NOT EXISTS " + stage + " (LIKE " + quote(table.getTableName())
+                    + " INCLUDING DEFAULTS, " + STAGE_ORDINAL + " bigint GENERATED ALWAYS AS IDENTITY) ON COMMIT DROP");
+        }
+        if (!useCopy(connection)) {
+            String placeholders = table.getColumns().stream().map(c -> "?").collect(Collectors.joining(", "));
+            return batch("INSERT INTO " + stage + " (" + columnList(table) + ") VALUES (" + placeholders + ")", rows);
+        }
+
+        CopyIn copyIn = connection.unwrap(PGConnection.class).getCopyAPI()
+                .copyIn("COPY " + stage + " (" + columnList(table) + ") FROM STDIN");
+        long count = 0;
+        try {
+            StringBuilder buffer = new StringBuilder(COPY_BUFFER_CHARS + 4096);
+            for (Iterator<Object[]> it = rows.iterator(); it.hasNext(); ) {
+                appendCopyRow(buffer, it.next());
+                count++;
+                if (buffer.length() >= COPY_BUFFER_CHARS) {
+                    flush(copyIn, buffer);
+                }
+            }
+            flush(copyIn, buffer);
+            copyIn.endCopy();
+        } finally {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+        return count;
+    }
+
+    private MergeResult merge(Connection connection, GtfsTable table) throws SQLException {
+        try (var statement = connection.createStatement(); var rs = statement.executeQuery(mergeSql(table))) {
+            rs.next();
+            return new MergeResult(rs.getLong(1), rs.getLong(2));
+        }
+    }
+
+    private long batch(GtfsTable table, Stream<Object[]> rows) {
+        String placeholders = table.getColumns().stream().map(c -> "?").collect(Collectors.joining(", "));
+        return batch(upsertSql(table, "VALUES (" + placeholders + ")"), rows);
+    }
+
+    private long batch(String sql, Stream<Object[]> rows) {
+        long count = 0;
+        List<Object[]> chunk = new ArrayList<>(batchSize);
+        for (Iterator<Object[]> it = rows.iterator(); it.hasNext(); ) {
+            chunk.add(it.next());
+            if (chunk.size() == batchSize || !it.hasNext()) {
+                jdbcTemplate.batchUpdate(sql, chunk);
+                count += chunk.size();
+                chunk.clear();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Upserts the last staged row of every key and counts the rows inserted and updated.
+     */
+    static String mergeSql(GtfsTable table) {
+        String pk = quote(table.getPrimaryKey());
+        return "WITH merged AS (" + upsertSql(table,
+                "SELECT DISTINCT ON (" + pk + ") " + columnList(table) + " FROM " + stageName(table)
+                        + " ORDER BY " + pk + ", " + STAGE_ORDINAL + " DESC")
+                + " RETURNING (xmax = 0) AS inserted) "
+                + "SELECT count(*) FILTER (WHERE inserted), count(*) FILTER (WHERE NOT inserted) FROM merged";
+    }
+
+    static String upsertSql(GtfsTable table, String source) {
+        List<String> values = table.getColumns().stream()
+                .filter(c -> !c.equals(table.getPrimaryKey()))
+                .map(GtfsBulkLoader::quote)
+                .toList();
+        String updates = values.stream().map(c -> c + " = EXCLUDED." + c).collect(Collectors.joining(", "));
+        String current = values.stream().map(c -> "t." + c).collect(Collectors.joining(", "));
+        String incoming = values.stream().map(c -> "EXCLUDED." + c).collect(Collectors.joining(", "));
+        return "INSERT INTO " + quote(table.getTableName()) + " AS t (" + columnList(table) + ") " + source
+                + " ON CONFLICT (" + quote(table.getPrimaryKey()) + ") DO UPDATE SET " + updates
+                + " WHERE (" + current + ") IS DISTINCT FROM (" + incoming + ")";
+    }
+
+    private static String stageName(GtfsTable table) {
+        return quote("stage_" + table.getTableName());
+    }
+
+    private static String columnList(GtfsTable table) {
+        return table.getColumns().stream().map(GtfsBulkLoader::quote).collect(Collectors.joining(", "));
+    }
+
+    private static String quote(String identifier) {
+        return '"' + identifier + '"';
+    }
+
+    private static void flush(CopyIn copyIn, StringBuilder buffer) throws SQLException {
+        if (buffer.length() == 0) return;
+        byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+        copyIn.writeToCopy(bytes, 0, bytes.length);
+        buffer.setLength(0);
+    }
+
+    /**
+     * Appends one row in COPY text format: tab-separated, {@code \N} for null, backslash escapes.
+     */
+    static void appendCopyRow(StringBuilder buffer, Object[] row) {
+        for (int i = 0; i < row.length; i++) {
+            if (i > 0) buffer.append('\t');
+            Object value = row[i];
+            if (value == null) {
+                buffer.append("\\N");
+            } else if (value instanceof Boolean b) {
+                buffer.append(b ? 't' : 'f');
+            } else if (value instanceof CharSequence s) {
+                for (int j = 0; j < s.length(); j++) {
+                    char c = s.charAt(j);
+                    switch (c) {
+                        case '\\' -> buffer.append("\\\\");
+                        case '\t' -> buffer.append("\\t");
+                        case '\n' -> buffer.append("\\n");
+                        case '\r' -> buffer.append("\\r");
+                        default -> buffer.append(c);
+                    }
+                }
+            } else {
+                buffer.append(value);
+            }
+        }
+        buffer.append('\n');
+    }
+}
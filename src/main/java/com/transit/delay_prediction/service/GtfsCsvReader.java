@@ -0,0 +1,175 @@
+package com.transit.delay_prediction.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Row-by-row reader for GTFS CSV files (RFC 4180 quoting, optional UTF-8 BOM).
+ * Only the current record is held in memory, so heap use does not depend on file size.
+ */
+public final class GtfsCsvReader {
+
+    private GtfsCsvReader() {
+    }
+
+    /**
+     * Opens a lazily parsed stream of records; the header line is consumed up front.
+     * The stream must be closed to release the file handle.
+     * @param file GTFS file such as stop_times.txt.
+     * @return Stream of rows, empty if the file does not exist.
+     * @throws IOException If the file cannot be opened.
+     */
+    public static Stream<Row> rows(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return Stream.empty();
+        }
+        BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+        try {
+            List<String> headerFields = readRecord(reader);
+            if (headerFields == null) {
+                reader.close();
+                return Stream.empty();
+            }
+            Map<String, Integer> header = new HashMap<>();
+            for (int i = 0; i < headerFields.size(); i++) {
+                String name = headerFields.get(i);
+                if (i == 0 && !name.isEmpty() && name.charAt(0) == '\uFEFF') {
+                    name = name.substring(1);
+                }
+                header.put(name.trim(), i);
+            }
+            Iterator<Row> iterator = new Iterator<>() {
+                private List<String> next = advance();
+
+                private List<String> advance() {
+                    try {
+                        List<String> record;
+                        do {
+                            record = readRecord(reader);
+                        } while (record != null && record.size() == 1 && record.get(0).isEmpty());
+                        return record;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return next != null;
+                }
+
+                @Override
+                public Row next() {
+                    if (next == null) throw new NoSuchElementException();
+                    Row row = new Row(header, next.toArray(new String[0]));
+                    next = advance();
+                    return row;
+                }
+            };
+            return StreamSupport.stream(Spliterators.spliteratorUnknownSize(
+                            iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                    .onClose(() -> {
+                        try {
+                            reader.close();
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+        } catch (IOException | RuntimeException e) {
+            reader.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads one logical record, joining physical lines while inside a quoted field.
+     * @return Field values, or null at end of input.
+     */
+    static List<String> readRecord(BufferedReader reader) throws IOException {
+        String line = reader.readLine();
+        if (line == null) return null;
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        int i = 0;
+        while (true) {
+            if (i == line.length()) {
+                if (!quoted) break;
+                String continuation = reader.readLine();
+                if (continuation == null) break;
+                field.append('\n');
+                line = continuation;
+                i = 0;
+                continue;
+            }
+            char c = line.charAt(i++);
+            if (quoted) {
+                if (c == '"') {
+                    if (i < line.length() && line.charAt(i) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString().trim());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString().trim());
+        return fields;
+    }
+
+    /**
+     * One CSV record addressed by header column name.
+     */
+    public static final class Row {
+        private final Map<String, Integer> header;
+        private final String[] values;
+
+        Row(Map<String, Integer> header, String[] values) {
+            this.header = header;
+            this.values = values;
+        }
+
+        /**
+         * @return The value, or null if the column is absent or empty.
+         */
+        public String get(String column) {
+            Integer index = header.get(column);
+            if (index == null || index >= values.length || values[index].isEmpty()) return null;
+            return values[index];
+        }
+
+        public int getInt(String column, int defaultValue) {
+            String value = get(column);
+            return value != null ? Integer.parseInt(value) : defaultValue;
+        }
+
+        public double getDouble(String column) {
+            String value = get(column);
+            return value != null ? Double.parseDouble(value) : 0;
+        }
+    }
+}
@@ -0,0 +1,428 @@
+package com.transit.delay_prediction.service;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.UninitializedMessageException;
+import com.google.protobuf.WireFormat;
+import com.google.transit.realtime.GtfsRealtime.FeedEntity;
+import com.google.transit.realtime.GtfsRealtime.FeedHeader;
+import com.google.transit.realtime.GtfsRealtime.TripDescriptor;
+import com.google.transit.realtime.GtfsRealtime.TripUpdate;
+import com.google.transit.realtime.GtfsRealtime.VehiclePosition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.buffer.DataBuffer;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * Streaming decoder for GTFS-RT FeedMessages.
+ * Reads the wire format field by field through a {@link CodedInputStream} and emits one
+ * {@link FeedEntity} at a time, so the feed is never held in memory as a whole. Each entity is read in
+ * place: once the trip descriptor of its vehicle or trip_update has been read, an entity rejected by the
+ * route filter has the rest of its bytes skipped without being copied or parsed. The decode time and byte and entity counts of each feed can be reported
+ * for metrics, and the raw bytes copied as they are read, e.g. to archive the feed.
+ */
+public final class GtfsRtFeedDecoder {
+    private static final Logger logger = LoggerFactory.getLogger(GtfsRtFeedDecoder.class);
+
+    // Field numbers from gtfs-realtime.proto
+    private static final int FEED_MESSAGE_HEADER = 1;
+    private static final int FEED_MESSAGE_ENTITY = 2;
+    private static final int ENTITY_ID = 1;
+    private static final int ENTITY_TRIP_UPDATE = 3;
+    private static final int ENTITY_VEHICLE = 4;
+    private static final int TRIP = 1; // In both TripUpdate and VehiclePosition
+    private static final int TRIP_ROUTE_ID = 5;
+
+    private GtfsRtFeedDecoder() {
+    }
+
+    /**
+     * Counts of one decoded feed.
+     * @param bytes Bytes of the feed read.
+     * @param entities Entities in the feed.
+     * @param matched Entities accepted by the route filter.
+     * @param parseNanos Time spent decoding, excluding time spent waiting for the download.
+     * @param timestamp FeedHeader timestamp in epoch seconds, or 0 if absent.
+     * @param headerRejected Whether the header filter rejected the feed, so it was not read to its end.
+     */
+    public record Stats(long bytes, int entities, int matched, long parseNanos, long timestamp,
+                        boolean headerRejected) {
+    }
+
+    /**
+     * Decodes a feed downloaded as a stream of DataBuffers. Decoding runs on the bounded elastic scheduler.
+     * @param body Response body; buffers are released as they are consumed.
+     * @param headerFilter Called with the FeedHeader; returning false stops decoding with no entities emitted.
+     * @param routeFilter Called with each entity's route_id (null if absent); only accepted entities are parsed.
+     * @return Flux of accepted entities in feed order.
+     */
+    public static Flux<FeedEntity> decode(Flux<DataBuffer> body, Predicate<FeedHeader> headerFilter,
+                                          Predicate<String> routeFilter) {
+        return decode(body, headerFilter, routeFilter, stats -> { });
+    }
+
+    /**
+     * Decodes a feed downloaded as a stream of DataBuffers, reporting its counts once it has been read.
+     * @param onDecoded Called when the feed has been read to its end or its header was rejected; not called on errors.
+     * @see #decode(Flux, Predicate, Predicate)
+     */
+    public static Flux<FeedEntity> decode(Flux<DataBuffer> body, Predicate<FeedHeader> headerFilter,
+                                          Predicate<String> routeFilter, Consumer<Stats> onDecoded) {
+        return decode(body, headerFilter, routeFilter, null, onDecoded);
+    }
+
+    /**
+     * Decodes a feed downloaded as a stream of DataBuffers, copying every byte read to a stream on the
+     * decoding thread. The copy is complete once {@code onDecoded} is called with a feed that was not rejected.
+     * @param copy Stream the raw feed is written to as it is read, or null for none; it is not closed.
+     * @see #decode(Flux, Predicate, Predicate, Consumer)
+     */
+    public static Flux<FeedEntity> decode(Flux<DataBuffer> body, Predicate<FeedHeader> headerFilter,
+                                          Predicate<String> routeFilter, OutputStream copy,
+                                          Consumer<Stats> onDecoded) {
+        return Flux.using(
+                        () -> {
+                            DataBufferInputStream in = new DataBufferInputStream();
+                            body.subscribe(in);
+                            return in;
+                        },
+                        in -> decode(copy != null ? new CopyingInputStream(in, copy) : in, headerFilter,
+                                routeFilter, in::waitNanos, onDecoded),
+                        DataBufferInputStream::close)
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Decodes a feed from a blocking InputStream on the subscribing thread.
+     * @see #decode(Flux, Predicate, Predicate)
+     */
+    public static Flux<FeedEntity> decode(InputStream in, Predicate<FeedHeader> headerFilter,
+                                          Predicate<String> routeFilter) {
+        return decode(in, headerFilter, routeFilter, () -> 0, stats -> { });
+    }
+
+    /**
+     * Decodes a feed from a blocking InputStream on the subscribing thread, reporting its counts once it
+     * has been read.
+     * @see #decode(Flux, Predicate, Predicate, Consumer)
+     */
+    public static Flux<FeedEntity> decode(InputStream in, Predicate<FeedHeader> headerFilter,
+                                          Predicate<String> routeFilter, Consumer<Stats> onDecoded) {
+        return decode(in, headerFilter, routeFilter, () -> 0, onDecoded);
+    }
+
+    /**
+     * @param waitNanos Time the stream has spent waiting for input, subtracted from the parse time.
+     */
+    private static Flux<FeedEntity> decode(InputStream in, Predicate<FeedHeader> headerFilter,
+                                           Predicate<String> routeFilter, LongSupplier waitNanos,
+                                           Consumer<Stats> onDecoded) {
+        return Flux.generate(() -> new DecodeState(CodedInputStream.newInstance(in)), (state, sink) -> {
+            try {
+                long start = System.nanoTime();
+                FeedEntity entity = state.next(headerFilter, routeFilter);
+                state.elapsedNanos += System.nanoTime() - start;
+                if (entity != null) {
+                    sink.next(entity);
+                    return state;
+                }
+                if (state.headerRejected) {
+                    logger.debug("GTFS-RT feed header rejected, skipping feed");
+                } else {
+                    logger.debug("Received GTFS-RT feed with {} entities, {} matched the route filter",
+                            state.entities, state.matched);
+                }
+                onDecoded.accept(new Stats(state.bytesRead(), state.entities, state.matched,
+                        Math.max(0, state.elapsedNanos - waitNanos.getAsLong()), state.timestamp,
+                        state.headerRejected));
+                sink.complete();
+            } catch (IOException e) {
+                sink.error(e);
+            }
+            return state;
+        });
+    }
+
+    /**
+     * Reads the route_id of a serialized TripDescriptor without parsing it.
+     * @return The route_id, or null if absent.
+     */
+    private static String routeId(byte[] trip) throws IOException {
+        int position = 0;
+        while (position < trip.length) {
+            long tag = varint(trip, position);
+            position = (int) (tag >>> 32);
+            int length = switch (WireFormat.getTagWireType((int) tag)) {
+                case WireFormat.WIRETYPE_VARINT -> {
+                    position = (int) (varint(trip, position) >>> 32);
+                    yield 0;
+                }
+                case WireFormat.WIRETYPE_FIXED64 -> 8;
+                case WireFormat.WIRETYPE_FIXED32 -> 4;
+                case WireFormat.WIRETYPE_LENGTH_DELIMITED -> {
+                    long value = varint(trip, position);
+                    position = (int) (value >>> 32);
+                    yield (int) value;
+                }
+                default -> throw new InvalidProtocolBufferException("Invalid wire type in trip descriptor");
+            };
+            if (length < 0 || length > trip.length - position) throw new InvalidProtocolBufferException("Truncated trip descriptor");
+            if (WireFormat.getTagFieldNumber((int) tag) == TRIP_ROUTE_ID && isLengthDelimited((int) tag)) {
+                return new String(trip, position, length, StandardCharsets.UTF_8);
+            }
+            position += length;
+        }
+        return null;
+    }
+
+    /**
+     * Reads a varint of at most 32 significant bits, as tags and lengths are.
+     * @return The position after the varint in the high 32 bits, its value in the low 32 bits.
+     */
+    private static long varint(byte[] bytes, int position) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (position >= bytes.length) throw new InvalidProtocolBufferException("Truncated trip descriptor");
+            byte b = bytes[position++];
+            if (shift < 32) value |= (b & 0x7F) << shift;
+            if (b >= 0) return (long) position << 32 | (value & 0xFFFFFFFFL);
+        }
+        throw new InvalidProtocolBufferException("Malformed varint in trip descriptor");
+    }
+
+    private static boolean isLengthDelimited(int tag) {
+        return WireFormat.getTagWireType(tag) == WireFormat.WIRETYPE_LENGTH_DELIMITED;
+    }
+
+    private static final class DecodeState {
+        private final CodedInputStream input;
+        private int entities;
+        private int matched;
+        private boolean headerRejected;
+        private long timestamp;
+        private long consumedBytes; // Before the last size counter reset
+        private long elapsedNanos;
+
+        // Fields of the current entity and of its vehicle or trip_update read before the route was known
+        private final KeptFields entityFields = new KeptFields();
+        private final KeptFields messageFields = new KeptFields();
+
+        DecodeState(CodedInputStream input) {
+            this.input = input;
+        }
+
+        long bytesRead() {
+            return consumedBytes + input.getTotalBytesRead();
+        }
+
+        /**
+         * @return The next accepted entity, or null at end of feed or when the header is rejected.
+         */
+        FeedEntity next(Predicate<FeedHeader> headerFilter, Predicate<String> routeFilter) throws IOException {
+            int tag;
+            while ((tag = input.readTag()) != 0) {
+                int field = WireFormat.getTagFieldNumber(tag);
+                if (field == FEED_MESSAGE_HEADER && isLengthDelimited(tag)) {
+                    FeedHeader header = FeedHeader.parseFrom(input.readBytes());
+                    timestamp = header.getTimestamp();
+                    if (!headerFilter.test(header)) {
+                        headerRejected = true;
+                        return null;
+                    }
+                } else if (field == FEED_MESSAGE_ENTITY && isLengthDelimited(tag)) {
+                    FeedEntity entity = readEntity(routeFilter);
+                    // Only reset between entities: pushed limits are relative to the size counter
+                    consumedBytes += input.getTotalBytesRead();
+                    input.resetSizeCounter();
+                    entities++;
+                    if (entity != null) {
+                        matched++;
+                        return entity;
+                    }
+                } else {
+                    input.skipField(tag);
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Reads one FeedEntity, testing its route as soon as the trip descriptor of its vehicle or trip_update
+         * has been read. Fields read before that are kept encoded, to be merged if the entity is accepted.
+         * @return The entity, or null if the route filter rejected it.
+         */
+        private FeedEntity readEntity(Predicate<String> routeFilter) throws IOException {
+            int entityLimit = input.pushLimit(input.readRawVarint32());
+            FeedEntity.Builder entity = null;
+            ByteString id = null;
+            boolean routeTested = false;
+            int tag;
+            while ((tag = input.readTag()) != 0) {
+                int field = WireFormat.getTagFieldNumber(tag);
+                if (!routeTested && (field == ENTITY_VEHICLE || field == ENTITY_TRIP_UPDATE) && isLengthDelimited(tag)) {
+                    routeTested = true;
+                    int messageLimit = input.pushLimit(input.readRawVarint32());
+                    byte[] trip = readUntilTrip();
+                    if (!routeFilter.test(trip != null ? routeId(trip) : null)) {
+                        skipToLimit(messageLimit);
+                        skipToLimit(entityLimit);
+                        return null;
+                    }
+                    entity = readMessage(field, trip);
+                    input.popLimit(messageLimit);
+                } else if (field == ENTITY_ID && isLengthDelimited(tag) && id == null) {
+                    id = input.readBytes();
+                } else {
+                    entityFields.keep(tag, input);
+                }
+            }
+            input.popLimit(entityLimit);
+            // Entities without a vehicle or trip_update have no route
+            if (!routeTested && !routeFilter.test(null)) return null;
+            try {
+                if (entity == null) entity = FeedEntity.newBuilder();
+                if (id != null) entity.setIdBytes(id);
+                return entity.mergeFrom(entityFields.take()).build();
+            } catch (UninitializedMessageException e) {
+                throw e.asInvalidProtocolBufferException();
+            }
+        }
+
+        /**
+         * Reads the rest of an accepted vehicle or trip_update message.
+         * @param trip Its serialized trip descriptor, or null if it has none.
+         * @return Builder of its entity with the message set.
+         */
+        private FeedEntity.Builder readMessage(int field, byte[] trip) throws IOException {
+            FeedEntity.Builder entity = FeedEntity.newBuilder();
+            if (field == ENTITY_VEHICLE) {
+                VehiclePosition.Builder vehicle = VehiclePosition.newBuilder().mergeFrom(messageFields.take());
+                if (trip != null) vehicle.mergeTrip(TripDescriptor.parseFrom(trip));
+                return entity.setVehicle(vehicle.mergeFrom(input).buildPartial());
+            }
+            TripUpdate.Builder update = TripUpdate.newBuilder().mergeFrom(messageFields.take());
+            if (trip != null) update.mergeTrip(TripDescriptor.parseFrom(trip));
+            return entity.setTripUpdate(update.mergeFrom(input).buildPartial());
+        }
+
+        /**
+         * Reads the fields of a vehicle or trip_update message up to its trip descriptor, keeping the fields
+         * before it in {@code messageFields}.
+         * @return The serialized trip descriptor, or null if the message has none.
+         */
+        private byte[] readUntilTrip() throws IOException {
+            int tag;
+            while ((tag = input.readTag()) != 0) {
+                if (WireFormat.getTagFieldNumber(tag) == TRIP && isLengthDelimited(tag)) {
+                    return input.readByteArray();
+                }
+                messageFields.keep(tag, input);
+            }
+            return null;
+        }
+
+        private void skipToLimit(int previousLimit) throws IOException {
+            input.skipRawBytes(input.getBytesUntilLimit());
+            input.popLimit(previousLimit);
+            entityFields.take();
+            messageFields.take();
+        }
+    }
+
+    /**
+     * Encoded fields kept while reading an entity, reused across entities. Taking them when none were
+     * kept, the common case, costs nothing.
+     */
+    private static final class KeptFields {
+        private final ByteString.Output bytes = ByteString.newOutput(256);
+        private final CodedOutputStream output = CodedOutputStream.newInstance(bytes, 256);
+        private int taken;
+
+        /**
+         * Copies the value of a field whose tag was just read from the input.
+         */
+        void keep(int tag, CodedInputStream input) throws IOException {
+            output.writeUInt32NoTag(tag);
+            switch (WireFormat.getTagWireType(tag)) {
+                case WireFormat.WIRETYPE_VARINT -> output.writeUInt64NoTag(input.readRawVarint64());
+                case WireFormat.WIRETYPE_FIXED64 -> output.writeFixed64NoTag(input.readRawLittleEndian64());
+                case WireFormat.WIRETYPE_LENGTH_DELIMITED -> output.writeBytesNoTag(input.readBytes());
+                case WireFormat.WIRETYPE_FIXED32 -> output.writeFixed32NoTag(input.readRawLittleEndian32());
+                case WireFormat.WIRETYPE_START_GROUP -> {
+                    int nested;
+                    while ((nested = input.readTag()) != 0
+                            && WireFormat.getTagWireType(nested) != WireFormat.WIRETYPE_END_GROUP) {
+                        keep(nested, input);
+                    }
+                    int end = tag - WireFormat.WIRETYPE_START_GROUP + WireFormat.WIRETYPE_END_GROUP;
+                    input.checkLastTagWas(end);
+                    output.writeUInt32NoTag(end);
+                }
+                default -> throw new InvalidProtocolBufferException("Invalid wire type " + WireFormat.getTagWireType(tag));
+            }
+        }
+
+        /**
+         * @return The fields kept since the last call.
+         */
+        ByteString take() throws IOException {
+            if (output.getTotalBytesWritten() == taken) return ByteString.EMPTY;
+            taken = output.getTotalBytesWritten();
+            output.flush();
+            ByteString fields = bytes.toByteString();
+            bytes.reset();
+            return fields;
+        }
+    }
+
+    /**
+     * Writes every byte read from a stream, including skipped bytes, to another stream.
+     */
+    private static final class CopyingInputStream extends FilterInputStream {
+        private final OutputStream copy;
+
+        CopyingInputStream(InputStream in, OutputStream copy) {
+            super(in);
+            this.copy = copy;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) copy.write(b);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = in.read(buffer, offset, length);
+            if (read > 0) copy.write(buffer, offset, read);
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            byte[] buffer = new byte[(int) Math.min(n, 8192)];
+            long skipped = 0;
+            while (skipped < n) {
+                int read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+                if (read < 0) break;
+                skipped += read;
+            }
+            return skipped;
+        }
+    }
+}
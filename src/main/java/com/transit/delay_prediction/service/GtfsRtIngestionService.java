@@ -1,38 +1,52 @@
 package com.transit.delay_prediction.service;
 
-import com.google.transit.realtime.GtfsRealtime.FeedMessage;
+import com.google.transit.realtime.GtfsRealtime.FeedEntity;
+import com.transit.delay_prediction.config.GtfsRtFeedProperties;
 import com.transit.delay_prediction.entity.VehiclePosition;
-import com.transit.delay_prediction.repository.StopRepository;
-import com.transit.delay_prediction.repository.StopTimeRepository;
-import com.transit.delay_prediction.repository.TripRepository;
-import com.transit.delay_prediction.repository.VehiclePositionRepository;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import io.netty.channel.ChannelOption;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.redis.core.ReactiveRedisTemplate;
-import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.ExchangeStrategies;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import reactor.core.Disposable;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import reactor.netty.http.client.HttpClient;
 import reactor.netty.resources.ConnectionProvider;
 
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.ByteArrayInputStream;
 import java.time.Duration;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
-import java.time.temporal.ChronoUnit;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Service for ingesting GTFS-RT data from MTA BusTime API and storing in Redis, PostgreSQL, and Kafka.
- * Fetches vehicle positions every 30 seconds and processes data for Brooklyn routes.
+ * Polls each configured vehicle position feed at its own update cadence and processes data for its routes
+ * (by default the MTA BusTime feed, Brooklyn routes only). TripUpdates feeds are polled alongside and merged
+ * into the {@link TripStateService}, whose upstream predictions are joined to each vehicle position.
+ * Each stage of a cycle is metered per feed (see {@link FeedMetrics}) and each cycle logs one summary line.
+ * Fetched snapshots are kept in the {@link FeedArchive} if it is enabled, and archived snapshots can be fed
+ * through the same pipeline again by the {@link FeedReplayService}.
  */
 @Service
 public class GtfsRtIngestionService {
@@ -41,22 +55,34 @@ public class GtfsRtIngestionService {
     private final WebClient webClient;
 
     @Autowired
-    private ReactiveRedisTemplate<String, VehiclePosition> redisTemplate;
+    private VehiclePositionRedisWriter redisWriter;
 
     @Autowired
-    private StopRepository stopRepository;
+    private ScheduleDeviationService deviationService;
 
     @Autowired
-    private TripRepository tripRepository;
+    private VehiclePositionSink positionSink;
 
     @Autowired
-    private StopTimeRepository stopTimeRepository;
+    private DelayPredictionService predictionService;
 
     @Autowired
-    private VehiclePositionRepository vehiclePositionRepository;
+    private LiveVehicleService liveVehicleService;
 
     @Autowired
-    private KafkaTemplate<String, VehiclePosition> kafkaTemplate;
+    private VehiclePositionPublisher kafkaPublisher;
+
+    @Autowired
+    private TripStateService tripStateService;
+
+    @Autowired
+    private GtfsRtFeedProperties feedProperties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private FeedArchive archive;
 
     @Value("${mta.bustime.api.key}")
     private String apiKey;
@@ -64,89 +90,325 @@ public class GtfsRtIngestionService {
     @Value("${mta.bustime.api.url:http://gtfsrt.prod.obanyc.com/vehiclePositions}")
     private String apiUrl;
 
-    private static final String TOPIC = "vehicle_positions";
+    @Value("${mta.bustime.trip-updates.url:http://gtfsrt.prod.obanyc.com/tripUpdates}")
+    private String tripUpdatesUrl;
+
+    @Value("${mta.bustime.poll.min-seconds:5}")
+    private int minPollSeconds;
+
+    @Value("${mta.bustime.poll.max-seconds:60}")
+    private int maxPollSeconds;
+
+    @Value("${redis.vehicle-position.batch-size:1000}")
+    private int redisBatchSize;
+
+    @Value("${vehicle-position.heartbeat-seconds:60}")
+    private int heartbeatSeconds;
+
+    private static final Duration REDIS_TTL = Duration.ofMinutes(5);
+    private static final ZoneId ZONE = ZoneId.of("America/New_York");
+
+    private final List<FeedPoller> feeds = new ArrayList<>();
+    private final Map<String, FeedPoller> replays = new ConcurrentHashMap<>();
+    private final List<Disposable> polls = new ArrayList<>();
+    private final ConnectionProvider connectionProvider;
+    private CycleWorkers workers;
 
     /**
-     * Constructor to initialize WebClient with increased buffer size and timeout.
+     * Constructor to initialize WebClient with connection pooling and timeout.
      */
     public GtfsRtIngestionService() {
-        ConnectionProvider provider = ConnectionProvider.builder("gtfsConnectionProvider")
+        this.connectionProvider = ConnectionProvider.builder("gtfsConnectionProvider")
                 .maxConnections(50)
                 .maxIdleTime(Duration.ofSeconds(20))
                 .maxLifeTime(Duration.ofSeconds(60))
                 .pendingAcquireTimeout(Duration.ofSeconds(10))
                 .build();
 
-        // Create ExchangeStrategies with custom buffer size
-        ExchangeStrategies strategies = ExchangeStrategies.builder()
-            .codecs(configurer -> configurer.defaultCodecs().maxInMemorySize(16 * 1024 * 1024)) // 16MB
-            .build();
-
+        // The feed body is streamed as DataBuffers, so no in-memory codec size limit applies
         this.webClient = WebClient.builder()
                 .clientConnector(new ReactorClientHttpConnector(
-                        HttpClient.create(provider)
+                        HttpClient.create(connectionProvider)
                                 .responseTimeout(Duration.ofSeconds(10))
                                 .option(ChannelOption.SO_KEEPALIVE, true)))
-                .exchangeStrategies(strategies)  //apply the strategies explicitly
                 .build();
     }
 
 
     /**
      * Starts periodic GTFS-RT ingestion after service initialization.
+     * Each feed polls on its own loop: cycles of one feed run one after another, the delay before each
+     * derived from the feed's observed update cadence, starting at 30 seconds. Cycles of all feeds share
+     * {@code gtfs-rt.workers} workers; a cycle still waiting for a worker when the next one would be due is
+     * skipped, so a slow feed or store delays no one by more than one cycle. A failed cycle is logged and
+     * does not stop ingestion. With {@code gtfs-rt.polling=false} the feeds are set up but not polled, e.g.
+     * for an instance that only replays archived snapshots.
      */
     @PostConstruct
     public void startIngestion() {
-        Flux.interval(Duration.ofSeconds(30))
-            .flatMap(i -> fetchGtfsRtData())
+        workers = new CycleWorkers(feedProperties.workers());
+        List<GtfsRtFeedProperties.Feed> configured = new ArrayList<>(feedProperties.feeds());
+        if (configured.isEmpty()) {
+            configured.add(new GtfsRtFeedProperties.Feed("mta-bustime", GtfsRtFeedProperties.Type.VEHICLE_POSITIONS,
+                    apiUrl, null, List.of("B"), null, null));
+            if (!tripUpdatesUrl.isEmpty()) {
+                configured.add(new GtfsRtFeedProperties.Feed("mta-bustime-trip-updates",
+                        GtfsRtFeedProperties.Type.TRIP_UPDATES, tripUpdatesUrl, null, List.of("B"), null, null));
+            }
+        }
+        for (GtfsRtFeedProperties.Feed feed : configured) {
+            feeds.add(new FeedPoller(feed.name() != null ? feed.name() : feed.url(), feed.type(), feed.url(),
+                    feed.apiKey() != null ? feed.apiKey() : apiKey, feed.routePrefixes(),
+                    Duration.ofSeconds(feed.minPollSeconds() != null ? feed.minPollSeconds() : minPollSeconds),
+                    Duration.ofSeconds(feed.maxPollSeconds() != null ? feed.maxPollSeconds() : maxPollSeconds),
+                    heartbeatSeconds, meterRegistry));
+        }
+        if (!feedProperties.polling()) {
+            logger.info("GTFS-RT polling is disabled, {} feeds configured", feeds.size());
+            return;
+        }
+        for (FeedPoller feed : feeds) {
+            polls.add(poll(feed));
+            logger.info("Started adaptive GTFS-RT ingestion of {} feed {} ({})", feed.type(), feed.name(), feed.url());
+        }
+        logger.info("Polling {} GTFS-RT feeds with {} workers", feeds.size(), feedProperties.workers());
+    }
+
+    /**
+     * Stops polling: cancels the feed loops, then the cycle workers, and closes the feed connections.
+     * A cycle still running is cancelled.
+     */
+    @PreDestroy
+    public void stopIngestion() {
+        polls.forEach(Disposable::dispose);
+        polls.clear();
+        if (workers != null) {
+            workers.dispose();
+        }
+        connectionProvider.dispose();
+    }
+
+    /**
+     * @return Statistics of every polled feed.
+     */
+    public List<FeedStatus> feedStatus() {
+        return feeds.stream().map(FeedPoller::status).toList();
+    }
+
+    /**
+     * @return The poller that replays archived snapshots of a feed, with its last processed snapshot forgotten.
+     * @throws IllegalArgumentException If no feed has that name.
+     */
+    FeedPoller replayPoller(String feedName) {
+        FeedPoller feed = feeds.stream()
+            .filter(candidate -> candidate.name().equals(feedName))
+            .findFirst()
+            .orElseThrow(() -> new IllegalArgumentException("Unknown GTFS-RT feed " + feedName));
+        FeedPoller replay = replays.computeIfAbsent(feedName, name -> feed.forReplay(meterRegistry));
+        replay.rewind();
+        return replay;
+    }
+
+    /**
+     * Polling loop of one feed. A cycle is due after the cadence delay and must start before the following
+     * one would be due, or it is skipped.
+     * @return The subscription of the loop, disposed on shutdown.
+     */
+    private Disposable poll(FeedPoller feed) {
+        return Flux.defer(() -> {
+                Duration delay = feed.nextDelay(System.currentTimeMillis());
+                return Mono.delay(delay).then(Mono.defer(() -> {
+                    long due = System.currentTimeMillis();
+                    return workers.submit(() -> runCycle(feed, due), due + delay.toMillis());
+                }));
+            })
+            .doOnNext(ran -> {
+                if (!ran) {
+                    feed.onSkipped();
+                    logger.warn("Skipped late GTFS-RT cycle of feed {}: no worker free before the next was due", feed.name());
+                }
+            })
+            .repeat()
             .subscribe(
-                vehiclePosition -> logger.info("Stored vehicle position: {}", vehiclePosition.getVehicleId()),
-                error -> logger.error("Error during GTFS-RT ingestion: {}", error.getMessage(), error)
+                ran -> { },
+                error -> logger.error("Error during GTFS-RT ingestion of feed {}: {}", feed.name(), error.getMessage(), error)
             );
-        logger.info("Started periodic GTFS-RT ingestion (every 30 seconds)");
     }
 
     /**
-     * Fetches GTFS-RT data from MTA BusTime API as a stream and processes vehicle positions.
+     * One poll cycle of a feed. The positions of a completed vehicle position cycle are published to the live
+     * vehicle snapshot in one swap. Never fails; failures are counted in the feed's statistics.
+     * @param due When the cycle became due, in epoch milliseconds.
+     */
+    private Mono<Void> runCycle(FeedPoller feed, long due) {
+        long started = System.currentTimeMillis();
+        feed.onStarted(started - due);
+        Mono<?> cycle = feed.type() == GtfsRtFeedProperties.Type.TRIP_UPDATES
+            ? applyTripUpdates(fetchEntities(feed), feed)
+            : storeVehiclePositions(fetchEntities(feed), feed)
+                .collectList()
+                .doOnNext(liveVehicleService::update)
+                .doOnNext(positions -> deviationService.expire());
+        return complete(feed, cycle.doOnSuccess(result -> tripStateService.expire()), started);
+    }
+
+    /**
+     * Feeds one archived snapshot through the pipeline of its feed as a cycle of a replay poller: its
+     * positions are enriched, stored and published, or its trip updates applied, like those of a live cycle.
+     * They are not published to the live vehicle snapshot, which only holds recent positions, and schedule
+     * deviations are not expired, as replayed observations are older than the expiry.
+     * Never fails; failures are counted in the replay poller's statistics.
+     */
+    Mono<Void> replayCycle(FeedPoller feed, byte[] snapshot) {
+        return Mono.defer(() -> {
+            long started = System.currentTimeMillis();
+            feed.onStarted(0);
+            Flux<FeedEntity> entities = GtfsRtFeedDecoder.decode(new ByteArrayInputStream(snapshot),
+                    feed::isNewSnapshot, feed::acceptsRoute, feed.metrics()::decoded)
+                .subscribeOn(Schedulers.boundedElastic())
+                .doOnError(error -> logger.error("Failed to parse archived snapshot of feed {}: {}", feed.name(),
+                    error.getMessage(), error));
+            Mono<?> cycle = feed.type() == GtfsRtFeedProperties.Type.TRIP_UPDATES
+                ? applyTripUpdates(entities, feed)
+                : storeVehiclePositions(entities, feed).then();
+            return complete(feed, cycle, started);
+        });
+    }
+
+    /**
+     * Records the outcome of a cycle and logs it.
+     */
+    private Mono<Void> complete(FeedPoller feed, Mono<?> cycle, long started) {
+        return cycle
+            .doOnSuccess(result -> feed.onCompleted(started, System.currentTimeMillis()))
+            .doOnSuccess(result -> logCycle(feed, System.currentTimeMillis() - started))
+            .doOnError(error -> feed.onFailed(started, System.currentTimeMillis()))
+            .onErrorResume(error -> Mono.empty())
+            .then();
+    }
+
+    /**
+     * Logs what a cycle did at info, or at debug if the feed had no new snapshot.
+     */
+    private void logCycle(FeedPoller feed, long cycleMillis) {
+        FeedMetrics metrics = feed.metrics();
+        if (metrics.entities() == 0) {
+            logger.debug("Feed {}: no new snapshot ({} ms)", feed.name(), cycleMillis);
+        } else if (feed.type() == GtfsRtFeedProperties.Type.TRIP_UPDATES) {
+            logger.info("Feed {}: {} entities, {} matched, {} trip updates applied ({} KB, parsed in {} ms, cycle {} ms)",
+                feed.name(), metrics.entities(), metrics.matched(), metrics.out(), metrics.bytes() / 1024,
+                metrics.parseMillis(), cycleMillis);
+        } else {
+            logger.info("Feed {}: {} entities, {} matched, {} new, {} moved, {} heartbeats, {} unchanged suppressed, "
+                    + "{} stored ({} KB, parsed in {} ms, cycle {} ms)",
+                feed.name(), metrics.entities(), metrics.matched(),
+                metrics.changes(VehicleChangeDetector.Change.NEW), metrics.changes(VehicleChangeDetector.Change.MOVED),
+                metrics.changes(VehicleChangeDetector.Change.HEARTBEAT),
+                metrics.changes(VehicleChangeDetector.Change.UNCHANGED), metrics.out(), metrics.bytes() / 1024,
+                metrics.parseMillis(), cycleMillis);
+        }
+    }
+
+    /**
+     * Processes the entities of a vehicle position feed into vehicle positions and stores them.
+     * A feed that has not changed since the last poll has no entities, so nothing is stored.
+     * Vehicles reporting the same position, trip, stop and delay as last time are only stored as heartbeats.
      * @return Flux of VehiclePosition entities stored in Redis, PostgreSQL, and Kafka.
      */
-    private Flux<VehiclePosition> fetchGtfsRtData() {
-        return webClient
-            .get()
-            .uri(apiUrl + "?key={key}", apiKey)
-            .retrieve()
-            .bodyToMono(byte[].class) // Retrieve the entire response as a single byte array
-            .flatMapMany(bytes -> {
-                try {
-                    FeedMessage feedMessage = FeedMessage.parseFrom(bytes);
-                    logger.info("Received GTFS-RT feed with {} entities", feedMessage.getEntityCount());
-                    return processFeedMessage(feedMessage);
-                } catch (Exception e) {
-                    logger.error("Failed to parse GTFS-RT feed: {}", e.getMessage(), e);
-                    return Flux.error(e);
-                }
-            })
-            .doOnError(error -> logger.error("Failed to fetch GTFS-RT feed: {}", error.getMessage(), error))
-            .flatMap(this::storeInRedisPostgresAndKafka);
+    private Flux<VehiclePosition> storeVehiclePositions(Flux<FeedEntity> entities, FeedPoller feed) {
+        return entities
+            .transform(feedEntities -> processEntities(feedEntities, feed))
+            .transform(positions -> suppressUnchanged(positions, feed))
+            .buffer(redisBatchSize)
+            .concatMap(this::storeInRedis)
+            .transform(positionSink::persist)
+            .transform(kafkaPublisher::publish)
+            .doOnNext(position -> {
+                logger.debug("Stored in Redis, queued for PostgreSQL, and published to Kafka: key={}{}",
+                    VehiclePositionRedisWriter.KEY_PREFIX, position.getVehicleId());
+                feed.metrics().published(1, feed.snapshotTimestamp());
+            });
     }
 
     /**
-     * Processes GTFS-RT FeedMessage into VehiclePosition entities.
-     * Filters for Brooklyn routes based on route_id starting with 'B'.
-     * Estimates delay by comparing timestamp with scheduled stop_time.
-     * @param feedMessage GTFS-RT feed message.
+     * Merges the trip updates of a TripUpdates feed's routes into the trip state table.
+     * @return Mono of the number of trips updated.
+     */
+    private Mono<Long> applyTripUpdates(Flux<FeedEntity> entities, FeedPoller feed) {
+        return entities
+            .filter(entity -> entity.hasTripUpdate()
+                && feed.acceptsRoute(entity.getTripUpdate().getTrip().getRouteId()))
+            .filter(entity -> tripStateService.apply(entity.getTripUpdate()))
+            .count()
+            .doOnNext(count -> feed.metrics().published(count.intValue(), feed.snapshotTimestamp()));
+    }
+
+    /**
+     * Fetches the entities of a feed's routes as they are decoded from the response stream; entities of
+     * other routes are skipped undecoded.
+     * The request is conditional on the ETag and Last-Modified of the last response; a 304, or a feed
+     * whose header timestamp is not newer than the last processed one, yields no entities.
+     * A new snapshot is recorded in the feed archive while it is decoded.
+     */
+    private Flux<FeedEntity> fetchEntities(FeedPoller feed) {
+        boolean keyed = feed.apiKey() != null && !feed.apiKey().isEmpty();
+        String uri = keyed ? feed.url() + (feed.url().contains("?") ? "&" : "?") + "key={key}" : feed.url();
+        return Flux.defer(() -> {
+            long start = System.nanoTime();
+            return webClient
+                .get()
+                .uri(uri, keyed ? new Object[] {feed.apiKey()} : new Object[0])
+                .headers(headers -> {
+                    if (feed.etag() != null) headers.setIfNoneMatch(feed.etag());
+                    if (feed.lastModified() != null) headers.set(HttpHeaders.IF_MODIFIED_SINCE, feed.lastModified());
+                })
+                .exchangeToFlux(response -> {
+                    feed.metrics().fetched(String.valueOf(response.statusCode().value()), start);
+                    if (response.statusCode().value() == HttpStatus.NOT_MODIFIED.value()) {
+                        logger.debug("GTFS-RT feed {} not modified since last poll", feed.name());
+                        feed.onNotModified();
+                        return Flux.empty();
+                    }
+                    if (!response.statusCode().is2xxSuccessful()) {
+                        return response.<FeedEntity>createError().flux();
+                    }
+                    feed.onValidators(response.headers().asHttpHeaders().getETag(),
+                            response.headers().asHttpHeaders().getFirst(HttpHeaders.LAST_MODIFIED));
+                    FeedArchive.Recording recording = archive.record(feed.name());
+                    if (recording == null) {
+                        return GtfsRtFeedDecoder.decode(response.bodyToFlux(DataBuffer.class), feed::isNewSnapshot,
+                                feed::acceptsRoute, feed.metrics()::decoded);
+                    }
+                    return GtfsRtFeedDecoder.decode(response.bodyToFlux(DataBuffer.class), feed::isNewSnapshot,
+                            feed::acceptsRoute, recording.output(), stats -> {
+                                feed.metrics().decoded(stats);
+                                recording.commit(stats);
+                            })
+                        .doFinally(signal -> recording.close());
+                })
+                .doOnError(WebClientRequestException.class, error -> feed.metrics().fetched("error", start));
+        })
+            .doOnError(error -> logger.error("Failed to fetch or parse GTFS-RT feed {}: {}", feed.name(), error.getMessage(), error));
+    }
+
+    /**
+     * Processes GTFS-RT feed entities into VehiclePosition entities.
+     * Filters for the feed's routes based on the route_id prefix.
+     * Measures delay as the vehicle's deviation from the schedule at its progress along the trip, tracked
+     * across cycles by the {@link ScheduleDeviationService}, joins the agency's prediction for the trip from the
+     * {@link TripStateService}, and predicts delay with the in-process model of {@link DelayPredictionService}.
+     * @param entities GTFS-RT feed entities.
+     * @param feed Feed the entities were read from.
      * @return Flux of VehiclePosition entities.
      */
-    private Flux<VehiclePosition> processFeedMessage(FeedMessage feedMessage) {
-        return Flux.fromIterable(feedMessage.getEntityList())
+    Flux<VehiclePosition> processEntities(Flux<FeedEntity> entities, FeedPoller feed) {
+        return entities
             .filter(entity -> entity.hasVehicle() && entity.getVehicle().hasTrip())
-            .filter(entity -> {
-                String routeId = entity.getVehicle().getTrip().getRouteId();
-                return routeId != null && routeId.startsWith("B");
-            })
+            .filter(entity -> feed.acceptsRoute(entity.getVehicle().getTrip().getRouteId()))
             .doOnNext(entity -> logger.debug("Processing entity with routeId: {}", 
                 entity.getVehicle().getTrip().getRouteId()))
-            .flatMap(entity -> {
+            .map(entity -> {
+                long start = System.nanoTime();
                 var vehicle = entity.getVehicle();
                 var trip = vehicle.getTrip();
                 VehiclePosition position = new VehiclePosition();
@@ -157,56 +419,82 @@ public class GtfsRtIngestionService {
                 position.setLatitude(vehicle.getPosition().getLatitude());
                 position.setLongitude(vehicle.getPosition().getLongitude());
                 position.setTimestamp(LocalDateTime.ofInstant(
-                    java.time.Instant.ofEpochSecond(vehicle.getTimestamp()),
-                    ZoneId.of("America/New_York")
+                    java.time.Instant.ofEpochSecond(vehicle.getTimestamp()), ZONE
                 ));
 
-                // Estimate delay using stop_time if stop_id and trip_id are available
-                if (vehicle.hasStopId() && vehicle.hasCurrentStopSequence()) {
-                    return Mono.fromCallable(() -> stopTimeRepository.findByTripTripIdAndStopStopIdAndStopSequence(
-                            trip.getTripId(), vehicle.getStopId(), vehicle.getCurrentStopSequence()))
-                        .flatMap(stopTime -> {
-                            if (stopTime != null && stopTime.getArrivalTime() != null) {
-                                LocalDateTime scheduled = LocalDateTime.now()
-                                    .with(stopTime.getArrivalTime());
-                                long delaySeconds = ChronoUnit.SECONDS.between(
-                                    scheduled, position.getTimestamp());
-                                position.setDelay((int) delaySeconds);
-                                logger.debug("Calculated delay for vehicleId={}: {} seconds", 
-                                    vehicle.getVehicle().getId(), delaySeconds);
-                            } else {
-                                position.setDelay(0);
-                                logger.debug("No stopTime found for tripId={}, stopId={}, sequence={}", 
-                                    trip.getTripId(), vehicle.getStopId(), vehicle.getCurrentStopSequence());
-                            }
-                            return Mono.just(position);
-                        })
-                        .switchIfEmpty(Mono.just(position))
-                        .doOnError(error -> logger.error("Error querying StopTime for tripId: {}, stopId: {}, sequence: {}: {}", 
-                            trip.getTripId(), vehicle.getStopId(), vehicle.getCurrentStopSequence(), error.getMessage()));
+                // Schedule deviation from the vehicle's progress along its trip, tracked across cycles
+                Integer delay = deviationService.observe(vehicle.getVehicle().getId(), trip.getTripId(),
+                    vehicle.hasStopId() ? vehicle.getStopId() : null,
+                    vehicle.hasCurrentStopSequence() ? vehicle.getCurrentStopSequence() : ScheduleIndex.NOT_FOUND,
+                    startDate(trip.getStartDate()), position.getLatitude(), position.getLongitude(),
+                    position.getTimestamp().atZone(ZONE));
+                // Left null when neither a stop nor the shape places the vehicle, rather than reported on time
+                position.setDelay(delay);
+                if (delay != null) {
+                    logger.debug("Calculated delay for vehicleId={}: {} seconds", 
+                        vehicle.getVehicle().getId(), delay);
                 } else {
-                    position.setDelay(0);
-                    logger.debug("No stopId or stopSequence for vehicleId={}, setting delay=0", 
-                        vehicle.getVehicle().getId());
-                    return Mono.just(position);
+                    logger.debug("No scheduled time for vehicleId={} on tripId={}, delay unknown", 
+                        vehicle.getVehicle().getId(), trip.getTripId());
                 }
+                // Agency's own prediction from the TripUpdates feed, merged by trip id
+                tripStateService.join(position,
+                    vehicle.hasCurrentStopSequence() ? vehicle.getCurrentStopSequence() : ScheduleIndex.NOT_FOUND);
+                position.setPredictedDelay(predictionService.predict(position));
+                feed.metrics().enriched(start);
+                return position;
             })
             .doOnNext(position -> logger.debug("Processed vehicle position: {}", position.getVehicleId()));
     }
 
     /**
-     * Stores VehiclePosition in Redis with a 5-minute TTL, PostgreSQL, and Kafka.
-     * @param position VehiclePosition entity.
-     * @return Mono of stored VehiclePosition.
+     * Drops updates of vehicles that have not changed since they were last seen, letting one through every
+     * {@code vehicle-position.heartbeat-seconds} (0 lets every update through), and counts how the cycle's
+     * updates were classified. Vehicles that have stopped reporting are forgotten once the cycle completes.
+     */
+    private Flux<VehiclePosition> suppressUnchanged(Flux<VehiclePosition> positions, FeedPoller feed) {
+        if (heartbeatSeconds <= 0) return positions;
+        return Flux.defer(() -> {
+            long now = System.currentTimeMillis() / 1000;
+            return positions
+                .filter(position -> {
+                    // Replayed snapshots are judged at their own time
+                    VehicleChangeDetector.Change change = feed.changeDetector()
+                        .observe(position, feed.isReplay() ? feed.snapshotTimestamp() : now);
+                    feed.metrics().changed(change);
+                    return change.isEmitted();
+                })
+                .doOnComplete(() -> {
+                    int evicted = feed.changeDetector().evict(feed.isReplay() ? feed.snapshotTimestamp() : now);
+                    if (evicted > 0) {
+                        logger.debug("Forgot {} vehicles no longer reported by feed {}", evicted, feed.name());
+                    }
+                });
+        });
+    }
+
+    /**
+     * @return The GTFS-RT start_date (YYYYMMDD) of a trip, or null if absent or malformed.
+     */
+    static LocalDate startDate(String value) {
+        if (value == null || value.isEmpty()) return null;
+        try {
+            return LocalDate.parse(value, DateTimeFormatter.BASIC_ISO_DATE);
+        } catch (DateTimeParseException e) {
+            logger.debug("Ignoring malformed trip start_date {}", value);
+            return null;
+        }
+    }
+
+    /**
+     * Stores a batch of VehiclePositions in Redis with a 5-minute TTL in a single round-trip.
+     * @param positions Batch of VehiclePosition entities from one feed cycle.
+     * @return Flux of the same positions once written.
      */
-    private Mono<VehiclePosition> storeInRedisPostgresAndKafka(VehiclePosition position) {
-        String key = "vehicle_position:" + position.getVehicleId();
-        return redisTemplate.opsForValue()
-            .set(key, position, Duration.ofMinutes(5))
-            .then(Mono.fromCallable(() -> vehiclePositionRepository.save(position)))
-            .doOnSuccess(p -> kafkaTemplate.send(TOPIC, position.getVehicleId(), position))
-            .thenReturn(position)
-            .doOnSuccess(p -> logger.info("Stored in Redis, PostgreSQL, and Kafka: key={}", key))
-            .doOnError(error -> logger.error("Error storing in Redis/PostgreSQL/Kafka for key {}: {}", key, error.getMessage()));
+    private Flux<VehiclePosition> storeInRedis(List<VehiclePosition> positions) {
+        return redisWriter.writeAll(positions, REDIS_TTL)
+            .doOnSuccess(count -> logger.debug("Stored {} vehicle positions in Redis", count))
+            .doOnError(error -> logger.error("Error storing {} vehicle positions in Redis: {}", positions.size(), error.getMessage()))
+            .thenMany(Flux.fromIterable(positions));
     }
 }
\ No newline at end of file
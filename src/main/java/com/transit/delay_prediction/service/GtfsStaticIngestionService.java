@@ -1,237 +1,446 @@
 package com.transit.delay_prediction.service;
 
-import com.transit.delay_prediction.entity.*;
-import com.transit.delay_prediction.repository.*;
-import org.onebusaway.gtfs.impl.GtfsRelationalDaoImpl;
-import org.onebusaway.gtfs.model.*;
-import org.onebusaway.gtfs.serialization.GtfsReader;
+import com.transit.delay_prediction.entity.GtfsFileFingerprint;
+import com.transit.delay_prediction.repository.GtfsFileFingerprintRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Service for ingesting GTFS static data into the PostgreSQL database.
- * Each entity type (agency, route, stop, etc.) is processed in a separate transaction
- * to ensure partial data is saved even if one section fails.
+ * Every (feed, table) pair is a stage that streams its GTFS file row by row through
+ * {@link GtfsCsvReader} into {@link GtfsBulkLoader}, committing every
+ * {@code gtfs.static.ingestion.commit-rows} rows, so memory stays bounded and rows become visible
+ * while large files are still being read. Stages run on a bounded pool as soon as the tables they
+ * reference ({@link GtfsTable#getDependencies()}) are loaded for every feed, so independent tables
+ * and separate borough feeds load concurrently. A later release can be applied as a delta with
+ * {@link #reloadGtfsStaticData(List)}, using the file fingerprints recorded by each load.
  */
 @Service
 public class GtfsStaticIngestionService {
     private static final Logger logger = LoggerFactory.getLogger(GtfsStaticIngestionService.class);
 
     @Autowired
-    private AgencyRepository agencyRepository;
-    @Autowired
-    private CalendarRepository calendarRepository;
-    @Autowired
-    private CalendarDateRepository calendarDateRepository;
-    @Autowired
-    private RouteRepository routeRepository;
-    @Autowired
-    private ShapeRepository shapeRepository;
-    @Autowired
-    private StopRepository stopRepository;
-    @Autowired
-    private StopTimeRepository stopTimeRepository;
+    private GtfsBulkLoader bulkLoader;
+
     @Autowired
-    private TripRepository tripRepository;
+    private GtfsFileFingerprintRepository fingerprintRepository;
+
+    @Value("${gtfs.static.ingestion.threads:4}")
+    private int threads;
+
+    @Value("${gtfs.static.ingestion.commit-rows:500000}")
+    private int commitRows;
+
+    private volatile IngestionReport lastReport;
 
     /**
-     * Ingests GTFS static data from the specified folder path.
-     * @param gtfsFolderPath Path to the GTFS directory containing files like agency.txt, routes.txt, etc.
-     * @throws Exception If the directory is invalid or GTFS reading fails.
+     * Ingests GTFS static data from the specified folder paths, one feed per folder.
+     * @param gtfsFolderPaths Paths to GTFS directories containing files like agency.txt, routes.txt, etc.
+     * @return Per-stage timings of the run.
      */
-    public void ingestGtfsStaticData(String gtfsFolderPath) throws Exception {
-        logger.info("Starting ingestion for folder: {}", gtfsFolderPath);
-        File gtfsDir = new File(gtfsFolderPath);
-        if (!gtfsDir.exists() || !gtfsDir.isDirectory()) {
-            logger.error("Invalid GTFS directory: {}", gtfsFolderPath);
-            throw new IllegalArgumentException("Invalid GTFS directory: " + gtfsFolderPath);
+    public IngestionReport ingestGtfsStaticData(List<String> gtfsFolderPaths) {
+        logger.info("Starting ingestion of {} feeds with {} threads", gtfsFolderPaths.size(), threads);
+        IngestionReport report = new IngestionReport();
+        List<String> feeds = new ArrayList<>();
+        for (String path : gtfsFolderPaths) {
+            File gtfsDir = new File(path);
+            if (!gtfsDir.exists() || !gtfsDir.isDirectory()) {
+                logger.error("Invalid GTFS directory: {}", path);
+                report.record(gtfsDir.getName(), "read", 0, report.elapsedMillis(), true);
+            } else {
+                feeds.add(path);
+            }
         }
 
-        GtfsReader reader = new GtfsReader();
-        reader.setEntityStore(new GtfsRelationalDaoImpl());
-        reader.setInputLocation(gtfsDir);
-        logger.info("Reading GTFS files from: {}", gtfsFolderPath);
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("gtfs-static-"));
+        Map<GtfsTable, Set<String>> claimedKeys = new ConcurrentHashMap<>();
+        Map<GtfsTable, Set<String>> storedKeys = new ConcurrentHashMap<>();
         try {
-            reader.run();
-        } catch (Exception e) {
-            logger.error("Failed to read GTFS files: {}", e.getMessage(), e);
-            throw e;
-        }
-
-        GtfsRelationalDaoImpl dao = (GtfsRelationalDaoImpl) reader.getEntityStore();
-        logger.info("GTFS data loaded. Agencies: {}, Routes: {}, Stops: {}, Calendars: {}, CalendarDates: {}, Shapes: {}, Trips: {}, StopTimes: {}",
-                dao.getAllAgencies().size(), dao.getAllRoutes().size(), dao.getAllStops().size(),
-                dao.getAllCalendars().size(), dao.getAllCalendarDates().size(), dao.getAllShapePoints().size(),
-                dao.getAllTrips().size(), dao.getAllStopTimes().size());
+            Map<GtfsTable, Map<String, CompletableFuture<Long>>> stages = new EnumMap<>(GtfsTable.class);
+            for (GtfsTable table : GtfsTable.values()) {
+                Map<String, CompletableFuture<Long>> byFeed = new LinkedHashMap<>();
+                for (String path : feeds) {
+                    List<CompletableFuture<?>> waits = new ArrayList<>();
+                    for (GtfsTable dependency : table.getDependencies()) {
+                        // Own-feed failures skip this stage; other feeds only need to have finished.
+                        stages.get(dependency).forEach((otherPath, stage) ->
+                                waits.add(otherPath.equals(path) ? stage : stage.exceptionally(e -> 0L)));
+                    }
+                    byFeed.put(path, CompletableFuture.allOf(waits.toArray(CompletableFuture[]::new))
+                            .handleAsync((ignored, error) -> {
+                                if (error != null) {
+                                    report.record(feedName(path), table.getTableName(), 0, report.elapsedMillis(), true);
+                                    logger.warn("Skipping {} for {}: a dependency failed", table.getTableName(), path);
+                                    throw new CompletionException(error);
+                                }
+                                return loadStage(report, path, table, claimedKeys, storedKeys);
+                            }, executor));
+                }
+                stages.put(table, byFeed);
+            }
 
-        ingestAgencies(dao);
-        ingestRoutes(dao);
-        ingestStops(dao);
-        ingestCalendars(dao);
-        ingestCalendarDates(dao);
-        ingestShapes(dao);
-        ingestTrips(dao);
-        ingestStopTimes(dao);
+            CompletableFuture.allOf(stages.values().stream()
+                            .flatMap(byFeed -> byFeed.values().stream())
+                            .toArray(CompletableFuture[]::new))
+                    .exceptionally(e -> null)
+                    .join();
+        } finally {
+            executor.shutdownNow();
+        }
+        report.finish();
+        report.log(logger);
+        lastReport = report;
+        return report;
     }
 
+    /**
+     * Applies a new release of the GTFS static feeds as a delta against the stored tables.
+     * A table is skipped when its file is unchanged (by SHA-256) in every feed and no table it
+     * references changed. Each changed table is staged from all feeds, merged so that only new or
+     * different rows are written, and stripped of rows missing from the release. Everything runs in
+     * one transaction, so readers switch from the old version to the new one at commit.
+     * @param gtfsFolderPaths Paths to all GTFS directories making up the release.
+     * @return Whether any table changed.
+     * @throws IOException If a GTFS file cannot be read.
+     */
     @Transactional
-    private void ingestAgencies(GtfsRelationalDaoImpl dao) {
-        for (org.onebusaway.gtfs.model.Agency gtfsAgency : dao.getAllAgencies()) {
-            com.transit.delay_prediction.entity.Agency entity = new com.transit.delay_prediction.entity.Agency();
-            entity.setAgencyId(gtfsAgency.getId());
-            entity.setAgencyName(gtfsAgency.getName());
-            entity.setAgencyUrl(gtfsAgency.getUrl());
-            entity.setAgencyTimezone(gtfsAgency.getTimezone());
-            entity.setAgencyLang(gtfsAgency.getLang());
-            entity.setAgencyPhone(gtfsAgency.getPhone());
-            agencyRepository.save(entity);
-            logger.info("Saved agency: {}", gtfsAgency.getId());
+    public boolean reloadGtfsStaticData(List<String> gtfsFolderPaths) throws IOException {
+        List<GtfsFileFingerprint> fingerprints = new ArrayList<>();
+        Set<GtfsTable> changed = EnumSet.noneOf(GtfsTable.class);
+        for (GtfsTable table : GtfsTable.values()) {
+            for (String path : gtfsFolderPaths) {
+                GtfsFileFingerprint fingerprint = fingerprint(path, table, sha256(Path.of(path, table.getFileName())));
+                fingerprints.add(fingerprint);
+                boolean unchanged = fingerprintRepository.findById(fingerprint.getId())
+                        .map(stored -> fingerprint.getSha256().equals(stored.getSha256()))
+                        .orElse(false);
+                if (!unchanged) changed.add(table);
+            }
+            if (table.getDependencies().stream().anyMatch(changed::contains)) {
+                changed.add(table);
+            }
         }
-    }
+        if (changed.isEmpty()) {
+            logger.info("GTFS static files unchanged, nothing to reload");
+            return false;
+        }
+        logger.info("Reloading changed GTFS tables: {}", changed);
 
-    @Transactional
-    private void ingestRoutes(GtfsRelationalDaoImpl dao) {
-        for (org.onebusaway.gtfs.model.Route gtfsRoute : dao.getAllRoutes()) {
-            com.transit.delay_prediction.entity.Route entity = new com.transit.delay_prediction.entity.Route();
-            entity.setRouteId(gtfsRoute.getId().getId());
-            entity.setAgencyId(gtfsRoute.getAgency().getId());
-            entity.setRouteShortName(gtfsRoute.getShortName());
-            entity.setRouteLongName(gtfsRoute.getLongName());
-            entity.setRouteDesc(gtfsRoute.getDesc());
-            entity.setRouteType(gtfsRoute.getType());
-            entity.setRouteColor(gtfsRoute.getColor());
-            entity.setRouteTextColor(gtfsRoute.getTextColor());
-            routeRepository.save(entity);
-            logger.info("Saved route: {}", gtfsRoute.getId().getId());
+        Set<GtfsTable> referenced = EnumSet.noneOf(GtfsTable.class);
+        for (GtfsTable table : GtfsTable.values()) {
+            referenced.addAll(table.getDependencies());
+        }
+        Map<GtfsTable, Set<String>> keys = new EnumMap<>(GtfsTable.class);
+        Map<GtfsTable, String> summaries = new EnumMap<>(GtfsTable.class);
+        for (GtfsTable table : changed) {
+            Set<String> stagedKeys = new HashSet<>();
+            long staged = 0;
+            for (String path : gtfsFolderPaths) {
+                try (Stream<GtfsCsvReader.Row> records = GtfsCsvReader.rows(Path.of(path, table.getFileName()))) {
+                    Stream<Object[]> rows = rows(path, records, table,
+                            t -> keys.computeIfAbsent(t, bulkLoader::existingKeys));
+                    if (referenced.contains(table)) {
+                        rows = rows.peek(row -> stagedKeys.add((String) row[0]));
+                    }
+                    staged += bulkLoader.stage(table, rows);
+                }
+            }
+            if (referenced.contains(table)) {
+                keys.put(table, stagedKeys);
+            }
+            GtfsBulkLoader.MergeResult merged = bulkLoader.mergeStaged(table);
+            summaries.put(table, staged + " staged, " + merged.inserted() + " inserted, " + merged.updated() + " updated");
         }
-    }
 
-    @Transactional
-    private void ingestStops(GtfsRelationalDaoImpl dao) {
-        for (org.onebusaway.gtfs.model.Stop gtfsStop : dao.getAllStops()) {
-            com.transit.delay_prediction.entity.Stop entity = new com.transit.delay_prediction.entity.Stop();
-            entity.setStopId(gtfsStop.getId().getId());
-            entity.setStopName(gtfsStop.getName());
-            entity.setStopDesc(gtfsStop.getDesc());
-            entity.setStopLat(gtfsStop.getLat());
-            entity.setStopLon(gtfsStop.getLon());
-            entity.setZoneId(gtfsStop.getZoneId());
-            entity.setStopUrl(gtfsStop.getUrl());
-            entity.setLocationType(gtfsStop.getLocationType());
-            String parentStation = gtfsStop.getParentStation();
-            entity.setParentStation(parentStation);
-            logger.info("Processing stop: {}, parentStation: {}", gtfsStop.getId().getId(), parentStation);
-            stopRepository.save(entity);
-            logger.info("Saved stop: {}", gtfsStop.getId().getId());
+        // Delete children first so no foreign key points at a parent row being removed.
+        List<GtfsTable> childFirst = new ArrayList<>(changed);
+        Collections.reverse(childFirst);
+        for (GtfsTable table : childFirst) {
+            long deleted = bulkLoader.deleteMissing(table);
+            logger.info("Reloaded {}: {}, {} deleted", table.getTableName(), summaries.get(table), deleted);
         }
+
+        fingerprintRepository.saveAll(fingerprints);
+        return true;
     }
 
-    @Transactional
-    private void ingestCalendars(GtfsRelationalDaoImpl dao) {
-        for (org.onebusaway.gtfs.model.ServiceCalendar gtfsCalendar : dao.getAllCalendars()) {
-            com.transit.delay_prediction.entity.Calendar entity = new com.transit.delay_prediction.entity.Calendar();
-            entity.setServiceId(gtfsCalendar.getServiceId().getId());
-            entity.setMonday(gtfsCalendar.getMonday() == 1);
-            entity.setTuesday(gtfsCalendar.getTuesday() == 1);
-            entity.setWednesday(gtfsCalendar.getWednesday() == 1);
-            entity.setThursday(gtfsCalendar.getThursday() == 1);
-            entity.setFriday(gtfsCalendar.getFriday() == 1);
-            entity.setSaturday(gtfsCalendar.getSaturday() == 1);
-            entity.setSunday(gtfsCalendar.getSunday() == 1);
-            String startDateString = gtfsCalendar.getStartDate().getYear() + String.format("%02d", gtfsCalendar.getStartDate().getMonth()) + String.format("%02d", gtfsCalendar.getStartDate().getDay());
-            String endDateString = gtfsCalendar.getEndDate().getYear() + String.format("%02d", gtfsCalendar.getEndDate().getMonth()) + String.format("%02d", gtfsCalendar.getEndDate().getDay());
-            entity.setStartDate(LocalDate.parse(startDateString, DateTimeFormatter.BASIC_ISO_DATE));
-            entity.setEndDate(LocalDate.parse(endDateString, DateTimeFormatter.BASIC_ISO_DATE));
-            calendarRepository.save(entity);
-            logger.info("Saved calendar: {}", gtfsCalendar.getServiceId().getId());
-        }
+    /**
+     * Timings of the most recent ingestion run, or null if none has run.
+     */
+    public IngestionReport getLastReport() {
+        return lastReport;
     }
 
-    @Transactional
-    private void ingestCalendarDates(GtfsRelationalDaoImpl dao) {
-        for (org.onebusaway.gtfs.model.ServiceCalendarDate gtfsCalendarDate : dao.getAllCalendarDates()) {
-            com.transit.delay_prediction.entity.CalendarDate entity = new com.transit.delay_prediction.entity.CalendarDate();
-            String dateString = gtfsCalendarDate.getDate().getYear() + String.format("%02d", gtfsCalendarDate.getDate().getMonth()) + String.format("%02d", gtfsCalendarDate.getDate().getDay());
-            entity.setId(gtfsCalendarDate.getServiceId().getId() + "_" + dateString);
-            entity.setServiceId(gtfsCalendarDate.getServiceId().getId());
-            entity.setDate(LocalDate.parse(dateString, DateTimeFormatter.BASIC_ISO_DATE));
-            entity.setExceptionType(gtfsCalendarDate.getExceptionType());
-            calendarDateRepository.save(entity);
-            logger.info("Saved calendar date: {}", entity.getId());
+    private long loadStage(IngestionReport report, String path, GtfsTable table,
+                           Map<GtfsTable, Set<String>> claimedKeys, Map<GtfsTable, Set<String>> storedKeys) {
+        long start = report.elapsedMillis();
+        Path file = Path.of(path, table.getFileName());
+        logger.info("Streaming {} into {}", file, table.getTableName());
+        try (Stream<GtfsCsvReader.Row> records = GtfsCsvReader.rows(file)) {
+            String sha256 = sha256(file);
+            Stream<Object[]> rows = rows(path, records, table,
+                    t -> storedKeys.computeIfAbsent(t, bulkLoader::existingKeys));
+            if (table.isSharedAcrossFeeds()) {
+                Set<String> claimed = claimedKeys.computeIfAbsent(table, t -> ConcurrentHashMap.newKeySet());
+                rows = rows.filter(row -> claimed.add((String) row[0]));
+            }
+            long count = 0;
+            Iterator<Object[]> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                count += bulkLoader.load(table, limit(iterator, commitRows));
+            }
+            fingerprintRepository.save(fingerprint(path, table, sha256));
+            report.record(feedName(path), table.getTableName(), count, start, false);
+            return count;
+        } catch (IOException | RuntimeException e) {
+            logger.error("Failed to load {} for {}: {}", table.getTableName(), path, e.getMessage(), e);
+            report.record(feedName(path), table.getTableName(), 0, start, true);
+            throw e instanceof IOException io ? new UncheckedIOException(io) : (RuntimeException) e;
         }
     }
 
-    @Transactional
-    private void ingestShapes(GtfsRelationalDaoImpl dao) {
-        for (org.onebusaway.gtfs.model.ShapePoint gtfsShape : dao.getAllShapePoints()) {
-            com.transit.delay_prediction.entity.Shape entity = new com.transit.delay_prediction.entity.Shape();
-            entity.setId(gtfsShape.getShapeId().getId() + "_" + gtfsShape.getSequence());
-            entity.setShapeId(gtfsShape.getShapeId().getId());
-            entity.setShapePtLat(gtfsShape.getLat());
-            entity.setShapePtLon(gtfsShape.getLon());
-            entity.setShapePtSequence(gtfsShape.getSequence());
-            shapeRepository.save(entity);
-            logger.info("Saved shape: {}", entity.getId());
+    /**
+     * Maps the records of one GTFS file to row arrays.
+     * @param keys Primary keys already stored per table, for resolving foreign keys.
+     */
+    private Stream<Object[]> rows(String path, Stream<GtfsCsvReader.Row> records, GtfsTable table,
+                                  Function<GtfsTable, Set<String>> keys) throws IOException {
+        return switch (table) {
+            case AGENCY -> records.map(this::agencyRow);
+            case ROUTE -> {
+                String defaultAgencyId = defaultAgencyId(path);
+                yield records.map(record -> routeRow(record, defaultAgencyId));
+            }
+            case STOP -> records.map(this::stopRow);
+            case CALENDAR -> records.map(this::calendarRow);
+            case CALENDAR_DATE -> records.map(this::calendarDateRow);
+            case SHAPE -> records.map(this::shapeRow);
+            case TRIP -> {
+                Set<String> routeIds = keys.apply(GtfsTable.ROUTE);
+                yield records.map(record -> tripRow(record, routeIds));
+            }
+            case STOP_TIME -> {
+                Set<String> tripIds = keys.apply(GtfsTable.TRIP);
+                Set<String> stopIds = keys.apply(GtfsTable.STOP);
+                yield records.map(record -> stopTimeRow(record, tripIds, stopIds));
+            }
+        };
+    }
+
+    /**
+     * Agency referenced by routes that leave agency_id empty, as allowed for single-agency feeds.
+     */
+    private String defaultAgencyId(String path) throws IOException {
+        try (Stream<GtfsCsvReader.Row> agencies = GtfsCsvReader.rows(Path.of(path, GtfsTable.AGENCY.getFileName()))) {
+            return agencies.findFirst().map(this::agencyId).orElse(null);
         }
     }
 
-    @Transactional
-    private void ingestTrips(GtfsRelationalDaoImpl dao) {
-        for (org.onebusaway.gtfs.model.Trip gtfsTrip : dao.getAllTrips()) {
-            com.transit.delay_prediction.entity.Trip entity = new com.transit.delay_prediction.entity.Trip();
-            entity.setTripId(gtfsTrip.getId().getId());
-            entity.setRoute(routeRepository.findById(gtfsTrip.getRoute().getId().getId()).orElse(null));
-            entity.setServiceId(gtfsTrip.getServiceId().getId());
-            entity.setTripHeadsign(gtfsTrip.getTripHeadsign());
-            try {
-                entity.setDirectionId(Integer.parseInt(gtfsTrip.getDirectionId()));
-            } catch (NumberFormatException e) {
-                entity.setDirectionId(0); // Default to 0 if direction_id is invalid
-                logger.warn("Invalid direction_id for trip {}: {}", gtfsTrip.getId().getId(), gtfsTrip.getDirectionId());
+    private static <T> Stream<T> limit(Iterator<T> iterator, int maxSize) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false)
+                .limit(maxSize);
+    }
+
+    private static String feedName(String path) {
+        return new File(path).getName();
+    }
+
+    private static GtfsFileFingerprint fingerprint(String path, GtfsTable table, String sha256) {
+        GtfsFileFingerprint fingerprint = new GtfsFileFingerprint();
+        fingerprint.setId(feedName(path) + "_" + table.getFileName());
+        fingerprint.setFeed(feedName(path));
+        fingerprint.setFileName(table.getFileName());
+        fingerprint.setSha256(sha256);
+        fingerprint.setLoadedAt(LocalDateTime.now());
+        return fingerprint;
+    }
+
+    /**
+     * @return Hex SHA-256 of the file, or "missing" if it does not exist.
+     */
+    private static String sha256(Path file) throws IOException {
+        if (!Files.exists(file)) return "missing";
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
             }
-            entity.setBlockId(gtfsTrip.getBlockId());
-            entity.setShapeId(gtfsTrip.getShapeId() != null ? gtfsTrip.getShapeId().getId() : null);
-            tripRepository.save(entity);
-            logger.info("Saved trip: {}", gtfsTrip.getId().getId());
         }
+        return HexFormat.of().formatHex(digest.digest());
     }
 
-    @Transactional
-    private void ingestStopTimes(GtfsRelationalDaoImpl dao) {
-        for (org.onebusaway.gtfs.model.StopTime gtfsStopTime : dao.getAllStopTimes()) {
-            com.transit.delay_prediction.entity.StopTime entity = new com.transit.delay_prediction.entity.StopTime();
-            entity.setId(gtfsStopTime.getTrip().getId().getId() + "_" + gtfsStopTime.getStopSequence());
-            entity.setTrip(tripRepository.findById(gtfsStopTime.getTrip().getId().getId()).orElse(null));
-            entity.setArrivalTime(parseGtfsTime(gtfsStopTime.getArrivalTime()));
-            entity.setDepartureTime(parseGtfsTime(gtfsStopTime.getDepartureTime()));
-            entity.setStop(stopRepository.findById(gtfsStopTime.getStop().getId().getId()).orElse(null));
-            entity.setStopSequence(gtfsStopTime.getStopSequence());
-            entity.setPickupType(gtfsStopTime.getPickupType());
-            entity.setDropOffType(gtfsStopTime.getDropOffType());
-            entity.setTimepoint(gtfsStopTime.getTimepoint());
-            stopTimeRepository.save(entity);
-            logger.info("Saved stop time: {}", entity.getId());
-        }
+    private String agencyId(GtfsCsvReader.Row record) {
+        String agencyId = record.get("agency_id");
+        return agencyId != null ? agencyId : record.get("agency_name");
+    }
+
+    private Object[] agencyRow(GtfsCsvReader.Row record) {
+        return new Object[] {
+                agencyId(record), record.get("agency_name"), record.get("agency_url"),
+                record.get("agency_timezone"), record.get("agency_lang"), record.get("agency_phone")
+        };
+    }
+
+    private Object[] routeRow(GtfsCsvReader.Row record, String defaultAgencyId) {
+        String agencyId = record.get("agency_id");
+        return new Object[] {
+                record.get("route_id"), agencyId != null ? agencyId : defaultAgencyId,
+                record.get("route_short_name"), record.get("route_long_name"), record.get("route_desc"),
+                record.getInt("route_type", 3), record.get("route_color"), record.get("route_text_color")
+        };
+    }
+
+    private Object[] stopRow(GtfsCsvReader.Row record) {
+        return new Object[] {
+                record.get("stop_id"), record.get("stop_name"), record.get("stop_desc"),
+                record.getDouble("stop_lat"), record.getDouble("stop_lon"), record.get("zone_id"),
+                record.get("stop_url"), record.getInt("location_type", 0), record.get("parent_station")
+        };
+    }
+
+    private Object[] calendarRow(GtfsCsvReader.Row record) {
+        return new Object[] {
+                record.get("service_id"),
+                record.getInt("monday", 0) == 1, record.getInt("tuesday", 0) == 1,
+                record.getInt("wednesday", 0) == 1, record.getInt("thursday", 0) == 1,
+                record.getInt("friday", 0) == 1, record.getInt("saturday", 0) == 1,
+                record.getInt("sunday", 0) == 1,
+                parseGtfsDate(record.get("start_date")), parseGtfsDate(record.get("end_date"))
+        };
     }
 
-    private LocalTime parseGtfsTime(int seconds) {
-        if (seconds < 0) return null;
-        int hours = seconds / 3600;
-        int minutes = (seconds % 3600) / 60;
-        int secs = seconds % 60;
+    private Object[] calendarDateRow(GtfsCsvReader.Row record) {
+        String serviceId = record.get("service_id");
+        String date = record.get("date");
+        return new Object[] {
+                serviceId + "_" + date, serviceId, parseGtfsDate(date), record.getInt("exception_type", 0)
+        };
+    }
+
+    private Object[] shapeRow(GtfsCsvReader.Row record) {
+        String shapeId = record.get("shape_id");
+        int sequence = record.getInt("shape_pt_sequence", 0);
+        return new Object[] {
+                shapeId + "_" + sequence, shapeId,
+                record.getDouble("shape_pt_lat"), record.getDouble("shape_pt_lon"), sequence
+        };
+    }
+
+    private Object[] tripRow(GtfsCsvReader.Row record, Set<String> routeIds) {
+        String tripId = record.get("trip_id");
+        String routeId = record.get("route_id");
+        int directionId;
         try {
-            return LocalTime.of(hours, minutes, secs);
-        } catch (Exception e) {
-            logger.warn("Invalid time format for seconds: {}", seconds);
-            return null;
+            directionId = Integer.parseInt(record.get("direction_id"));
+        } catch (NumberFormatException e) {
+            directionId = 0; // Default to 0 if direction_id is invalid
+            logger.warn("Invalid direction_id for trip {}: {}", tripId, record.get("direction_id"));
         }
+        return new Object[] {
+                tripId, routeIds.contains(routeId) ? routeId : null,
+                record.get("service_id"), record.get("trip_headsign"), directionId,
+                record.get("block_id"), record.get("shape_id")
+        };
+    }
+
+    private Object[] stopTimeRow(GtfsCsvReader.Row record, Set<String> tripIds, Set<String> stopIds) {
+        String tripId = record.get("trip_id");
+        String stopId = record.get("stop_id");
+        int arrival = parseGtfsSeconds(record.get("arrival_time"));
+        int departure = parseGtfsSeconds(record.get("departure_time"));
+        int stopSequence = record.getInt("stop_sequence", 0);
+        return new Object[] {
+                tripId + "_" + stopSequence,
+                tripIds.contains(tripId) ? tripId : null,
+                parseGtfsTime(arrival),
+                parseGtfsTime(departure),
+                arrival >= 0 ? arrival : null,
+                departure >= 0 ? departure : null,
+                stopIds.contains(stopId) ? stopId : null,
+                stopSequence, record.getInt("pickup_type", 0), record.getInt("drop_off_type", 0),
+                record.getInt("timepoint", arrival >= 0 ? 1 : 0)
+        };
+    }
+
+    static LocalDate parseGtfsDate(String value) {
+        return value != null ? LocalDate.parse(value, DateTimeFormatter.BASIC_ISO_DATE) : null;
+    }
+
+    /**
+     * Parses a GTFS H:MM:SS time, which may exceed 24:00:00, into seconds since service-day start.
+     * @return Seconds, or -1 if the value is empty or malformed.
+     */
+    static int parseGtfsSeconds(String value) {
+        if (value == null) return -1;
+        int seconds = 0;
+        int part = 0;
+        int parts = 1;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ':') {
+                seconds = seconds * 60 + part;
+                part = 0;
+                parts++;
+            } else if (c >= '0' && c <= '9') {
+                part = part * 10 + (c - '0');
+            } else {
+                return -1;
+            }
+        }
+        return parts == 3 ? seconds * 60 + part : -1;
+    }
+
+    /**
+     * Time of day for the arrival_time and departure_time columns. Times of 24:00:00 or later have no
+     * time of day and are null there; arrival_seconds and departure_seconds keep every time.
+     */
+    static LocalTime parseGtfsTime(int seconds) {
+        return seconds >= 0 && seconds < 86_400 ? LocalTime.ofSecondOfDay(seconds) : null;
     }
 }
\ No newline at end of file
@@ -0,0 +1,69 @@
+package com.transit.delay_prediction.service;
+
+import java.util.List;
+
+/**
+ * Physical layout of the GTFS static tables as mapped by the JPA entities, and the feed file each is read from.
+ * Column order here is the order in which row arrays are passed to {@link GtfsBulkLoader}.
+ * The primary key is always the first column. Constants are declared in a valid load order:
+ * every table follows the tables it references.
+ */
+public enum GtfsTable {
+    AGENCY("agency.txt", "agency", "agency_id",
+            "agency_id", "agency_name", "agency_url", "agency_timezone", "agency_lang", "agency_phone"),
+    ROUTE("routes.txt", "route", "route_id",
+            "route_id", "agency_id", "route_short_name", "route_long_name", "route_desc",
+            "route_type", "route_color", "route_text_color"),
+    STOP("stops.txt", "stop", "stop_id",
+            "stop_id", "stop_name", "stop_desc", "stop_lat", "stop_lon", "zone_id",
+            "stop_url", "location_type", "parent_station"),
+    CALENDAR("calendar.txt", "calendar", "service_id",
+            "service_id", "monday", "tuesday", "wednesday", "thursday", "friday",
+            "saturday", "sunday", "start_date", "end_date"),
+    CALENDAR_DATE("calendar_dates.txt", "calendar_date", "id",
+            "id", "service_id", "date", "exception_type"),
+    SHAPE("shapes.txt", "shape", "id",
+            "id", "shape_id", "shape_pt_lat", "shape_pt_lon", "shape_pt_sequence"),
+    TRIP("trips.txt", "trip", "trip_id",
+            "trip_id", "route_id", "service_id", "trip_headsign", "direction_id", "block_id", "shape_id"),
+    STOP_TIME("stop_times.txt", "stop_time", "id",
+            "id", "trip_id", "arrival_time", "departure_time", "arrival_seconds", "departure_seconds",
+            "stop_id", "stop_sequence", "pickup_type", "drop_off_type", "timepoint");
+
+    private final String fileName;
+    private final String tableName;
+    private final String primaryKey;
+    private final List<String> columns;
+
+    GtfsTable(String fileName, String tableName, String primaryKey, String... columns) {
+        this.fileName = fileName;
+        this.tableName = tableName;
+        this.primaryKey = primaryKey;
+        this.columns = List.of(columns);
+    }
+
+    public String getFileName() { return fileName; }
+    public String getTableName() { return tableName; }
+    public String getPrimaryKey() { return primaryKey; }
+    public List<String> getColumns() { return columns; }
+
+    /**
+     * Tables this table holds foreign keys to, which must be loaded first.
+     */
+    public List<GtfsTable> getDependencies() {
+        return switch (this) {
+            case ROUTE -> List.of(AGENCY);
+            case TRIP -> List.of(ROUTE);
+            case STOP_TIME -> List.of(TRIP, STOP);
+            default -> List.of();
+        };
+    }
+
+    /**
+     * Whether the same keys can appear in several borough feeds (e.g. shared stops and agencies).
+     * Rows of these tables are deduplicated across feeds within one ingestion run.
+     */
+    public boolean isSharedAcrossFeeds() {
+        return this != SHAPE && this != STOP_TIME;
+    }
+}
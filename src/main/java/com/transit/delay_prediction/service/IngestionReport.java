@@ -0,0 +1,69 @@
+package com.transit.delay_prediction.service;
+
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Per-stage timings of one GTFS static ingestion run.
+ * A stage is either the read of a feed or the load of one table from one feed.
+ */
+public class IngestionReport {
+
+    /**
+     * Timing of a single stage; {@code startMillis} is relative to the start of the run.
+     */
+    public record Stage(String feed, String name, long rows, long startMillis, long durationMillis, boolean failed) {
+        public long rowsPerSecond() {
+            return durationMillis > 0 ? rows * 1000 / durationMillis : rows;
+        }
+    }
+
+    private final long startNanos = System.nanoTime();
+    private final List<Stage> stages = new ArrayList<>();
+    private volatile long wallMillis;
+
+    long elapsedMillis() {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    synchronized void record(String feed, String name, long rows, long startMillis, boolean failed) {
+        stages.add(new Stage(feed, name, rows, startMillis, elapsedMillis() - startMillis, failed));
+    }
+
+    void finish() {
+        wallMillis = elapsedMillis();
+    }
+
+    public synchronized List<Stage> getStages() {
+        return List.copyOf(stages);
+    }
+
+    public long getWallMillis() {
+        return wallMillis;
+    }
+
+    /**
+     * Sum of stage durations divided by wall time, i.e. the average number of stages running at once.
+     */
+    public synchronized double getParallelism() {
+        long busy = stages.stream().mapToLong(Stage::durationMillis).sum();
+        return wallMillis > 0 ? (double) busy / wallMillis : 0;
+    }
+
+    public synchronized boolean hasFailures() {
+        return stages.stream().anyMatch(Stage::failed);
+    }
+
+    void log(Logger logger) {
+        for (Stage stage : getStages().stream().sorted(Comparator.comparingLong(Stage::startMillis)).toList()) {
+            logger.info("Stage {}/{}: {} rows, start +{} ms, {} ms ({} rows/sec){}",
+                    stage.feed(), stage.name(), stage.rows(), stage.startMillis(), stage.durationMillis(),
+                    stage.rowsPerSecond(), stage.failed() ? " FAILED" : "");
+        }
+        logger.info("GTFS static ingestion finished in {} ms across {} stages (parallelism {})",
+                wallMillis, stages.size(), String.format("%.2f", getParallelism()));
+    }
+}
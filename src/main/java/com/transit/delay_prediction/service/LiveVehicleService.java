@@ -0,0 +1,116 @@
+package com.transit.delay_prediction.service;
+
+import com.transit.delay_prediction.entity.VehiclePosition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Holds the {@link LiveVehicleSnapshot} served by the read API.
+ * After each ingestion cycle the new positions are merged over the previous snapshot, vehicles not
+ * reported for {@code live.vehicle.max-age-seconds} are dropped, and the new snapshot replaces the old
+ * one atomically; readers never see a partially applied cycle. The vehicles that changed in the cycle
+ * are then pushed to stream subscribers, each of which receives conflated deltas for its own filter.
+ */
+@Service
+public class LiveVehicleService {
+    private static final Logger logger = LoggerFactory.getLogger(LiveVehicleService.class);
+
+    private static final ZoneId FEED_ZONE = ZoneId.of("America/New_York");
+
+    @Autowired
+    private ScheduleIndexService scheduleIndexService;
+
+    @Value("${live.vehicle.max-age-seconds:300}")
+    private int maxAgeSeconds;
+
+    private volatile LiveVehicleSnapshot current = LiveVehicleSnapshot.empty();
+
+    private final Sinks.Many<List<VehicleChange>> changes = Sinks.many().multicast().directBestEffort();
+
+    public LiveVehicleSnapshot current() {
+        return current;
+    }
+
+    /**
+     * Applies the positions of one ingestion cycle. Cycles of different feeds may complete at once, so
+     * updates are serialized; readers are never blocked.
+     * @param positions Positions processed in the cycle; may be empty when the feed did not change.
+     * @return The new snapshot.
+     */
+    public synchronized LiveVehicleSnapshot update(List<VehiclePosition> positions) {
+        long start = System.nanoTime();
+        LocalDateTime oldest = LocalDateTime.now(FEED_ZONE).minusSeconds(maxAgeSeconds);
+        Map<String, VehiclePosition> live = new HashMap<>();
+        for (VehiclePosition position : current.all()) {
+            if (position.getTimestamp() != null && position.getTimestamp().isAfter(oldest)) {
+                live.put(position.getVehicleId(), position);
+            }
+        }
+        for (VehiclePosition position : positions) {
+            live.put(position.getVehicleId(), position);
+        }
+        ScheduleIndex schedule = scheduleIndexService.current();
+        LiveVehicleSnapshot previous = current;
+        LiveVehicleSnapshot snapshot = LiveVehicleSnapshot.of(live.values(), schedule::directionId);
+        current = snapshot;
+        List<VehicleChange> changed = changes(previous, snapshot, positions);
+        if (!changed.isEmpty()) {
+            changes.tryEmitNext(changed);
+        }
+        logger.debug("Published live vehicle snapshot: {} vehicles ({} updated, {} changed) in {} ms",
+                snapshot.size(), positions.size(), changed.size(), (System.nanoTime() - start) / 1_000_000);
+        return snapshot;
+    }
+
+    /**
+     * Streams the vehicles matching a filter: first all of them, then the ones that change. Deltas are
+     * conflated while the subscriber is not reading, so a slow subscriber never buffers more than one
+     * entry per vehicle.
+     */
+    public Flux<VehicleDelta> subscribe(VehicleFilter filter) {
+        return ConflatingDeltaStream.create(changes.asFlux(), this::current, filter)
+                .publishOn(Schedulers.parallel(), 1);
+    }
+
+    /**
+     * @return Vehicles that appeared, moved, changed trip, stop or delay, or stopped reporting.
+     */
+    private static List<VehicleChange> changes(LiveVehicleSnapshot previous, LiveVehicleSnapshot snapshot,
+                                               List<VehiclePosition> positions) {
+        List<VehicleChange> changed = new ArrayList<>();
+        for (VehiclePosition position : positions) {
+            VehiclePosition before = previous.vehicle(position.getVehicleId());
+            if (before == null || before != position && !samePlaceAndDelay(before, position)) {
+                changed.add(new VehicleChange(position.getVehicleId(), before, position,
+                        VehicleDelta.Update.of(position, snapshot.directionId(position.getVehicleId()))));
+            }
+        }
+        for (VehiclePosition before : previous.all()) {
+            if (snapshot.vehicle(before.getVehicleId()) == null) {
+                changed.add(new VehicleChange(before.getVehicleId(), before, null, null));
+            }
+        }
+        return changed;
+    }
+
+    private static boolean samePlaceAndDelay(VehiclePosition a, VehiclePosition b) {
+        return a.getLatitude() == b.getLatitude() && a.getLongitude() == b.getLongitude()
+                && Objects.equals(a.getDelay(), b.getDelay())
+                && Objects.equals(a.getTripId(), b.getTripId()) && Objects.equals(a.getStopId(), b.getStopId())
+                && Objects.equals(a.getPredictedDelay(), b.getPredictedDelay());
+    }
+}
@@ -0,0 +1,146 @@
+package com.transit.delay_prediction.service;
+
+import com.transit.delay_prediction.entity.VehiclePosition;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+/**
+ * Immutable view of the latest position of every live vehicle, built once per ingestion cycle.
+ * Vehicles are held in arrays with their direction and coordinates as primitives, indexed by vehicle id,
+ * by route and by a {@link VehicleGrid} over their positions, so every query reads only this snapshot.
+ * Positions must not be modified once added.
+ */
+public final class LiveVehicleSnapshot {
+    public static final int ANY_DIRECTION = -1;
+
+    private static final LiveVehicleSnapshot EMPTY = of(List.of(), tripId -> ScheduleIndex.NOT_FOUND);
+
+    private final VehiclePosition[] vehicles;
+    private final int[] direction;
+    private final double[] latitude;
+    private final double[] longitude;
+    private final Map<String, Integer> byVehicle;
+    private final Map<String, int[]> byRoute;
+    private final VehicleGrid grid;
+
+    private LiveVehicleSnapshot(VehiclePosition[] vehicles, int[] direction, Map<String, Integer> byVehicle,
+                                Map<String, int[]> byRoute) {
+        this.vehicles = vehicles;
+        this.direction = direction;
+        this.byVehicle = byVehicle;
+        this.byRoute = byRoute;
+        this.latitude = new double[vehicles.length];
+        this.longitude = new double[vehicles.length];
+        for (int i = 0; i < vehicles.length; i++) {
+            latitude[i] = vehicles[i].getLatitude();
+            longitude[i] = vehicles[i].getLongitude();
+        }
+        this.grid = new VehicleGrid(latitude, longitude);
+    }
+
+    public static LiveVehicleSnapshot empty() {
+        return EMPTY;
+    }
+
+    /**
+     * @param positions One position per vehicle.
+     * @param directionOfTrip GTFS direction_id of a trip, or a negative value if unknown.
+     */
+    public static LiveVehicleSnapshot of(Collection<VehiclePosition> positions, ToIntFunction<String> directionOfTrip) {
+        VehiclePosition[] vehicles = positions.toArray(new VehiclePosition[0]);
+        int[] direction = new int[vehicles.length];
+        Map<String, Integer> byVehicle = new HashMap<>(vehicles.length * 2);
+        Map<String, ScheduleIndex.IntList> routes = new HashMap<>();
+        for (int i = 0; i < vehicles.length; i++) {
+            VehiclePosition position = vehicles[i];
+            direction[i] = position.getTripId() != null ? directionOfTrip.applyAsInt(position.getTripId()) : ScheduleIndex.NOT_FOUND;
+            byVehicle.put(position.getVehicleId(), i);
+            if (position.getRouteId() != null) {
+                routes.computeIfAbsent(position.getRouteId(), r -> new ScheduleIndex.IntList()).add(i);
+            }
+        }
+        Map<String, int[]> byRoute = new HashMap<>(routes.size() * 2);
+        routes.forEach((route, members) -> byRoute.put(route, members.toArray()));
+        return new LiveVehicleSnapshot(vehicles, direction, byVehicle, byRoute);
+    }
+
+    public int size() {
+        return vehicles.length;
+    }
+
+    /**
+     * @return All positions in the snapshot.
+     */
+    public List<VehiclePosition> all() {
+        return Collections.unmodifiableList(Arrays.asList(vehicles));
+    }
+
+    /**
+     * @return The vehicle's latest position, or null if it is not live.
+     */
+    public VehiclePosition vehicle(String vehicleId) {
+        Integer i = byVehicle.get(vehicleId);
+        return i != null ? vehicles[i] : null;
+    }
+
+    /**
+     * @return GTFS direction_id of the vehicle's trip, or a negative value if unknown or not live.
+     */
+    public int directionId(String vehicleId) {
+        Integer i = byVehicle.get(vehicleId);
+        return i != null ? direction[i] : ScheduleIndex.NOT_FOUND;
+    }
+
+    /**
+     * @param directionId GTFS direction_id, or {@link #ANY_DIRECTION}.
+     * @return Vehicles on the route, optionally only those running in the given direction.
+     */
+    public List<VehiclePosition> route(String routeId, int directionId) {
+        int[] members = byRoute.get(routeId);
+        if (members == null) return List.of();
+        List<VehiclePosition> result = new ArrayList<>(members.length);
+        for (int i : members) {
+            if (directionId == ANY_DIRECTION || direction[i] == directionId) {
+                result.add(vehicles[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return Vehicles inside the bounding box, edges included.
+     */
+    public List<VehiclePosition> within(double minLat, double minLon, double maxLat, double maxLon) {
+        return positions(grid.within(minLat, minLon, maxLat, maxLon));
+    }
+
+    /**
+     * @param maxMetres Largest distance to return, or {@link Double#POSITIVE_INFINITY}.
+     * @return Up to k vehicles within {@code maxMetres} of the point, nearest first.
+     */
+    public List<VehiclePosition> nearest(double lat, double lon, int k, double maxMetres) {
+        return positions(grid.nearest(lat, lon, k, maxMetres));
+    }
+
+    /**
+     * @return Vehicles within {@code metres} of the point, nearest first.
+     */
+    public List<VehiclePosition> within(double lat, double lon, double metres) {
+        return positions(grid.radius(lat, lon, metres));
+    }
+
+    private List<VehiclePosition> positions(int[] indices) {
+        List<VehiclePosition> result = new ArrayList<>(indices.length);
+        for (int i : indices) {
+            result.add(vehicles[i]);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,47 @@
+package com.transit.delay_prediction.service;
+
+/**
+ * Equirectangular projection to metres around a reference latitude, used by the spatial indexes.
+ * Over a city-sized area, Euclidean distance in the projection is within a fraction of a percent of the
+ * great-circle distance, which is good enough to order and filter neighbours.
+ */
+final class LocalProjection {
+    static final double EARTH_RADIUS_METRES = 6_371_008.8;
+    private static final double METRES_PER_DEGREE = Math.toRadians(EARTH_RADIUS_METRES);
+
+    private final double metresPerDegreeLon;
+
+    LocalProjection(double referenceLatitude) {
+        this.metresPerDegreeLon = METRES_PER_DEGREE * Math.cos(Math.toRadians(referenceLatitude));
+    }
+
+    /**
+     * @return A projection around the mean of the latitudes, or the equator if there are none.
+     */
+    static LocalProjection around(double[] latitudes) {
+        double sum = 0;
+        for (double latitude : latitudes) {
+            sum += latitude;
+        }
+        return new LocalProjection(latitudes.length > 0 ? sum / latitudes.length : 0);
+    }
+
+    double x(double longitude) {
+        return longitude * metresPerDegreeLon;
+    }
+
+    double y(double latitude) {
+        return latitude * METRES_PER_DEGREE;
+    }
+
+    /**
+     * @return Great-circle (haversine) distance in metres.
+     */
+    static double distanceMetres(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_METRES * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+}
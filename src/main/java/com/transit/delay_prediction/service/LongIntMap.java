@@ -0,0 +1,102 @@
+package com.transit.delay_prediction.service;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from long to int with linear probing, for hot lookups that would
+ * otherwise box their keys. {@link Long#MIN_VALUE} cannot be used as a key.
+ */
+final class LongIntMap {
+    static final int MISSING = -1;
+    private static final long FREE = Long.MIN_VALUE;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+
+    LongIntMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2 - 1)) << 1;
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        Arrays.fill(keys, FREE);
+        values = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return The value of the key, or {@link #MISSING}.
+     */
+    int get(long key) {
+        for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+            long k = keys[slot];
+            if (k == key) return values[slot];
+            if (k == FREE) return MISSING;
+        }
+    }
+
+    void put(long key, int value) {
+        if (key == FREE) {
+            throw new IllegalArgumentException("Key " + key + " is reserved");
+        }
+        int slot = slot(key);
+        while (keys[slot] != FREE && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        if (keys[slot] == FREE) {
+            keys[slot] = key;
+            size++;
+        }
+        values[slot] = value;
+        if (size * 2 > keys.length) {
+            rehash();
+        }
+    }
+
+    /**
+     * Removes the key if present, shifting back the keys probed past its slot so lookups stay correct.
+     */
+    void remove(long key) {
+        int slot = slot(key);
+        while (keys[slot] != key) {
+            if (keys[slot] == FREE) return;
+            slot = (slot + 1) & mask;
+        }
+        size--;
+        for (int next = (slot + 1) & mask; keys[next] != FREE; next = (next + 1) & mask) {
+            int home = slot(keys[next]);
+            // A key stays put if its home slot lies cyclically in (slot, next]
+            if (slot <= next ? slot < home && home <= next : slot < home || home <= next) continue;
+            keys[slot] = keys[next];
+            values[slot] = values[next];
+            slot = next;
+        }
+        keys[slot] = FREE;
+    }
+
+    private void rehash() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(oldKeys.length * 2);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    private int slot(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key & mask;
+    }
+}
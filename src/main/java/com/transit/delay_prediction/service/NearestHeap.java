@@ -0,0 +1,83 @@
+package com.transit.delay_prediction.service;
+
+import java.util.Arrays;
+
+/**
+ * Max-heap of the closest items seen by a spatial query, keyed by squared distance. Bounded to the k
+ * nearest for k-nearest queries; with a capacity of {@link Integer#MAX_VALUE} it keeps every item
+ * offered, for radius queries.
+ */
+final class NearestHeap {
+    private final int capacity;
+    private double[] distance;
+    private int[] item;
+    private int size;
+
+    NearestHeap(int capacity) {
+        this.capacity = capacity;
+        this.distance = new double[Math.min(capacity, 16)];
+        this.item = new int[distance.length];
+    }
+
+    boolean isFull() {
+        return size == capacity;
+    }
+
+    /**
+     * @return Squared distance an item must be within to enter the heap.
+     */
+    double bound(double maxSquared) {
+        return isFull() ? Math.min(distance[0], maxSquared) : maxSquared;
+    }
+
+    void offer(int value, double squared) {
+        if (size < capacity) {
+            if (size == distance.length) {
+                int grown = (int) Math.min(capacity, distance.length * 2L);
+                distance = Arrays.copyOf(distance, grown);
+                item = Arrays.copyOf(item, grown);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (distance[parent] >= squared) break;
+                distance[i] = distance[parent];
+                item[i] = item[parent];
+                i = parent;
+            }
+            distance[i] = squared;
+            item[i] = value;
+        } else if (squared < distance[0]) {
+            siftDown(value, squared, size);
+        }
+    }
+
+    private void siftDown(int value, double squared, int length) {
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= length) break;
+            if (child + 1 < length && distance[child + 1] > distance[child]) child++;
+            if (distance[child] <= squared) break;
+            distance[i] = distance[child];
+            item[i] = item[child];
+            i = child;
+        }
+        distance[i] = squared;
+        item[i] = value;
+    }
+
+    /**
+     * Empties the heap.
+     * @return The items, nearest first.
+     */
+    int[] drainSorted() {
+        int[] sorted = new int[size];
+        for (int n = size; n > 0; n--) {
+            sorted[n - 1] = item[0];
+            siftDown(item[n - 1], distance[n - 1], n - 1);
+        }
+        size = 0;
+        return sorted;
+    }
+}
@@ -0,0 +1,80 @@
+package com.transit.delay_prediction.service;
+
+import java.time.Duration;
+
+/**
+ * Adaptive polling schedule for a feed that publishes snapshots at a roughly regular cadence.
+ * The interval between distinct {@code FeedHeader.timestamp} values is smoothed with an exponential
+ * moving average, and the next poll is timed for just after the next snapshot is expected. Polls that
+ * find nothing new back off exponentially until a new snapshot appears. Not thread-safe; used by the
+ * single sequential polling loop.
+ */
+public final class PollingCadence {
+    private static final double SMOOTHING = 0.3;
+    private static final long SLACK_MILLIS = 1_000;
+
+    private final long minMillis;
+    private final long maxMillis;
+    private final long initialMillis;
+    private long lastSnapshotSeconds;
+    private double cadenceMillis;
+    private int unchangedPolls;
+
+    /**
+     * @param min Shortest delay between polls.
+     * @param max Longest delay between polls.
+     * @param initial Delay used until the cadence has been observed.
+     */
+    public PollingCadence(Duration min, Duration max, Duration initial) {
+        if (min.compareTo(max) > 0) {
+            throw new IllegalArgumentException("Minimum polling interval " + min + " exceeds maximum " + max);
+        }
+        this.minMillis = min.toMillis();
+        this.maxMillis = max.toMillis();
+        this.initialMillis = initial.toMillis();
+    }
+
+    /**
+     * Records a poll that returned a snapshot newer than the last one.
+     * @param snapshotSeconds FeedHeader.timestamp of the new snapshot, in epoch seconds.
+     */
+    public void onSnapshot(long snapshotSeconds) {
+        if (lastSnapshotSeconds > 0 && snapshotSeconds > lastSnapshotSeconds) {
+            long observed = (snapshotSeconds - lastSnapshotSeconds) * 1000;
+            cadenceMillis = cadenceMillis == 0 ? observed : SMOOTHING * observed + (1 - SMOOTHING) * cadenceMillis;
+        }
+        lastSnapshotSeconds = snapshotSeconds;
+        unchangedPolls = 0;
+    }
+
+    /**
+     * Records a poll that returned no new snapshot (HTTP 304 or an already processed header timestamp).
+     */
+    public void onUnchanged() {
+        unchangedPolls++;
+    }
+
+    /**
+     * @param nowMillis Current time in epoch milliseconds.
+     * @return Delay before the next poll.
+     */
+    public Duration nextDelay(long nowMillis) {
+        long delay;
+        if (cadenceMillis == 0) {
+            delay = initialMillis;
+        } else {
+            long expected = lastSnapshotSeconds * 1000 + (long) cadenceMillis + SLACK_MILLIS;
+            delay = expected > nowMillis && unchangedPolls == 0
+                    ? expected - nowMillis
+                    : minMillis << Math.min(unchangedPolls, 16);
+        }
+        return Duration.ofMillis(Math.max(minMillis, Math.min(maxMillis, delay)));
+    }
+
+    /**
+     * @return Smoothed interval between snapshots, or zero until two snapshots have been seen.
+     */
+    public Duration getCadence() {
+        return Duration.ofMillis((long) cadenceMillis);
+    }
+}
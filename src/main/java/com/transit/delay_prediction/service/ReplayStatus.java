@@ -0,0 +1,27 @@
+package com.transit.delay_prediction.service;
+
+import java.time.Instant;
+
+/**
+ * Point-in-time progress of a replay of archived GTFS-RT snapshots.
+ * @param feed Name of the feed replayed.
+ * @param from Start of the replayed range.
+ * @param to End of the replayed range.
+ * @param speed Replay speed relative to the original pace of the snapshots, or 0 for as fast as possible.
+ * @param state Whether the replay is running or how it ended.
+ * @param snapshots Snapshots replayed so far.
+ * @param replayedUntil Header timestamp of the last snapshot replayed, or null before the first.
+ * @param started When the replay started.
+ * @param finished When the replay ended, or null while it runs.
+ * @param error Why the replay failed, or null.
+ */
+public record ReplayStatus(String feed, Instant from, Instant to, double speed, State state, long snapshots,
+                           Instant replayedUntil, Instant started, Instant finished, String error) {
+
+    public enum State {
+        RUNNING,
+        COMPLETED,
+        CANCELLED,
+        FAILED
+    }
+}
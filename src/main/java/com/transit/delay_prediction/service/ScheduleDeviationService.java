@@ -0,0 +1,50 @@
+package com.transit.delay_prediction.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+
+/**
+ * Measures the schedule deviation of live vehicles with a {@link TripDeviationEngine} over the current
+ * schedule and shape indexes. State is kept in memory between feed cycles; vehicles not observed for
+ * {@code live.vehicle.max-age-seconds} are forgotten at the end of each cycle.
+ */
+@Service
+public class ScheduleDeviationService {
+    private static final Logger logger = LoggerFactory.getLogger(ScheduleDeviationService.class);
+
+    @Autowired
+    private ShapeMatchService shapeMatchService;
+
+    @Value("${live.vehicle.max-age-seconds:300}")
+    private int maxAgeSeconds;
+
+    private final TripDeviationEngine engine = new TripDeviationEngine();
+
+    /**
+     * Records an observation of a vehicle on a trip.
+     * @param stopId Stop the feed reports the vehicle at or heading to, or null.
+     * @param stopSequence Sequence of that stop in the trip, or {@link ScheduleIndex#NOT_FOUND}.
+     * @param startDate Service date the feed gives for the trip, or null.
+     * @return Seconds behind schedule (negative when early), or null if the vehicle cannot be placed on its trip.
+     */
+    public synchronized Integer observe(String vehicleId, String tripId, String stopId, int stopSequence,
+                                        LocalDate startDate, double lat, double lon, ZonedDateTime observed) {
+        return engine.observe(shapeMatchService.current(), vehicleId, tripId, stopId, stopSequence, startDate,
+                lat, lon, observed);
+    }
+
+    /**
+     * Forgets vehicles not observed for the maximum age. Called by the ingestion loop after each cycle.
+     */
+    public synchronized void expire() {
+        int expired = engine.expire(Instant.now().getEpochSecond() - maxAgeSeconds);
+        logger.debug("Tracking schedule deviation of {} vehicles, {} expired", engine.size(), expired);
+    }
+}
@@ -0,0 +1,298 @@
+package com.transit.delay_prediction.service;
+
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable, read-only snapshot of scheduled stop times for real-time delay lookup.
+ * Trip and stop ids are interned to ints; the stop times of all trips are stored in parallel
+ * primitive arrays, grouped by trip and ordered by stop sequence (CSR layout), so a lookup is a
+ * hash probe plus a binary search with no allocation or database access.
+ * Times are seconds since the start of the trip's service day (noon minus 12 hours, see
+ * {@link ServiceCalendar#at}) and exceed 24 hours for trips running past midnight. Each trip carries
+ * its service, resolved against the {@link ServiceCalendar} the index is built with.
+ */
+public final class ScheduleIndex {
+    public static final int NOT_FOUND = -1;
+
+    private static final ScheduleIndex EMPTY = new Builder().build();
+
+    private final Map<String, Integer> tripIndex;
+    private final Map<String, Integer> stopIndex;
+    private final String[] tripIds;
+    private final String[] stopIds;
+    private final int[] tripStart;
+    private final int[] tripDirection;
+    private final int[] tripService;
+    private final ServiceCalendar calendar;
+    private final int[] stopSequence;
+    private final int[] stop;
+    private final int[] arrival;
+    private final int[] departure;
+
+    private ScheduleIndex(Builder builder) {
+        this.tripIndex = builder.tripIndex;
+        this.stopIndex = builder.stopIndex;
+        this.tripIds = builder.tripIds.toArray(new String[0]);
+        this.stopIds = builder.stopIds.toArray(new String[0]);
+        this.tripStart = builder.tripStart.toArray();
+        this.tripDirection = builder.tripDirection.toArray();
+        this.tripService = builder.tripService.toArray();
+        this.calendar = builder.calendar;
+        this.stopSequence = builder.stopSequence.toArray();
+        this.stop = builder.stop.toArray();
+        this.arrival = builder.arrival.toArray();
+        this.departure = builder.departure.toArray();
+    }
+
+    public static ScheduleIndex empty() {
+        return EMPTY;
+    }
+
+    public int tripCount() {
+        return tripIds.length;
+    }
+
+    public int stopTimeCount() {
+        return stopSequence.length;
+    }
+
+    /**
+     * Scheduled arrival at a stop of a trip.
+     * @return Seconds since the start of the service day, or {@link #NOT_FOUND} if the trip does not serve that stop at that sequence.
+     */
+    public int arrivalSeconds(String tripId, String stopId, int sequence) {
+        int position = find(tripId, stopId, sequence);
+        return position >= 0 ? arrival[position] : NOT_FOUND;
+    }
+
+    /**
+     * Scheduled departure from a stop of a trip.
+     * @return Seconds since the start of the service day, or {@link #NOT_FOUND} if the trip does not serve that stop at that sequence.
+     */
+    public int departureSeconds(String tripId, String stopId, int sequence) {
+        int position = find(tripId, stopId, sequence);
+        return position >= 0 ? departure[position] : NOT_FOUND;
+    }
+
+    /**
+     * @return The trip's GTFS direction_id, or {@link #NOT_FOUND} if the trip or its direction is unknown.
+     */
+    public int directionId(String tripId) {
+        Integer trip = tripIndex.get(tripId);
+        return trip != null ? tripDirection[trip] : NOT_FOUND;
+    }
+
+    public ServiceCalendar calendar() {
+        return calendar;
+    }
+
+    /**
+     * @return Whether the trip runs on the service date; trips whose service is not in the calendar are
+     *         assumed to run every day.
+     */
+    public boolean runsOn(String tripId, LocalDate serviceDate) {
+        Integer trip = tripIndex.get(tripId);
+        return trip != null && runsOn(trip, serviceDate);
+    }
+
+    private boolean runsOn(int trip, LocalDate serviceDate) {
+        return tripService[trip] == NOT_FOUND || calendar.isActive(tripService[trip], serviceDate);
+    }
+
+    /**
+     * Resolves the service date of a trip observed at a scheduled time of it. Trips running past midnight
+     * belong to the previous day's service and early trips may be observed before midnight, so the candidates
+     * are the observed date and the days either side of it; of those the trip runs on, the one that puts the
+     * scheduled time nearest the observation wins.
+     * @param scheduledSeconds Seconds since the start of the service day.
+     * @return The service date, or the observed date if the trip runs on none of the candidates.
+     */
+    public LocalDate serviceDate(String tripId, int scheduledSeconds, ZonedDateTime observed) {
+        Integer trip = tripIndex.get(tripId);
+        LocalDate observedDate = observed.toLocalDate();
+        LocalDate best = observedDate;
+        long bestGap = Long.MAX_VALUE;
+        for (int offset = -1; offset <= 1; offset++) {
+            LocalDate date = observedDate.plusDays(offset);
+            if (trip == null || !runsOn(trip, date)) continue;
+            long gap = Math.abs(ServiceCalendar.at(date, scheduledSeconds, observed.getZone()).toEpochSecond()
+                    - observed.toEpochSecond());
+            if (gap < bestGap) {
+                bestGap = gap;
+                best = date;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return Number of the trip, used by the positional accessors below, or {@link #NOT_FOUND}.
+     */
+    int trip(String tripId) {
+        Integer trip = tripIndex.get(tripId);
+        return trip != null ? trip : NOT_FOUND;
+    }
+
+    String tripId(int trip) {
+        return tripIds[trip];
+    }
+
+    /**
+     * @return Position of the trip's first stop time.
+     */
+    int firstStopTime(int trip) {
+        return tripStart[trip];
+    }
+
+    /**
+     * @return Position after the trip's last stop time.
+     */
+    int endStopTime(int trip) {
+        return tripStart[trip + 1];
+    }
+
+    String stopId(int position) {
+        return stopIds[stop[position]];
+    }
+
+    int arrival(int position) {
+        return arrival[position];
+    }
+
+    int departure(int position) {
+        return departure[position];
+    }
+
+    private int find(String tripId, String stopId, int sequence) {
+        Integer trip = tripIndex.get(tripId);
+        if (trip == null) return NOT_FOUND;
+        int position = Arrays.binarySearch(stopSequence, tripStart[trip], tripStart[trip + 1], sequence);
+        if (position < 0) return NOT_FOUND;
+        Integer stopNumber = stopIndex.get(stopId);
+        return stopNumber != null && stop[position] == stopNumber ? position : NOT_FOUND;
+    }
+
+    /**
+     * Accumulates stop times, which must arrive grouped by trip and ordered by stop sequence.
+     */
+    public static final class Builder {
+        private final Map<String, Integer> tripIndex = new HashMap<>();
+        private final Map<String, Integer> stopIndex = new HashMap<>();
+        private final List<String> tripIds = new ArrayList<>();
+        private final List<String> stopIds = new ArrayList<>();
+        private final IntList tripStart = new IntList();
+        private final IntList tripDirection = new IntList();
+        private final IntList tripService = new IntList();
+        private final ServiceCalendar calendar;
+        private final IntList stopSequence = new IntList();
+        private final IntList stop = new IntList();
+        private final IntList arrival = new IntList();
+        private final IntList departure = new IntList();
+        private String currentTrip;
+
+        public Builder() {
+            this(ServiceCalendar.empty());
+        }
+
+        /**
+         * @param calendar Calendar the service ids of trips are resolved against.
+         */
+        public Builder(ServiceCalendar calendar) {
+            this.calendar = calendar;
+            tripStart.add(0);
+        }
+
+        /**
+         * @param arrivalSeconds Seconds since the start of the service day, or {@link #NOT_FOUND} if not scheduled.
+         * @param departureSeconds Seconds since the start of the service day, or {@link #NOT_FOUND} if not scheduled.
+         */
+        public Builder add(String tripId, String stopId, int sequence, int arrivalSeconds, int departureSeconds) {
+            return add(tripId, stopId, sequence, arrivalSeconds, departureSeconds, NOT_FOUND);
+        }
+
+        /**
+         * @param directionId GTFS direction_id of the trip, taken from its first stop time, or {@link #NOT_FOUND}.
+         */
+        public Builder add(String tripId, String stopId, int sequence, int arrivalSeconds, int departureSeconds,
+                           int directionId) {
+            return add(tripId, stopId, sequence, arrivalSeconds, departureSeconds, directionId, null);
+        }
+
+        /**
+         * @param serviceId GTFS service_id of the trip, taken from its first stop time, or null if unknown.
+         */
+        public Builder add(String tripId, String stopId, int sequence, int arrivalSeconds, int departureSeconds,
+                           int directionId, String serviceId) {
+            if (!tripId.equals(currentTrip)) {
+                if (tripIndex.containsKey(tripId)) {
+                    throw new IllegalArgumentException("Stop times of trip " + tripId + " are not contiguous");
+                }
+                if (currentTrip != null) {
+                    tripStart.add(stopSequence.size());
+                }
+                tripIndex.put(tripId, tripIds.size());
+                tripIds.add(tripId);
+                tripDirection.add(directionId);
+                tripService.add(calendar.service(serviceId));
+                currentTrip = tripId;
+            } else if (sequence <= stopSequence.get(stopSequence.size() - 1)) {
+                throw new IllegalArgumentException("Stop times of trip " + tripId + " are not ordered by sequence");
+            }
+            Integer stopNumber = stopIndex.get(stopId);
+            if (stopNumber == null) {
+                stopNumber = stopIds.size();
+                stopIndex.put(stopId, stopNumber);
+                stopIds.add(stopId);
+            }
+            stopSequence.add(sequence);
+            stop.add(stopNumber);
+            arrival.add(arrivalSeconds);
+            departure.add(departureSeconds);
+            return this;
+        }
+
+        public ScheduleIndex build() {
+            if (currentTrip != null) {
+                tripStart.add(stopSequence.size());
+            }
+            return new ScheduleIndex(this);
+        }
+    }
+
+    /**
+     * Growable int array, avoiding boxed lists while the index is built.
+     */
+    static final class IntList {
+        private int[] values = new int[1024];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int get(int index) {
+            return values[index];
+        }
+
+        void set(int index, int value) {
+            values[index] = value;
+        }
+
+        int size() {
+            return size;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.transit.delay_prediction.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+
+/**
+ * Holds the current {@link ScheduleIndex} and rebuilds it from the stop_time, trip, calendar and
+ * calendar_date tables.
+ * Readers always see a complete snapshot; a rebuild swaps the reference atomically.
+ */
+@Service
+public class ScheduleIndexService {
+    private static final Logger logger = LoggerFactory.getLogger(ScheduleIndexService.class);
+
+    // Rows loaded before the seconds columns existed only have the time columns, which never exceed 24:00
+    private static final String STOP_TIMES_SQL =
+            "SELECT st.trip_id, st.stop_id, st.stop_sequence, "
+            + "COALESCE(st.arrival_seconds, CAST(EXTRACT(EPOCH FROM st.arrival_time) AS integer)) AS arrival, "
+            + "COALESCE(st.departure_seconds, CAST(EXTRACT(EPOCH FROM st.departure_time) AS integer)) AS departure, "
+            + "t.direction_id, t.service_id "
+            + "FROM stop_time st LEFT JOIN trip t ON t.trip_id = st.trip_id "
+            + "WHERE st.trip_id IS NOT NULL AND st.stop_id IS NOT NULL "
+            + "ORDER BY st.trip_id, st.stop_sequence";
+
+    private static final String CALENDAR_SQL =
+            "SELECT service_id, monday, tuesday, wednesday, thursday, friday, saturday, sunday, start_date, end_date "
+            + "FROM calendar WHERE start_date IS NOT NULL AND end_date IS NOT NULL";
+
+    private static final String CALENDAR_DATES_SQL =
+            "SELECT service_id, date, exception_type FROM calendar_date "
+            + "WHERE service_id IS NOT NULL AND date IS NOT NULL AND exception_type IN (1, 2)";
+
+    private static final String[] WEEKDAYS = {"monday", "tuesday", "wednesday", "thursday", "friday", "saturday", "sunday"};
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private volatile ScheduleIndex current = ScheduleIndex.empty();
+
+    /**
+     * @return The latest complete index; empty until the first rebuild.
+     */
+    public ScheduleIndex current() {
+        return current;
+    }
+
+    /**
+     * Reads the service calendar, then all stop times with a streaming cursor, builds a new index and
+     * publishes it.
+     * @return The new index.
+     */
+    @Transactional(readOnly = true)
+    public ScheduleIndex rebuild() {
+        long start = System.nanoTime();
+        ServiceCalendar calendar = loadCalendar();
+        JdbcTemplate cursor = new JdbcTemplate(jdbcTemplate.getDataSource());
+        cursor.setFetchSize(10_000);
+        ScheduleIndex.Builder builder = new ScheduleIndex.Builder(calendar);
+        cursor.query(STOP_TIMES_SQL, rs -> {
+            int arrival = rs.getInt("arrival");
+            if (rs.wasNull()) arrival = ScheduleIndex.NOT_FOUND;
+            int departure = rs.getInt("departure");
+            if (rs.wasNull()) departure = ScheduleIndex.NOT_FOUND;
+            int direction = rs.getInt("direction_id");
+            if (rs.wasNull()) direction = ScheduleIndex.NOT_FOUND;
+            builder.add(rs.getString("trip_id"), rs.getString("stop_id"), rs.getInt("stop_sequence"),
+                    arrival, departure, direction, rs.getString("service_id"));
+        });
+        ScheduleIndex index = builder.build();
+        current = index;
+        logger.info("Rebuilt schedule index: {} trips, {} stop times, {} services in {} ms",
+                index.tripCount(), index.stopTimeCount(), calendar.serviceCount(), (System.nanoTime() - start) / 1_000_000);
+        return index;
+    }
+
+    private ServiceCalendar loadCalendar() {
+        ServiceCalendar.Builder builder = new ServiceCalendar.Builder();
+        jdbcTemplate.query(CALENDAR_SQL, rs -> {
+            boolean[] days = new boolean[WEEKDAYS.length];
+            for (int day = 0; day < days.length; day++) {
+                days[day] = rs.getBoolean(WEEKDAYS[day]);
+            }
+            LocalDate startDate = rs.getDate("start_date").toLocalDate();
+            LocalDate endDate = rs.getDate("end_date").toLocalDate();
+            if (endDate.isBefore(startDate)) {
+                logger.warn("Skipping service {}: end_date {} is before start_date {}", rs.getString("service_id"), endDate, startDate);
+                return;
+            }
+            builder.addWeekly(rs.getString("service_id"), days, startDate, endDate);
+        });
+        jdbcTemplate.query(CALENDAR_DATES_SQL, rs -> {
+            builder.addException(rs.getString("service_id"), rs.getDate("date").toLocalDate(), rs.getInt("exception_type"));
+        });
+        return builder.build();
+    }
+}
@@ -0,0 +1,154 @@
+package com.transit.delay_prediction.service;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable index of the days each GTFS service runs, built from calendar and calendar_date rows.
+ * Service ids are interned to ints and every day between the earliest and latest date of the calendar
+ * has a bitset of its active services, so whether a service runs on a date is one bit test.
+ * Days outside that range have no active service.
+ */
+public final class ServiceCalendar {
+    private static final ServiceCalendar EMPTY = new Builder().build();
+
+    private final Map<String, Integer> serviceIndex;
+    private final long firstDay;
+    private final int days;
+    private final int words;
+    private final long[] bits;
+
+    private ServiceCalendar(Map<String, Integer> serviceIndex, long firstDay, int days, long[] bits) {
+        this.serviceIndex = serviceIndex;
+        this.firstDay = firstDay;
+        this.days = days;
+        this.words = wordsFor(serviceIndex.size());
+        this.bits = bits;
+    }
+
+    public static ServiceCalendar empty() {
+        return EMPTY;
+    }
+
+    public int serviceCount() {
+        return serviceIndex.size();
+    }
+
+    /**
+     * @return Number of the service, used by {@link #isActive(int, LocalDate)}, or {@link ScheduleIndex#NOT_FOUND}.
+     */
+    public int service(String serviceId) {
+        Integer service = serviceId != null ? serviceIndex.get(serviceId) : null;
+        return service != null ? service : ScheduleIndex.NOT_FOUND;
+    }
+
+    public boolean isActive(String serviceId, LocalDate serviceDate) {
+        int service = service(serviceId);
+        return service != ScheduleIndex.NOT_FOUND && isActive(service, serviceDate);
+    }
+
+    public boolean isActive(int service, LocalDate serviceDate) {
+        long day = serviceDate.toEpochDay() - firstDay;
+        if (day < 0 || day >= days) return false;
+        return (bits[(int) day * words + (service >>> 6)] & (1L << service)) != 0;
+    }
+
+    /**
+     * GTFS times count from "noon minus 12 hours" on the service date, which is midnight except on the
+     * days daylight saving time starts or ends.
+     * @param seconds Seconds since the start of the service day; may exceed 24 hours.
+     * @return The instant in the given zone.
+     */
+    public static ZonedDateTime at(LocalDate serviceDate, int seconds, ZoneId zone) {
+        return serviceDate.atTime(LocalTime.NOON).atZone(zone).minusHours(12).plusSeconds(seconds);
+    }
+
+    private static int wordsFor(int services) {
+        return Math.max(1, (services + 63) >>> 6);
+    }
+
+    /**
+     * Collects weekly patterns and exceptions. Exceptions are applied after all patterns, whatever the order
+     * they were added in.
+     */
+    public static final class Builder {
+        private final Map<String, Integer> serviceIndex = new HashMap<>();
+        private final List<WeeklyPattern> weekly = new ArrayList<>();
+        private final List<DateOverride> exceptions = new ArrayList<>();
+        private long firstDay = Long.MAX_VALUE;
+        private long lastDay = Long.MIN_VALUE;
+
+        private record WeeklyPattern(int service, boolean[] days, long start, long end) {
+        }
+
+        private record DateOverride(int service, long day, boolean added) {
+        }
+
+        /**
+         * @param days Whether the service runs, indexed by {@link DayOfWeek#ordinal()} (Monday first).
+         */
+        public Builder addWeekly(String serviceId, boolean[] days, LocalDate startDate, LocalDate endDate) {
+            long start = startDate.toEpochDay();
+            long end = endDate.toEpochDay();
+            if (end < start) {
+                throw new IllegalArgumentException("Service " + serviceId + " ends before it starts");
+            }
+            weekly.add(new WeeklyPattern(intern(serviceId), days.clone(), start, end));
+            extend(start);
+            extend(end);
+            return this;
+        }
+
+        /**
+         * @param exceptionType GTFS exception_type: 1 if service is added on the date, 2 if it is removed.
+         */
+        public Builder addException(String serviceId, LocalDate date, int exceptionType) {
+            if (exceptionType != 1 && exceptionType != 2) {
+                throw new IllegalArgumentException("Unknown exception_type " + exceptionType + " for service " + serviceId);
+            }
+            exceptions.add(new DateOverride(intern(serviceId), date.toEpochDay(), exceptionType == 1));
+            extend(date.toEpochDay());
+            return this;
+        }
+
+        private int intern(String serviceId) {
+            return serviceIndex.computeIfAbsent(serviceId, id -> serviceIndex.size());
+        }
+
+        private void extend(long day) {
+            firstDay = Math.min(firstDay, day);
+            lastDay = Math.max(lastDay, day);
+        }
+
+        public ServiceCalendar build() {
+            if (firstDay > lastDay) {
+                return new ServiceCalendar(serviceIndex, 0, 0, new long[0]);
+            }
+            int days = Math.toIntExact(lastDay - firstDay + 1);
+            int words = wordsFor(serviceIndex.size());
+            long[] bits = new long[Math.multiplyExact(days, words)];
+            for (WeeklyPattern pattern : weekly) {
+                int word = pattern.service() >>> 6;
+                long mask = 1L << pattern.service();
+                for (long day = pattern.start(); day <= pattern.end(); day++) {
+                    if (pattern.days()[Math.floorMod(day + 3, 7)]) { // epoch day 0 was a Thursday
+                        bits[(int) (day - firstDay) * words + word] |= mask;
+                    }
+                }
+            }
+            for (DateOverride exception : exceptions) {
+                int slot = (int) (exception.day() - firstDay) * words + (exception.service() >>> 6);
+                long mask = 1L << exception.service();
+                bits[slot] = exception.added() ? bits[slot] | mask : bits[slot] & ~mask;
+            }
+            return new ServiceCalendar(serviceIndex, firstDay, days, bits);
+        }
+    }
+}
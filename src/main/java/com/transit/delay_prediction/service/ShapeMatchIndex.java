@@ -0,0 +1,426 @@
+package com.transit.delay_prediction.service;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable map-matching index estimating where along its trip a vehicle is, and when the schedule
+ * has it there, from its GPS position alone.
+ * Shape polylines are projected to metres and stored with the cumulative distance of every vertex.
+ * Each segment is registered in the cells of a uniform grid that lie within the match distance of it,
+ * under a key combining the shape and the cell, so matching a point probes one hash slot and checks the
+ * few segments of the trip's shape near it. Every stop time of every trip carries the distance of its
+ * stop along the trip's shape, found once per distinct shape and stop pattern by projecting the stops
+ * onto the shape in sequence order; the scheduled time at the matched distance is interpolated between
+ * the surrounding stops. Built against one {@link ScheduleIndex}, whose trips and stop times it refers to.
+ */
+public final class ShapeMatchIndex {
+    public static final double DEFAULT_MAX_DISTANCE_METRES = 100;
+
+    private static final ShapeMatchIndex EMPTY = new Builder(ScheduleIndex.empty(), DEFAULT_MAX_DISTANCE_METRES).build();
+    private static final double CELL_METRES = 250;
+    private static final int CELL_BITS = 21;
+    private static final int MAX_CELL = (1 << CELL_BITS) - 1;
+
+    private final ScheduleIndex schedule;
+    private final LocalProjection projection;
+    private final double maxSquared;
+    private final double[] x;
+    private final double[] y;
+    private final double[] along;
+    private final double originX;
+    private final double originY;
+    private final double cellSize;
+    private final LongIntMap cells;
+    private final int[] bucketStart;
+    private final int[] bucketSegments;
+    private final int[] tripShape;
+    private final double[] stopDistance;
+    private final int shapeCount;
+
+    private ShapeMatchIndex(ScheduleIndex schedule, LocalProjection projection, double maxDistance, double[] x, double[] y,
+                            double[] along, double originX, double originY, double cellSize, LongIntMap cells,
+                            int[] bucketStart, int[] bucketSegments, int[] tripShape, double[] stopDistance, int shapeCount) {
+        this.schedule = schedule;
+        this.projection = projection;
+        this.maxSquared = maxDistance * maxDistance;
+        this.x = x;
+        this.y = y;
+        this.along = along;
+        this.originX = originX;
+        this.originY = originY;
+        this.cellSize = cellSize;
+        this.cells = cells;
+        this.bucketStart = bucketStart;
+        this.bucketSegments = bucketSegments;
+        this.tripShape = tripShape;
+        this.stopDistance = stopDistance;
+        this.shapeCount = shapeCount;
+    }
+
+    public static ShapeMatchIndex empty() {
+        return EMPTY;
+    }
+
+    public int shapeCount() {
+        return shapeCount;
+    }
+
+    /**
+     * @return The schedule index this index was built against.
+     */
+    public ScheduleIndex schedule() {
+        return schedule;
+    }
+
+    /**
+     * Distance along the trip's shape of the point on it nearest to a position.
+     * @return Metres from the start of the shape, or a negative value if the trip has no shape or the
+     *         position is farther than the match distance from it.
+     */
+    public double distanceAlong(String tripId, double lat, double lon) {
+        int trip = schedule.trip(tripId);
+        return trip != ScheduleIndex.NOT_FOUND ? distanceAlong(trip, lat, lon, Double.NEGATIVE_INFINITY) : -1;
+    }
+
+    /**
+     * Like {@link #distanceAlong(String, double, double)} for a trip number, preferring points of the shape
+     * no nearer its start than {@code minDistance}, so a vehicle known to have passed part of a shape that
+     * loops back on itself is matched to the later part. Falls back to the nearest point if no such point
+     * is within the match distance.
+     */
+    double distanceAlong(int trip, double lat, double lon, double minDistance) {
+        int shape = tripShape[trip];
+        if (shape < 0) return -1;
+        double qx = projection.x(lon);
+        double qy = projection.y(lat);
+        long cx = (long) Math.floor((qx - originX) / cellSize);
+        long cy = (long) Math.floor((qy - originY) / cellSize);
+        if (cx < 0 || cy < 0 || cx > MAX_CELL || cy > MAX_CELL) return -1;
+        int bucket = cells.get(key(shape, (int) cx, (int) cy));
+        if (bucket == LongIntMap.MISSING) return -1;
+        double best = maxSquared;
+        double result = -1;
+        double bestAhead = maxSquared;
+        double resultAhead = -1;
+        for (int b = bucketStart[bucket], end = bucketStart[bucket + 1]; b < end; b++) {
+            int v = bucketSegments[b];
+            double sx = x[v + 1] - x[v];
+            double sy = y[v + 1] - y[v];
+            double lengthSquared = sx * sx + sy * sy;
+            double t = lengthSquared > 0 ? ((qx - x[v]) * sx + (qy - y[v]) * sy) / lengthSquared : 0;
+            t = t < 0 ? 0 : Math.min(t, 1);
+            double dx = x[v] + t * sx - qx;
+            double dy = y[v] + t * sy - qy;
+            double squared = dx * dx + dy * dy;
+            double distance = along[v] + t * (along[v + 1] - along[v]);
+            if (squared < best) {
+                best = squared;
+                result = distance;
+            }
+            if (squared < bestAhead && distance >= minDistance) {
+                bestAhead = squared;
+                resultAhead = distance;
+            }
+        }
+        return resultAhead >= 0 ? resultAhead : result;
+    }
+
+    /**
+     * Scheduled time of a trip at the point of its shape nearest to a position, interpolated linearly in
+     * distance between the departure from the previous stop and the arrival at the next one. Before the
+     * first stop this is the first departure, after the last stop the last arrival.
+     * @return Seconds since the start of the service day, or {@link ScheduleIndex#NOT_FOUND} if the position
+     *         cannot be matched or the surrounding stops have no scheduled times.
+     */
+    public int scheduledSeconds(String tripId, double lat, double lon) {
+        int trip = schedule.trip(tripId);
+        if (trip == ScheduleIndex.NOT_FOUND) return ScheduleIndex.NOT_FOUND;
+        double distance = distanceAlong(trip, lat, lon, Double.NEGATIVE_INFINITY);
+        if (distance < 0) return ScheduleIndex.NOT_FOUND;
+        int low = schedule.firstStopTime(trip);
+        int high = schedule.endStopTime(trip);
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (stopDistance[middle] <= distance) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return scheduledAt(trip, distance, low);
+    }
+
+    /**
+     * @return Whether the trip has a shape to match positions against.
+     */
+    boolean hasShape(int trip) {
+        return tripShape[trip] >= 0;
+    }
+
+    /**
+     * @return Metres along the trip's shape of the stop of a stop time.
+     */
+    double stopDistance(int position) {
+        return stopDistance[position];
+    }
+
+    /**
+     * Scheduled time of a trip at a distance along its shape, as described for
+     * {@link #scheduledSeconds(String, double, double)}.
+     * @param next Position of the trip's first stop time farther along than {@code distance}, or its end.
+     */
+    int scheduledAt(int trip, double distance, int next) {
+        int first = schedule.firstStopTime(trip);
+        int end = schedule.endStopTime(trip);
+        if (next == first) return firstKnown(schedule.departure(first), schedule.arrival(first));
+        if (next == end) return firstKnown(schedule.arrival(end - 1), schedule.departure(end - 1));
+        int previous = next - 1;
+        if (distance == stopDistance[previous]) return firstKnown(schedule.departure(previous), schedule.arrival(previous));
+        int from = firstKnown(schedule.departure(previous), schedule.arrival(previous));
+        int to = firstKnown(schedule.arrival(next), schedule.departure(next));
+        if (from == ScheduleIndex.NOT_FOUND || to == ScheduleIndex.NOT_FOUND) return ScheduleIndex.NOT_FOUND;
+        double span = stopDistance[next] - stopDistance[previous];
+        return (int) Math.round(from + (to - from) * (distance - stopDistance[previous]) / span);
+    }
+
+    private static int firstKnown(int time, int fallback) {
+        return time != ScheduleIndex.NOT_FOUND ? time : fallback;
+    }
+
+    private static long key(int shape, int cx, int cy) {
+        return ((long) shape << (2 * CELL_BITS)) | ((long) cx << CELL_BITS) | cy;
+    }
+
+    /**
+     * Collects shape points, trip shapes and stop locations, then builds the index against a schedule.
+     * Shape points must arrive grouped by shape and ordered by sequence.
+     */
+    public static final class Builder {
+        private final ScheduleIndex schedule;
+        private final double maxDistance;
+        private final Map<String, Integer> shapeIndex = new HashMap<>();
+        private final ScheduleIndex.IntList shapeStart = new ScheduleIndex.IntList();
+        private double[] latitude = new double[1024];
+        private double[] longitude = new double[1024];
+        private int points;
+        private String currentShape;
+        private final Map<String, String> tripShapes = new HashMap<>();
+        private final Map<String, double[]> stops = new HashMap<>();
+
+        public Builder(ScheduleIndex schedule, double maxDistanceMetres) {
+            this.schedule = schedule;
+            this.maxDistance = maxDistanceMetres;
+            shapeStart.add(0);
+        }
+
+        public Builder addShapePoint(String shapeId, double lat, double lon) {
+            if (!shapeId.equals(currentShape)) {
+                if (shapeIndex.containsKey(shapeId)) {
+                    throw new IllegalArgumentException("Points of shape " + shapeId + " are not contiguous");
+                }
+                if (currentShape != null) {
+                    shapeStart.add(points);
+                }
+                shapeIndex.put(shapeId, shapeIndex.size());
+                currentShape = shapeId;
+            }
+            if (points == latitude.length) {
+                latitude = Arrays.copyOf(latitude, points * 2);
+                longitude = Arrays.copyOf(longitude, points * 2);
+            }
+            latitude[points] = lat;
+            longitude[points] = lon;
+            points++;
+            return this;
+        }
+
+        public Builder addTripShape(String tripId, String shapeId) {
+            tripShapes.put(tripId, shapeId);
+            return this;
+        }
+
+        public Builder addStop(String stopId, double lat, double lon) {
+            stops.put(stopId, new double[] {lat, lon});
+            return this;
+        }
+
+        public ShapeMatchIndex build() {
+            if (currentShape != null) {
+                shapeStart.add(points);
+            }
+            int[] start = shapeStart.toArray();
+            int shapes = start.length - 1;
+            LocalProjection projection = LocalProjection.around(Arrays.copyOf(latitude, points));
+            double[] x = new double[points];
+            double[] y = new double[points];
+            double[] along = new double[points];
+            double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+            double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+            for (int s = 0; s < shapes; s++) {
+                for (int v = start[s]; v < start[s + 1]; v++) {
+                    x[v] = projection.x(longitude[v]);
+                    y[v] = projection.y(latitude[v]);
+                    along[v] = v == start[s] ? 0 : along[v - 1] + Math.hypot(x[v] - x[v - 1], y[v] - y[v - 1]);
+                    minX = Math.min(minX, x[v]);
+                    minY = Math.min(minY, y[v]);
+                    maxX = Math.max(maxX, x[v]);
+                    maxY = Math.max(maxY, y[v]);
+                }
+            }
+            double originX = points > 0 ? minX - maxDistance : 0;
+            double originY = points > 0 ? minY - maxDistance : 0;
+            double cellSize = Math.max(CELL_METRES, maxDistance);
+            while (points > 0 && Math.max(maxX - originX, maxY - originY) + maxDistance >= cellSize * MAX_CELL) {
+                cellSize *= 2;
+            }
+
+            // Two passes over the segments: count the entries of each (shape, cell) bucket, then fill them.
+            LongIntMap cells = new LongIntMap(Math.max(16, points * 4));
+            ScheduleIndex.IntList counts = new ScheduleIndex.IntList();
+            SegmentCells segmentCells = new SegmentCells(start, x, y, originX, originY, cellSize);
+            segmentCells.forEach((key, segment) -> {
+                int bucket = cells.get(key);
+                if (bucket == LongIntMap.MISSING) {
+                    cells.put(key, counts.size());
+                    counts.add(1);
+                } else {
+                    counts.set(bucket, counts.get(bucket) + 1);
+                }
+            });
+            int[] bucketStart = new int[counts.size() + 1];
+            for (int bucket = 0; bucket < counts.size(); bucket++) {
+                bucketStart[bucket + 1] = bucketStart[bucket] + counts.get(bucket);
+            }
+            int[] filled = new int[counts.size()];
+            int[] bucketSegments = new int[bucketStart[counts.size()]];
+            segmentCells.forEach((key, segment) -> {
+                int bucket = cells.get(key);
+                bucketSegments[bucketStart[bucket] + filled[bucket]++] = segment;
+            });
+
+            int[] tripShape = new int[schedule.tripCount()];
+            double[] stopDistance = new double[schedule.stopTimeCount()];
+            resolveTrips(tripShape, stopDistance, start, x, y, along, projection);
+            return new ShapeMatchIndex(schedule, projection, maxDistance, x, y, along, originX, originY, cellSize,
+                    cells, bucketStart, bucketSegments, tripShape, stopDistance, shapes);
+        }
+
+        /**
+         * Visits the grid cells within the match distance of every segment.
+         */
+        private final class SegmentCells {
+            private final int[] start;
+            private final double[] x;
+            private final double[] y;
+            private final double originX;
+            private final double originY;
+            private final double cellSize;
+
+            SegmentCells(int[] start, double[] x, double[] y, double originX, double originY, double cellSize) {
+                this.start = start;
+                this.x = x;
+                this.y = y;
+                this.originX = originX;
+                this.originY = originY;
+                this.cellSize = cellSize;
+            }
+
+            void forEach(CellVisitor visitor) {
+                for (int s = 0; s < start.length - 1; s++) {
+                    for (int v = start[s]; v < start[s + 1] - 1; v++) {
+                        int fromX = cell(Math.min(x[v], x[v + 1]) - maxDistance - originX);
+                        int toX = cell(Math.max(x[v], x[v + 1]) + maxDistance - originX);
+                        int fromY = cell(Math.min(y[v], y[v + 1]) - maxDistance - originY);
+                        int toY = cell(Math.max(y[v], y[v + 1]) + maxDistance - originY);
+                        for (int cx = fromX; cx <= toX; cx++) {
+                            for (int cy = fromY; cy <= toY; cy++) {
+                                visitor.visit(key(s, cx, cy), v);
+                            }
+                        }
+                    }
+                }
+            }
+
+            private int cell(double offset) {
+                return Math.max(0, (int) Math.floor(offset / cellSize));
+            }
+        }
+
+        private interface CellVisitor {
+            void visit(long key, int segment);
+        }
+
+        /**
+         * Resolves the shape of every trip of the schedule and the distance of each of its stops along it.
+         * Trips whose shape is unknown or has no segments get no shape.
+         */
+        private void resolveTrips(int[] tripShape, double[] stopDistance, int[] start, double[] x, double[] y,
+                                  double[] along, LocalProjection projection) {
+            Map<String, double[]> patterns = new HashMap<>();
+            StringBuilder pattern = new StringBuilder();
+            for (int trip = 0; trip < tripShape.length; trip++) {
+                String shapeId = tripShapes.get(schedule.tripId(trip));
+                Integer shape = shapeId != null ? shapeIndex.get(shapeId) : null;
+                if (shape == null || start[shape + 1] - start[shape] < 2) {
+                    tripShape[trip] = ScheduleIndex.NOT_FOUND;
+                    continue;
+                }
+                tripShape[trip] = shape;
+                int first = schedule.firstStopTime(trip);
+                int end = schedule.endStopTime(trip);
+                pattern.setLength(0);
+                pattern.append(shape);
+                for (int p = first; p < end; p++) {
+                    pattern.append('|').append(schedule.stopId(p));
+                }
+                double[] distances = patterns.computeIfAbsent(pattern.toString(),
+                        key -> projectStops(first, end, start[shape], start[shape + 1], x, y, along, projection));
+                System.arraycopy(distances, 0, stopDistance, first, distances.length);
+            }
+        }
+
+        /**
+         * Projects the stops of a trip onto its shape in sequence order, each no earlier along the shape
+         * than the one before, so distances never decrease. A stop without a known location takes the
+         * distance of the previous stop.
+         */
+        private double[] projectStops(int first, int end, int shapeFrom, int shapeTo, double[] x, double[] y,
+                                      double[] along, LocalProjection projection) {
+            double[] distances = new double[end - first];
+            int segment = shapeFrom;
+            double previous = 0;
+            for (int p = first; p < end; p++) {
+                double[] location = stops.get(schedule.stopId(p));
+                if (location != null) {
+                    double qx = projection.x(location[1]);
+                    double qy = projection.y(location[0]);
+                    double best = Double.POSITIVE_INFINITY;
+                    int bestSegment = segment;
+                    double bestDistance = previous;
+                    for (int v = segment; v < shapeTo - 1; v++) {
+                        double sx = x[v + 1] - x[v];
+                        double sy = y[v + 1] - y[v];
+                        double lengthSquared = sx * sx + sy * sy;
+                        double t = lengthSquared > 0 ? ((qx - x[v]) * sx + (qy - y[v]) * sy) / lengthSquared : 0;
+                        t = t < 0 ? 0 : Math.min(t, 1);
+                        double dx = x[v] + t * sx - qx;
+                        double dy = y[v] + t * sy - qy;
+                        double squared = dx * dx + dy * dy;
+                        double distance = along[v] + t * (along[v + 1] - along[v]);
+                        if (squared < best && distance >= previous) {
+                            best = squared;
+                            bestSegment = v;
+                            bestDistance = distance;
+                        }
+                    }
+                    segment = bestSegment;
+                    previous = bestDistance;
+                }
+                distances[p - first] = previous;
+            }
+            return distances;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.transit.delay_prediction.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Holds the current {@link ShapeMatchIndex} and rebuilds it from the shape, trip and stop tables
+ * against a schedule index. Readers always see a complete index; a rebuild swaps the reference atomically.
+ */
+@Service
+public class ShapeMatchService {
+    private static final Logger logger = LoggerFactory.getLogger(ShapeMatchService.class);
+
+    private static final String SHAPES_SQL =
+            "SELECT shape_id, shape_pt_lat, shape_pt_lon FROM shape WHERE shape_id IS NOT NULL "
+            + "ORDER BY shape_id, shape_pt_sequence";
+    private static final String TRIP_SHAPES_SQL =
+            "SELECT trip_id, shape_id FROM trip WHERE shape_id IS NOT NULL";
+    private static final String STOPS_SQL =
+            "SELECT stop_id, stop_lat, stop_lon FROM stop";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${shape.match.max-distance-metres:" + ShapeMatchIndex.DEFAULT_MAX_DISTANCE_METRES + "}")
+    private double maxDistanceMetres;
+
+    private volatile ShapeMatchIndex current = ShapeMatchIndex.empty();
+
+    /**
+     * @return The latest complete index; empty until the first rebuild.
+     */
+    public ShapeMatchIndex current() {
+        return current;
+    }
+
+    /**
+     * Reads all shapes with a streaming cursor, builds a new index for the schedule and publishes it.
+     * @return The new index.
+     */
+    @Transactional(readOnly = true)
+    public ShapeMatchIndex rebuild(ScheduleIndex schedule) {
+        long start = System.nanoTime();
+        JdbcTemplate cursor = new JdbcTemplate(jdbcTemplate.getDataSource());
+        cursor.setFetchSize(10_000);
+        ShapeMatchIndex.Builder builder = new ShapeMatchIndex.Builder(schedule, maxDistanceMetres);
+        cursor.query(SHAPES_SQL, rs -> {
+            builder.addShapePoint(rs.getString("shape_id"), rs.getDouble("shape_pt_lat"), rs.getDouble("shape_pt_lon"));
+        });
+        cursor.query(TRIP_SHAPES_SQL, rs -> {
+            builder.addTripShape(rs.getString("trip_id"), rs.getString("shape_id"));
+        });
+        cursor.query(STOPS_SQL, rs -> {
+            builder.addStop(rs.getString("stop_id"), rs.getDouble("stop_lat"), rs.getDouble("stop_lon"));
+        });
+        ShapeMatchIndex index = builder.build();
+        current = index;
+        logger.info("Rebuilt shape match index: {} shapes for {} trips in {} ms",
+                index.shapeCount(), schedule.tripCount(), (System.nanoTime() - start) / 1_000_000);
+        return index;
+    }
+}
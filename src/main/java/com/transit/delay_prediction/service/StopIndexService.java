@@ -0,0 +1,48 @@
+package com.transit.delay_prediction.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+/**
+ * Holds the current {@link StopSpatialIndex} and rebuilds it from the stop table.
+ * Like the schedule index, it is rebuilt after static GTFS data is loaded and swapped atomically.
+ */
+@Service
+public class StopIndexService {
+    private static final Logger logger = LoggerFactory.getLogger(StopIndexService.class);
+
+    private static final String STOPS_SQL =
+            "SELECT stop_id, stop_name, stop_lat, stop_lon FROM stop "
+            + "WHERE location_type = 0 AND NOT (stop_lat = 0 AND stop_lon = 0)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private volatile StopSpatialIndex current = StopSpatialIndex.empty();
+
+    /**
+     * @return The latest complete index; empty until the first rebuild.
+     */
+    public StopSpatialIndex current() {
+        return current;
+    }
+
+    /**
+     * Reads all stops, builds a new index and publishes it.
+     * @return The new index.
+     */
+    public StopSpatialIndex rebuild() {
+        long start = System.nanoTime();
+        StopSpatialIndex.Builder builder = new StopSpatialIndex.Builder();
+        jdbcTemplate.query(STOPS_SQL, rs -> {
+            builder.add(rs.getString("stop_id"), rs.getString("stop_name"), rs.getDouble("stop_lat"), rs.getDouble("stop_lon"));
+        });
+        StopSpatialIndex index = builder.build();
+        current = index;
+        logger.info("Rebuilt stop spatial index: {} stops in {} ms", index.size(), (System.nanoTime() - start) / 1_000_000);
+        return index;
+    }
+}
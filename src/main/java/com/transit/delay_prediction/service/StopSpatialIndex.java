@@ -0,0 +1,203 @@
+package com.transit.delay_prediction.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable KD-tree over stop locations for nearest-stop and radius queries.
+ * The tree is implicit: stops are reordered so that the median of every index range is the node
+ * splitting it, alternating between the projected x and y axes, and the two halves of the range are
+ * its subtrees. There are no node objects; a query walks index ranges over primitive arrays.
+ */
+public final class StopSpatialIndex {
+    private static final StopSpatialIndex EMPTY = new Builder().build();
+
+    private final String[] stopIds;
+    private final String[] stopNames;
+    private final double[] latitude;
+    private final double[] longitude;
+    private final LocalProjection projection;
+    private final double[] x;
+    private final double[] y;
+
+    /**
+     * A stop found by a query, with its great-circle distance from the query point.
+     */
+    public record NearbyStop(String stopId, String stopName, double latitude, double longitude, double distanceMetres) {
+    }
+
+    private StopSpatialIndex(String[] stopIds, String[] stopNames, double[] latitude, double[] longitude,
+                             LocalProjection projection, double[] x, double[] y) {
+        this.stopIds = stopIds;
+        this.stopNames = stopNames;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.projection = projection;
+        this.x = x;
+        this.y = y;
+    }
+
+    public static StopSpatialIndex empty() {
+        return EMPTY;
+    }
+
+    public int size() {
+        return stopIds.length;
+    }
+
+    /**
+     * @param maxMetres Largest distance to return, or {@link Double#POSITIVE_INFINITY}.
+     * @return Up to k stops within {@code maxMetres}, nearest first.
+     */
+    public List<NearbyStop> nearest(double lat, double lon, int k, double maxMetres) {
+        NearestHeap heap = new NearestHeap(k);
+        search(0, size(), 0, projection.x(lon), projection.y(lat), heap, maxMetres * maxMetres);
+        return results(heap, lat, lon);
+    }
+
+    /**
+     * @return All stops within {@code metres}, nearest first.
+     */
+    public List<NearbyStop> within(double lat, double lon, double metres) {
+        NearestHeap heap = new NearestHeap(Integer.MAX_VALUE);
+        search(0, size(), 0, projection.x(lon), projection.y(lat), heap, metres * metres);
+        return results(heap, lat, lon);
+    }
+
+    private void search(int from, int to, int depth, double qx, double qy, NearestHeap heap, double maxSquared) {
+        while (from < to) {
+            int median = (from + to) >>> 1;
+            double dx = x[median] - qx;
+            double dy = y[median] - qy;
+            double squared = dx * dx + dy * dy;
+            if (squared <= heap.bound(maxSquared)) {
+                heap.offer(median, squared);
+            }
+            double split = (depth & 1) == 0 ? dx : dy;
+            boolean queryBelow = split > 0;
+            int nearFrom = queryBelow ? from : median + 1;
+            int nearTo = queryBelow ? median : to;
+            search(nearFrom, nearTo, depth + 1, qx, qy, heap, maxSquared);
+            if (split * split > heap.bound(maxSquared)) {
+                return;
+            }
+            from = queryBelow ? median + 1 : from;
+            to = queryBelow ? to : median;
+            depth++;
+        }
+    }
+
+    private List<NearbyStop> results(NearestHeap heap, double lat, double lon) {
+        int[] found = heap.drainSorted();
+        List<NearbyStop> result = new ArrayList<>(found.length);
+        for (int i : found) {
+            result.add(new NearbyStop(stopIds[i], stopNames[i], latitude[i], longitude[i],
+                    LocalProjection.distanceMetres(lat, lon, latitude[i], longitude[i])));
+        }
+        return result;
+    }
+
+    /**
+     * Collects stops, then builds the tree in O(n log n) with a median selection per level.
+     */
+    public static final class Builder {
+        private final List<String> stopIds = new ArrayList<>();
+        private final List<String> stopNames = new ArrayList<>();
+        private double[] latitude = new double[1024];
+        private double[] longitude = new double[1024];
+
+        public Builder add(String stopId, String stopName, double lat, double lon) {
+            int i = stopIds.size();
+            if (i == latitude.length) {
+                latitude = Arrays.copyOf(latitude, i * 2);
+                longitude = Arrays.copyOf(longitude, i * 2);
+            }
+            stopIds.add(stopId);
+            stopNames.add(stopName);
+            latitude[i] = lat;
+            longitude[i] = lon;
+            return this;
+        }
+
+        public StopSpatialIndex build() {
+            int n = stopIds.size();
+            double[] lat = Arrays.copyOf(latitude, n);
+            double[] lon = Arrays.copyOf(longitude, n);
+            LocalProjection projection = LocalProjection.around(lat);
+            double[] px = new double[n];
+            double[] py = new double[n];
+            int[] order = new int[n];
+            for (int i = 0; i < n; i++) {
+                px[i] = projection.x(lon[i]);
+                py[i] = projection.y(lat[i]);
+                order[i] = i;
+            }
+            arrange(order, 0, n, 0, px, py);
+
+            String[] ids = new String[n];
+            String[] names = new String[n];
+            double[] sortedLat = new double[n];
+            double[] sortedLon = new double[n];
+            double[] x = new double[n];
+            double[] y = new double[n];
+            for (int i = 0; i < n; i++) {
+                int s = order[i];
+                ids[i] = stopIds.get(s);
+                names[i] = stopNames.get(s);
+                sortedLat[i] = lat[s];
+                sortedLon[i] = lon[s];
+                x[i] = px[s];
+                y[i] = py[s];
+            }
+            return new StopSpatialIndex(ids, names, sortedLat, sortedLon, projection, x, y);
+        }
+
+        private static void arrange(int[] order, int from, int to, int depth, double[] px, double[] py) {
+            while (to - from > 1) {
+                int median = (from + to) >>> 1;
+                double[] key = (depth & 1) == 0 ? px : py;
+                select(order, from, to - 1, median, key);
+                arrange(order, from, median, depth + 1, px, py);
+                from = median + 1;
+                depth++;
+            }
+        }
+
+        /**
+         * Reorders {@code order[left..right]} so that position {@code k} holds the element that would be
+         * there if the range were sorted by key, with no larger key before it and no smaller key after it.
+         */
+        private static void select(int[] order, int left, int right, int k, double[] key) {
+            while (right > left) {
+                int mid = (left + right) >>> 1;
+                if (key[order[mid]] < key[order[left]]) swap(order, mid, left);
+                if (key[order[right]] < key[order[left]]) swap(order, right, left);
+                if (key[order[right]] < key[order[mid]]) swap(order, right, mid);
+                double pivot = key[order[mid]];
+                int i = left;
+                int j = right;
+                while (i <= j) {
+                    while (key[order[i]] < pivot) i++;
+                    while (key[order[j]] > pivot) j--;
+                    if (i <= j) {
+                        swap(order, i++, j--);
+                    }
+                }
+                if (k <= j) {
+                    right = j;
+                } else if (k >= i) {
+                    left = i;
+                } else {
+                    return;
+                }
+            }
+        }
+
+        private static void swap(int[] order, int a, int b) {
+            int t = order[a];
+            order[a] = order[b];
+            order[b] = t;
+        }
+    }
+}
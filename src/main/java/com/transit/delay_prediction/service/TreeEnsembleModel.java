@@ -0,0 +1,163 @@
+package com.transit.delay_prediction.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable tree-ensemble regressor evaluated from flat primitive arrays.
+ * Loaded from the "tree-ensemble-v1" JSON dump written by {@code ml-service/src/models/export_model.py}:
+ * the nodes of all trees are concatenated into parallel arrays (feature, threshold, left, right, value)
+ * with child indices rebased to absolute positions, so evaluation is a loop over array reads with no
+ * allocation. As in scikit-learn, a feature is compared as a float32 and the walk goes left when it is
+ * less than or equal to the threshold; the prediction is the mean of the tree outputs.
+ */
+public final class TreeEnsembleModel {
+    public static final String FORMAT = "tree-ensemble-v1";
+
+    private static final int LEAF = -1;
+
+    private final List<String> features;
+    private final Map<String, Map<String, Integer>> encoders;
+    private final int[] roots;
+    private final int[] feature;
+    private final double[] threshold;
+    private final int[] left;
+    private final int[] right;
+    private final double[] value;
+
+    private TreeEnsembleModel(List<String> features, Map<String, Map<String, Integer>> encoders, int[] roots,
+                              int[] feature, double[] threshold, int[] left, int[] right, double[] value) {
+        this.features = features;
+        this.encoders = encoders;
+        this.roots = roots;
+        this.feature = feature;
+        this.threshold = threshold;
+        this.left = left;
+        this.right = right;
+        this.value = value;
+    }
+
+    /**
+     * Reads a model dump.
+     * @throws IOException If the input cannot be read or is not a valid tree-ensemble-v1 dump.
+     */
+    public static TreeEnsembleModel read(InputStream in) throws IOException {
+        JsonNode root = new ObjectMapper().readTree(in);
+        if (root == null || !FORMAT.equals(root.path("format").asText())) {
+            throw new IOException("Not a " + FORMAT + " model dump");
+        }
+        if (!"mean".equals(root.path("aggregation").asText("mean"))) {
+            throw new IOException("Unsupported aggregation " + root.path("aggregation").asText());
+        }
+        List<String> features = new ArrayList<>();
+        for (JsonNode name : root.path("features")) {
+            features.add(name.asText());
+        }
+
+        Map<String, Map<String, Integer>> encoders = new HashMap<>();
+        for (Map.Entry<String, JsonNode> entry : root.path("encoders").properties()) {
+            Map<String, Integer> codes = new HashMap<>();
+            for (JsonNode label : entry.getValue()) {
+                codes.put(label.asText(), codes.size());
+            }
+            encoders.put(entry.getKey(), codes);
+        }
+
+        JsonNode trees = root.path("trees");
+        if (trees.isEmpty()) {
+            throw new IOException("Model dump has no trees");
+        }
+        int nodes = 0;
+        for (JsonNode tree : trees) {
+            nodes += tree.path("value").size();
+        }
+        int[] roots = new int[trees.size()];
+        int[] feature = new int[nodes];
+        double[] threshold = new double[nodes];
+        int[] left = new int[nodes];
+        int[] right = new int[nodes];
+        double[] value = new double[nodes];
+        int offset = 0;
+        for (int t = 0; t < trees.size(); t++) {
+            JsonNode tree = trees.get(t);
+            int size = tree.path("value").size();
+            for (String array : new String[] {"feature", "threshold", "left", "right"}) {
+                if (tree.path(array).size() != size) {
+                    throw new IOException("Tree " + t + " has " + tree.path(array).size() + " " + array
+                            + " entries for " + size + " nodes");
+                }
+            }
+            roots[t] = offset;
+            for (int n = 0; n < size; n++) {
+                int i = offset + n;
+                value[i] = tree.path("value").get(n).asDouble();
+                int l = tree.path("left").get(n).asInt();
+                if (l == LEAF) {
+                    left[i] = LEAF;
+                    right[i] = LEAF;
+                    continue;
+                }
+                int r = tree.path("right").get(n).asInt();
+                int f = tree.path("feature").get(n).asInt();
+                if (l <= n || l >= size || r <= n || r >= size) {
+                    throw new IOException("Tree " + t + " node " + n + " has invalid children " + l + ", " + r);
+                }
+                if (f < 0 || f >= features.size()) {
+                    throw new IOException("Tree " + t + " node " + n + " splits on unknown feature " + f);
+                }
+                left[i] = offset + l;
+                right[i] = offset + r;
+                feature[i] = f;
+                threshold[i] = tree.path("threshold").get(n).asDouble();
+            }
+            offset += size;
+        }
+        return new TreeEnsembleModel(List.copyOf(features), encoders, roots, feature, threshold, left, right, value);
+    }
+
+    /**
+     * @return Feature names in the order expected by {@link #predict(double[])}.
+     */
+    public List<String> getFeatures() {
+        return features;
+    }
+
+    /**
+     * Label code of a categorical value, as assigned by the exported LabelEncoder.
+     * @return The code, or -1 for an unseen value or an unknown column.
+     */
+    public int encode(String column, String label) {
+        Map<String, Integer> codes = encoders.get(column);
+        if (codes == null || label == null) return -1;
+        Integer code = codes.get(label);
+        return code != null ? code : -1;
+    }
+
+    public int treeCount() {
+        return roots.length;
+    }
+
+    /**
+     * Evaluates the ensemble.
+     * @param x Feature values in {@link #getFeatures()} order.
+     * @return Mean of the tree outputs.
+     */
+    public double predict(double[] x) {
+        double sum = 0;
+        for (int root : roots) {
+            int node = root;
+            while (left[node] != LEAF) {
+                node = (float) x[feature[node]] <= threshold[node] ? left[node] : right[node];
+            }
+            sum += value[node];
+        }
+        return sum / roots.length;
+    }
+}
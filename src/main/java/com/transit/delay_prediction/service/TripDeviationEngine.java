@@ -0,0 +1,129 @@
+package com.transit.delay_prediction.service;
+
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Continuous schedule deviation of every vehicle from the trip it reports, kept between feed cycles.
+ * Each vehicle's progress along its trip's shape only moves forward: a position is matched preferring
+ * the part of the shape at or after the last progress, and a cursor to the next stop time advances with
+ * it, so the scheduled time at the vehicle's progress is interpolated between the surrounding stops
+ * without a search. Vehicles the shape cannot place fall back to the arrival at the stop the feed
+ * reports, and vehicles nothing places keep the deviation last measured on the trip. The service day
+ * is resolved once per trip. An observation therefore costs one hash probe for the vehicle, one for
+ * the trip and one grid probe, with no database access.
+ * Not thread-safe; observations come from the single ingestion loop.
+ */
+final class TripDeviationEngine {
+    // GPS noise allowed against the direction of travel before a match is considered behind the vehicle
+    static final double BACKTRACK_METRES = 50;
+
+    private final Map<String, TripProgress> vehicles = new HashMap<>();
+
+    private static final class TripProgress {
+        final ShapeMatchIndex shapes;
+        final String tripId;
+        double distance = Double.NEGATIVE_INFINITY;
+        int next;
+        LocalDate serviceDate;
+        long serviceDayStart;
+        boolean known;
+        int deviation;
+        long observedAt = Long.MIN_VALUE;
+
+        TripProgress(ShapeMatchIndex shapes, String tripId, int trip) {
+            this.shapes = shapes;
+            this.tripId = tripId;
+            this.next = shapes.schedule().firstStopTime(trip);
+        }
+    }
+
+    /**
+     * Records an observation of a vehicle and returns its deviation from schedule.
+     * Progress is reset when the vehicle reports another trip or the indexes are rebuilt.
+     * @param shapes Current shape index; its {@link ShapeMatchIndex#schedule()} is the schedule used.
+     * @param stopId Stop the feed reports the vehicle at or heading to, or null.
+     * @param stopSequence Sequence of that stop in the trip, or {@link ScheduleIndex#NOT_FOUND}.
+     * @param startDate Service date the feed gives for the trip, or null.
+     * @return Seconds behind schedule (negative when early), or null if the vehicle's trip is unknown or
+     *         the vehicle has never been placed on it.
+     */
+    Integer observe(ShapeMatchIndex shapes, String vehicleId, String tripId, String stopId, int stopSequence,
+                    LocalDate startDate, double lat, double lon, ZonedDateTime observed) {
+        ScheduleIndex schedule = shapes.schedule();
+        int trip = schedule.trip(tripId);
+        if (trip == ScheduleIndex.NOT_FOUND) {
+            vehicles.remove(vehicleId);
+            return null;
+        }
+        TripProgress progress = vehicles.get(vehicleId);
+        if (progress == null || progress.shapes != shapes || !progress.tripId.equals(tripId)) {
+            progress = new TripProgress(shapes, tripId, trip);
+            vehicles.put(vehicleId, progress);
+        }
+        long observedAt = observed.toEpochSecond();
+        if (observedAt < progress.observedAt) {
+            return deviation(progress);
+        }
+        progress.observedAt = observedAt;
+
+        int scheduled = ScheduleIndex.NOT_FOUND;
+        if (shapes.hasShape(trip)) {
+            double matched = shapes.distanceAlong(trip, lat, lon, progress.distance - BACKTRACK_METRES);
+            if (matched >= 0) {
+                progress.distance = Math.max(progress.distance, matched);
+                int end = schedule.endStopTime(trip);
+                while (progress.next < end && shapes.stopDistance(progress.next) <= progress.distance) {
+                    progress.next++;
+                }
+                scheduled = shapes.scheduledAt(trip, progress.distance, progress.next);
+            }
+        }
+        if (scheduled == ScheduleIndex.NOT_FOUND && stopId != null && stopSequence != ScheduleIndex.NOT_FOUND) {
+            scheduled = schedule.arrivalSeconds(tripId, stopId, stopSequence);
+        }
+        if (scheduled == ScheduleIndex.NOT_FOUND) {
+            return deviation(progress);
+        }
+
+        if (startDate != null && !startDate.equals(progress.serviceDate)) {
+            serviceDate(progress, startDate, observed);
+        } else if (progress.serviceDate == null) {
+            serviceDate(progress, schedule.serviceDate(tripId, scheduled, observed), observed);
+        }
+        progress.deviation = (int) (observedAt - progress.serviceDayStart - scheduled);
+        progress.known = true;
+        return progress.deviation;
+    }
+
+    private static void serviceDate(TripProgress progress, LocalDate serviceDate, ZonedDateTime observed) {
+        progress.serviceDate = serviceDate;
+        progress.serviceDayStart = ServiceCalendar.at(serviceDate, 0, observed.getZone()).toEpochSecond();
+    }
+
+    private static Integer deviation(TripProgress progress) {
+        return progress.known ? progress.deviation : null;
+    }
+
+    /**
+     * Forgets vehicles last observed before a time.
+     * @return Number of vehicles forgotten.
+     */
+    int expire(long oldestEpochSecond) {
+        int expired = 0;
+        for (Iterator<TripProgress> iterator = vehicles.values().iterator(); iterator.hasNext(); ) {
+            if (iterator.next().observedAt < oldestEpochSecond) {
+                iterator.remove();
+                expired++;
+            }
+        }
+        return expired;
+    }
+
+    int size() {
+        return vehicles.size();
+    }
+}
@@ -0,0 +1,63 @@
+package com.transit.delay_prediction.service;
+
+import com.google.transit.realtime.GtfsRealtime.TripUpdate;
+import com.transit.delay_prediction.entity.VehiclePosition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.ZoneId;
+
+/**
+ * Shared {@link TripStateTable} of the vehicle position and TripUpdates feeds, whose cycles may run at
+ * the same time. Trips neither predicted nor observed for {@code live.vehicle.max-age-seconds} are
+ * forgotten at the end of each cycle.
+ */
+@Service
+public class TripStateService {
+    private static final Logger logger = LoggerFactory.getLogger(TripStateService.class);
+
+    private static final ZoneId FEED_ZONE = ZoneId.of("America/New_York");
+
+    @Autowired
+    private ScheduleIndexService scheduleIndexService;
+
+    @Value("${live.vehicle.max-age-seconds:300}")
+    private int maxAgeSeconds;
+
+    private final TripStateTable table = new TripStateTable(FEED_ZONE);
+
+    /**
+     * Stores the predictions of a TripUpdate entity.
+     * @return Whether they were newer than the trip's current ones.
+     */
+    public synchronized boolean apply(TripUpdate update) {
+        return table.applyTripUpdate(scheduleIndexService.current(), update, Instant.now().getEpochSecond());
+    }
+
+    /**
+     * Records a vehicle position's observed delay and sets its upstream prediction fields.
+     * @param stopSequence Sequence of the reported stop, or {@link ScheduleIndex#NOT_FOUND}.
+     */
+    public synchronized void join(VehiclePosition position, int stopSequence) {
+        table.join(position, stopSequence);
+    }
+
+    /**
+     * @return The merged state of a trip, or null if it is not live.
+     */
+    public synchronized TripStatus trip(String tripId) {
+        return table.status(tripId);
+    }
+
+    /**
+     * Forgets trips not seen for the maximum age. Called by the ingestion loop after each cycle.
+     */
+    public synchronized void expire() {
+        int expired = table.expire(Instant.now().getEpochSecond() - maxAgeSeconds);
+        logger.debug("Tracking state of {} trips, {} expired", table.size(), expired);
+    }
+}
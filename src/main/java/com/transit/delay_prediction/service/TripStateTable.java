@@ -0,0 +1,218 @@
+package com.transit.delay_prediction.service;
+
+import com.google.transit.realtime.GtfsRealtime.TripUpdate;
+import com.google.transit.realtime.GtfsRealtime.TripUpdate.StopTimeEvent;
+import com.google.transit.realtime.GtfsRealtime.TripUpdate.StopTimeUpdate;
+import com.transit.delay_prediction.entity.VehiclePosition;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * State of every live trip, merged from both GTFS-RT feeds by trip id: the agency's per-stop arrival
+ * predictions from TripUpdates, and the delay observed from the trip's vehicle positions.
+ * A TripUpdate is converted once into flat per-stop arrays, with its delay against the schedule resolved
+ * while walking the trip's stop times in order; a vehicle position is joined with one hash probe and a
+ * scan of its trip's predictions. Both feeds together therefore cost time linear in their entity and
+ * stop time update counts.
+ * Not thread-safe; see {@link TripStateService}.
+ */
+final class TripStateTable {
+    static final int UNKNOWN = Integer.MIN_VALUE;
+
+    private static final String[] NO_STOPS = new String[0];
+    private static final int[] NO_INTS = new int[0];
+    private static final long[] NO_LONGS = new long[0];
+
+    private final ZoneId zone;
+    private final Map<String, TripState> trips = new HashMap<>();
+
+    private static final class TripState {
+        final String tripId;
+        String routeId;
+        String vehicleId;
+
+        // Upstream predictions, one entry per stop time update in feed order
+        String[] stopIds = NO_STOPS;
+        int[] stopSequences = NO_INTS;
+        long[] arrivals = NO_LONGS; // Epoch seconds, 0 if unknown
+        int[] delays = NO_INTS;
+        int tripDelay = UNKNOWN;
+        long predictedAt = Long.MIN_VALUE;
+
+        // Observed from vehicle positions
+        int observedDelay = UNKNOWN;
+        long observedAt = Long.MIN_VALUE;
+
+        TripState(String tripId) {
+            this.tripId = tripId;
+        }
+
+        long touchedAt() {
+            return Math.max(predictedAt, observedAt);
+        }
+    }
+
+    TripStateTable(ZoneId zone) {
+        this.zone = zone;
+    }
+
+    /**
+     * Replaces the predictions of a trip with those of a TripUpdate, unless the trip already has newer ones.
+     * Stop time updates without an explicit delay get one from their predicted time and the schedule.
+     * @param timestamp Epoch seconds of the update when it carries no timestamp of its own.
+     * @return Whether the update was applied.
+     */
+    boolean applyTripUpdate(ScheduleIndex schedule, TripUpdate update, long timestamp) {
+        String tripId = update.getTrip().getTripId();
+        if (tripId.isEmpty()) return false;
+        long predictedAt = update.hasTimestamp() ? update.getTimestamp() : timestamp;
+        TripState state = trips.computeIfAbsent(tripId, TripState::new);
+        if (predictedAt < state.predictedAt) return false;
+
+        int count = update.getStopTimeUpdateCount();
+        String[] stopIds = new String[count];
+        int[] stopSequences = new int[count];
+        long[] arrivals = new long[count];
+        int[] delays = new int[count];
+        int trip = schedule.trip(tripId);
+        int cursor = trip != ScheduleIndex.NOT_FOUND ? schedule.firstStopTime(trip) : ScheduleIndex.NOT_FOUND;
+        long serviceDayStart = Long.MIN_VALUE;
+        LocalDate startDate = GtfsRtIngestionService.startDate(update.getTrip().getStartDate());
+        for (int i = 0; i < count; i++) {
+            StopTimeUpdate stopTime = update.getStopTimeUpdate(i);
+            stopIds[i] = stopTime.hasStopId() ? stopTime.getStopId() : null;
+            stopSequences[i] = stopTime.hasStopSequence() ? stopTime.getStopSequence() : ScheduleIndex.NOT_FOUND;
+            arrivals[i] = 0;
+            delays[i] = UNKNOWN;
+            StopTimeEvent event = stopTime.hasArrival() ? stopTime.getArrival()
+                    : stopTime.hasDeparture() ? stopTime.getDeparture() : null;
+            if (event == null || stopTime.getScheduleRelationship() == StopTimeUpdate.ScheduleRelationship.SKIPPED
+                    || stopTime.getScheduleRelationship() == StopTimeUpdate.ScheduleRelationship.NO_DATA) {
+                continue;
+            }
+            arrivals[i] = event.hasTime() ? event.getTime() : 0;
+            if (event.hasDelay()) {
+                delays[i] = event.getDelay();
+                continue;
+            }
+            if (arrivals[i] == 0 || cursor == ScheduleIndex.NOT_FOUND || stopIds[i] == null) continue;
+            // Stop time updates follow the trip's stop order, so the schedule is walked once
+            int end = schedule.endStopTime(trip);
+            int position = cursor;
+            while (position < end && !stopIds[i].equals(schedule.stopId(position))) {
+                position++;
+            }
+            if (position == end) continue;
+            cursor = position + 1;
+            // Non-timepoint stops may have no arrival time, and some no time at all
+            int scheduled = schedule.arrival(position) != ScheduleIndex.NOT_FOUND
+                    ? schedule.arrival(position) : schedule.departure(position);
+            if (scheduled == ScheduleIndex.NOT_FOUND) continue;
+            if (serviceDayStart == Long.MIN_VALUE) {
+                LocalDate serviceDate = startDate != null ? startDate
+                        : schedule.serviceDate(tripId, scheduled, Instant.ofEpochSecond(arrivals[i]).atZone(zone));
+                serviceDayStart = ServiceCalendar.at(serviceDate, 0, zone).toEpochSecond();
+            }
+            delays[i] = (int) (arrivals[i] - serviceDayStart - scheduled);
+        }
+
+        state.routeId = update.getTrip().hasRouteId() ? update.getTrip().getRouteId() : state.routeId;
+        if (update.hasVehicle() && update.getVehicle().hasId()) {
+            state.vehicleId = update.getVehicle().getId();
+        }
+        state.stopIds = stopIds;
+        state.stopSequences = stopSequences;
+        state.arrivals = arrivals;
+        state.delays = delays;
+        state.tripDelay = update.hasDelay() ? update.getDelay() : UNKNOWN;
+        state.predictedAt = predictedAt;
+        return true;
+    }
+
+    /**
+     * Records the observed delay of a vehicle position in its trip's state and copies onto the position the
+     * upstream prediction for the stop it reports, or else for the next stop by sequence, or else for the
+     * first stop not yet reached at its timestamp. Fields stay null when the trip has no prediction.
+     * @param stopSequence Sequence of the reported stop, or {@link ScheduleIndex#NOT_FOUND}.
+     */
+    void join(VehiclePosition position, int stopSequence) {
+        if (position.getTripId() == null || position.getTripId().isEmpty()) return;
+        TripState state = trips.computeIfAbsent(position.getTripId(), TripState::new);
+        long observedAt = position.getTimestamp() != null
+                ? position.getTimestamp().atZone(zone).toEpochSecond() : state.observedAt;
+        if (observedAt >= state.observedAt) {
+            state.observedAt = observedAt;
+            state.observedDelay = position.getDelay() != null ? position.getDelay() : UNKNOWN;
+            state.vehicleId = position.getVehicleId();
+            state.routeId = position.getRouteId();
+        }
+
+        int match = -1;
+        int bySequence = -1;
+        int byTime = -1;
+        for (int i = 0; i < state.stopIds.length && match < 0; i++) {
+            if (position.getStopId() != null && position.getStopId().equals(state.stopIds[i])) {
+                match = i;
+            } else if (bySequence < 0 && stopSequence != ScheduleIndex.NOT_FOUND && state.stopSequences[i] >= stopSequence) {
+                bySequence = i;
+            } else if (byTime < 0 && state.arrivals[i] >= observedAt) {
+                byTime = i;
+            }
+        }
+        if (match < 0) match = bySequence >= 0 ? bySequence : byTime;
+
+        int delay = match >= 0 && state.delays[match] != UNKNOWN ? state.delays[match] : state.tripDelay;
+        position.setUpstreamStopId(match >= 0 ? state.stopIds[match] : null);
+        position.setUpstreamArrival(match >= 0 && state.arrivals[match] != 0
+                ? LocalDateTime.ofInstant(Instant.ofEpochSecond(state.arrivals[match]), zone) : null);
+        position.setUpstreamDelay(delay != UNKNOWN ? delay : null);
+    }
+
+    /**
+     * @return The merged state of a trip, or null if neither feed reported it.
+     */
+    TripStatus status(String tripId) {
+        TripState state = trips.get(tripId);
+        if (state == null) return null;
+        List<TripStatus.StopPrediction> stops = new ArrayList<>(state.stopIds.length);
+        for (int i = 0; i < state.stopIds.length; i++) {
+            stops.add(new TripStatus.StopPrediction(state.stopIds[i],
+                    state.stopSequences[i] != ScheduleIndex.NOT_FOUND ? state.stopSequences[i] : null,
+                    state.arrivals[i] != 0 ? Instant.ofEpochSecond(state.arrivals[i]) : null,
+                    state.delays[i] != UNKNOWN ? state.delays[i] : null));
+        }
+        return new TripStatus(state.tripId, state.routeId, state.vehicleId,
+                state.observedDelay != UNKNOWN ? state.observedDelay : null,
+                state.observedAt != Long.MIN_VALUE ? Instant.ofEpochSecond(state.observedAt) : null,
+                state.tripDelay != UNKNOWN ? state.tripDelay : null,
+                state.predictedAt != Long.MIN_VALUE ? Instant.ofEpochSecond(state.predictedAt) : null,
+                stops);
+    }
+
+    /**
+     * Forgets trips neither predicted nor observed since a time.
+     * @return Number of trips forgotten.
+     */
+    int expire(long oldestEpochSecond) {
+        int expired = 0;
+        for (Iterator<TripState> iterator = trips.values().iterator(); iterator.hasNext(); ) {
+            if (iterator.next().touchedAt() < oldestEpochSecond) {
+                iterator.remove();
+                expired++;
+            }
+        }
+        return expired;
+    }
+
+    int size() {
+        return trips.size();
+    }
+}
@@ -0,0 +1,26 @@
+package com.transit.delay_prediction.service;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Merged real-time state of a trip: the delay observed from its vehicle positions and the agency's
+ * predictions from the TripUpdates feed.
+ * @param vehicleId Vehicle last reported on the trip by either feed, or null.
+ * @param observedDelay Seconds behind schedule at the last vehicle position, or null.
+ * @param observedAt Timestamp of that vehicle position, or null.
+ * @param tripDelay Trip-level delay of the last TripUpdate, or null.
+ * @param predictedAt Timestamp of the last TripUpdate, or null.
+ * @param stops Per-stop predictions of the last TripUpdate, in feed order.
+ */
+public record TripStatus(String tripId, String routeId, String vehicleId, Integer observedDelay, Instant observedAt,
+                         Integer tripDelay, Instant predictedAt, List<StopPrediction> stops) {
+
+    /**
+     * @param stopSequence Null if the feed gave none.
+     * @param arrival Predicted arrival (or departure, at the first stop), or null.
+     * @param delay Predicted seconds behind schedule, or null.
+     */
+    public record StopPrediction(String stopId, Integer stopSequence, Instant arrival, Integer delay) {
+    }
+}
@@ -0,0 +1,12 @@
+package com.transit.delay_prediction.service;
+
+import com.transit.delay_prediction.entity.VehiclePosition;
+
+/**
+ * A vehicle that changed in an ingestion cycle.
+ * @param previous Position in the previous snapshot, or null for a vehicle that just appeared.
+ * @param current New position, or null for a vehicle that stopped reporting.
+ * @param update Compact form of the new position, shared by all subscribers; null with {@code current}.
+ */
+record VehicleChange(String vehicleId, VehiclePosition previous, VehiclePosition current, VehicleDelta.Update update) {
+}
@@ -0,0 +1,172 @@
+package com.transit.delay_prediction.service;
+
+import com.transit.delay_prediction.entity.VehiclePosition;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Last-seen state of every vehicle, classifying each update as new, moved or unchanged so that only
+ * real changes are written downstream. An update is unchanged when the vehicle reports the same position,
+ * trip and stop as the last time it was seen, and its delay is within {@value #DELAY_CHANGE_SECONDS}
+ * seconds of the last emitted one (a delay becoming known or unknown is a change). Unchanged updates with
+ * a newer GTFS-RT timestamp are still let through once the last emitted one is a heartbeat interval old, so
+ * stationary vehicles stay visible; a report re-sent with the timestamp already emitted carries nothing new
+ * and never is. Vehicles not seen for {@value #EVICT_AFTER_HEARTBEATS} heartbeat intervals are evicted, so
+ * retired or rotated vehicle ids do not pile up. Vehicles are keyed by a 64-bit hash of their id in a {@link LongIntMap} pointing into parallel arrays.
+ * If two ids ever collide they overwrite each other's state and are always treated as new, which only
+ * costs the suppression. Not thread-safe; updates come from the single ingestion loop.
+ */
+final class VehicleChangeDetector {
+
+    enum Change {
+        NEW, MOVED, HEARTBEAT, UNCHANGED;
+
+        /**
+         * @return Whether the update goes downstream.
+         */
+        boolean isEmitted() {
+            return this != UNCHANGED;
+        }
+    }
+
+    static final int DELAY_CHANGE_SECONDS = 30;
+    static final int EVICT_AFTER_HEARTBEATS = 3;
+    private static final int UNKNOWN_DELAY = Integer.MIN_VALUE;
+
+    private final long heartbeatSeconds;
+    private final LongIntMap slots = new LongIntMap(4096);
+    private String[] vehicleIds = new String[4096];
+    private double[] latitude = new double[4096];
+    private double[] longitude = new double[4096];
+    private String[] tripIds = new String[4096];
+    private String[] stopIds = new String[4096];
+    private int[] delays = new int[4096];
+    private LocalDateTime[] timestamps = new LocalDateTime[4096];
+    private long[] lastEmitted = new long[4096];
+    private long[] lastSeen = new long[4096];
+    private int size;
+
+    /**
+     * @param heartbeatSeconds Longest time an unchanged vehicle goes without an emitted update.
+     */
+    VehicleChangeDetector(long heartbeatSeconds) {
+        this.heartbeatSeconds = heartbeatSeconds;
+    }
+
+    /**
+     * Classifies an update against the vehicle's last-seen state, then records it.
+     * @param nowEpochSecond Current time, against which heartbeats and eviction are measured.
+     */
+    Change observe(VehiclePosition position, long nowEpochSecond) {
+        String vehicleId = position.getVehicleId();
+        long key = hash(vehicleId);
+        int slot = slots.get(key);
+        Change change;
+        if (slot == LongIntMap.MISSING) {
+            slot = allocate();
+            slots.put(key, slot);
+            change = Change.NEW;
+        } else if (!vehicleId.equals(vehicleIds[slot])) {
+            change = Change.NEW;
+        } else if (latitude[slot] != position.getLatitude() || longitude[slot] != position.getLongitude()
+                || !Objects.equals(tripIds[slot], position.getTripId())
+                || !Objects.equals(stopIds[slot], position.getStopId())
+                || delayChanged(delays[slot], delay(position))) {
+            change = Change.MOVED;
+        } else if (nowEpochSecond - lastEmitted[slot] >= heartbeatSeconds
+                && (position.getTimestamp() == null || !position.getTimestamp().equals(timestamps[slot]))) {
+            change = Change.HEARTBEAT;
+        } else {
+            lastSeen[slot] = nowEpochSecond;
+            return Change.UNCHANGED;
+        }
+        vehicleIds[slot] = vehicleId;
+        latitude[slot] = position.getLatitude();
+        longitude[slot] = position.getLongitude();
+        tripIds[slot] = position.getTripId();
+        stopIds[slot] = position.getStopId();
+        delays[slot] = delay(position);
+        timestamps[slot] = position.getTimestamp();
+        lastEmitted[slot] = nowEpochSecond;
+        lastSeen[slot] = nowEpochSecond;
+        return change;
+    }
+
+    /**
+     * Forgets the vehicles not seen for {@value #EVICT_AFTER_HEARTBEATS} heartbeat intervals, moving the
+     * last vehicle into each freed slot.
+     * @return Number of vehicles evicted.
+     */
+    int evict(long nowEpochSecond) {
+        long oldest = nowEpochSecond - EVICT_AFTER_HEARTBEATS * heartbeatSeconds;
+        int evicted = 0;
+        for (int slot = size - 1; slot >= 0; slot--) {
+            if (lastSeen[slot] >= oldest) continue;
+            slots.remove(hash(vehicleIds[slot]));
+            int last = --size;
+            if (slot != last) {
+                vehicleIds[slot] = vehicleIds[last];
+                latitude[slot] = latitude[last];
+                longitude[slot] = longitude[last];
+                tripIds[slot] = tripIds[last];
+                stopIds[slot] = stopIds[last];
+                delays[slot] = delays[last];
+                timestamps[slot] = timestamps[last];
+                lastEmitted[slot] = lastEmitted[last];
+                lastSeen[slot] = lastSeen[last];
+                slots.put(hash(vehicleIds[slot]), slot);
+            }
+            vehicleIds[last] = null;
+            tripIds[last] = null;
+            stopIds[last] = null;
+            timestamps[last] = null;
+            evicted++;
+        }
+        return evicted;
+    }
+
+    private static int delay(VehiclePosition position) {
+        return position.getDelay() != null ? position.getDelay() : UNKNOWN_DELAY;
+    }
+
+    private static boolean delayChanged(int last, int delay) {
+        if (last == UNKNOWN_DELAY || delay == UNKNOWN_DELAY) {
+            return last != delay;
+        }
+        return Math.abs(last - delay) > DELAY_CHANGE_SECONDS;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private int allocate() {
+        if (size == vehicleIds.length) {
+            int capacity = size * 2;
+            vehicleIds = Arrays.copyOf(vehicleIds, capacity);
+            latitude = Arrays.copyOf(latitude, capacity);
+            longitude = Arrays.copyOf(longitude, capacity);
+            tripIds = Arrays.copyOf(tripIds, capacity);
+            stopIds = Arrays.copyOf(stopIds, capacity);
+            delays = Arrays.copyOf(delays, capacity);
+            timestamps = Arrays.copyOf(timestamps, capacity);
+            lastEmitted = Arrays.copyOf(lastEmitted, capacity);
+            lastSeen = Arrays.copyOf(lastSeen, capacity);
+        }
+        return size++;
+    }
+
+    /**
+     * 64-bit FNV-1a over the UTF-16 code units of the id, avoiding the reserved key of {@link LongIntMap}.
+     */
+    private static long hash(String vehicleId) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < vehicleId.length(); i++) {
+            hash ^= vehicleId.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash != Long.MIN_VALUE ? hash : Long.MIN_VALUE + 1;
+    }
+}
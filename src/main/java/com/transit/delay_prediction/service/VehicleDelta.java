@@ -0,0 +1,34 @@
+package com.transit.delay_prediction.service;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.transit.delay_prediction.entity.VehiclePosition;
+
+import java.time.ZoneId;
+import java.util.List;
+
+/**
+ * Changes to the vehicles a subscriber follows since its previous delta: vehicles that moved or whose
+ * delay changed, and vehicles that stopped reporting or left the subscriber's filter.
+ */
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+public record VehicleDelta(List<Update> updated, List<String> removed) {
+
+    /**
+     * Compact form of a vehicle's position. The timestamp is in epoch seconds.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record Update(String vehicleId, String routeId, String tripId, String stopId, Integer directionId,
+                         double latitude, double longitude, Integer delay, Double predictedDelay, long timestamp) {
+        private static final ZoneId FEED_ZONE = ZoneId.of("America/New_York");
+
+        /**
+         * @param directionId GTFS direction_id of the vehicle's trip, or a negative value if unknown.
+         */
+        public static Update of(VehiclePosition position, int directionId) {
+            return new Update(position.getVehicleId(), position.getRouteId(), position.getTripId(), position.getStopId(),
+                    directionId >= 0 ? directionId : null, position.getLatitude(), position.getLongitude(),
+                    position.getDelay(), position.getPredictedDelay(),
+                    position.getTimestamp() != null ? position.getTimestamp().atZone(FEED_ZONE).toEpochSecond() : 0);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.transit.delay_prediction.service;
+
+import com.transit.delay_prediction.entity.VehiclePosition;
+
+import java.util.Set;
+
+/**
+ * Vehicles a stream subscriber is interested in: a set of routes, a bounding box, or both.
+ * @param routes Route ids, or null for any route.
+ */
+public record VehicleFilter(Set<String> routes, double minLat, double minLon, double maxLat, double maxLon) {
+    public static final VehicleFilter ALL = new VehicleFilter(null, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY,
+            Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY);
+
+    public static VehicleFilter routes(Set<String> routes) {
+        return new VehicleFilter(Set.copyOf(routes), ALL.minLat, ALL.minLon, ALL.maxLat, ALL.maxLon);
+    }
+
+    public VehicleFilter within(double minLat, double minLon, double maxLat, double maxLon) {
+        return new VehicleFilter(routes, minLat, minLon, maxLat, maxLon);
+    }
+
+    /**
+     * @return Whether the position is on one of the routes and inside the bounding box, edges included.
+     */
+    public boolean matches(VehiclePosition position) {
+        return (routes == null || routes.contains(position.getRouteId()))
+                && position.getLatitude() >= minLat && position.getLatitude() <= maxLat
+                && position.getLongitude() >= minLon && position.getLongitude() <= maxLon;
+    }
+}
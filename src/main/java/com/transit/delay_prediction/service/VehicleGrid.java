@@ -0,0 +1,170 @@
+package com.transit.delay_prediction.service;
+
+import java.util.Arrays;
+
+/**
+ * Uniform grid over vehicle positions, rebuilt with every {@link LiveVehicleSnapshot}.
+ * Positions are projected to metres and bucketed into square cells with a counting sort, so a build
+ * is two linear passes and the cells are stored as one packed index array with per-cell offsets.
+ * Cells are {@value #CELL_METRES} m wide unless the positions are spread so far apart that the grid
+ * would exceed a few cells per vehicle, in which case the cell size grows.
+ * Queries return vehicle indices into the arrays the grid was built from.
+ */
+final class VehicleGrid {
+    static final double CELL_METRES = 500;
+    private static final int MIN_CELLS = 1024;
+
+    private final double[] latitude;
+    private final double[] longitude;
+    private final LocalProjection projection;
+    private final double[] x;
+    private final double[] y;
+    private final double originX;
+    private final double originY;
+    private final double cellSize;
+    private final int columns;
+    private final int rows;
+    private final int[] cellStart;
+    private final int[] members;
+
+    VehicleGrid(double[] latitude, double[] longitude) {
+        int n = latitude.length;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.projection = LocalProjection.around(latitude);
+        this.x = new double[n];
+        this.y = new double[n];
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            x[i] = projection.x(longitude[i]);
+            y[i] = projection.y(latitude[i]);
+            minX = Math.min(minX, x[i]);
+            minY = Math.min(minY, y[i]);
+            maxX = Math.max(maxX, x[i]);
+            maxY = Math.max(maxY, y[i]);
+        }
+        if (n == 0) {
+            minX = minY = maxX = maxY = 0;
+        }
+        long maxCells = Math.max(MIN_CELLS, 4L * n);
+        double size = CELL_METRES;
+        while (((long) ((maxX - minX) / size) + 1) * ((long) ((maxY - minY) / size) + 1) > maxCells) {
+            size *= 2;
+        }
+        this.originX = minX;
+        this.originY = minY;
+        this.cellSize = size;
+        this.columns = (int) ((maxX - minX) / size) + 1;
+        this.rows = (int) ((maxY - minY) / size) + 1;
+
+        int[] cell = new int[n];
+        this.cellStart = new int[columns * rows + 1];
+        for (int i = 0; i < n; i++) {
+            cell[i] = column(x[i]) + row(y[i]) * columns;
+            cellStart[cell[i] + 1]++;
+        }
+        for (int c = 0; c < columns * rows; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        this.members = new int[n];
+        int[] next = new int[columns * rows];
+        for (int i = 0; i < n; i++) {
+            members[cellStart[cell[i]] + next[cell[i]]++] = i;
+        }
+    }
+
+    private int column(double px) {
+        return (int) Math.floor((px - originX) / cellSize);
+    }
+
+    private int row(double py) {
+        return (int) Math.floor((py - originY) / cellSize);
+    }
+
+    /**
+     * @return Indices of the vehicles inside the bounding box, edges included, in ascending order.
+     */
+    int[] within(double minLat, double minLon, double maxLat, double maxLon) {
+        int fromColumn = Math.max(0, column(projection.x(minLon)));
+        int toColumn = Math.min(columns - 1, column(projection.x(maxLon)));
+        int fromRow = Math.max(0, row(projection.y(minLat)));
+        int toRow = Math.min(rows - 1, row(projection.y(maxLat)));
+        ScheduleIndex.IntList result = new ScheduleIndex.IntList();
+        if (fromColumn > toColumn) return result.toArray();
+        for (int r = fromRow; r <= toRow; r++) {
+            for (int m = cellStart[r * columns + fromColumn], end = cellStart[r * columns + toColumn + 1]; m < end; m++) {
+                int i = members[m];
+                if (latitude[i] >= minLat && latitude[i] <= maxLat && longitude[i] >= minLon && longitude[i] <= maxLon) {
+                    result.add(i);
+                }
+            }
+        }
+        int[] indices = result.toArray();
+        Arrays.sort(indices);
+        return indices;
+    }
+
+    /**
+     * Finds the k nearest vehicles by searching rings of cells outward from the query point until no
+     * unvisited cell can hold a closer vehicle.
+     * @return Indices of up to k vehicles within {@code maxMetres}, nearest first.
+     */
+    int[] nearest(double lat, double lon, int k, double maxMetres) {
+        double qx = projection.x(lon);
+        double qy = projection.y(lat);
+        int cx = column(qx);
+        int cy = row(qy);
+        double maxSquared = maxMetres * maxMetres;
+        NearestHeap heap = new NearestHeap(k);
+        int first = Math.max(0, Math.max(Math.max(cx - (columns - 1), -cx), Math.max(cy - (rows - 1), -cy)));
+        for (int r = first; ; r++) {
+            double gap = Math.max(0, r - 1) * cellSize;
+            if (gap * gap > heap.bound(maxSquared)) break;
+            int fromColumn = Math.max(0, cx - r);
+            int toColumn = Math.min(columns - 1, cx + r);
+            for (int c = fromColumn; c <= toColumn; c++) {
+                scanCell(c, cy - r, qx, qy, heap, maxSquared);
+                if (r > 0) scanCell(c, cy + r, qx, qy, heap, maxSquared);
+            }
+            for (int w = Math.max(0, cy - r + 1), toRow = Math.min(rows - 1, cy + r - 1); w <= toRow; w++) {
+                scanCell(cx - r, w, qx, qy, heap, maxSquared);
+                if (r > 0) scanCell(cx + r, w, qx, qy, heap, maxSquared);
+            }
+            if (cx - r <= 0 && cx + r >= columns - 1 && cy - r <= 0 && cy + r >= rows - 1) break;
+        }
+        return heap.drainSorted();
+    }
+
+    /**
+     * @return Indices of the vehicles within {@code metres}, nearest first.
+     */
+    int[] radius(double lat, double lon, double metres) {
+        double qx = projection.x(lon);
+        double qy = projection.y(lat);
+        double squared = metres * metres;
+        NearestHeap heap = new NearestHeap(Integer.MAX_VALUE);
+        int fromRow = Math.max(0, row(qy - metres));
+        int toRow = Math.min(rows - 1, row(qy + metres));
+        for (int r = fromRow; r <= toRow; r++) {
+            for (int c = Math.max(0, column(qx - metres)), to = Math.min(columns - 1, column(qx + metres)); c <= to; c++) {
+                scanCell(c, r, qx, qy, heap, squared);
+            }
+        }
+        return heap.drainSorted();
+    }
+
+    private void scanCell(int c, int r, double qx, double qy, NearestHeap heap, double maxSquared) {
+        if (c < 0 || c >= columns || r < 0 || r >= rows) return;
+        int cell = r * columns + c;
+        for (int m = cellStart[cell], end = cellStart[cell + 1]; m < end; m++) {
+            int i = members[m];
+            double dx = x[i] - qx;
+            double dy = y[i] - qy;
+            double squared = dx * dx + dy * dy;
+            if (squared <= heap.bound(maxSquared)) {
+                heap.offer(i, squared);
+            }
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package com.transit.delay_prediction.service;
+
+import com.transit.delay_prediction.entity.VehiclePosition;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Manages the daily range partitions of vehicle_position and the hourly delay rollup.
+ * vehicle_position is a native PostgreSQL table partitioned by day on its (New York local) timestamp,
+ * with a default partition catching rows outside the managed days. At startup an unpartitioned table
+ * left by Hibernate is converted, keeping rows inside the retention window. A maintenance task then
+ * periodically creates upcoming partitions, moving rows of their day out of the default partition,
+ * refreshes vehicle_position_hourly (delay statistics per route, stop and hour) for the hours rows were
+ * written to since, and drops partitions older than {@code postgres.vehicle-position.retention-days},
+ * so old data is removed without a DELETE.
+ */
+@Service
+@DependsOn("entityManagerFactory")
+public class VehiclePositionPartitionService {
+    private static final Logger logger = LoggerFactory.getLogger(VehiclePositionPartitionService.class);
+
+    private static final ZoneId FEED_ZONE = ZoneId.of("America/New_York");
+    private static final String TABLE = "vehicle_position";
+    private static final String PARTITION_PREFIX = TABLE + "_p";
+    private static final Pattern PARTITION_NAME = Pattern.compile(Pattern.quote(PARTITION_PREFIX) + "(\\d{8})");
+    private static final DateTimeFormatter PARTITION_DAY = DateTimeFormatter.BASIC_ISO_DATE;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${postgres.vehicle-position.retention-days:30}")
+    private int retentionDays;
+
+    @Value("${postgres.vehicle-position.partition-days-ahead:3}")
+    private int daysAhead;
+
+    @Value("${postgres.vehicle-position.maintenance-minutes:15}")
+    private int maintenanceMinutes;
+
+    private ScheduledExecutorService scheduler;
+
+    // Hours that rows were written to since their last rollup; before the first rollup, rows written by an
+    // earlier run are caught up from the latest rolled-up hour instead
+    private final Set<LocalDateTime> dirtyHours = ConcurrentHashMap.newKeySet();
+    private boolean caughtUp;
+
+    @PostConstruct
+    public void start() {
+        transactionTemplate.executeWithoutResult(status -> ensureSchema());
+        scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("vehicle-position-maintenance-"));
+        scheduler.scheduleWithFixedDelay(this::runMaintenance, 0, maintenanceMinutes, TimeUnit.MINUTES);
+        logger.info("Managing daily vehicle_position partitions (retention {} days, maintenance every {} minutes)",
+                retentionDays, maintenanceMinutes);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    private void runMaintenance() {
+        try {
+            LocalDateTime now = LocalDateTime.now(FEED_ZONE);
+            LocalDate today = now.toLocalDate();
+            createPartitions(today.minusDays(1), today.plusDays(daysAhead));
+            refreshHourlyRollup(now);
+            dropExpiredPartitions(oldestKept(today));
+        } catch (RuntimeException e) {
+            logger.error("vehicle_position maintenance failed: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Marks the hours of written positions for the next rollup refresh.
+     */
+    public void written(List<VehiclePosition> positions) {
+        LocalDateTime previous = null;
+        for (VehiclePosition position : positions) {
+            LocalDateTime hour = position.getTimestamp().truncatedTo(ChronoUnit.HOURS);
+            if (!hour.equals(previous)) {
+                dirtyHours.add(hour);
+                previous = hour;
+            }
+        }
+    }
+
+    /**
+     * @return First day kept by the retention window on {@code today}.
+     */
+    LocalDate oldestKept(LocalDate today) {
+        return today.minusDays(retentionDays);
+    }
+
+    static String partitionName(LocalDate day) {
+        return PARTITION_PREFIX + day.format(PARTITION_DAY);
+    }
+
+    /**
+     * Range of a daily partition: the day's local midnight inclusive to the next one exclusive.
+     */
+    static String partitionBounds(LocalDate day) {
+        return " FOR VALUES FROM ('" + day + "') TO ('" + day.plusDays(1) + "')";
+    }
+
+    /**
+     * Creates the partitioned table, its default partition and the rollup table, converting an
+     * existing unpartitioned vehicle_position.
+     */
+    private void ensureSchema() {
+        List<String> kind = jdbcTemplate.queryForList("SELECT c.relkind::text FROM pg_class c "
+                + "JOIN pg_namespace n ON n.oid = c.relnamespace WHERE c.relname = ? AND n.nspname = current_schema()",
+                String.class, TABLE);
+        LocalDate today = LocalDate.now(FEED_ZONE);
+        LocalDate oldest = oldestKept(today);
+        if (kind.isEmpty()) {
+            createPartitionedTable();
+        } else if ("r".equals(kind.get(0))) {
+            logger.info("Converting vehicle_position to a partitioned table, keeping rows since {}", oldest);
+            jdbcTemplate.execute("ALTER TABLE " + TABLE + " RENAME TO " + TABLE + "_unpartitioned");
+            jdbcTemplate.execute("ALTER TABLE " + TABLE + "_unpartitioned DROP CONSTRAINT IF EXISTS " + TABLE + "_pkey");
+            createPartitionedTable();
+            createPartitions(oldest, today.plusDays(daysAhead));
+            int copied = jdbcTemplate.update("INSERT INTO " + TABLE
+                    + " (id, vehicle_id, trip_id, route_id, stop_id, latitude, longitude, \"timestamp\", delay) "
+                    + "SELECT id, vehicle_id, trip_id, route_id, stop_id, latitude, longitude, \"timestamp\", delay FROM "
+                    + TABLE + "_unpartitioned WHERE \"timestamp\" >= ?", oldest.atStartOfDay());
+            Long maxId = jdbcTemplate.queryForObject("SELECT max(id) FROM " + TABLE + "_unpartitioned", Long.class);
+            if (maxId != null) {
+                jdbcTemplate.execute("ALTER TABLE " + TABLE + " ALTER COLUMN id RESTART WITH " + (maxId + 1));
+            }
+            jdbcTemplate.execute("DROP TABLE " + TABLE + "_unpartitioned");
+            logger.info("Moved {} vehicle positions into the partitioned table", copied);
+        }
+        // Tables created before unplaced vehicles were stored with an unknown delay
+        jdbcTemplate.execute("ALTER TABLE " + TABLE + " ALTER COLUMN delay DROP NOT NULL");
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + TABLE + "_hourly ("
+                + "route_id varchar(255) NOT NULL, stop_id varchar(255) NOT NULL, hour timestamp(6) NOT NULL, "
+                + "observations bigint NOT NULL, delay_sum bigint NOT NULL, delay_square_sum double precision NOT NULL, "
+                + "min_delay integer NOT NULL, max_delay integer NOT NULL, "
+                + "PRIMARY KEY (route_id, hour, stop_id))");
+    }
+
+    private void createPartitionedTable() {
+        jdbcTemplate.execute("CREATE TABLE " + TABLE + " ("
+                + "id bigint GENERATED BY DEFAULT AS IDENTITY, vehicle_id varchar(255), trip_id varchar(255), "
+                + "route_id varchar(255), stop_id varchar(255), latitude float(53) NOT NULL, longitude float(53) NOT NULL, "
+                + "\"timestamp\" timestamp(6) NOT NULL, delay integer, "
+                + "PRIMARY KEY (id, \"timestamp\")) PARTITION BY RANGE (\"timestamp\")");
+        jdbcTemplate.execute("CREATE INDEX " + TABLE + "_route_time_idx ON " + TABLE + " (route_id, \"timestamp\")");
+        jdbcTemplate.execute("CREATE TABLE " + TABLE + "_default PARTITION OF " + TABLE + " DEFAULT");
+    }
+
+    /**
+     * Creates the daily partitions from {@code first} to {@code last} inclusive that do not exist yet.
+     */
+    void createPartitions(LocalDate first, LocalDate last) {
+        for (LocalDate day = first; !day.isAfter(last); day = day.plusDays(1)) {
+            String partition = partitionName(day);
+            if (Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, partition))) {
+                continue;
+            }
+            String bounds = partitionBounds(day);
+            if (!Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT EXISTS (SELECT 1 FROM " + TABLE
+                    + "_default WHERE \"timestamp\" >= ? AND \"timestamp\" < ?)", Boolean.class,
+                    day.atStartOfDay(), day.plusDays(1).atStartOfDay()))) {
+                jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + partition + " PARTITION OF " + TABLE + bounds);
+                continue;
+            }
+            // A partition cannot be created over rows of its range in the default partition: fill it as a
+            // standalone table and attach it once they are moved
+            LocalDate partitionDay = day;
+            int moved = transactionTemplate.execute(status -> {
+                jdbcTemplate.execute("CREATE TABLE " + partition + " (LIKE " + TABLE + " INCLUDING DEFAULTS INCLUDING CONSTRAINTS)");
+                int rows = jdbcTemplate.update("WITH moved AS (DELETE FROM " + TABLE + "_default "
+                        + "WHERE \"timestamp\" >= ? AND \"timestamp\" < ? RETURNING *) INSERT INTO " + partition
+                        + " SELECT * FROM moved", partitionDay.atStartOfDay(), partitionDay.plusDays(1).atStartOfDay());
+                jdbcTemplate.execute("ALTER TABLE " + TABLE + " ATTACH PARTITION " + partition + bounds);
+                return rows;
+            });
+            logger.warn("Moved {} vehicle positions of {} from the default partition into {}", moved, day, partition);
+        }
+    }
+
+    /**
+     * Recomputes the rollup for the hours rows were written to since the last refresh, up to the current
+     * hour. The first refresh after startup recomputes every hour from the hour before the latest
+     * rolled-up one, or all retained rows if the rollup is empty, up to now.
+     * @param now Current feed-local time.
+     */
+    void refreshHourlyRollup(LocalDateTime now) {
+        LocalDateTime end = now.truncatedTo(ChronoUnit.HOURS).plusHours(1);
+        if (!caughtUp) {
+            LocalDateTime latest = jdbcTemplate.queryForObject("SELECT max(hour) FROM " + TABLE + "_hourly", LocalDateTime.class);
+            LocalDateTime from = latest != null
+                    ? latest.minusHours(1)
+                    : oldestKept(now.toLocalDate()).atStartOfDay();
+            rollUp(from.truncatedTo(ChronoUnit.HOURS), end);
+            caughtUp = true;
+        }
+        // Hours after the current one stay dirty until they have begun
+        TreeSet<LocalDateTime> hours = new TreeSet<>();
+        for (LocalDateTime hour : dirtyHours) {
+            if (hour.isBefore(end) && dirtyHours.remove(hour)) hours.add(hour);
+        }
+        try {
+            while (!hours.isEmpty()) {
+                LocalDateTime from = hours.first();
+                LocalDateTime to = from.plusHours(1);
+                while (hours.contains(to)) to = to.plusHours(1);
+                rollUp(from, to);
+                hours.headSet(to).clear();
+            }
+        } catch (RuntimeException e) {
+            dirtyHours.addAll(hours);
+            throw e;
+        }
+    }
+
+    /**
+     * Recomputes the rollup of the hours from {@code from} inclusive to {@code to} exclusive.
+     */
+    private void rollUp(LocalDateTime from, LocalDateTime to) {
+        long start = System.nanoTime();
+        int rows = jdbcTemplate.update("INSERT INTO " + TABLE + "_hourly AS h "
+                + "(route_id, stop_id, hour, observations, delay_sum, delay_square_sum, min_delay, max_delay) "
+                + "SELECT route_id, coalesce(stop_id, ''), date_trunc('hour', \"timestamp\"), count(*), sum(delay), "
+                + "sum(delay::float8 * delay), min(delay), max(delay) FROM " + TABLE
+                + " WHERE \"timestamp\" >= ? AND \"timestamp\" < ? AND route_id IS NOT NULL AND delay IS NOT NULL GROUP BY 1, 2, 3 "
+                + "ON CONFLICT (route_id, hour, stop_id) DO UPDATE SET observations = EXCLUDED.observations, "
+                + "delay_sum = EXCLUDED.delay_sum, delay_square_sum = EXCLUDED.delay_square_sum, "
+                + "min_delay = EXCLUDED.min_delay, max_delay = EXCLUDED.max_delay",
+                from, to);
+        logger.debug("Refreshed {} hourly delay rollups from {} to {} in {} ms", rows, from, to,
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Drops daily partitions whose whole day is before {@code oldestKept}, and deletes rows that old
+     * from the default partition.
+     */
+    void dropExpiredPartitions(LocalDate oldestKept) {
+        List<String> partitions = jdbcTemplate.queryForList("SELECT c.relname::text FROM pg_inherits i "
+                + "JOIN pg_class c ON c.oid = i.inhrelid JOIN pg_class p ON p.oid = i.inhparent "
+                + "JOIN pg_namespace n ON n.oid = p.relnamespace WHERE p.relname = ? AND n.nspname = current_schema()",
+                String.class, TABLE);
+        for (String partition : partitions) {
+            Matcher matcher = PARTITION_NAME.matcher(partition);
+            if (matcher.matches() && LocalDate.parse(matcher.group(1), PARTITION_DAY).isBefore(oldestKept)) {
+                jdbcTemplate.execute("DROP TABLE " + partition);
+                logger.info("Dropped expired vehicle_position partition {}", partition);
+            }
+        }
+        int deleted = jdbcTemplate.update("DELETE FROM " + TABLE + "_default WHERE \"timestamp\" < ?", oldestKept.atStartOfDay());
+        if (deleted > 0) {
+            logger.info("Deleted {} expired vehicle positions from the default partition", deleted);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.transit.delay_prediction.service;
+
+import com.transit.delay_prediction.entity.VehiclePosition;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Publishes vehicle positions to the {@code vehicle_positions} topic, keyed by vehicle id.
+ * Each send completes when the broker acknowledges it, and at most {@code kafka.vehicle-position.max-in-flight}
+ * sends are outstanding, so a slow broker or a full producer buffer slows the feed pipeline down
+ * instead of records being dropped. A failed send is logged and counted as a
+ * {@code vehicle.position.write.rows} error; in a stream it drops only that position, not the rest of the cycle.
+ */
+@Service
+public class VehiclePositionPublisher {
+    private static final Logger logger = LoggerFactory.getLogger(VehiclePositionPublisher.class);
+
+    public static final String TOPIC = "vehicle_positions";
+
+    @Autowired
+    private KafkaTemplate<String, VehiclePosition> kafkaTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${kafka.vehicle-position.max-in-flight:1000}")
+    private int maxInFlight;
+
+    private WriteMetrics metrics;
+
+    @PostConstruct
+    public void registerMetrics() {
+        metrics = new WriteMetrics(meterRegistry, "kafka");
+    }
+
+    /**
+     * Publishes a stream of positions, requesting more from upstream only as sends are acknowledged.
+     * @param positions Positions to publish.
+     * @return Flux of the positions acknowledged, in acknowledgement order; failed sends are left out.
+     */
+    public Flux<VehiclePosition> publish(Flux<VehiclePosition> positions) {
+        return positions.flatMap(position -> publish(position).onErrorResume(error -> Mono.empty()), maxInFlight);
+    }
+
+    /**
+     * Publishes one position. The send runs on the bounded elastic scheduler because the producer
+     * blocks the caller (up to max.block.ms) while its buffer is full.
+     * @return Mono of the position once acknowledged; fails if the send does.
+     */
+    public Mono<VehiclePosition> publish(VehiclePosition position) {
+        return Mono.defer(() -> {
+                    long start = System.nanoTime();
+                    return Mono.fromFuture(() -> kafkaTemplate.send(TOPIC, position.getVehicleId(), position))
+                            .doOnSuccess(result -> metrics.succeeded(start, 1))
+                            .doOnError(error -> metrics.failed(start, 1));
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .doOnError(error -> logger.error("Error publishing vehicle position {} to Kafka: {}",
+                        position.getVehicleId(), error.getMessage()))
+                .thenReturn(position);
+    }
+}
@@ -0,0 +1,87 @@
+package com.transit.delay_prediction.service;
+
+import com.transit.delay_prediction.entity.VehiclePosition;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisElementReader;
+import org.springframework.data.redis.serializer.RedisElementWriter;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes the latest position of many vehicles to Redis in a single round-trip.
+ * A batch is sent as one EVALSHA of a script that SETs every key with its TTL, so a feed cycle costs
+ * one network round-trip instead of one per vehicle, and the values and expiries are applied atomically.
+ * Values are encoded with the template's value serializer (JSON or binary, see RedisConfig).
+ * All keys of a batch are passed to one script call, which requires a standalone (non-cluster) Redis.
+ */
+@Service
+public class VehiclePositionRedisWriter {
+    private static final Logger logger = LoggerFactory.getLogger(VehiclePositionRedisWriter.class);
+
+    public static final String KEY_PREFIX = "vehicle_position:";
+
+    private static final RedisScript<Long> SET_ALL_WITH_TTL = RedisScript.of("""
+            for i, key in ipairs(KEYS) do
+                redis.call('SET', key, ARGV[i + 1], 'EX', ARGV[1])
+            end
+            return #KEYS
+            """, Long.class);
+
+    private static final RedisElementWriter<ByteBuffer> AS_IS = buffer -> buffer;
+    private static final RedisElementReader<Long> COUNT =
+            buffer -> Long.parseLong(StandardCharsets.US_ASCII.decode(buffer).toString());
+
+    @Autowired
+    private ReactiveRedisTemplate<String, VehiclePosition> redisTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private WriteMetrics metrics;
+
+    @PostConstruct
+    public void registerMetrics() {
+        metrics = new WriteMetrics(meterRegistry, "redis");
+    }
+
+    /**
+     * Stores each position under {@code vehicle_position:<vehicleId>}, expiring after the given TTL.
+     * @param positions Positions of one feed cycle; later entries win for a repeated vehicle.
+     * @param ttl Time to live of every key, at least one second.
+     * @return Mono of the number of keys written.
+     */
+    public Mono<Long> writeAll(List<VehiclePosition> positions, Duration ttl) {
+        if (positions.isEmpty()) {
+            return Mono.just(0L);
+        }
+        List<String> keys = new ArrayList<>(positions.size());
+        List<ByteBuffer> args = new ArrayList<>(positions.size() + 1);
+        args.add(ByteBuffer.wrap(Long.toString(Math.max(1, ttl.toSeconds())).getBytes(StandardCharsets.US_ASCII)));
+        var values = redisTemplate.getSerializationContext().getValueSerializationPair();
+        for (VehiclePosition position : positions) {
+            keys.add(KEY_PREFIX + position.getVehicleId());
+            args.add(values.write(position));
+        }
+        long start = System.nanoTime();
+        return redisTemplate.execute(SET_ALL_WITH_TTL, keys, args, AS_IS, COUNT)
+                .next()
+                .doOnSuccess(count -> {
+                    metrics.succeeded(start, positions.size());
+                    logger.debug("Wrote {} vehicle positions to Redis in {} ms",
+                            count, (System.nanoTime() - start) / 1_000_000);
+                })
+                .doOnError(error -> metrics.failed(start, positions.size()));
+    }
+}
@@ -0,0 +1,234 @@
+package com.transit.delay_prediction.service;
+
+import com.transit.delay_prediction.entity.VehiclePosition;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-behind sink persisting vehicle positions to PostgreSQL.
+ * Positions are queued in a bounded buffer and written by dedicated writer threads in batches of up to
+ * {@code postgres.vehicle-position.batch-size} rows, or whatever has arrived within
+ * {@code postgres.vehicle-position.flush-ms}, with one COPY per batch (JDBC batch inserts on other databases).
+ * When the buffer is full, {@link #persist} waits for space, which slows the feed pipeline down;
+ * if no space frees up within {@code postgres.vehicle-position.offer-timeout-ms} the position is not written
+ * to PostgreSQL and is counted as failed, but still passed on, so the rest of the cycle (Kafka publishing
+ * included) goes ahead.
+ * Rows are inserted without returning their generated ids.
+ */
+@Service
+public class VehiclePositionSink {
+    private static final Logger logger = LoggerFactory.getLogger(VehiclePositionSink.class);
+
+    private static final String COLUMNS =
+            "vehicle_id, trip_id, route_id, stop_id, latitude, longitude, \"timestamp\", delay";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private VehiclePositionPartitionService partitionService;
+
+    @Value("${postgres.vehicle-position.batch-size:500}")
+    private int batchSize;
+
+    @Value("${postgres.vehicle-position.flush-ms:1000}")
+    private long flushMillis;
+
+    @Value("${postgres.vehicle-position.queue-capacity:20000}")
+    private int queueCapacity;
+
+    @Value("${postgres.vehicle-position.offer-timeout-ms:5000}")
+    private long offerTimeoutMillis;
+
+    @Value("${postgres.vehicle-position.writer-threads:1}")
+    private int writerThreads;
+
+    private BlockingQueue<VehiclePosition> queue;
+    private ExecutorService writers;
+    private volatile boolean running;
+    private WriteMetrics metrics;
+
+    private final AtomicLong flushedRows = new AtomicLong();
+    private final AtomicLong failedRows = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private volatile long lastFlushMillis;
+
+    /**
+     * Point-in-time view of the sink for monitoring.
+     * @param queueDepth Positions waiting to be written.
+     * @param lastFlushMillis Duration of the most recent flush.
+     */
+    public record Stats(int queueDepth, int queueCapacity, long flushes, long flushedRows, long failedRows,
+                        long lastFlushMillis) {
+    }
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        metrics = new WriteMetrics(meterRegistry, "postgres");
+        Gauge.builder("vehicle.position.sink.queue", queue, BlockingQueue::size)
+                .description("Vehicle positions waiting to be written to PostgreSQL")
+                .register(meterRegistry);
+        Gauge.builder("vehicle.position.sink.capacity", queue, q -> queueCapacity)
+                .description("Capacity of the PostgreSQL write-behind queue")
+                .register(meterRegistry);
+        writers = Executors.newFixedThreadPool(writerThreads, new CustomizableThreadFactory("vehicle-position-sink-"));
+        running = true;
+        for (int i = 0; i < writerThreads; i++) {
+            writers.execute(this::writeLoop);
+        }
+        logger.info("Started vehicle position sink ({} writer threads, batch size {}, flush every {} ms, queue capacity {})",
+                writerThreads, batchSize, flushMillis, queueCapacity);
+    }
+
+    /**
+     * Stops accepting positions and writes out everything still queued.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        writers.shutdown();
+        if (!writers.awaitTermination(30, TimeUnit.SECONDS)) {
+            logger.warn("Vehicle position sink did not drain in time, {} positions not written", queue.size());
+            writers.shutdownNow();
+        }
+    }
+
+    /**
+     * Queues positions for writing, requesting more from upstream only once each has been queued.
+     * @param positions Positions to persist.
+     * @return Flux of the positions once queued.
+     */
+    public Flux<VehiclePosition> persist(Flux<VehiclePosition> positions) {
+        return positions.concatMap(this::persist);
+    }
+
+    /**
+     * Queues one position, waiting off the calling thread while the buffer is full.
+     * @return Mono of the position once queued, or once dropped if the buffer stays full for the offer timeout.
+     */
+    public Mono<VehiclePosition> persist(VehiclePosition position) {
+        if (!running) {
+            return Mono.error(new IllegalStateException("Vehicle position sink is stopped"));
+        }
+        if (queue.offer(position)) {
+            return Mono.just(position);
+        }
+        logger.debug("Vehicle position sink full ({} queued), waiting", queue.size());
+        return Mono.fromCallable(() -> {
+                    if (!queue.offer(position, offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                        failedRows.incrementAndGet();
+                        metrics.rejected(1);
+                        logger.warn("Vehicle position sink full for {} ms, not writing position of vehicle {} to PostgreSQL",
+                                offerTimeoutMillis, position.getVehicleId());
+                    }
+                    return position;
+                })
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    public Stats stats() {
+        return new Stats(queue.size(), queueCapacity, flushes.get(), flushedRows.get(), failedRows.get(),
+                lastFlushMillis);
+    }
+
+    private void writeLoop() {
+        List<VehiclePosition> batch = new ArrayList<>(batchSize);
+        try {
+            while (running || !queue.isEmpty()) {
+                VehiclePosition first = queue.poll(flushMillis, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushMillis);
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() == batchSize || remaining <= 0 || !running) break;
+                    VehiclePosition next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+                flush(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void flush(List<VehiclePosition> batch) {
+        long start = System.nanoTime();
+        try {
+            jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                if (connection.isWrapperFor(PGConnection.class)) {
+                    copy(connection.unwrap(PGConnection.class).getCopyAPI(), batch);
+                } else {
+                    insert(batch);
+                }
+                return null;
+            });
+            partitionService.written(batch);
+            flushedRows.addAndGet(batch.size());
+            metrics.succeeded(start, batch.size());
+        } catch (RuntimeException e) {
+            failedRows.addAndGet(batch.size());
+            metrics.failed(start, batch.size());
+            logger.error("Failed to write {} vehicle positions: {}", batch.size(), e.getMessage(), e);
+        } finally {
+            lastFlushMillis = (System.nanoTime() - start) / 1_000_000;
+            flushes.incrementAndGet();
+        }
+        logger.debug("Flushed {} vehicle positions in {} ms ({} queued)", batch.size(), lastFlushMillis, queue.size());
+    }
+
+    private static void copy(CopyManager copyManager, List<VehiclePosition> batch) {
+        StringBuilder rows = new StringBuilder(batch.size() * 128);
+        for (VehiclePosition position : batch) {
+            GtfsBulkLoader.appendCopyRow(rows, row(position));
+        }
+        try {
+            copyManager.copyIn("COPY vehicle_position (" + COLUMNS + ") FROM STDIN", new StringReader(rows.toString()));
+        } catch (Exception e) {
+            throw new IllegalStateException("COPY into vehicle_position failed: " + e.getMessage(), e);
+        }
+    }
+
+    private void insert(List<VehiclePosition> batch) {
+        jdbcTemplate.batchUpdate("INSERT INTO vehicle_position (" + COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?)",
+                batch.stream().map(VehiclePositionSink::row).toList());
+    }
+
+    private static Object[] row(VehiclePosition position) {
+        return new Object[] {position.getVehicleId(), position.getTripId(), position.getRouteId(),
+                position.getStopId(), position.getLatitude(), position.getLongitude(), position.getTimestamp(),
+                position.getDelay()};
+    }
+}
@@ -0,0 +1,65 @@
+package com.transit.delay_prediction.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency and row counts of the writes to one vehicle position store, by outcome:
+ * {@code vehicle.position.write} times each write call (a Redis batch, a PostgreSQL flush, a Kafka send) and
+ * {@code vehicle.position.write.rows} counts the rows they carried.
+ */
+final class WriteMetrics {
+    private final Timer succeeded;
+    private final Timer failed;
+    private final Counter succeededRows;
+    private final Counter failedRows;
+
+    WriteMetrics(MeterRegistry registry, String store) {
+        this.succeeded = timer(registry, store, "success");
+        this.failed = timer(registry, store, "error");
+        this.succeededRows = rows(registry, store, "success");
+        this.failedRows = rows(registry, store, "error");
+    }
+
+    private static Timer timer(MeterRegistry registry, String store, String outcome) {
+        return Timer.builder("vehicle.position.write")
+                .description("Vehicle position writes")
+                .tag("store", store)
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    private static Counter rows(MeterRegistry registry, String store, String outcome) {
+        return Counter.builder("vehicle.position.write.rows")
+                .description("Vehicle positions written")
+                .tag("store", store)
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    /**
+     * @param startNanos {@link System#nanoTime()} when the write started.
+     */
+    void succeeded(long startNanos, int rows) {
+        succeeded.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        succeededRows.increment(rows);
+    }
+
+    /**
+     * @param startNanos {@link System#nanoTime()} when the write started.
+     */
+    void failed(long startNanos, int rows) {
+        failed.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        failedRows.increment(rows);
+    }
+
+    /**
+     * Counts rows that failed without a write being attempted.
+     */
+    void rejected(int rows) {
+        failedRows.increment(rows);
+    }
+}
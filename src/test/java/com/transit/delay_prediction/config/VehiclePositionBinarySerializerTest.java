@@ -0,0 +1,68 @@
+package com.transit.delay_prediction.config;
+
+import com.transit.delay_prediction.entity.VehiclePosition;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VehiclePositionBinarySerializerTest {
+
+	private final VehiclePositionBinarySerializer serializer = new VehiclePositionBinarySerializer();
+
+	static VehiclePosition position() {
+		VehiclePosition position = new VehiclePosition();
+		position.setVehicleId("MTA NYCT_7612");
+		position.setTripId("FP_D5-Weekday-SDon-066100_B41_601");
+		position.setRouteId("B41");
+		position.setStopId("303215");
+		position.setLatitude(40.645923);
+		position.setLongitude(-73.957374);
+		position.setTimestamp(LocalDateTime.of(2025, 3, 14, 11, 2, 37));
+		position.setDelay(184);
+		return position;
+	}
+
+	@Test
+	void roundTripsAllFields() {
+		VehiclePosition position = position();
+		position.setId(42L);
+		position.setPredictedDelay(151.25);
+		position.setUpstreamStopId("303216");
+		position.setUpstreamArrival(LocalDateTime.of(2025, 3, 14, 11, 4, 10));
+		position.setUpstreamDelay(-12);
+
+		assertEquals(position, serializer.deserialize(serializer.serialize(position)));
+	}
+
+	@Test
+	void roundTripsNullFields() {
+		VehiclePosition position = new VehiclePosition();
+		position.setVehicleId("MTA NYCT_7612");
+
+		assertEquals(position, serializer.deserialize(serializer.serialize(position)));
+	}
+
+	@Test
+	void keepsOnTimeApartFromUnknownDelay() {
+		VehiclePosition onTime = position();
+		onTime.setDelay(0);
+		VehiclePosition unknown = position();
+		unknown.setDelay(null);
+
+		assertEquals(0, serializer.deserialize(serializer.serialize(onTime)).getDelay());
+		assertNull(serializer.deserialize(serializer.serialize(unknown)).getDelay());
+	}
+
+	@Test
+	void isSmallerThanJson() {
+		VehiclePosition position = position();
+
+		int binary = serializer.serialize(position).length;
+		int json = RedisConfig.jsonSerializer().serialize(position).length;
+		assertTrue(binary * 2 < json, "binary " + binary + " bytes, JSON " + json + " bytes");
+	}
+}
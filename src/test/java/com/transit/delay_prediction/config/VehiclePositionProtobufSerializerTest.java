@@ -0,0 +1,114 @@
+package com.transit.delay_prediction.config;
+
+import com.google.protobuf.DescriptorProtos.DescriptorProto;
+import com.google.protobuf.DescriptorProtos.FieldDescriptorProto;
+import com.google.protobuf.DescriptorProtos.FieldDescriptorProto.Type;
+import com.google.protobuf.DescriptorProtos.FileDescriptorProto;
+import com.google.protobuf.DescriptorProtos.OneofDescriptorProto;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.FileDescriptor;
+import com.google.protobuf.DynamicMessage;
+import com.transit.delay_prediction.entity.VehiclePosition;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VehiclePositionProtobufSerializerTest {
+
+	private final VehiclePositionProtobufSerializer serializer = new VehiclePositionProtobufSerializer();
+
+	/**
+	 * Descriptor equivalent to src/main/proto/vehicle_position.proto.
+	 */
+	private static Descriptor schema() throws Exception {
+		DescriptorProto message = DescriptorProto.newBuilder()
+				.setName("VehiclePosition")
+				.addField(field("id", 1, Type.TYPE_INT64))
+				.addField(field("vehicle_id", 2, Type.TYPE_STRING))
+				.addField(field("trip_id", 3, Type.TYPE_STRING))
+				.addField(field("route_id", 4, Type.TYPE_STRING))
+				.addField(field("stop_id", 5, Type.TYPE_STRING))
+				.addField(field("latitude", 6, Type.TYPE_DOUBLE))
+				.addField(field("longitude", 7, Type.TYPE_DOUBLE))
+				.addField(field("timestamp_ms", 8, Type.TYPE_INT64))
+				.addField(field("delay_seconds", 9, Type.TYPE_SINT32).toBuilder()
+						.setProto3Optional(true).setOneofIndex(0))
+				.addOneofDecl(OneofDescriptorProto.newBuilder().setName("_delay_seconds"))
+				.addField(field("predicted_delay_seconds", 10, Type.TYPE_DOUBLE))
+				.addField(field("upstream_stop_id", 11, Type.TYPE_STRING))
+				.addField(field("upstream_arrival_ms", 12, Type.TYPE_INT64))
+				.addField(field("upstream_delay_seconds", 13, Type.TYPE_SINT32))
+				.build();
+		FileDescriptorProto file = FileDescriptorProto.newBuilder()
+				.setName("vehicle_position.proto")
+				.setPackage("transit.delay_prediction")
+				.setSyntax("proto3")
+				.addMessageType(message)
+				.build();
+		return FileDescriptor.buildFrom(file, new FileDescriptor[0]).findMessageTypeByName("VehiclePosition");
+	}
+
+	private static FieldDescriptorProto field(String name, int number, Type type) {
+		return FieldDescriptorProto.newBuilder().setName(name).setNumber(number).setType(type)
+				.setLabel(FieldDescriptorProto.Label.LABEL_OPTIONAL).build();
+	}
+
+	@Test
+	void encodesAccordingToSchema() throws Exception {
+		VehiclePosition position = VehiclePositionBinarySerializerTest.position();
+		position.setId(42L);
+		position.setDelay(-75);
+		position.setPredictedDelay(-42.5);
+		position.setUpstreamStopId("303216");
+		position.setUpstreamArrival(position.getTimestamp().plusSeconds(93));
+		position.setUpstreamDelay(-60);
+		Descriptor schema = schema();
+
+		DynamicMessage message = DynamicMessage.parseFrom(schema, serializer.serialize("vehicle_positions", position));
+
+		assertEquals(42L, message.getField(schema.findFieldByName("id")));
+		assertEquals("MTA NYCT_7612", message.getField(schema.findFieldByName("vehicle_id")));
+		assertEquals("B41", message.getField(schema.findFieldByName("route_id")));
+		assertEquals("303215", message.getField(schema.findFieldByName("stop_id")));
+		assertEquals(40.645923, message.getField(schema.findFieldByName("latitude")));
+		assertEquals(-73.957374, message.getField(schema.findFieldByName("longitude")));
+		// 2025-03-14T11:02:37 in New York is 15:02:37 UTC
+		assertEquals(1_741_964_557_000L, message.getField(schema.findFieldByName("timestamp_ms")));
+		assertEquals(-75, message.getField(schema.findFieldByName("delay_seconds")));
+		assertEquals(-42.5, message.getField(schema.findFieldByName("predicted_delay_seconds")));
+		assertEquals("303216", message.getField(schema.findFieldByName("upstream_stop_id")));
+		assertEquals(1_741_964_650_000L, message.getField(schema.findFieldByName("upstream_arrival_ms")));
+		assertEquals(-60, message.getField(schema.findFieldByName("upstream_delay_seconds")));
+		assertEquals(0, message.getUnknownFields().asMap().size());
+	}
+
+	@Test
+	void omitsAbsentFields() throws Exception {
+		VehiclePosition position = new VehiclePosition();
+		position.setVehicleId("MTA NYCT_7612");
+		Descriptor schema = schema();
+
+		DynamicMessage message = DynamicMessage.parseFrom(schema, serializer.serialize("vehicle_positions", position));
+
+		assertEquals(1, message.getAllFields().size());
+		assertFalse(message.hasField(schema.findFieldByName("timestamp_ms")));
+	}
+
+	@Test
+	void distinguishesOnTimeFromUnknownDelay() throws Exception {
+		VehiclePosition position = new VehiclePosition();
+		position.setVehicleId("MTA NYCT_7612");
+		position.setDelay(0);
+		Descriptor schema = schema();
+
+		DynamicMessage onTime = DynamicMessage.parseFrom(schema, serializer.serialize("vehicle_positions", position));
+		position.setDelay(null);
+		DynamicMessage unknown = DynamicMessage.parseFrom(schema, serializer.serialize("vehicle_positions", position));
+
+		assertTrue(onTime.hasField(schema.findFieldByName("delay_seconds")));
+		assertEquals(0, onTime.getField(schema.findFieldByName("delay_seconds")));
+		assertFalse(unknown.hasField(schema.findFieldByName("delay_seconds")));
+	}
+}
@@ -0,0 +1,85 @@
+package com.transit.delay_prediction.service;
+
+import com.transit.delay_prediction.entity.VehiclePosition;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ConflatingDeltaStreamTest {
+
+	private static VehiclePosition position(String vehicleId, String routeId, double lat, double lon) {
+		VehiclePosition position = new VehiclePosition();
+		position.setVehicleId(vehicleId);
+		position.setRouteId(routeId);
+		position.setLatitude(lat);
+		position.setLongitude(lon);
+		return position;
+	}
+
+	private static VehicleChange moved(VehiclePosition previous, VehiclePosition current) {
+		return new VehicleChange(current.getVehicleId(), previous, current, VehicleDelta.Update.of(current, -1));
+	}
+
+	private final Sinks.Many<List<VehicleChange>> changes = Sinks.many().multicast().directBestEffort();
+
+	private final VehiclePosition first = position("V1", "B41", 40.65, -73.95);
+	private final VehiclePosition other = position("V2", "B63", 40.66, -73.98);
+	private final LiveVehicleSnapshot snapshot = LiveVehicleSnapshot.of(List.of(first, other), tripId -> -1);
+
+	@Test
+	void startsWithMatchingVehiclesOfSnapshot() {
+		StepVerifier.create(ConflatingDeltaStream.create(changes.asFlux(), () -> snapshot, VehicleFilter.routes(Set.of("B41"))))
+				.assertNext(delta -> {
+					assertEquals(List.of("V1"), delta.updated().stream().map(VehicleDelta.Update::vehicleId).toList());
+					assertEquals(List.of(), delta.removed());
+				})
+				.thenCancel()
+				.verify();
+	}
+
+	@Test
+	void conflatesCyclesWhileSubscriberIsNotReading() {
+		VehiclePosition second = position("V1", "B41", 40.66, -73.95);
+		VehiclePosition third = position("V1", "B41", 40.67, -73.95);
+		VehiclePosition otherMoved = position("V2", "B63", 40.70, -73.98);
+
+		StepVerifier.create(ConflatingDeltaStream.create(changes.asFlux(), () -> snapshot, VehicleFilter.ALL), 1)
+				.expectNextCount(1)
+				.then(() -> {
+					changes.tryEmitNext(List.of(moved(first, second)));
+					changes.tryEmitNext(List.of(moved(second, third), moved(other, otherMoved)));
+				})
+				.thenRequest(1)
+				.assertNext(delta -> {
+					assertEquals(2, delta.updated().size());
+					assertEquals(40.67, delta.updated().get(0).latitude());
+					assertEquals(40.70, delta.updated().get(1).latitude());
+				})
+				.then(() -> changes.tryEmitNext(List.of(new VehicleChange("V2", otherMoved, null, null))))
+				.thenRequest(1)
+				.assertNext(delta -> {
+					assertEquals(List.of(), delta.updated());
+					assertEquals(List.of("V2"), delta.removed());
+				})
+				.thenCancel()
+				.verify();
+	}
+
+	@Test
+	void removesVehiclesLeavingTheBoundingBox() {
+		VehiclePosition outside = position("V1", "B41", 40.80, -73.95);
+		VehicleFilter filter = VehicleFilter.ALL.within(40.60, -74.00, 40.70, -73.90);
+
+		StepVerifier.create(ConflatingDeltaStream.create(changes.asFlux(), () -> snapshot, filter))
+				.expectNextCount(1)
+				.then(() -> changes.tryEmitNext(List.of(moved(first, outside))))
+				.assertNext(delta -> assertEquals(List.of("V1"), delta.removed()))
+				.thenCancel()
+				.verify();
+	}
+}
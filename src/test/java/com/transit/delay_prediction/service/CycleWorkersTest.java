@@ -0,0 +1,85 @@
+package com.transit.delay_prediction.service;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CycleWorkersTest {
+
+	private static final long NO_DEADLINE = Long.MAX_VALUE;
+
+	@Test
+	void runsAtMostWorkersCyclesAtOnce() {
+		CycleWorkers workers = new CycleWorkers(2);
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger maxRunning = new AtomicInteger();
+		List<Boolean> ran = Flux.range(0, 6)
+			.flatMap(i -> workers.submit(() -> Mono.fromRunnable(() -> maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max))
+				.then(Mono.delay(Duration.ofMillis(20)))
+				.doOnTerminate(running::decrementAndGet)
+				.then(), NO_DEADLINE))
+			.collectList()
+			.block(Duration.ofSeconds(5));
+
+		assertEquals(List.of(true, true, true, true, true, true), ran);
+		assertEquals(2, maxRunning.get());
+		workers.dispose();
+	}
+
+	@Test
+	void skipsCyclesThatCannotStartBeforeTheirDeadline() {
+		CycleWorkers workers = new CycleWorkers(1);
+		long deadline = System.currentTimeMillis() + 50;
+		Mono<Boolean> slow = workers.submit(() -> Mono.delay(Duration.ofMillis(200)).then(), deadline);
+		Mono<Boolean> late = workers.submit(() -> Mono.error(new AssertionError("late cycle ran")), deadline);
+
+		List<Boolean> ran = Flux.merge(slow, late).collectList().block(Duration.ofSeconds(5));
+
+		assertEquals(2, ran.size());
+		assertTrue(ran.contains(true));
+		assertTrue(ran.contains(false));
+		workers.dispose();
+	}
+
+	@Test
+	void aFailedCycleDoesNotStopTheWorkers() {
+		CycleWorkers workers = new CycleWorkers(1);
+
+		assertThrows(IllegalStateException.class,
+			() -> workers.submit(() -> Mono.error(new IllegalStateException("feed down")), NO_DEADLINE).block(Duration.ofSeconds(5)));
+		assertTrue(workers.submit(Mono::empty, NO_DEADLINE).block(Duration.ofSeconds(5)));
+		assertFalse(workers.submit(Mono::empty, 0).block(Duration.ofSeconds(5)));
+		workers.dispose();
+	}
+
+	@Test
+	void disposeCancelsTheRunningCycleAndStartsNoQueuedOne() throws InterruptedException {
+		CycleWorkers workers = new CycleWorkers(1);
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch cancelled = new CountDownLatch(1);
+		AtomicBoolean queuedRan = new AtomicBoolean();
+		workers.submit(() -> Mono.fromRunnable(started::countDown)
+			.then(Mono.never())
+			.doOnCancel(cancelled::countDown)
+			.then(), NO_DEADLINE).subscribe();
+		workers.submit(() -> Mono.fromRunnable(() -> queuedRan.set(true)), NO_DEADLINE).subscribe();
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+
+		workers.dispose();
+
+		assertTrue(cancelled.await(5, TimeUnit.SECONDS));
+		assertFalse(queuedRan.get());
+	}
+}
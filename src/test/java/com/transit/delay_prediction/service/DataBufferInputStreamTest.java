@@ -0,0 +1,55 @@
+package com.transit.delay_prediction.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DataBufferInputStreamTest {
+
+	@Test
+	void readsBuffersInOrder() throws IOException {
+		DefaultDataBufferFactory buffers = new DefaultDataBufferFactory();
+		DataBufferInputStream stream = new DataBufferInputStream();
+		Flux.just(buffers.wrap(new byte[] {1, 2}), buffers.wrap(new byte[0]), buffers.wrap(new byte[] {3}))
+			.subscribe(stream);
+
+		byte[] bytes = new byte[4];
+		assertEquals(2, stream.read(bytes, 0, 4));
+		assertEquals(3, stream.read());
+		assertEquals(-1, stream.read());
+	}
+
+	@Test
+	void closeWakesBlockedReader() throws Exception {
+		Sinks.Many<DataBuffer> body = Sinks.many().unicast().onBackpressureBuffer();
+		DataBufferInputStream stream = new DataBufferInputStream();
+		body.asFlux().subscribe(stream);
+		CompletableFuture<Integer> reader = CompletableFuture.supplyAsync(() -> {
+			try {
+				return stream.read();
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		});
+
+		Thread.sleep(50);
+		assertFalse(reader.isDone());
+		stream.close();
+
+		ExecutionException failure = assertThrows(ExecutionException.class, () -> reader.get(5, TimeUnit.SECONDS));
+		assertInstanceOf(IOException.class, failure.getCause().getCause());
+		assertEquals(0, body.currentSubscriberCount());
+	}
+}
@@ -0,0 +1,87 @@
+package com.transit.delay_prediction.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FeedArchiveLogTest {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void findsSnapshotsOfATimeRangeAcrossSegments() throws IOException {
+		try (FeedArchiveLog log = new FeedArchiveLog(directory, 100)) {
+			for (long timestamp = 1_000; timestamp < 1_300; timestamp += 30) {
+				append(log, timestamp);
+			}
+
+			List<FeedArchiveLog.Entry> entries = log.find(1_050, 1_180);
+
+			assertEquals(List.of(1_060L, 1_090L, 1_120L, 1_150L, 1_180L),
+					entries.stream().map(FeedArchiveLog.Entry::timestamp).toList());
+			assertTrue(entries.stream().map(FeedArchiveLog.Entry::segment).distinct().count() > 1);
+			assertArrayEquals(payload(1_120), log.read(entries.get(2)).compressed());
+			assertEquals(List.of(), log.find(2_000, 3_000));
+		}
+	}
+
+	@Test
+	void continuesInANewSegmentAfterReopening() throws IOException {
+		try (FeedArchiveLog log = new FeedArchiveLog(directory, 1 << 20)) {
+			append(log, 1_000);
+			append(log, 1_030);
+		}
+		try (FeedArchiveLog log = new FeedArchiveLog(directory, 1 << 20)) {
+			assertFalse(append(log, 1_030));
+			assertTrue(append(log, 1_060));
+
+			assertEquals(List.of(1_000L, 1_030L, 1_060L),
+					log.find(0, Long.MAX_VALUE).stream().map(FeedArchiveLog.Entry::timestamp).toList());
+			assertTrue(Files.exists(directory.resolve("1060.seg")));
+		}
+	}
+
+	@Test
+	void ignoresPartialIndexEntriesAndDetectsCorruption() throws IOException {
+		try (FeedArchiveLog log = new FeedArchiveLog(directory, 1 << 20)) {
+			append(log, 1_000);
+			append(log, 1_030);
+		}
+		try (FileChannel index = FileChannel.open(directory.resolve("1000.idx"), StandardOpenOption.APPEND)) {
+			index.write(ByteBuffer.wrap(new byte[7]));
+		}
+		FeedArchiveLog log = new FeedArchiveLog(directory, 1 << 20);
+		List<FeedArchiveLog.Entry> entries = log.find(0, Long.MAX_VALUE);
+		assertEquals(2, entries.size());
+
+		try (FileChannel segment = FileChannel.open(directory.resolve("1000.seg"), StandardOpenOption.WRITE)) {
+			segment.write(ByteBuffer.wrap(new byte[] {'X'}), entries.get(1).offset() + FeedArchiveLog.RECORD_HEADER_BYTES);
+		}
+		assertArrayEquals(payload(1_000), log.read(entries.get(0)).compressed());
+		assertThrows(IOException.class, () -> log.read(entries.get(1)));
+	}
+
+	private static boolean append(FeedArchiveLog log, long timestamp) throws IOException {
+		byte[] payload = payload(timestamp);
+		return log.append(timestamp, payload, payload.length, payload.length);
+	}
+
+	private static byte[] payload(long timestamp) {
+		return ("snapshot " + timestamp).getBytes(StandardCharsets.US_ASCII);
+	}
+}
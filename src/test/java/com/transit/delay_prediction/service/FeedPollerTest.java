@@ -0,0 +1,61 @@
+package com.transit.delay_prediction.service;
+
+import com.google.transit.realtime.GtfsRealtime.FeedHeader;
+import com.transit.delay_prediction.config.GtfsRtFeedProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FeedPollerTest {
+
+	private static FeedPoller poller() {
+		return new FeedPoller("test", GtfsRtFeedProperties.Type.VEHICLE_POSITIONS, "http://localhost/feed", null,
+				List.of(), Duration.ofSeconds(5), Duration.ofSeconds(60), 60, new SimpleMeterRegistry());
+	}
+
+	private static FeedHeader header(long timestamp) {
+		return FeedHeader.newBuilder().setGtfsRealtimeVersion("2.0").setTimestamp(timestamp).build();
+	}
+
+	@Test
+	void recordsTheSnapshotOnceItsCycleCompletes() {
+		FeedPoller feed = poller();
+		feed.onStarted(0);
+		feed.onValidators("\"v1\"", null);
+		assertTrue(feed.isNewSnapshot(header(1_000)));
+
+		assertEquals(0, feed.lastFeedTimestamp());
+		assertEquals(1_000, feed.snapshotTimestamp());
+		assertNull(feed.etag());
+
+		feed.onCompleted(0, 1_000_000);
+		assertEquals(1_000, feed.lastFeedTimestamp());
+		assertEquals("\"v1\"", feed.etag());
+
+		feed.onStarted(0);
+		assertFalse(feed.isNewSnapshot(header(1_000)));
+	}
+
+	@Test
+	void processesAFailedCycleSnapshotAgain() {
+		FeedPoller feed = poller();
+		feed.onStarted(0);
+		feed.onValidators("\"v1\"", "Mon, 06 Jan 2025 12:00:00 GMT");
+		assertTrue(feed.isNewSnapshot(header(1_000)));
+		feed.onFailed(0, 1_000);
+
+		assertEquals(0, feed.lastFeedTimestamp());
+		assertNull(feed.etag());
+		assertNull(feed.lastModified());
+
+		feed.onStarted(0);
+		assertTrue(feed.isNewSnapshot(header(1_000)));
+	}
+}
@@ -0,0 +1,51 @@
+package com.transit.delay_prediction.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GtfsBulkLoaderTest {
+
+	private static String copyRow(Object... row) {
+		StringBuilder buffer = new StringBuilder();
+		GtfsBulkLoader.appendCopyRow(buffer, row);
+		return buffer.toString();
+	}
+
+	@Test
+	void escapesCopyTextFormat() {
+		assertEquals("B41\tFlatbush Av\\tKings Hwy\\nvia \\\\ and \\r\n",
+				copyRow("B41", "Flatbush Av\tKings Hwy\nvia \\ and \r"));
+	}
+
+	@Test
+	void writesNullsBooleansAndNumbers() {
+		assertEquals("\\N\tt\tf\t3\t40.645923\n", copyRow(null, true, false, 3, 40.645923));
+		// A literal backslash-N string stays distinguishable from null
+		assertEquals("\\\\N\n", copyRow("\\N"));
+	}
+
+	@Test
+	void upsertLeavesIdenticalRowsUntouched() {
+		String sql = GtfsBulkLoader.upsertSql(GtfsTable.AGENCY, "VALUES (?, ?, ?, ?, ?, ?)");
+
+		assertTrue(sql.startsWith("INSERT INTO \"agency\" AS t (\"agency_id\", \"agency_name\", \"agency_url\", "
+				+ "\"agency_timezone\", \"agency_lang\", \"agency_phone\") VALUES (?, ?, ?, ?, ?, ?) "
+				+ "ON CONFLICT (\"agency_id\") DO UPDATE SET \"agency_name\" = EXCLUDED.\"agency_name\", "), sql);
+		assertTrue(sql.endsWith(" WHERE (t.\"agency_name\", t.\"agency_url\", t.\"agency_timezone\", t.\"agency_lang\", "
+				+ "t.\"agency_phone\") IS DISTINCT FROM (EXCLUDED.\"agency_name\", EXCLUDED.\"agency_url\", "
+				+ "EXCLUDED.\"agency_timezone\", EXCLUDED.\"agency_lang\", EXCLUDED.\"agency_phone\")"), sql);
+		assertFalse(sql.contains("\"agency_id\" = EXCLUDED"), sql);
+	}
+
+	@Test
+	void mergesTheLastStagedRowOfARepeatedKey() {
+		String sql = GtfsBulkLoader.mergeSql(GtfsTable.AGENCY);
+
+		assertTrue(sql.contains(" SELECT DISTINCT ON (\"agency_id\") \"agency_id\", \"agency_name\", \"agency_url\", "
+				+ "\"agency_timezone\", \"agency_lang\", \"agency_phone\" FROM \"stage_agency\" "
+				+ "ORDER BY \"agency_id\", \"stage_ordinal\" DESC ON CONFLICT "), sql);
+	}
+}
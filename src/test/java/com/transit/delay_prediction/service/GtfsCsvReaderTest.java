@@ -0,0 +1,49 @@
+package com.transit.delay_prediction.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GtfsCsvReaderTest {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void readsQuotedFieldsByHeaderName() throws Exception {
+		Path file = dir.resolve("stops.txt");
+		Files.writeString(file, "\uFEFFstop_id,stop_name,stop_lat\n"
+				+ "1,\"Flatbush Av, \"\"Junction\"\"\",40.63\n"
+				+ "\n"
+				+ "2,,40.64\n", StandardCharsets.UTF_8);
+
+		List<GtfsCsvReader.Row> rows;
+		try (Stream<GtfsCsvReader.Row> stream = GtfsCsvReader.rows(file)) {
+			rows = stream.toList();
+		}
+
+		assertEquals(2, rows.size());
+		assertEquals("1", rows.get(0).get("stop_id"));
+		assertEquals("Flatbush Av, \"Junction\"", rows.get(0).get("stop_name"));
+		assertEquals(40.63, rows.get(0).getDouble("stop_lat"));
+		assertNull(rows.get(1).get("stop_name"));
+		assertNull(rows.get(1).get("zone_id"));
+	}
+
+	@Test
+	void missingFileIsEmpty() throws Exception {
+		try (Stream<GtfsCsvReader.Row> stream = GtfsCsvReader.rows(dir.resolve("shapes.txt"))) {
+			assertTrue(stream.findAny().isEmpty());
+		}
+	}
+
+}
@@ -0,0 +1,153 @@
+package com.transit.delay_prediction.service;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.transit.realtime.GtfsRealtime.FeedEntity;
+import com.google.transit.realtime.GtfsRealtime.FeedHeader;
+import com.google.transit.realtime.GtfsRealtime.FeedMessage;
+import com.google.transit.realtime.GtfsRealtime.Position;
+import com.google.transit.realtime.GtfsRealtime.TripDescriptor;
+import com.google.transit.realtime.GtfsRealtime.VehicleDescriptor;
+import com.google.transit.realtime.GtfsRealtime.VehiclePosition;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GtfsRtFeedDecoderTest {
+
+	private static FeedMessage feed(String... routeIds) {
+		FeedMessage.Builder feed = FeedMessage.newBuilder()
+				.setHeader(FeedHeader.newBuilder().setGtfsRealtimeVersion("2.0").setTimestamp(1_700_000_000L));
+		for (int i = 0; i < routeIds.length; i++) {
+			feed.addEntity(FeedEntity.newBuilder()
+					.setId("E" + i)
+					.setVehicle(VehiclePosition.newBuilder()
+							.setTrip(TripDescriptor.newBuilder().setTripId("T" + i).setRouteId(routeIds[i]))));
+		}
+		return feed.build();
+	}
+
+	@Test
+	void emitsOnlyEntitiesOfMatchingRoutes() {
+		FeedMessage feed = feed("B41", "M15", "B63", "Q58");
+
+		List<FeedEntity> entities = GtfsRtFeedDecoder.decode(new ByteArrayInputStream(feed.toByteArray()),
+				header -> true, routeId -> routeId.startsWith("B")).collectList().block();
+
+		assertEquals(List.of(feed.getEntity(0), feed.getEntity(2)), entities);
+	}
+
+	@Test
+	void stopsWhenHeaderIsRejected() {
+		FeedMessage feed = feed("B41");
+
+		List<FeedEntity> entities = GtfsRtFeedDecoder.decode(new ByteArrayInputStream(feed.toByteArray()),
+				header -> header.getTimestamp() > 1_700_000_000L, routeId -> true).collectList().block();
+
+		assertTrue(entities.isEmpty());
+	}
+
+	@Test
+	void reportsCountsOfStreamedFeed() {
+		byte[] bytes = feed("B41", "M15", "B63", "Q58").toByteArray();
+		DefaultDataBufferFactory buffers = new DefaultDataBufferFactory();
+		Flux<DataBuffer> body = Flux.just(buffers.wrap(Arrays.copyOfRange(bytes, 0, 10)),
+				buffers.wrap(Arrays.copyOfRange(bytes, 10, bytes.length)));
+		List<GtfsRtFeedDecoder.Stats> reported = new ArrayList<>();
+
+		long emitted = GtfsRtFeedDecoder.decode(body, header -> true, routeId -> routeId.startsWith("B"), reported::add)
+				.count().block();
+
+		assertEquals(2, emitted);
+		assertEquals(1, reported.size());
+		assertEquals(bytes.length, reported.get(0).bytes());
+		assertEquals(4, reported.get(0).entities());
+		assertEquals(2, reported.get(0).matched());
+	}
+
+	@Test
+	void skipsRestOfRejectedEntitiesUnparsed() throws Exception {
+		// Vehicle of route M15 whose position is not valid protobuf: parsing it would fail
+		ByteArrayOutputStream vehicle = new ByteArrayOutputStream();
+		CodedOutputStream out = CodedOutputStream.newInstance(vehicle);
+		out.writeMessage(1, TripDescriptor.newBuilder().setTripId("T9").setRouteId("M15").build());
+		out.writeByteArray(2, new byte[] {(byte) 0xFF, (byte) 0xFF, 0x0F});
+		out.flush();
+		ByteArrayOutputStream entity = new ByteArrayOutputStream();
+		out = CodedOutputStream.newInstance(entity);
+		out.writeString(1, "E9");
+		out.writeByteArray(4, vehicle.toByteArray());
+		out.flush();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		feed("B41").writeTo(bytes);
+		out = CodedOutputStream.newInstance(bytes);
+		out.writeByteArray(2, entity.toByteArray());
+		out.flush();
+		out.writeMessage(2, FeedEntity.newBuilder().setId("E2")
+				.setVehicle(VehiclePosition.newBuilder()
+						.setVehicle(VehicleDescriptor.newBuilder().setId("V2"))
+						.setTrip(TripDescriptor.newBuilder().setTripId("T2").setRouteId("B63"))
+						.setStopId("S2"))
+				.build());
+		out.flush();
+
+		List<FeedEntity> entities = GtfsRtFeedDecoder.decode(new ByteArrayInputStream(bytes.toByteArray()),
+				header -> true, routeId -> routeId != null && routeId.startsWith("B")).collectList().block();
+
+		assertEquals(2, entities.size());
+		assertEquals("B41", entities.get(0).getVehicle().getTrip().getRouteId());
+		assertEquals("V2", entities.get(1).getVehicle().getVehicle().getId());
+		assertEquals("S2", entities.get(1).getVehicle().getStopId());
+		assertEquals("B63", entities.get(1).getVehicle().getTrip().getRouteId());
+	}
+
+	@Test
+	void keepsFieldsReadBeforeTheTrip() throws Exception {
+		Position position = Position.newBuilder().setLatitude(40.65f).setLongitude(-73.95f).build();
+		TripDescriptor trip = TripDescriptor.newBuilder().setTripId("T2").setRouteId("B63").build();
+		ByteArrayOutputStream vehicle = new ByteArrayOutputStream();
+		CodedOutputStream out = CodedOutputStream.newInstance(vehicle);
+		out.writeMessage(2, position);
+		out.writeUInt32(3, 7);
+		out.writeMessage(1, trip);
+		out.writeUInt64(5, 1_700_000_000L);
+		out.flush();
+		ByteArrayOutputStream entity = new ByteArrayOutputStream();
+		out = CodedOutputStream.newInstance(entity);
+		out.writeBool(2, false);
+		out.writeString(1, "E2");
+		out.writeByteArray(4, vehicle.toByteArray());
+		out.flush();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		out = CodedOutputStream.newInstance(bytes);
+		out.writeByteArray(2, entity.toByteArray());
+		out.flush();
+
+		List<FeedEntity> entities = GtfsRtFeedDecoder.decode(new ByteArrayInputStream(bytes.toByteArray()),
+				header -> true, routeId -> "B63".equals(routeId)).collectList().block();
+
+		assertEquals(List.of(FeedEntity.newBuilder().setId("E2").setIsDeleted(false)
+				.setVehicle(VehiclePosition.newBuilder().setPosition(position).setCurrentStopSequence(7).setTrip(trip)
+						.setTimestamp(1_700_000_000L))
+				.build()), entities);
+	}
+
+	@Test
+	void testsEntitiesWithoutTripAsRouteless() {
+		FeedMessage feed = feed("B41").toBuilder().addEntity(FeedEntity.newBuilder().setId("ALERT")).build();
+
+		List<FeedEntity> entities = GtfsRtFeedDecoder.decode(new ByteArrayInputStream(feed.toByteArray()),
+				header -> true, routeId -> routeId == null).collectList().block();
+
+		assertEquals(List.of(feed.getEntity(1)), entities);
+	}
+}
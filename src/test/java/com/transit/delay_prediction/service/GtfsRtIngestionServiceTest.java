@@ -0,0 +1,72 @@
+package com.transit.delay_prediction.service;
+
+import com.google.transit.realtime.GtfsRealtime.FeedEntity;
+import com.google.transit.realtime.GtfsRealtime.Position;
+import com.google.transit.realtime.GtfsRealtime.TripDescriptor;
+import com.google.transit.realtime.GtfsRealtime.VehicleDescriptor;
+import com.google.transit.realtime.GtfsRealtime.VehiclePosition.Builder;
+import com.transit.delay_prediction.config.GtfsRtFeedProperties;
+import com.transit.delay_prediction.entity.VehiclePosition;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class GtfsRtIngestionServiceTest {
+
+	@Mock
+	private ScheduleDeviationService deviationService;
+
+	@Mock
+	private TripStateService tripStateService;
+
+	@Mock
+	private DelayPredictionService predictionService;
+
+	@InjectMocks
+	private GtfsRtIngestionService service;
+
+	private static FeedPoller feed() {
+		return new FeedPoller("test", GtfsRtFeedProperties.Type.VEHICLE_POSITIONS, "http://localhost/feed", null,
+				List.of(), Duration.ofSeconds(5), Duration.ofSeconds(60), 60, new SimpleMeterRegistry());
+	}
+
+	private static FeedEntity vehicle(String vehicleId) {
+		Builder vehicle = com.google.transit.realtime.GtfsRealtime.VehiclePosition.newBuilder()
+				.setVehicle(VehicleDescriptor.newBuilder().setId(vehicleId))
+				.setTrip(TripDescriptor.newBuilder().setTripId("FP_D5-Weekday-SDon-066100_B41_601").setRouteId("B41"))
+				.setPosition(Position.newBuilder().setLatitude(40.645923f).setLongitude(-73.957374f))
+				.setTimestamp(1_741_964_557L);
+		return FeedEntity.newBuilder().setId(vehicleId).setVehicle(vehicle).build();
+	}
+
+	@Test
+	void leavesTheDelayOfAnUnplacedVehicleUnknown() {
+		when(deviationService.observe(eq("MTA NYCT_7612"), any(), any(), anyInt(), any(), anyDouble(), anyDouble(),
+				any())).thenReturn(null);
+		when(deviationService.observe(eq("MTA NYCT_7613"), any(), any(), anyInt(), any(), anyDouble(), anyDouble(),
+				any())).thenReturn(0);
+
+		List<VehiclePosition> positions = service
+				.processEntities(Flux.just(vehicle("MTA NYCT_7612"), vehicle("MTA NYCT_7613")), feed())
+				.collectList().block();
+
+		assertNull(positions.get(0).getDelay());
+		assertEquals(0, positions.get(1).getDelay());
+	}
+}
@@ -0,0 +1,117 @@
+package com.transit.delay_prediction.service;
+
+import com.transit.delay_prediction.entity.GtfsFileFingerprint;
+import com.transit.delay_prediction.repository.GtfsFileFingerprintRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class GtfsStaticIngestionServiceTest {
+
+	@Mock
+	private GtfsBulkLoader bulkLoader;
+
+	@Mock
+	private GtfsFileFingerprintRepository fingerprintRepository;
+
+	@InjectMocks
+	private GtfsStaticIngestionService service;
+
+	@TempDir
+	private Path feed;
+
+	@BeforeEach
+	void writeFeed() throws IOException {
+		Files.writeString(feed.resolve("agency.txt"),
+				"agency_id,agency_name,agency_url,agency_timezone\nMTA NYCT,MTA New York City Transit,http://www.mta.info,America/New_York\n");
+		Files.writeString(feed.resolve("routes.txt"), "route_id,agency_id,route_short_name,route_type\nB41,MTA NYCT,B41,3\n");
+		Files.writeString(feed.resolve("stops.txt"), "stop_id,stop_name,stop_lat,stop_lon\n303215,FLATBUSH AV/AV H,40.6329,-73.9475\n");
+		Files.writeString(feed.resolve("trips.txt"), "route_id,service_id,trip_id\nB41,WKD,T1\n");
+		Files.writeString(feed.resolve("stop_times.txt"),
+				"trip_id,arrival_time,departure_time,stop_id,stop_sequence\nT1,11:02:00,11:02:00,303215,1\n");
+	}
+
+	/**
+	 * Stores the fingerprints of the feed's current files, as a previous load would have.
+	 */
+	private void storeFingerprintsOfCurrentFiles() throws IOException, NoSuchAlgorithmException {
+		Map<String, String> stored = new HashMap<>();
+		for (GtfsTable table : GtfsTable.values()) {
+			stored.put(feed.getFileName() + "_" + table.getFileName(), sha256(feed.resolve(table.getFileName())));
+		}
+		when(fingerprintRepository.findById(anyString())).thenAnswer(invocation -> {
+			GtfsFileFingerprint fingerprint = new GtfsFileFingerprint();
+			fingerprint.setSha256(stored.get(invocation.<String>getArgument(0)));
+			return Optional.of(fingerprint);
+		});
+	}
+
+	private static String sha256(Path file) throws IOException, NoSuchAlgorithmException {
+		if (!Files.exists(file)) return "missing";
+		return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(Files.readAllBytes(file)));
+	}
+
+	@Test
+	void skipsAnUnchangedRelease() throws Exception {
+		storeFingerprintsOfCurrentFiles();
+
+		assertFalse(service.reloadGtfsStaticData(List.of(feed.toString())));
+
+		verify(bulkLoader, never()).stage(any(), any());
+		verify(bulkLoader, never()).mergeStaged(any());
+		verify(bulkLoader, never()).deleteMissing(any());
+		verify(fingerprintRepository, never()).saveAll(anyIterable());
+	}
+
+	@Test
+	void reloadsDependentTablesAndDeletesChildrenBeforeParents() throws Exception {
+		storeFingerprintsOfCurrentFiles();
+		Files.writeString(feed.resolve("routes.txt"), "route_id,agency_id,route_short_name,route_type\nB41,MTA NYCT,B41 Ltd,3\n");
+		when(bulkLoader.stage(any(), any())).thenReturn(1L);
+		when(bulkLoader.mergeStaged(any())).thenReturn(new GtfsBulkLoader.MergeResult(0, 1));
+
+		assertTrue(service.reloadGtfsStaticData(List.of(feed.toString())));
+
+		// Trips reference routes and stop times reference trips, so both are reloaded with them
+		InOrder order = inOrder(bulkLoader, fingerprintRepository);
+		order.verify(bulkLoader).mergeStaged(GtfsTable.ROUTE);
+		order.verify(bulkLoader).mergeStaged(GtfsTable.TRIP);
+		order.verify(bulkLoader).mergeStaged(GtfsTable.STOP_TIME);
+		order.verify(bulkLoader).deleteMissing(GtfsTable.STOP_TIME);
+		order.verify(bulkLoader).deleteMissing(GtfsTable.TRIP);
+		order.verify(bulkLoader).deleteMissing(GtfsTable.ROUTE);
+		order.verify(fingerprintRepository).saveAll(anyIterable());
+		verify(bulkLoader, never()).stage(eq(GtfsTable.AGENCY), any());
+		verify(bulkLoader, never()).stage(eq(GtfsTable.STOP), any());
+		verify(bulkLoader, never()).deleteMissing(GtfsTable.AGENCY);
+		verify(bulkLoader, never()).deleteMissing(GtfsTable.STOP);
+	}
+}
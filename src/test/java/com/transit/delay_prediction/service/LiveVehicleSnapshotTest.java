@@ -0,0 +1,83 @@
+package com.transit.delay_prediction.service;
+
+import com.transit.delay_prediction.entity.VehiclePosition;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class LiveVehicleSnapshotTest {
+
+	private static VehiclePosition position(String vehicleId, String routeId, String tripId, double lat, double lon) {
+		VehiclePosition position = new VehiclePosition();
+		position.setVehicleId(vehicleId);
+		position.setRouteId(routeId);
+		position.setTripId(tripId);
+		position.setLatitude(lat);
+		position.setLongitude(lon);
+		return position;
+	}
+
+	private final VehiclePosition north = position("V1", "B41", "T-north", 40.70, -73.95);
+	private final VehiclePosition south = position("V2", "B41", "T-south", 40.60, -73.96);
+	private final VehiclePosition other = position("V3", "B63", "T-other", 40.65, -74.00);
+	private final Map<String, Integer> directions = Map.of("T-north", 0, "T-south", 1);
+
+	private final LiveVehicleSnapshot snapshot = LiveVehicleSnapshot.of(List.of(north, south, other),
+			tripId -> directions.getOrDefault(tripId, ScheduleIndex.NOT_FOUND));
+
+	@Test
+	void findsVehicleById() {
+		assertSame(south, snapshot.vehicle("V2"));
+		assertNull(snapshot.vehicle("V9"));
+	}
+
+	@Test
+	void findsVehiclesByRouteAndDirection() {
+		assertEquals(List.of(north, south), snapshot.route("B41", LiveVehicleSnapshot.ANY_DIRECTION));
+		assertEquals(List.of(south), snapshot.route("B41", 1));
+		assertEquals(List.of(), snapshot.route("B63", 0));
+		assertEquals(List.of(), snapshot.route("Q58", LiveVehicleSnapshot.ANY_DIRECTION));
+	}
+
+	@Test
+	void findsVehiclesInBoundingBox() {
+		assertEquals(List.of(north, other), snapshot.within(40.65, -74.00, 40.75, -73.90));
+		assertEquals(List.of(), snapshot.within(41, -74, 42, -73));
+	}
+
+	@Test
+	void nearestAndRadiusMatchLinearScan() {
+		Random random = new Random(1);
+		List<VehiclePosition> fleet = new ArrayList<>();
+		for (int i = 0; i < 3_000; i++) {
+			fleet.add(position("V" + i, "B1", null, 40.50 + random.nextDouble() * 0.40, -74.25 + random.nextDouble() * 0.55));
+		}
+		LiveVehicleSnapshot large = LiveVehicleSnapshot.of(fleet, tripId -> ScheduleIndex.NOT_FOUND);
+		LocalProjection projection = LocalProjection.around(fleet.stream().mapToDouble(VehiclePosition::getLatitude).toArray());
+		for (int q = 0; q < 100; q++) {
+			double lat = 40.45 + random.nextDouble() * 0.50;
+			double lon = -74.30 + random.nextDouble() * 0.65;
+			Comparator<VehiclePosition> byDistance = Comparator.comparingDouble(p -> {
+				double dx = projection.x(p.getLongitude()) - projection.x(lon);
+				double dy = projection.y(p.getLatitude()) - projection.y(lat);
+				return dx * dx + dy * dy;
+			});
+			List<VehiclePosition> sorted = fleet.stream().sorted(byDistance).toList();
+			assertEquals(sorted.subList(0, 8), large.nearest(lat, lon, 8, Double.POSITIVE_INFINITY));
+			List<VehiclePosition> inRadius = sorted.stream()
+					.filter(p -> Math.hypot(projection.x(p.getLongitude()) - projection.x(lon),
+							projection.y(p.getLatitude()) - projection.y(lat)) <= 1_000)
+					.toList();
+			assertEquals(inRadius, large.within(lat, lon, 1_000));
+			assertEquals(inRadius.subList(0, Math.min(3, inRadius.size())), large.nearest(lat, lon, 3, 1_000));
+		}
+	}
+}
@@ -0,0 +1,28 @@
+package com.transit.delay_prediction.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LongIntMapTest {
+
+	@Test
+	void findsEveryRemainingKeyAfterRemovals() {
+		LongIntMap map = new LongIntMap(4);
+		long[] keys = new Random(42).longs(5_000).toArray();
+		for (int i = 0; i < keys.length; i++) {
+			map.put(keys[i], i);
+		}
+		for (int i = 0; i < keys.length; i += 3) {
+			map.remove(keys[i]);
+		}
+		map.remove(12345L);
+
+		for (int i = 0; i < keys.length; i++) {
+			assertEquals(i % 3 == 0 ? LongIntMap.MISSING : i, map.get(keys[i]));
+		}
+		assertEquals(keys.length - (keys.length + 2) / 3, map.size());
+	}
+}
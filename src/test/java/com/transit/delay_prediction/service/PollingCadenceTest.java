@@ -0,0 +1,47 @@
+package com.transit.delay_prediction.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PollingCadenceTest {
+
+	private final PollingCadence cadence =
+			new PollingCadence(Duration.ofSeconds(5), Duration.ofSeconds(60), Duration.ofSeconds(30));
+
+	@Test
+	void usesInitialDelayUntilCadenceIsKnown() {
+		assertEquals(Duration.ofSeconds(30), cadence.nextDelay(0));
+		cadence.onSnapshot(1_000);
+		assertEquals(Duration.ofSeconds(30), cadence.nextDelay(1_000_000));
+	}
+
+	@Test
+	void pollsJustAfterNextExpectedSnapshot() {
+		cadence.onSnapshot(1_000);
+		cadence.onSnapshot(1_020);
+
+		assertEquals(Duration.ofSeconds(20), cadence.getCadence());
+		assertEquals(Duration.ofSeconds(16), cadence.nextDelay(1_025_000));
+	}
+
+	@Test
+	void backsOffWhileNothingChanges() {
+		cadence.onSnapshot(1_000);
+		cadence.onSnapshot(1_020);
+
+		cadence.onUnchanged();
+		assertEquals(Duration.ofSeconds(10), cadence.nextDelay(1_041_000));
+		cadence.onUnchanged();
+		assertEquals(Duration.ofSeconds(20), cadence.nextDelay(1_051_000));
+		cadence.onUnchanged();
+		cadence.onUnchanged();
+		assertEquals(Duration.ofSeconds(60), cadence.nextDelay(1_071_000));
+
+		cadence.onSnapshot(1_080);
+		assertEquals(Duration.ofSeconds(32), cadence.getCadence());
+		assertEquals(Duration.ofSeconds(32), cadence.nextDelay(1_081_000));
+	}
+}
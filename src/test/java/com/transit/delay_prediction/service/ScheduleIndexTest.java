@@ -0,0 +1,94 @@
+package com.transit.delay_prediction.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ScheduleIndexTest {
+
+	@Test
+	void looksUpScheduledTimesByTripStopAndSequence() {
+		ScheduleIndex index = new ScheduleIndex.Builder()
+				.add("T1", "S1", 1, 28_800, 28_830)
+				.add("T1", "S2", 3, 29_100, 29_100)
+				.add("T2", "S2", 1, 30_000, ScheduleIndex.NOT_FOUND)
+				.build();
+
+		assertEquals(2, index.tripCount());
+		assertEquals(3, index.stopTimeCount());
+		assertEquals(29_100, index.arrivalSeconds("T1", "S2", 3));
+		assertEquals(28_830, index.departureSeconds("T1", "S1", 1));
+		assertEquals(30_000, index.arrivalSeconds("T2", "S2", 1));
+		assertEquals(ScheduleIndex.NOT_FOUND, index.departureSeconds("T2", "S2", 1));
+		assertEquals(ScheduleIndex.NOT_FOUND, index.arrivalSeconds("T1", "S1", 3));
+		assertEquals(ScheduleIndex.NOT_FOUND, index.arrivalSeconds("T1", "S2", 2));
+		assertEquals(ScheduleIndex.NOT_FOUND, index.arrivalSeconds("T3", "S1", 1));
+	}
+
+	@Test
+	void looksUpTripDirection() {
+		ScheduleIndex index = new ScheduleIndex.Builder()
+				.add("T1", "S1", 1, 0, 0, 1)
+				.add("T1", "S2", 2, 0, 0, 1)
+				.add("T2", "S1", 1, 0, 0)
+				.build();
+
+		assertEquals(1, index.directionId("T1"));
+		assertEquals(ScheduleIndex.NOT_FOUND, index.directionId("T2"));
+		assertEquals(ScheduleIndex.NOT_FOUND, index.directionId("T3"));
+	}
+
+	@Test
+	void rejectsTripsThatAreNotContiguous() {
+		ScheduleIndex.Builder builder = new ScheduleIndex.Builder()
+				.add("T1", "S1", 1, 0, 0)
+				.add("T2", "S1", 1, 0, 0);
+		assertThrows(IllegalArgumentException.class, () -> builder.add("T1", "S2", 2, 0, 0));
+	}
+
+	@Test
+	void resolvesServiceDateOfTripsRunningPastMidnight() {
+		ZoneId zone = ZoneId.of("America/New_York");
+		boolean[] everyDay = {true, true, true, true, true, true, true};
+		boolean[] weekdays = {true, true, true, true, true, false, false};
+		ServiceCalendar calendar = new ServiceCalendar.Builder()
+				.addWeekly("DAILY", everyDay, LocalDate.of(2025, 1, 1), LocalDate.of(2025, 12, 31))
+				.addWeekly("WEEKDAY", weekdays, LocalDate.of(2025, 1, 1), LocalDate.of(2025, 12, 31))
+				.build();
+		ScheduleIndex index = new ScheduleIndex.Builder(calendar)
+				.add("NIGHT", "S1", 1, 25 * 3600, 25 * 3600, 0, "DAILY")
+				.add("EARLY", "S1", 1, 300, 300, 0, "DAILY")
+				.add("FRIDAY_NIGHT", "S1", 1, 86_000, 86_000, 0, "WEEKDAY")
+				.add("UNKNOWN", "S1", 1, 3600, 3600, 0, "MISSING")
+				.build();
+
+		// Thursday 2025-06-12 at 01:00 is 25:00 of Wednesday's service
+		ZonedDateTime observed = LocalDateTime.of(2025, 6, 12, 1, 2).atZone(zone);
+		assertEquals(LocalDate.of(2025, 6, 11), index.serviceDate("NIGHT", 25 * 3600, observed));
+		// Wednesday at 23:58, a trip scheduled at 00:05 belongs to Thursday's service
+		ZonedDateTime beforeMidnight = LocalDateTime.of(2025, 6, 11, 23, 58).atZone(zone);
+		assertEquals(LocalDate.of(2025, 6, 12), index.serviceDate("EARLY", 300, beforeMidnight));
+		// Saturday just after midnight: the weekday trip can only be Friday's
+		ZonedDateTime saturday = LocalDateTime.of(2025, 6, 14, 0, 10).atZone(zone);
+		assertEquals(LocalDate.of(2025, 6, 13), index.serviceDate("FRIDAY_NIGHT", 86_000, saturday));
+		assertTrue(index.runsOn("FRIDAY_NIGHT", LocalDate.of(2025, 6, 13)));
+		assertFalse(index.runsOn("FRIDAY_NIGHT", LocalDate.of(2025, 6, 14)));
+		assertTrue(index.runsOn("UNKNOWN", LocalDate.of(2030, 1, 1)));
+		assertFalse(index.runsOn("T9", LocalDate.of(2025, 6, 13)));
+		assertEquals(LocalDate.of(2025, 6, 14), index.serviceDate("T9", 300, saturday));
+	}
+
+	@Test
+	void emptyIndexFindsNothing() {
+		assertEquals(ScheduleIndex.NOT_FOUND, ScheduleIndex.empty().arrivalSeconds("T1", "S1", 1));
+	}
+
+}
@@ -0,0 +1,86 @@
+package com.transit.delay_prediction.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ServiceCalendarTest {
+	private static final boolean[] WEEKDAYS = {true, true, true, true, true, false, false};
+	private static final boolean[] SATURDAY = {false, false, false, false, false, true, false};
+
+	@Test
+	void appliesWeeklyPatternsWithinTheirDateRange() {
+		ServiceCalendar calendar = new ServiceCalendar.Builder()
+				.addWeekly("WKD", WEEKDAYS, LocalDate.of(2025, 6, 1), LocalDate.of(2025, 6, 30))
+				.addWeekly("SAT", SATURDAY, LocalDate.of(2025, 6, 1), LocalDate.of(2025, 6, 30))
+				.build();
+
+		assertEquals(2, calendar.serviceCount());
+		assertTrue(calendar.isActive("WKD", LocalDate.of(2025, 6, 2)));
+		assertFalse(calendar.isActive("WKD", LocalDate.of(2025, 6, 7)));
+		assertTrue(calendar.isActive("SAT", LocalDate.of(2025, 6, 7)));
+		assertFalse(calendar.isActive("SAT", LocalDate.of(2025, 6, 8)));
+		assertFalse(calendar.isActive("WKD", LocalDate.of(2025, 7, 1)));
+		assertFalse(calendar.isActive("WKD", LocalDate.of(2025, 5, 30)));
+		assertFalse(calendar.isActive("NONE", LocalDate.of(2025, 6, 2)));
+	}
+
+	@Test
+	void exceptionsAddAndRemoveServiceWhateverTheOrder() {
+		ServiceCalendar calendar = new ServiceCalendar.Builder()
+				.addException("WKD", LocalDate.of(2025, 7, 4), 2)
+				.addException("SAT", LocalDate.of(2025, 7, 4), 1)
+				.addException("EXTRA", LocalDate.of(2025, 8, 1), 1)
+				.addWeekly("WKD", WEEKDAYS, LocalDate.of(2025, 6, 1), LocalDate.of(2025, 7, 31))
+				.addWeekly("SAT", SATURDAY, LocalDate.of(2025, 6, 1), LocalDate.of(2025, 7, 31))
+				.build();
+
+		assertFalse(calendar.isActive("WKD", LocalDate.of(2025, 7, 4)));
+		assertTrue(calendar.isActive("SAT", LocalDate.of(2025, 7, 4)));
+		assertTrue(calendar.isActive("WKD", LocalDate.of(2025, 7, 3)));
+		assertTrue(calendar.isActive("EXTRA", LocalDate.of(2025, 8, 1)));
+		assertFalse(calendar.isActive("EXTRA", LocalDate.of(2025, 7, 31)));
+	}
+
+	@Test
+	void handlesMoreServicesThanOneWord() {
+		ServiceCalendar.Builder builder = new ServiceCalendar.Builder();
+		for (int i = 0; i < 200; i++) {
+			builder.addException("S" + i, LocalDate.of(2025, 1, 1).plusDays(i), 1);
+		}
+		ServiceCalendar calendar = builder.build();
+
+		for (int i = 0; i < 200; i++) {
+			assertTrue(calendar.isActive("S" + i, LocalDate.of(2025, 1, 1).plusDays(i)));
+			assertFalse(calendar.isActive("S" + i, LocalDate.of(2025, 1, 2).plusDays(i)));
+		}
+	}
+
+	@Test
+	void rejectsInvalidRows() {
+		ServiceCalendar.Builder builder = new ServiceCalendar.Builder();
+		assertThrows(IllegalArgumentException.class,
+				() -> builder.addWeekly("S", WEEKDAYS, LocalDate.of(2025, 2, 1), LocalDate.of(2025, 1, 1)));
+		assertThrows(IllegalArgumentException.class, () -> builder.addException("S", LocalDate.of(2025, 1, 1), 3));
+	}
+
+	@Test
+	void countsTimesFromNoonMinusTwelveHours() {
+		ZoneId zone = ZoneId.of("America/New_York");
+
+		assertEquals(LocalDateTime.of(2025, 6, 12, 1, 30),
+				ServiceCalendar.at(LocalDate.of(2025, 6, 11), 25 * 3600 + 1800, zone).toLocalDateTime());
+		// Daylight saving time starts on 2025-03-09: the service day starts at 23:00 the evening before
+		assertEquals(LocalDateTime.of(2025, 3, 9, 8, 0),
+				ServiceCalendar.at(LocalDate.of(2025, 3, 9), 8 * 3600, zone).toLocalDateTime());
+		assertEquals(LocalDateTime.of(2025, 3, 8, 23, 0),
+				ServiceCalendar.at(LocalDate.of(2025, 3, 9), 0, zone).toLocalDateTime());
+	}
+}
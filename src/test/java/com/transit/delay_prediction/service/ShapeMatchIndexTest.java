@@ -0,0 +1,80 @@
+package com.transit.delay_prediction.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShapeMatchIndexTest {
+	private static final double LAT = 40.65;
+	private static final double WEST = -73.96;
+	private static final double EAST = -73.94;
+
+	private static ShapeMatchIndex index() {
+		ScheduleIndex schedule = new ScheduleIndex.Builder()
+				.add("T1", "S1", 1, 28_800, 28_800)
+				.add("T1", "S2", 2, 29_100, 29_160)
+				.add("T1", "S3", 3, 29_400, 29_400)
+				.add("T2", "S1", 1, 30_000, 30_000)
+				.add("T3", "S3", 1, 31_000, 31_000)
+				.add("T3", "S1", 2, 31_600, 31_600)
+				.build();
+		ShapeMatchIndex.Builder builder = new ShapeMatchIndex.Builder(schedule, ShapeMatchIndex.DEFAULT_MAX_DISTANCE_METRES);
+		for (int i = 0; i <= 20; i++) {
+			builder.addShapePoint("EAST", LAT, WEST + (EAST - WEST) * i / 20);
+		}
+		for (int i = 20; i >= 0; i--) {
+			builder.addShapePoint("WEST", LAT, WEST + (EAST - WEST) * i / 20);
+		}
+		return builder
+				.addTripShape("T1", "EAST")
+				.addTripShape("T3", "WEST")
+				.addStop("S1", LAT + 0.0002, WEST)
+				.addStop("S2", LAT - 0.0002, (WEST + EAST) / 2)
+				.addStop("S3", LAT, EAST)
+				.build();
+	}
+
+	@Test
+	void matchesPositionsToDistanceAlongTheShape() {
+		ShapeMatchIndex index = index();
+		double length = LocalProjection.distanceMetres(LAT, WEST, LAT, EAST);
+
+		assertEquals(2, index.shapeCount());
+		assertEquals(0, index.distanceAlong("T1", LAT, WEST), 1);
+		assertEquals(length / 4, index.distanceAlong("T1", LAT + 0.0003, WEST + (EAST - WEST) / 4), 1);
+		assertEquals(length / 4, index.distanceAlong("T3", LAT, EAST - (EAST - WEST) / 4), 1);
+		assertTrue(index.distanceAlong("T1", LAT + 0.01, (WEST + EAST) / 2) < 0);
+		assertTrue(index.distanceAlong("T2", LAT, WEST) < 0);
+		assertTrue(index.distanceAlong("T4", LAT, WEST) < 0);
+	}
+
+	@Test
+	void interpolatesScheduledTimeBetweenStops() {
+		ShapeMatchIndex index = index();
+		double quarter = (EAST - WEST) / 4;
+
+		assertEquals(28_950, index.scheduledSeconds("T1", LAT, WEST + quarter), 2);
+		assertEquals(29_280, index.scheduledSeconds("T1", LAT, EAST - quarter), 2);
+		assertEquals(31_150, index.scheduledSeconds("T3", LAT, EAST - quarter), 2);
+	}
+
+	@Test
+	void usesDepartureAtAStopAndClampsOutsideTheStops() {
+		ShapeMatchIndex index = index();
+
+		assertEquals(29_160, index.scheduledSeconds("T1", LAT, (WEST + EAST) / 2));
+		assertEquals(28_800, index.scheduledSeconds("T1", LAT, WEST - 0.0005));
+		assertEquals(29_400, index.scheduledSeconds("T1", LAT, EAST + 0.0005));
+	}
+
+	@Test
+	void returnsNotFoundWhenThePositionCannotBeMatched() {
+		ShapeMatchIndex index = index();
+
+		assertEquals(ScheduleIndex.NOT_FOUND, index.scheduledSeconds("T1", LAT + 0.01, (WEST + EAST) / 2));
+		assertEquals(ScheduleIndex.NOT_FOUND, index.scheduledSeconds("T2", LAT, WEST));
+		assertEquals(ScheduleIndex.NOT_FOUND, index.scheduledSeconds("T4", LAT, WEST));
+		assertEquals(ScheduleIndex.NOT_FOUND, ShapeMatchIndex.empty().scheduledSeconds("T1", LAT, WEST));
+	}
+}
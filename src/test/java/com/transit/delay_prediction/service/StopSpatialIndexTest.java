@@ -0,0 +1,85 @@
+package com.transit.delay_prediction.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StopSpatialIndexTest {
+
+	private static final int STOPS = 5_000;
+
+	private final double[] lat = new double[STOPS];
+	private final double[] lon = new double[STOPS];
+	private final StopSpatialIndex index;
+	private final LocalProjection projection;
+
+	StopSpatialIndexTest() {
+		Random random = new Random(11);
+		StopSpatialIndex.Builder builder = new StopSpatialIndex.Builder();
+		for (int i = 0; i < STOPS; i++) {
+			lat[i] = 40.50 + random.nextDouble() * 0.40;
+			lon[i] = -74.25 + random.nextDouble() * 0.55;
+			builder.add("S" + i, "Stop " + i, lat[i], lon[i]);
+		}
+		index = builder.build();
+		projection = LocalProjection.around(lat);
+	}
+
+	private double projectedSquared(int i, double qLat, double qLon) {
+		double dx = projection.x(lon[i]) - projection.x(qLon);
+		double dy = projection.y(lat[i]) - projection.y(qLat);
+		return dx * dx + dy * dy;
+	}
+
+	private List<String> bruteForce(double qLat, double qLon, int k, double maxMetres) {
+		return IntStream.range(0, STOPS).boxed()
+				.filter(i -> projectedSquared(i, qLat, qLon) <= maxMetres * maxMetres)
+				.sorted(Comparator.comparingDouble(i -> projectedSquared(i, qLat, qLon)))
+				.limit(k)
+				.map(i -> "S" + i)
+				.toList();
+	}
+
+	private static List<String> ids(List<StopSpatialIndex.NearbyStop> stops) {
+		List<String> ids = new ArrayList<>();
+		stops.forEach(stop -> ids.add(stop.stopId()));
+		return ids;
+	}
+
+	@Test
+	void nearestMatchesLinearScan() {
+		Random random = new Random(3);
+		for (int q = 0; q < 200; q++) {
+			double qLat = 40.45 + random.nextDouble() * 0.50;
+			double qLon = -74.30 + random.nextDouble() * 0.65;
+			assertEquals(bruteForce(qLat, qLon, 10, Double.POSITIVE_INFINITY),
+					ids(index.nearest(qLat, qLon, 10, Double.POSITIVE_INFINITY)));
+			assertEquals(bruteForce(qLat, qLon, 10, 300), ids(index.nearest(qLat, qLon, 10, 300)));
+		}
+	}
+
+	@Test
+	void radiusMatchesLinearScan() {
+		Random random = new Random(5);
+		for (int q = 0; q < 200; q++) {
+			double qLat = 40.50 + random.nextDouble() * 0.40;
+			double qLon = -74.25 + random.nextDouble() * 0.55;
+			assertEquals(bruteForce(qLat, qLon, Integer.MAX_VALUE, 800), ids(index.within(qLat, qLon, 800)));
+		}
+	}
+
+	@Test
+	void reportsGreatCircleDistance() {
+		StopSpatialIndex.NearbyStop stop = index.nearest(lat[42], lon[42], 1, Double.POSITIVE_INFINITY).get(0);
+		assertEquals("S42", stop.stopId());
+		assertEquals(0, stop.distanceMetres(), 1e-6);
+		assertTrue(StopSpatialIndex.empty().nearest(40.6, -73.9, 5, Double.POSITIVE_INFINITY).isEmpty());
+	}
+}
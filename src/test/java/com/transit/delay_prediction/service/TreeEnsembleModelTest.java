@@ -0,0 +1,63 @@
+package com.transit.delay_prediction.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TreeEnsembleModelTest {
+
+	// Tree 1 splits on hour <= 7.5, then on latitude <= 40.65; tree 2 is a single leaf
+	private static final String DUMP = """
+			{"format": "tree-ensemble-v1", "aggregation": "mean",
+			 "features": ["route_id_encoded", "hour", "latitude"],
+			 "encoders": {"route_id": ["B41", "B63"]},
+			 "trees": [
+			   {"feature": [1, -2, 2, -2, -2], "threshold": [7.5, -2, 40.65, -2, -2],
+			    "left": [1, -1, 3, -1, -1], "right": [2, -1, 4, -1, -1], "value": [0, 60, 0, 120, 300]},
+			   {"feature": [-2], "threshold": [-2], "left": [-1], "right": [-1], "value": [100]}
+			 ]}
+			""";
+
+	private static TreeEnsembleModel read(String json) throws IOException {
+		return TreeEnsembleModel.read(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	@Test
+	void averagesTreeOutputs() throws IOException {
+		TreeEnsembleModel model = read(DUMP);
+
+		assertEquals(2, model.treeCount());
+		assertEquals(80, model.predict(new double[] {0, 7, 40.70}));
+		assertEquals(80, model.predict(new double[] {0, 7.5, 40.70}));
+		assertEquals(110, model.predict(new double[] {0, 8, 40.60}));
+		assertEquals(200, model.predict(new double[] {0, 8, 40.70}));
+	}
+
+	@Test
+	void comparesFeaturesAsFloat32() throws IOException {
+		// 40.6500016 is above the threshold 40.65f as a double, but rounds onto it as a float32
+		String dump = DUMP.replace("40.65", String.valueOf((double) 40.65f));
+
+		assertEquals(110, read(dump).predict(new double[] {0, 8, 40.6500016}));
+	}
+
+	@Test
+	void encodesLabelsAndUnseenValues() throws IOException {
+		TreeEnsembleModel model = read(DUMP);
+
+		assertEquals(1, model.encode("route_id", "B63"));
+		assertEquals(-1, model.encode("route_id", "Q58"));
+		assertEquals(-1, model.encode("stop_id", "303215"));
+	}
+
+	@Test
+	void rejectsMalformedTrees() {
+		assertThrows(IOException.class, () -> read(DUMP.replace("\"left\": [1, -1, 3", "\"left\": [0, -1, 3")));
+		assertThrows(IOException.class, () -> read("{\"format\": \"xgboost\"}"));
+	}
+}
@@ -0,0 +1,134 @@
+package com.transit.delay_prediction.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class TripDeviationEngineTest {
+	private static final ZoneId ZONE = ZoneId.of("America/New_York");
+	private static final LocalDate DAY = LocalDate.of(2025, 6, 11);
+	private static final double LAT = 40.65;
+	private static final double WEST = -73.96;
+	private static final double EAST = -73.94;
+	private static final double MIDDLE = (WEST + EAST) / 2;
+	// The return leg of the loop runs about 11 m north of the outbound leg
+	private static final double RETURN_LAT = LAT + 0.0001;
+
+	private static ShapeMatchIndex index() {
+		ScheduleIndex schedule = new ScheduleIndex.Builder()
+				.add("LINE", "W", 1, 28_800, 28_800)
+				.add("LINE", "E", 2, 29_400, 29_400)
+				.add("LOOP", "W", 1, 36_000, 36_000)
+				.add("LOOP", "E", 2, 36_300, 36_360)
+				.add("LOOP", "W2", 3, 36_660, 36_660)
+				.add("NIGHT", "W", 1, 90_000, 90_000)
+				.add("NIGHT", "E", 2, 90_600, 90_600)
+				.add("NOSHAPE", "W", 1, 40_000, 40_000)
+				.add("NOSHAPE", "E", 2, 40_600, 40_600)
+				.build();
+		ShapeMatchIndex.Builder builder = new ShapeMatchIndex.Builder(schedule, ShapeMatchIndex.DEFAULT_MAX_DISTANCE_METRES);
+		for (int i = 0; i <= 20; i++) {
+			builder.addShapePoint("EAST", LAT, WEST + (EAST - WEST) * i / 20);
+		}
+		for (int i = 0; i <= 20; i++) {
+			builder.addShapePoint("LOOP", LAT, WEST + (EAST - WEST) * i / 20);
+		}
+		for (int i = 20; i >= 0; i--) {
+			builder.addShapePoint("LOOP", RETURN_LAT, WEST + (EAST - WEST) * i / 20);
+		}
+		return builder
+				.addTripShape("LINE", "EAST")
+				.addTripShape("NIGHT", "EAST")
+				.addTripShape("LOOP", "LOOP")
+				.addStop("W", LAT, WEST)
+				.addStop("E", LAT, EAST)
+				.addStop("W2", RETURN_LAT, WEST)
+				.build();
+	}
+
+	private static ZonedDateTime at(int secondsOfDay) {
+		return DAY.atStartOfDay(ZONE).plusSeconds(secondsOfDay);
+	}
+
+	@Test
+	void interpolatesBetweenStopsAsTheVehicleProgresses() {
+		ShapeMatchIndex index = index();
+		TripDeviationEngine engine = new TripDeviationEngine();
+
+		assertEquals(-60, engine.observe(index, "V1", "LINE", null, ScheduleIndex.NOT_FOUND, null, LAT, WEST, at(28_740)));
+		assertEquals(30, engine.observe(index, "V1", "LINE", null, ScheduleIndex.NOT_FOUND, null, LAT, MIDDLE, at(29_130)), 1);
+		assertEquals(120, engine.observe(index, "V1", "LINE", null, ScheduleIndex.NOT_FOUND, null, LAT, EAST, at(29_520)));
+	}
+
+	@Test
+	void progressNeverMovesBackwards() {
+		ShapeMatchIndex index = index();
+		TripDeviationEngine engine = new TripDeviationEngine();
+
+		assertEquals(0, engine.observe(index, "V1", "LINE", null, ScheduleIndex.NOT_FOUND, null, LAT, MIDDLE, at(29_100)), 1);
+		// A position jumping back 400 m is not believed: the vehicle is still at the middle, 60 s later
+		assertEquals(60, engine.observe(index, "V1", "LINE", null, ScheduleIndex.NOT_FOUND, null,
+				LAT, WEST + (EAST - WEST) / 4, at(29_160)), 1);
+	}
+
+	@Test
+	void followsLoopShapesPastThePartAlreadyTravelled() {
+		ShapeMatchIndex index = index();
+		TripDeviationEngine engine = new TripDeviationEngine();
+
+		assertEquals(0, engine.observe(index, "V1", "LOOP", null, ScheduleIndex.NOT_FOUND, null, LAT, MIDDLE, at(36_150)), 1);
+		assertEquals(0, engine.observe(index, "V1", "LOOP", null, ScheduleIndex.NOT_FOUND, null, LAT, EAST, at(36_360)), 1);
+		// Back at the middle, nearer the outbound leg, but the vehicle has already been to the far end
+		assertEquals(0, engine.observe(index, "V1", "LOOP", null, ScheduleIndex.NOT_FOUND, null, LAT, MIDDLE, at(36_510)), 2);
+		// A vehicle first seen there is placed on the outbound leg
+		assertEquals(360, engine.observe(index, "V2", "LOOP", null, ScheduleIndex.NOT_FOUND, null, LAT, MIDDLE, at(36_510)), 2);
+	}
+
+	@Test
+	void fallsBackToTheReportedStopAndThenToTheLastDeviation() {
+		ShapeMatchIndex index = index();
+		TripDeviationEngine engine = new TripDeviationEngine();
+
+		assertNull(engine.observe(index, "V1", "NOSHAPE", null, ScheduleIndex.NOT_FOUND, null, LAT, MIDDLE, at(40_000)));
+		assertEquals(90, engine.observe(index, "V1", "NOSHAPE", "E", 2, null, LAT, MIDDLE, at(40_690)));
+		assertEquals(90, engine.observe(index, "V1", "NOSHAPE", null, ScheduleIndex.NOT_FOUND, null, LAT, MIDDLE, at(40_720)));
+		assertNull(engine.observe(index, "V1", "UNKNOWN", "E", 2, null, LAT, MIDDLE, at(40_750)));
+		assertEquals(0, engine.size());
+	}
+
+	@Test
+	void resetsProgressWhenTheVehicleStartsAnotherTrip() {
+		ShapeMatchIndex index = index();
+		TripDeviationEngine engine = new TripDeviationEngine();
+
+		engine.observe(index, "V1", "LINE", null, ScheduleIndex.NOT_FOUND, null, LAT, EAST, at(29_400));
+		assertEquals(0, engine.observe(index, "V1", "LOOP", null, ScheduleIndex.NOT_FOUND, null, LAT, WEST, at(36_000)));
+	}
+
+	@Test
+	void countsLateNightTimesFromTheServiceDay() {
+		ShapeMatchIndex index = index();
+		TripDeviationEngine engine = new TripDeviationEngine();
+		ZonedDateTime observed = LocalDateTime.of(2025, 6, 12, 1, 2).atZone(ZONE);
+
+		assertEquals(120, engine.observe(index, "V1", "NIGHT", null, ScheduleIndex.NOT_FOUND, null, LAT, WEST, observed));
+		assertEquals(120, engine.observe(index, "V2", "NIGHT", null, ScheduleIndex.NOT_FOUND, DAY, LAT, WEST, observed));
+	}
+
+	@Test
+	void expiresVehiclesNotObservedRecently() {
+		ShapeMatchIndex index = index();
+		TripDeviationEngine engine = new TripDeviationEngine();
+		engine.observe(index, "V1", "LINE", null, ScheduleIndex.NOT_FOUND, null, LAT, WEST, at(28_800));
+		engine.observe(index, "V2", "LINE", null, ScheduleIndex.NOT_FOUND, null, LAT, WEST, at(28_900));
+
+		assertEquals(1, engine.expire(at(28_850).toEpochSecond()));
+		assertEquals(1, engine.size());
+	}
+}
@@ -0,0 +1,151 @@
+package com.transit.delay_prediction.service;
+
+import com.google.transit.realtime.GtfsRealtime.TripDescriptor;
+import com.google.transit.realtime.GtfsRealtime.TripUpdate;
+import com.google.transit.realtime.GtfsRealtime.TripUpdate.StopTimeEvent;
+import com.google.transit.realtime.GtfsRealtime.TripUpdate.StopTimeUpdate;
+import com.transit.delay_prediction.entity.VehiclePosition;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TripStateTableTest {
+	private static final ZoneId ZONE = ZoneId.of("America/New_York");
+	private static final LocalDate DAY = LocalDate.of(2025, 6, 11);
+
+	private static final ScheduleIndex SCHEDULE = new ScheduleIndex.Builder()
+			.add("T1", "S1", 1, 28_800, 28_800)
+			.add("T1", "S2", 2, 29_100, 29_100)
+			.add("T1", "S3", 3, 29_400, 29_400)
+			.add("NIGHT", "S1", 1, 90_000, 90_000)
+			.build();
+
+	private static long at(int serviceSeconds) {
+		return ServiceCalendar.at(DAY, serviceSeconds, ZONE).toEpochSecond();
+	}
+
+	private static StopTimeUpdate.Builder stop(String stopId, int sequence, long arrival) {
+		return StopTimeUpdate.newBuilder().setStopId(stopId).setStopSequence(sequence)
+				.setArrival(StopTimeEvent.newBuilder().setTime(arrival));
+	}
+
+	private static VehiclePosition position(String tripId, String stopId, int secondsOfDay, int delay) {
+		VehiclePosition position = new VehiclePosition();
+		position.setVehicleId("V1");
+		position.setTripId(tripId);
+		position.setRouteId("B41");
+		position.setStopId(stopId);
+		position.setTimestamp(LocalDateTime.of(DAY, java.time.LocalTime.ofSecondOfDay(secondsOfDay)));
+		position.setDelay(delay);
+		return position;
+	}
+
+	@Test
+	void derivesStopDelaysFromPredictedTimesAndTheSchedule() {
+		TripStateTable table = new TripStateTable(ZONE);
+		TripUpdate update = TripUpdate.newBuilder()
+				.setTrip(TripDescriptor.newBuilder().setTripId("T1").setRouteId("B41"))
+				.setTimestamp(at(28_700))
+				.addStopTimeUpdate(stop("S2", 2, at(29_100 + 120)))
+				.addStopTimeUpdate(stop("S3", 3, at(29_400 + 90)))
+				.build();
+
+		assertTrue(table.applyTripUpdate(SCHEDULE, update, 0));
+
+		TripStatus status = table.status("T1");
+		assertEquals(2, status.stops().size());
+		assertEquals(120, status.stops().get(0).delay());
+		assertEquals(90, status.stops().get(1).delay());
+		assertNull(status.observedDelay());
+	}
+
+	@Test
+	void fallsBackToDepartureAtStopsWithoutScheduledArrival() {
+		ScheduleIndex schedule = new ScheduleIndex.Builder()
+				.add("T2", "S1", 1, 28_800, 28_800)
+				.add("T2", "S2", 2, ScheduleIndex.NOT_FOUND, 29_100)
+				.add("T2", "S3", 3, ScheduleIndex.NOT_FOUND, ScheduleIndex.NOT_FOUND)
+				.add("T2", "S4", 4, 29_700, 29_700)
+				.build();
+		TripStateTable table = new TripStateTable(ZONE);
+		table.applyTripUpdate(schedule, TripUpdate.newBuilder()
+				.setTrip(TripDescriptor.newBuilder().setTripId("T2"))
+				.setTimestamp(at(28_700))
+				.addStopTimeUpdate(stop("S2", 2, at(29_100 + 45)))
+				.addStopTimeUpdate(stop("S3", 3, at(29_400 + 50)))
+				.addStopTimeUpdate(stop("S4", 4, at(29_700 + 60)))
+				.build(), 0);
+
+		TripStatus status = table.status("T2");
+		assertEquals(45, status.stops().get(0).delay());
+		assertNull(status.stops().get(1).delay());
+		assertEquals(60, status.stops().get(2).delay());
+
+		VehiclePosition atS3 = position("T2", "S3", 29_300, 30);
+		table.join(atS3, 3);
+		assertEquals("S3", atS3.getUpstreamStopId());
+		assertNull(atS3.getUpstreamDelay());
+	}
+
+	@Test
+	void joinsUpstreamPredictionsToVehiclePositionsByTrip() {
+		TripStateTable table = new TripStateTable(ZONE);
+		table.applyTripUpdate(SCHEDULE, TripUpdate.newBuilder()
+				.setTrip(TripDescriptor.newBuilder().setTripId("T1"))
+				.setTimestamp(at(28_700))
+				.addStopTimeUpdate(stop("S2", 2, at(29_100 + 120)))
+				.addStopTimeUpdate(StopTimeUpdate.newBuilder().setStopId("S3").setStopSequence(3)
+						.setArrival(StopTimeEvent.newBuilder().setDelay(75)))
+				.build(), 0);
+
+		VehiclePosition atS3 = position("T1", "S3", 29_000, 60);
+		table.join(atS3, 3);
+		assertEquals("S3", atS3.getUpstreamStopId());
+		assertEquals(75, atS3.getUpstreamDelay());
+		assertNull(atS3.getUpstreamArrival());
+
+		// No stop reported: the next prediction by sequence
+		VehiclePosition bySequence = position("T1", null, 29_010, 70);
+		table.join(bySequence, 2);
+		assertEquals("S2", bySequence.getUpstreamStopId());
+		assertEquals(120, bySequence.getUpstreamDelay());
+		assertEquals(LocalDateTime.of(DAY, java.time.LocalTime.ofSecondOfDay(29_220)), bySequence.getUpstreamArrival());
+
+		TripStatus status = table.status("T1");
+		assertEquals(70, status.observedDelay());
+		assertEquals("V1", status.vehicleId());
+
+		VehiclePosition unpredicted = position("T2", "S1", 29_000, 10);
+		table.join(unpredicted, 1);
+		assertNull(unpredicted.getUpstreamDelay());
+		assertNull(unpredicted.getUpstreamStopId());
+		assertEquals(10, table.status("T2").observedDelay());
+	}
+
+	@Test
+	void keepsNewerPredictionsAndResolvesTheServiceDayAfterMidnight() {
+		TripStateTable table = new TripStateTable(ZONE);
+		TripUpdate late = TripUpdate.newBuilder()
+				.setTrip(TripDescriptor.newBuilder().setTripId("NIGHT"))
+				.setTimestamp(at(89_000))
+				.addStopTimeUpdate(stop("S1", 1, at(90_000 + 45)))
+				.build();
+		assertTrue(table.applyTripUpdate(SCHEDULE, late, 0));
+		assertEquals(45, table.status("NIGHT").stops().get(0).delay());
+
+		TripUpdate stale = late.toBuilder().setTimestamp(at(88_000)).setDelay(999).build();
+		assertFalse(table.applyTripUpdate(SCHEDULE, stale, 0));
+		assertNull(table.status("NIGHT").tripDelay());
+
+		assertEquals(0, table.expire(at(89_000)));
+		assertEquals(1, table.expire(at(89_001)));
+		assertEquals(0, table.size());
+	}
+}
@@ -0,0 +1,123 @@
+package com.transit.delay_prediction.service;
+
+import com.transit.delay_prediction.entity.VehiclePosition;
+import com.transit.delay_prediction.service.VehicleChangeDetector.Change;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class VehicleChangeDetectorTest {
+
+	private static VehiclePosition position(String vehicleId, String tripId, String stopId, double lat, double lon) {
+		VehiclePosition position = new VehiclePosition();
+		position.setVehicleId(vehicleId);
+		position.setTripId(tripId);
+		position.setStopId(stopId);
+		position.setLatitude(lat);
+		position.setLongitude(lon);
+		return position;
+	}
+
+	@Test
+	void classifiesNewMovedAndUnchangedUpdates() {
+		VehicleChangeDetector detector = new VehicleChangeDetector(60);
+
+		assertEquals(Change.NEW, detector.observe(position("V1", "T1", "S1", 40.65, -73.95), 1_000));
+		assertEquals(Change.UNCHANGED, detector.observe(position("V1", "T1", "S1", 40.65, -73.95), 1_010));
+		assertEquals(Change.MOVED, detector.observe(position("V1", "T1", "S1", 40.651, -73.95), 1_020));
+		assertEquals(Change.MOVED, detector.observe(position("V1", "T1", "S2", 40.651, -73.95), 1_030));
+		assertEquals(Change.MOVED, detector.observe(position("V1", "T2", "S2", 40.651, -73.95), 1_040));
+		assertEquals(Change.MOVED, detector.observe(position("V1", "T2", null, 40.651, -73.95), 1_050));
+		assertEquals(Change.NEW, detector.observe(position("V2", "T2", null, 40.651, -73.95), 1_050));
+		assertEquals(2, detector.size());
+		assertFalse(Change.UNCHANGED.isEmitted());
+	}
+
+	@Test
+	void treatsADelayChangeBeyondTheThresholdAsMoved() {
+		VehicleChangeDetector detector = new VehicleChangeDetector(60);
+		VehiclePosition stopped = position("V1", "T1", "S1", 40.65, -73.95);
+		stopped.setDelay(120);
+		detector.observe(stopped, 1_000);
+
+		stopped.setDelay(120 + VehicleChangeDetector.DELAY_CHANGE_SECONDS);
+		assertEquals(Change.UNCHANGED, detector.observe(stopped, 1_010));
+		stopped.setDelay(120 + VehicleChangeDetector.DELAY_CHANGE_SECONDS + 1);
+		assertEquals(Change.MOVED, detector.observe(stopped, 1_020));
+		stopped.setDelay(120);
+		assertEquals(Change.MOVED, detector.observe(stopped, 1_030));
+	}
+
+	@Test
+	void letsAHeartbeatThroughForStationaryVehicles() {
+		VehicleChangeDetector detector = new VehicleChangeDetector(60);
+		detector.observe(position("V1", "T1", "S1", 40.65, -73.95), 1_000);
+
+		assertEquals(Change.UNCHANGED, detector.observe(position("V1", "T1", "S1", 40.65, -73.95), 1_059));
+		assertEquals(Change.HEARTBEAT, detector.observe(position("V1", "T1", "S1", 40.65, -73.95), 1_060));
+		assertEquals(Change.UNCHANGED, detector.observe(position("V1", "T1", "S1", 40.65, -73.95), 1_100));
+		assertEquals(Change.HEARTBEAT, detector.observe(position("V1", "T1", "S1", 40.65, -73.95), 1_120));
+	}
+
+	@Test
+	void growsPastItsInitialCapacity() {
+		VehicleChangeDetector detector = new VehicleChangeDetector(60);
+		for (int i = 0; i < 10_000; i++) {
+			assertEquals(Change.NEW, detector.observe(position("MTA NYCT_" + i, "T", null, 40.65, -73.95), 1_000));
+		}
+		for (int i = 0; i < 10_000; i++) {
+			assertEquals(Change.UNCHANGED, detector.observe(position("MTA NYCT_" + i, "T", null, 40.65, -73.95), 1_010));
+		}
+		assertEquals(10_000, detector.size());
+	}
+
+	@Test
+	void neverLetsAReportThroughAgainWithTheTimestampAlreadyEmitted() {
+		VehicleChangeDetector detector = new VehicleChangeDetector(60);
+		VehiclePosition report = position("V1", "T1", "S1", 40.65, -73.95);
+		report.setTimestamp(LocalDateTime.of(2025, 3, 14, 11, 2, 37));
+		detector.observe(report, 1_000);
+
+		assertEquals(Change.UNCHANGED, detector.observe(report, 1_060));
+		report.setTimestamp(LocalDateTime.of(2025, 3, 14, 11, 3, 7));
+		assertEquals(Change.HEARTBEAT, detector.observe(report, 1_070));
+	}
+
+	@Test
+	void evictsVehiclesNotSeenForAFewHeartbeats() {
+		VehicleChangeDetector detector = new VehicleChangeDetector(60);
+		detector.observe(position("V1", "T1", "S1", 40.65, -73.95), 1_000);
+		detector.observe(position("V2", "T2", "S2", 40.66, -73.96), 1_000);
+		detector.observe(position("V3", "T3", "S3", 40.67, -73.97), 1_000);
+		detector.observe(position("V2", "T2", "S2", 40.66, -73.96), 1_150);
+
+		assertEquals(0, detector.evict(1_000 + VehicleChangeDetector.EVICT_AFTER_HEARTBEATS * 60));
+		assertEquals(2, detector.evict(1_001 + VehicleChangeDetector.EVICT_AFTER_HEARTBEATS * 60));
+		assertEquals(1, detector.size());
+		assertEquals(Change.UNCHANGED, detector.observe(position("V2", "T2", "S2", 40.66, -73.96), 1_200));
+		assertEquals(Change.NEW, detector.observe(position("V1", "T1", "S1", 40.65, -73.95), 1_200));
+	}
+
+	@Test
+	void keepsTheStateOfRemainingVehiclesAcrossEvictions() {
+		VehicleChangeDetector detector = new VehicleChangeDetector(60);
+		for (int i = 0; i < 10_000; i++) {
+			detector.observe(position("MTA NYCT_" + i, "T", null, 40.65, -73.95), 1_000);
+		}
+		for (int i = 0; i < 10_000; i += 2) {
+			detector.observe(position("MTA NYCT_" + i, "T", null, 40.65, -73.95), 1_500);
+		}
+
+		assertEquals(5_000, detector.evict(1_500));
+		for (int i = 0; i < 10_000; i += 2) {
+			assertEquals(Change.UNCHANGED, detector.observe(position("MTA NYCT_" + i, "T", null, 40.65, -73.95), 1_510));
+		}
+		for (int i = 1; i < 10_000; i += 2) {
+			assertEquals(Change.NEW, detector.observe(position("MTA NYCT_" + i, "T", null, 40.65, -73.95), 1_510));
+		}
+		assertEquals(10_000, detector.size());
+	}
+}
@@ -0,0 +1,124 @@
+package com.transit.delay_prediction.service;
+
+import com.transit.delay_prediction.entity.VehiclePosition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class VehiclePositionPartitionServiceTest {
+
+	@Mock
+	private JdbcTemplate jdbcTemplate;
+
+	@Mock
+	private TransactionTemplate transactionTemplate;
+
+	@InjectMocks
+	private VehiclePositionPartitionService service;
+
+	@BeforeEach
+	void setUp() {
+		ReflectionTestUtils.setField(service, "retentionDays", 30);
+	}
+
+	private static VehiclePosition at(LocalDateTime timestamp) {
+		VehiclePosition position = new VehiclePosition();
+		position.setVehicleId("MTA NYCT_7612");
+		position.setTimestamp(timestamp);
+		return position;
+	}
+
+	@Test
+	void boundsADayFromItsLocalMidnightToTheNext() {
+		assertEquals("vehicle_position_p20250309", VehiclePositionPartitionService.partitionName(LocalDate.of(2025, 3, 9)));
+		// Timestamps are local, so a daylight saving day is bounded like any other
+		assertEquals(" FOR VALUES FROM ('2025-03-09') TO ('2025-03-10')",
+				VehiclePositionPartitionService.partitionBounds(LocalDate.of(2025, 3, 9)));
+		assertEquals(" FOR VALUES FROM ('2024-12-31') TO ('2025-01-01')",
+				VehiclePositionPartitionService.partitionBounds(LocalDate.of(2024, 12, 31)));
+	}
+
+	@Test
+	void dropsOnlyPartitionsBeforeTheRetentionCutoff() {
+		LocalDate oldestKept = service.oldestKept(LocalDate.of(2025, 3, 14));
+		assertEquals(LocalDate.of(2025, 2, 12), oldestKept);
+		when(jdbcTemplate.queryForList(anyString(), eq(String.class), eq("vehicle_position"))).thenReturn(List.of(
+				"vehicle_position_p20250211", "vehicle_position_p20250212", "vehicle_position_p20250314",
+				"vehicle_position_default"));
+
+		service.dropExpiredPartitions(oldestKept);
+
+		verify(jdbcTemplate).execute("DROP TABLE vehicle_position_p20250211");
+		verify(jdbcTemplate, never()).execute("DROP TABLE vehicle_position_p20250212");
+		verify(jdbcTemplate, never()).execute("DROP TABLE vehicle_position_default");
+		verify(jdbcTemplate).update(startsWith("DELETE FROM vehicle_position_default"), eq(oldestKept.atStartOfDay()));
+	}
+
+	@Test
+	void movesRowsOutOfTheDefaultPartitionBeforeAttaching() {
+		LocalDate day = LocalDate.of(2025, 3, 14);
+		when(jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, "vehicle_position_p20250314"))
+				.thenReturn(false);
+		when(jdbcTemplate.queryForObject(startsWith("SELECT EXISTS"), eq(Boolean.class), any(), any())).thenReturn(true);
+		when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+				invocation.<TransactionCallback<Integer>>getArgument(0).doInTransaction(null));
+
+		service.createPartitions(day, day);
+
+		InOrder order = inOrder(jdbcTemplate);
+		order.verify(jdbcTemplate).execute(startsWith("CREATE TABLE vehicle_position_p20250314 (LIKE"));
+		order.verify(jdbcTemplate).update(startsWith("WITH moved AS (DELETE FROM vehicle_position_default"),
+				eq(day.atStartOfDay()), eq(day.plusDays(1).atStartOfDay()));
+		order.verify(jdbcTemplate).execute("ALTER TABLE vehicle_position ATTACH PARTITION vehicle_position_p20250314"
+				+ VehiclePositionPartitionService.partitionBounds(day));
+	}
+
+	@Test
+	void rollsUpTheWrittenHoursOnceTheyHaveBegun() {
+		LocalDateTime now = LocalDateTime.of(2025, 3, 14, 14, 30);
+		when(jdbcTemplate.queryForObject(startsWith("SELECT max(hour)"), eq(LocalDateTime.class)))
+				.thenReturn(LocalDateTime.of(2025, 3, 14, 9, 0));
+		service.refreshHourlyRollup(now);
+		verify(jdbcTemplate).update(startsWith("INSERT INTO vehicle_position_hourly"),
+				eq(LocalDateTime.of(2025, 3, 14, 8, 0)), eq(LocalDateTime.of(2025, 3, 14, 15, 0)));
+
+		service.written(List.of(at(now.withHour(10).withMinute(15)), at(now.withHour(10).withMinute(40)),
+				at(now.withHour(11).withMinute(5)), at(now.withHour(13).withMinute(20)),
+				at(now.withHour(15).withMinute(2))));
+		service.refreshHourlyRollup(now);
+		// Consecutive hours are recomputed together, and the 15:00 hour waits until it has begun
+		verify(jdbcTemplate).update(startsWith("INSERT INTO vehicle_position_hourly"),
+				eq(LocalDateTime.of(2025, 3, 14, 10, 0)), eq(LocalDateTime.of(2025, 3, 14, 12, 0)));
+		verify(jdbcTemplate).update(startsWith("INSERT INTO vehicle_position_hourly"),
+				eq(LocalDateTime.of(2025, 3, 14, 13, 0)), eq(LocalDateTime.of(2025, 3, 14, 14, 0)));
+		verify(jdbcTemplate, never()).update(startsWith("INSERT INTO vehicle_position_hourly"),
+				eq(LocalDateTime.of(2025, 3, 14, 15, 0)), eq(LocalDateTime.of(2025, 3, 14, 16, 0)));
+
+		service.refreshHourlyRollup(now.plusHours(1));
+		verify(jdbcTemplate).update(startsWith("INSERT INTO vehicle_position_hourly"),
+				eq(LocalDateTime.of(2025, 3, 14, 15, 0)), eq(LocalDateTime.of(2025, 3, 14, 16, 0)));
+	}
+}
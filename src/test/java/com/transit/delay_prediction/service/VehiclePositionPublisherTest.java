@@ -0,0 +1,65 @@
+package com.transit.delay_prediction.service;
+
+import com.transit.delay_prediction.entity.VehiclePosition;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.KafkaException;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class VehiclePositionPublisherTest {
+
+	@Mock
+	private KafkaTemplate<String, VehiclePosition> kafkaTemplate;
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+	private final VehiclePositionPublisher publisher = new VehiclePositionPublisher();
+
+	@BeforeEach
+	void setUp() {
+		ReflectionTestUtils.setField(publisher, "kafkaTemplate", kafkaTemplate);
+		ReflectionTestUtils.setField(publisher, "meterRegistry", registry);
+		ReflectionTestUtils.setField(publisher, "maxInFlight", 1);
+		publisher.registerMetrics();
+	}
+
+	private static VehiclePosition position(String vehicleId) {
+		VehiclePosition position = new VehiclePosition();
+		position.setVehicleId(vehicleId);
+		return position;
+	}
+
+	private double rows(String outcome) {
+		return registry.get("vehicle.position.write.rows").tag("store", "kafka").tag("outcome", outcome).counter().count();
+	}
+
+	@Test
+	void keepsPublishingTheCyclePastAFailedSend() {
+		when(kafkaTemplate.send(eq(VehiclePositionPublisher.TOPIC), any(), any()))
+				.thenReturn(CompletableFuture.completedFuture(null));
+		when(kafkaTemplate.send(VehiclePositionPublisher.TOPIC, "MTA NYCT_2", position("MTA NYCT_2")))
+				.thenReturn(CompletableFuture.failedFuture(new KafkaException("Record too large")));
+
+		List<VehiclePosition> published = publisher.publish(Flux.just(
+				position("MTA NYCT_1"), position("MTA NYCT_2"), position("MTA NYCT_3"))).collectList().block();
+
+		assertEquals(List.of(position("MTA NYCT_1"), position("MTA NYCT_3")), published);
+		assertEquals(2, rows("success"));
+		assertEquals(1, rows("error"));
+	}
+}
@@ -0,0 +1,138 @@
+package com.transit.delay_prediction.service;
+
+import com.transit.delay_prediction.entity.VehiclePosition;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+
+import java.sql.Connection;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class VehiclePositionSinkTest {
+
+	@Mock
+	private JdbcTemplate jdbcTemplate;
+
+	@Mock
+	private VehiclePositionPartitionService partitionService;
+
+	private final VehiclePositionSink sink = new VehiclePositionSink();
+
+	@BeforeEach
+	void setUp() {
+		ReflectionTestUtils.setField(sink, "jdbcTemplate", jdbcTemplate);
+		ReflectionTestUtils.setField(sink, "partitionService", partitionService);
+		ReflectionTestUtils.setField(sink, "meterRegistry", new SimpleMeterRegistry());
+		ReflectionTestUtils.setField(sink, "flushMillis", 20L);
+		ReflectionTestUtils.setField(sink, "offerTimeoutMillis", 50L);
+		ReflectionTestUtils.setField(sink, "writerThreads", 1);
+	}
+
+	@AfterEach
+	void tearDown() throws InterruptedException {
+		sink.stop();
+	}
+
+	/**
+	 * Runs connection callbacks against a connection that is not PostgreSQL's, so batches are inserted.
+	 */
+	private void answerWithPlainConnection() {
+		when(jdbcTemplate.execute(any(ConnectionCallback.class))).thenAnswer(invocation -> {
+			Connection connection = mock(Connection.class);
+			return invocation.<ConnectionCallback<?>>getArgument(0).doInConnection(connection);
+		});
+	}
+
+	private static VehiclePosition position(int i) {
+		VehiclePosition position = new VehiclePosition();
+		position.setVehicleId("MTA NYCT_" + i);
+		position.setRouteId("B41");
+		position.setLatitude(40.645923);
+		position.setLongitude(-73.957374);
+		position.setTimestamp(LocalDateTime.of(2025, 3, 14, 11, 2, 37));
+		position.setDelay(i == 0 ? null : 60 * i);
+		return position;
+	}
+
+	@Test
+	void flushesQueuedPositionsInBatches() throws InterruptedException {
+		ReflectionTestUtils.setField(sink, "batchSize", 500);
+		ReflectionTestUtils.setField(sink, "queueCapacity", 100);
+		answerWithPlainConnection();
+		// Batches are reused by the writer, so keep copies of what was written
+		List<Object[]> inserted = new CopyOnWriteArrayList<>();
+		List<VehiclePosition> written = new CopyOnWriteArrayList<>();
+		CountDownLatch flushed = new CountDownLatch(3);
+		when(jdbcTemplate.batchUpdate(startsWith("INSERT INTO vehicle_position"), anyList())).thenAnswer(invocation -> {
+			inserted.addAll(invocation.getArgument(1));
+			return new int[0];
+		});
+		doAnswer(invocation -> {
+			List<VehiclePosition> batch = invocation.getArgument(0);
+			written.addAll(batch);
+			batch.forEach(position -> flushed.countDown());
+			return null;
+		}).when(partitionService).written(anyList());
+		sink.start();
+
+		List<VehiclePosition> positions = List.of(position(0), position(1), position(2));
+		assertEquals(positions, sink.persist(Flux.fromIterable(positions)).collectList().block());
+
+		assertTrue(flushed.await(5, TimeUnit.SECONDS));
+		assertEquals(positions, written);
+		assertEquals(3, inserted.size());
+		assertArrayEquals(new Object[] {"MTA NYCT_0", null, "B41", null, 40.645923, -73.957374,
+				LocalDateTime.of(2025, 3, 14, 11, 2, 37), null}, inserted.get(0));
+		sink.stop();
+		assertEquals(3, sink.stats().flushedRows());
+	}
+
+	@Test
+	void dropsPositionsWhenTheQueueStaysFullWithoutFailingTheCycle() throws InterruptedException {
+		ReflectionTestUtils.setField(sink, "batchSize", 1);
+		ReflectionTestUtils.setField(sink, "queueCapacity", 2);
+		CountDownLatch writing = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		when(jdbcTemplate.execute(any(ConnectionCallback.class))).thenAnswer(invocation -> {
+			writing.countDown();
+			release.await(5, TimeUnit.SECONDS);
+			return null;
+		});
+		sink.start();
+
+		// The writer holds the first position while the next two fill the queue
+		sink.persist(position(1)).block();
+		assertTrue(writing.await(5, TimeUnit.SECONDS));
+		List<VehiclePosition> positions = List.of(position(2), position(3), position(4));
+		assertEquals(positions, sink.persist(Flux.fromIterable(positions)).collectList().block());
+		release.countDown();
+
+		assertEquals(1, sink.stats().failedRows());
+		verify(jdbcTemplate, timeout(5_000).times(3)).execute(any(ConnectionCallback.class));
+	}
+}